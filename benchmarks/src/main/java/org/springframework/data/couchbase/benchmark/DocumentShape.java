@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.mapping.Document;
+
+/**
+ * The document shapes the mapping benchmarks run against: flat documents of simple properties, documents with nested
+ * objects and lists of objects, documents with a large collection and documents with maps.
+ *
+ * @since 3.2
+ */
+public enum DocumentShape {
+
+  FLAT {
+    @Override
+    public Object create() {
+      return new FlatEntity("flat::1", "Alice", "alice@example.com", 42, 1234.5d, true, 1546300800000L);
+    }
+  },
+
+  NESTED {
+    @Override
+    public Object create() {
+      NestedEntity entity = new NestedEntity();
+      entity.id = "nested::1";
+      entity.name = "Alice";
+      entity.address = new Address("1 Main Street", "Springfield", "12345");
+      for (int i = 0; i < 10; i++) {
+        entity.orders.add(new Order("order-" + i, i * 10.5d, new Address(i + " Side Street", "Shelbyville", "54321")));
+      }
+      return entity;
+    }
+  },
+
+  LARGE_COLLECTION {
+    @Override
+    public Object create() {
+      CollectionEntity entity = new CollectionEntity();
+      entity.id = "collection::1";
+      for (int i = 0; i < 1000; i++) {
+        entity.tags.add("tag-" + i);
+        entity.scores.add(i);
+      }
+      return entity;
+    }
+  },
+
+  MAP {
+    @Override
+    public Object create() {
+      MapEntity entity = new MapEntity();
+      entity.id = "map::1";
+      for (int i = 0; i < 100; i++) {
+        entity.attributes.put("attribute" + i, "value-" + i);
+        entity.addresses.put("address" + i, new Address(i + " Main Street", "Springfield", "12345"));
+      }
+      return entity;
+    }
+  };
+
+  /**
+   * @return a new entity of this shape.
+   */
+  public abstract Object create();
+
+  @Document
+  public static class FlatEntity {
+
+    @Id
+    String id;
+    String name;
+    String email;
+    int age;
+    double balance;
+    boolean active;
+    long createdAt;
+
+    public FlatEntity() {
+    }
+
+    FlatEntity(String id, String name, String email, int age, double balance, boolean active, long createdAt) {
+      this.id = id;
+      this.name = name;
+      this.email = email;
+      this.age = age;
+      this.balance = balance;
+      this.active = active;
+      this.createdAt = createdAt;
+    }
+  }
+
+  @Document
+  public static class NestedEntity {
+
+    @Id
+    String id;
+    String name;
+    Address address;
+    List<Order> orders = new ArrayList<Order>();
+  }
+
+  @Document
+  public static class CollectionEntity {
+
+    @Id
+    String id;
+    List<String> tags = new ArrayList<String>();
+    List<Integer> scores = new ArrayList<Integer>();
+  }
+
+  @Document
+  public static class MapEntity {
+
+    @Id
+    String id;
+    Map<String, String> attributes = new HashMap<String, String>();
+    Map<String, Address> addresses = new HashMap<String, Address>();
+  }
+
+  public static class Address {
+
+    String street;
+    String city;
+    String zip;
+
+    public Address() {
+    }
+
+    Address(String street, String city, String zip) {
+      this.street = street;
+      this.city = city;
+      this.zip = zip;
+    }
+  }
+
+  public static class Order {
+
+    String reference;
+    double amount;
+    Address shipping;
+
+    public Order() {
+    }
+
+    Order(String reference, double amount, Address shipping) {
+      this.reference = reference;
+      this.amount = amount;
+      this.shipping = shipping;
+    }
+  }
+}
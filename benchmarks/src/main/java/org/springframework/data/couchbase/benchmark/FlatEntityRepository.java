@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark;
+
+import java.util.List;
+
+import org.springframework.data.couchbase.core.convert.CouchbaseConverter;
+import org.springframework.data.couchbase.repository.CouchbaseRepository;
+import org.springframework.data.couchbase.repository.query.CouchbaseQueryMethod;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+import org.springframework.data.repository.query.Parameter;
+
+/**
+ * The repository whose query methods the query derivation benchmarks run on.
+ *
+ * @since 3.2
+ */
+public interface FlatEntityRepository extends CouchbaseRepository<DocumentShape.FlatEntity, String> {
+
+  List<DocumentShape.FlatEntity> findByName(String name);
+
+  List<DocumentShape.FlatEntity> findByNameAndAgeGreaterThan(String name, int age);
+
+  List<DocumentShape.FlatEntity> findByNameIgnoreCaseOrEmailStartingWithOrderByAgeDesc(String name, String email);
+
+  List<DocumentShape.FlatEntity> findByAgeBetweenAndActiveTrueAndEmailIsNotNull(int from, int to);
+
+  /**
+   * @param methodName the name of a method of this repository.
+   * @param converter the converter providing the mapping context.
+   * @return the query method.
+   */
+  static CouchbaseQueryMethod queryMethod(String methodName, CouchbaseConverter converter) {
+    for (java.lang.reflect.Method method : FlatEntityRepository.class.getMethods()) {
+      if (method.getName().equals(methodName)) {
+        return new CouchbaseQueryMethod(method, new DefaultRepositoryMetadata(FlatEntityRepository.class),
+            new SpelAwareProxyProjectionFactory(), converter.getMappingContext());
+      }
+    }
+    throw new IllegalArgumentException("No method " + methodName + " in " + FlatEntityRepository.class.getName());
+  }
+
+  /**
+   * @param queryMethod a query method of this repository.
+   * @return arguments to invoke the method with.
+   */
+  static Object[] sampleArguments(CouchbaseQueryMethod queryMethod) {
+    Object[] arguments = new Object[queryMethod.getParameters().getNumberOfParameters()];
+    for (Parameter parameter : queryMethod.getParameters()) {
+      int index = parameter.getIndex();
+      arguments[index] = parameter.getType() == int.class ? (Object) (20 + index) : "value" + index;
+    }
+    return arguments;
+  }
+}
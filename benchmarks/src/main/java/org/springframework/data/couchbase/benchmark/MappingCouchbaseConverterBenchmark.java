@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.data.couchbase.core.convert.MappingCouchbaseConverter;
+import org.springframework.data.couchbase.core.mapping.CouchbaseDocument;
+import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
+
+/**
+ * Entity to {@link CouchbaseDocument} mapping throughput of the {@link MappingCouchbaseConverter}, for each
+ * {@link DocumentShape}.
+ *
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MappingCouchbaseConverterBenchmark {
+
+  @Param
+  DocumentShape shape;
+
+  private MappingCouchbaseConverter converter;
+  private Object entity;
+  private Class<?> entityType;
+  private CouchbaseDocument document;
+
+  @Setup
+  public void setUp() {
+    CouchbaseMappingContext mappingContext = new CouchbaseMappingContext();
+    converter = new MappingCouchbaseConverter(mappingContext);
+    converter.afterPropertiesSet();
+
+    entity = shape.create();
+    entityType = entity.getClass();
+    document = new CouchbaseDocument();
+    converter.write(entity, document);
+  }
+
+  @Benchmark
+  public CouchbaseDocument write() {
+    CouchbaseDocument target = new CouchbaseDocument();
+    converter.write(entity, target);
+    return target;
+  }
+
+  @Benchmark
+  public Object read() {
+    return converter.read(entityType, document);
+  }
+}
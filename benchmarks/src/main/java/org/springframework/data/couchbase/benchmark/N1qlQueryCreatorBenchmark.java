@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.java.query.Statement;
+import com.couchbase.client.java.query.dsl.Expression;
+import com.couchbase.client.java.query.dsl.path.FromPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.data.couchbase.core.convert.MappingCouchbaseConverter;
+import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
+import org.springframework.data.couchbase.repository.query.CouchbaseQueryMethod;
+import org.springframework.data.couchbase.repository.query.N1qlQueryCreator;
+import org.springframework.data.couchbase.repository.query.support.N1qlUtils;
+import org.springframework.data.repository.query.ParametersParameterAccessor;
+import org.springframework.data.repository.query.ReturnedType;
+import org.springframework.data.repository.query.parser.PartTree;
+
+/**
+ * Throughput of the derivation of N1QL statements from query method names by the {@link N1qlQueryCreator}, from an
+ * already parsed {@link PartTree} (the per-invocation cost) and including the parsing of the method name.
+ *
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class N1qlQueryCreatorBenchmark {
+
+  private static final String BUCKET = "benchmark";
+
+  @Param({"findByName", "findByNameAndAgeGreaterThan", "findByNameIgnoreCaseOrEmailStartingWithOrderByAgeDesc",
+      "findByAgeBetweenAndActiveTrueAndEmailIsNotNull"})
+  String methodName;
+
+  private MappingCouchbaseConverter converter;
+  private CouchbaseQueryMethod queryMethod;
+  private ReturnedType returnedType;
+  private PartTree partTree;
+  private Object[] arguments;
+
+  @Setup
+  public void setUp() throws Exception {
+    converter = new MappingCouchbaseConverter(new CouchbaseMappingContext());
+    converter.afterPropertiesSet();
+
+    queryMethod = FlatEntityRepository.queryMethod(methodName, converter);
+    returnedType = queryMethod.getResultProcessor().getReturnedType();
+    partTree = new PartTree(methodName, DocumentShape.FlatEntity.class);
+    arguments = FlatEntityRepository.sampleArguments(queryMethod);
+  }
+
+  @Benchmark
+  public Statement createQuery() {
+    return createQuery(partTree);
+  }
+
+  @Benchmark
+  public Statement parseAndCreateQuery() {
+    return createQuery(new PartTree(methodName, DocumentShape.FlatEntity.class));
+  }
+
+  private Statement createQuery(PartTree tree) {
+    Expression bucket = N1qlUtils.escapedBucket(BUCKET);
+    FromPath select = N1qlUtils.createSelectClauseForEntity(BUCKET, returnedType, converter);
+    N1qlQueryCreator creator = new N1qlQueryCreator(tree,
+        new ParametersParameterAccessor(queryMethod.getParameters(), arguments), select.from(bucket), converter,
+        queryMethod);
+    return creator.createQuery();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.data.couchbase.core.convert.MappingCouchbaseConverter;
+import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
+import org.springframework.data.couchbase.repository.query.CouchbaseQueryMethod;
+import org.springframework.data.couchbase.repository.query.StringBasedN1qlQueryParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * Throughput of the {@link StringBasedN1qlQueryParser}: parsing an inline <code>@Query</code> template, which happens
+ * once per query method, and producing the statement of an invocation, for templates only using the couchbase-provided
+ * SpEL variables and for templates depending on the method parameters.
+ *
+ * @since 3.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class StringBasedN1qlQueryParserBenchmark {
+
+  private static final String STATIC_TEMPLATE = "#{#n1ql.selectEntity} WHERE #{#n1ql.filter} AND name = $1 "
+      + "AND age > $2 ORDER BY age DESC LIMIT 10";
+
+  private static final String DYNAMIC_TEMPLATE = "#{#n1ql.selectEntity} WHERE #{#n1ql.filter} AND "
+      + "#{[0]} = $1 AND age > $2 ORDER BY #{[1]} DESC";
+
+  @Param({"static", "dynamic"})
+  String template;
+
+  private MappingCouchbaseConverter converter;
+  private CouchbaseQueryMethod queryMethod;
+  private String statement;
+  private StringBasedN1qlQueryParser parser;
+  private StandardEvaluationContext evaluationContext;
+
+  @Setup
+  public void setUp() {
+    converter = new MappingCouchbaseConverter(new CouchbaseMappingContext());
+    converter.afterPropertiesSet();
+    queryMethod = FlatEntityRepository.queryMethod("findByNameAndAgeGreaterThan", converter);
+    statement = "static".equals(template) ? STATIC_TEMPLATE : DYNAMIC_TEMPLATE;
+    parser = newParser();
+    evaluationContext = new StandardEvaluationContext(new Object[] { "name", "age" });
+  }
+
+  private StringBasedN1qlQueryParser newParser() {
+    return new StringBasedN1qlQueryParser(statement, queryMethod, "benchmark", converter, "_class",
+        DocumentShape.FlatEntity.class);
+  }
+
+  @Benchmark
+  public StringBasedN1qlQueryParser parseTemplate() {
+    return newParser();
+  }
+
+  @Benchmark
+  public String createStatement() {
+    return parser.parse(evaluationContext, false);
+  }
+
+  @Benchmark
+  public String createCountStatement() {
+    return parser.parse(evaluationContext, true);
+  }
+}
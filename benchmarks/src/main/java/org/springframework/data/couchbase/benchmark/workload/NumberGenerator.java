@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks numbers in <code>[0, bound)</code> following a {@link Workload.Distribution}.
+ *
+ * @since 3.2
+ */
+abstract class NumberGenerator {
+
+  /**
+   * @param bound the exclusive upper bound, positive.
+   * @return the next number.
+   */
+  abstract long next(long bound);
+
+  /**
+   * Creates a generator.
+   *
+   * @param distribution the distribution of the numbers.
+   * @param items the number of items the zipfian and latest distributions are computed for.
+   * @param scrambled true to spread the most likely numbers of the zipfian distribution over the range, rather than
+   * having them all at its start.
+   * @return the generator.
+   */
+  static NumberGenerator create(Workload.Distribution distribution, long items, boolean scrambled) {
+    switch (distribution) {
+      case CONSTANT:
+        return new Constant();
+      case UNIFORM:
+        return new Uniform();
+      case ZIPFIAN:
+        return new Zipfian(items, scrambled);
+      case LATEST:
+        return new Latest(items);
+      default:
+        throw new IllegalArgumentException("Unsupported distribution " + distribution);
+    }
+  }
+
+  private static final class Constant extends NumberGenerator {
+
+    @Override
+    long next(long bound) {
+      return bound - 1;
+    }
+  }
+
+  private static final class Uniform extends NumberGenerator {
+
+    @Override
+    long next(long bound) {
+      return ThreadLocalRandom.current().nextLong(bound);
+    }
+  }
+
+  /**
+   * The zipfian generator of Gray et al, "Quickly Generating Billion-Record Synthetic Databases", as used by YCSB.
+   * Its constants are computed once for a number of items, and numbers for a different bound are scaled or hashed
+   * into it.
+   */
+  private static final class Zipfian extends NumberGenerator {
+
+    private static final double THETA = 0.99;
+
+    private final long items;
+    private final boolean scrambled;
+    private final double alpha;
+    private final double zetan;
+    private final double eta;
+    private final double half;
+
+    private Zipfian(long items, boolean scrambled) {
+      this.items = Math.max(items, 2);
+      this.scrambled = scrambled;
+      double zeta2 = zeta(2);
+      this.zetan = zeta(this.items);
+      this.alpha = 1.0 / (1.0 - THETA);
+      this.eta = (1 - Math.pow(2.0 / this.items, 1 - THETA)) / (1 - zeta2 / zetan);
+      this.half = 1 + Math.pow(0.5, THETA);
+    }
+
+    private static double zeta(long n) {
+      double sum = 0;
+      for (long i = 1; i <= n; i++) {
+        sum += 1 / Math.pow(i, THETA);
+      }
+      return sum;
+    }
+
+    /**
+     * @return a number in <code>[0, items)</code>, the smallest being the most likely.
+     */
+    long rank() {
+      double u = ThreadLocalRandom.current().nextDouble();
+      double uz = u * zetan;
+      if (uz < 1.0) {
+        return 0;
+      }
+      if (uz < half) {
+        return 1;
+      }
+      return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    @Override
+    long next(long bound) {
+      long rank = rank();
+      if (scrambled) {
+        return (fnv(rank) & Long.MAX_VALUE) % bound;
+      }
+      return bound == items ? rank : Math.min(bound - 1, rank * bound / items);
+    }
+
+    private static long fnv(long value) {
+      long hash = 0xCBF29CE484222325L;
+      for (int i = 0; i < 8; i++) {
+        hash ^= value & 0xFF;
+        hash *= 1099511628211L;
+        value >>>= 8;
+      }
+      return hash;
+    }
+  }
+
+  /**
+   * Favors the numbers closest to the bound, which are the most recently inserted keys.
+   */
+  private static final class Latest extends NumberGenerator {
+
+    private final Zipfian zipfian;
+
+    private Latest(long items) {
+      this.zipfian = new Zipfian(items, false);
+    }
+
+    @Override
+    long next(long bound) {
+      return Math.max(0, bound - 1 - zipfian.rank());
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import reactor.core.publisher.Flux;
+
+import org.springframework.data.couchbase.repository.ReactiveCouchbaseRepository;
+
+/**
+ * The reactive repository of the {@link WorkloadDocument workload documents}.
+ *
+ * @since 3.2
+ */
+public interface ReactiveWorkloadRepository extends ReactiveCouchbaseRepository<WorkloadDocument, String> {
+
+  Flux<WorkloadDocument> findFirst10ByCategory(int category);
+}
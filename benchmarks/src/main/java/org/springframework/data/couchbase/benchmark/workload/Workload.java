@@ -0,0 +1,295 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The definition of a workload: how many documents to load, how many operations to run with which mix, how many
+ * threads issue them through which client, and how the documents and the keys they target are distributed. The
+ * property names follow the YCSB core workload where there is an equivalent.
+ *
+ * @since 3.2
+ */
+public class Workload {
+
+  /**
+   * The API the operations are issued through.
+   */
+  public enum Client {
+    /** The blocking {@link org.springframework.data.couchbase.core.CouchbaseTemplate}. */
+    TEMPLATE,
+    /** The {@link org.springframework.data.couchbase.core.RxJavaCouchbaseTemplate}. */
+    RX_TEMPLATE,
+    /** A blocking {@link org.springframework.data.couchbase.repository.CouchbaseRepository}. */
+    REPOSITORY,
+    /** A {@link org.springframework.data.couchbase.repository.ReactiveCouchbaseRepository}. */
+    REACTIVE_REPOSITORY;
+
+    /**
+     * @return true if the operations of the client complete asynchronously.
+     */
+    public boolean isReactive() {
+      return this == RX_TEMPLATE || this == REACTIVE_REPOSITORY;
+    }
+  }
+
+  /**
+   * How values are picked within a range.
+   */
+  public enum Distribution {
+    /** Always the upper bound of the range. */
+    CONSTANT,
+    /** Every value is as likely. */
+    UNIFORM,
+    /** A few values are much more likely than the others. */
+    ZIPFIAN,
+    /** The most recently inserted values are the most likely. */
+    LATEST
+  }
+
+  private Client client = Client.TEMPLATE;
+  private int threadCount = 1;
+  private int inFlight = 1;
+  private long recordCount = 1000;
+  private long operationCount = 100000;
+  private long maxExecutionTime;
+  private double readProportion = 0.95;
+  private double updateProportion = 0.05;
+  private double insertProportion;
+  private double queryProportion;
+  private int fieldCount = 10;
+  private int fieldLength = 100;
+  private Distribution fieldLengthDistribution = Distribution.CONSTANT;
+  private Distribution requestDistribution = Distribution.UNIFORM;
+  private int categoryCount = 100;
+  private String keyPrefix = "user";
+
+  /**
+   * Creates a workload from YCSB style properties, keeping the default of those that are not set:
+   * <ul>
+   * <li><code>client</code>: template, rx_template, repository or reactive_repository (template).</li>
+   * <li><code>threadcount</code>: the number of threads issuing operations (1).</li>
+   * <li><code>inflight</code>: the number of operations each thread keeps in flight with a reactive client (1).</li>
+   * <li><code>recordcount</code>: the number of documents loaded before the run (1000).</li>
+   * <li><code>operationcount</code>: the number of operations of the run (100000).</li>
+   * <li><code>maxexecutiontime</code>: the maximum duration of the run in seconds, 0 for no limit (0).</li>
+   * <li><code>readproportion</code>, <code>updateproportion</code>, <code>insertproportion</code>,
+   * <code>queryproportion</code>: the operation mix (0.95, 0.05, 0 and 0).</li>
+   * <li><code>fieldcount</code>, <code>fieldlength</code>: the number of fields of a document and their maximum
+   * length (10 and 100).</li>
+   * <li><code>fieldlengthdistribution</code>: constant, uniform or zipfian (constant).</li>
+   * <li><code>requestdistribution</code>: uniform, zipfian or latest (uniform).</li>
+   * <li><code>categorycount</code>: the number of distinct values of the property queries select on (100).</li>
+   * <li><code>keyprefix</code>: the prefix of the document keys (user).</li>
+   * </ul>
+   *
+   * @param properties the properties.
+   * @return the workload.
+   */
+  public static Workload fromProperties(Properties properties) {
+    Workload workload = new Workload();
+    workload.setClient(Client.valueOf(property(properties, "client", workload.client).toUpperCase(Locale.ROOT)));
+    workload.setThreadCount(Integer.parseInt(property(properties, "threadcount", workload.threadCount)));
+    workload.setInFlight(Integer.parseInt(property(properties, "inflight", workload.inFlight)));
+    workload.setRecordCount(Long.parseLong(property(properties, "recordcount", workload.recordCount)));
+    workload.setOperationCount(Long.parseLong(property(properties, "operationcount", workload.operationCount)));
+    workload.setMaxExecutionTime(Long.parseLong(property(properties, "maxexecutiontime", workload.maxExecutionTime)));
+    workload.setReadProportion(Double.parseDouble(property(properties, "readproportion", workload.readProportion)));
+    workload.setUpdateProportion(Double.parseDouble(property(properties, "updateproportion",
+        workload.updateProportion)));
+    workload.setInsertProportion(Double.parseDouble(property(properties, "insertproportion",
+        workload.insertProportion)));
+    workload.setQueryProportion(Double.parseDouble(property(properties, "queryproportion", workload.queryProportion)));
+    workload.setFieldCount(Integer.parseInt(property(properties, "fieldcount", workload.fieldCount)));
+    workload.setFieldLength(Integer.parseInt(property(properties, "fieldlength", workload.fieldLength)));
+    workload.setFieldLengthDistribution(Distribution.valueOf(property(properties, "fieldlengthdistribution",
+        workload.fieldLengthDistribution).toUpperCase(Locale.ROOT)));
+    workload.setRequestDistribution(Distribution.valueOf(property(properties, "requestdistribution",
+        workload.requestDistribution).toUpperCase(Locale.ROOT)));
+    workload.setCategoryCount(Integer.parseInt(property(properties, "categorycount", workload.categoryCount)));
+    workload.setKeyPrefix(property(properties, "keyprefix", workload.keyPrefix));
+    return workload;
+  }
+
+  private static String property(Properties properties, String name, Object defaultValue) {
+    return properties.getProperty(name, String.valueOf(defaultValue)).trim();
+  }
+
+  public Client getClient() {
+    return client;
+  }
+
+  public void setClient(Client client) {
+    this.client = client;
+  }
+
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  public void setThreadCount(int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("The thread count must be positive");
+    }
+    this.threadCount = threadCount;
+  }
+
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Set the number of operations each thread keeps in flight with a reactive client. Blocking clients always have a
+   * single operation in flight per thread.
+   *
+   * @param inFlight the number of concurrent operations per thread.
+   */
+  public void setInFlight(int inFlight) {
+    if (inFlight < 1) {
+      throw new IllegalArgumentException("The number of operations in flight must be positive");
+    }
+    this.inFlight = inFlight;
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  public void setRecordCount(long recordCount) {
+    this.recordCount = recordCount;
+  }
+
+  public long getOperationCount() {
+    return operationCount;
+  }
+
+  public void setOperationCount(long operationCount) {
+    this.operationCount = operationCount;
+  }
+
+  public long getMaxExecutionTime() {
+    return maxExecutionTime;
+  }
+
+  /**
+   * @param maxExecutionTime the maximum duration of the run in seconds, 0 to run all the operations.
+   */
+  public void setMaxExecutionTime(long maxExecutionTime) {
+    this.maxExecutionTime = maxExecutionTime;
+  }
+
+  public double getReadProportion() {
+    return readProportion;
+  }
+
+  public void setReadProportion(double readProportion) {
+    this.readProportion = readProportion;
+  }
+
+  public double getUpdateProportion() {
+    return updateProportion;
+  }
+
+  public void setUpdateProportion(double updateProportion) {
+    this.updateProportion = updateProportion;
+  }
+
+  public double getInsertProportion() {
+    return insertProportion;
+  }
+
+  public void setInsertProportion(double insertProportion) {
+    this.insertProportion = insertProportion;
+  }
+
+  public double getQueryProportion() {
+    return queryProportion;
+  }
+
+  public void setQueryProportion(double queryProportion) {
+    this.queryProportion = queryProportion;
+  }
+
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  public void setFieldCount(int fieldCount) {
+    this.fieldCount = fieldCount;
+  }
+
+  public int getFieldLength() {
+    return fieldLength;
+  }
+
+  public void setFieldLength(int fieldLength) {
+    if (fieldLength < 1) {
+      throw new IllegalArgumentException("The field length must be positive");
+    }
+    this.fieldLength = fieldLength;
+  }
+
+  public Distribution getFieldLengthDistribution() {
+    return fieldLengthDistribution;
+  }
+
+  public void setFieldLengthDistribution(Distribution fieldLengthDistribution) {
+    if (fieldLengthDistribution == Distribution.LATEST) {
+      throw new IllegalArgumentException("Field lengths can't follow the latest distribution");
+    }
+    this.fieldLengthDistribution = fieldLengthDistribution;
+  }
+
+  public Distribution getRequestDistribution() {
+    return requestDistribution;
+  }
+
+  public void setRequestDistribution(Distribution requestDistribution) {
+    this.requestDistribution = requestDistribution;
+  }
+
+  public int getCategoryCount() {
+    return categoryCount;
+  }
+
+  public void setCategoryCount(int categoryCount) {
+    if (categoryCount < 1) {
+      throw new IllegalArgumentException("The category count must be positive");
+    }
+    this.categoryCount = categoryCount;
+  }
+
+  public String getKeyPrefix() {
+    return keyPrefix;
+  }
+
+  public void setKeyPrefix(String keyPrefix) {
+    this.keyPrefix = keyPrefix;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "%s, %d threads x %d in flight, %d records, %d operations, "
+            + "read/update/insert/query %.2f/%.2f/%.2f/%.2f, %d fields of %s length %d, %s requests",
+        client, threadCount, client.isReactive() ? inFlight : 1, recordCount, operationCount, readProportion,
+        updateProportion, insertProportion, queryProportion, fieldCount,
+        fieldLengthDistribution.name().toLowerCase(Locale.ROOT), fieldLength,
+        requestDistribution.name().toLowerCase(Locale.ROOT));
+  }
+}
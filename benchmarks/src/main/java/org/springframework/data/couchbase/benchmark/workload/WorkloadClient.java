@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+/**
+ * Issues the operations of a workload through one of the APIs of Spring Data Couchbase. Operations report their
+ * outcome to a {@link Completion}: blocking clients call it before returning, reactive ones when the operation
+ * terminates, possibly on another thread. {@link WorkloadClients} creates the clients of each API.
+ *
+ * @since 3.2
+ */
+public interface WorkloadClient {
+
+  /**
+   * Reads a document, failing with a {@link java.util.NoSuchElementException} if it doesn't exist.
+   */
+  void read(String id, Completion completion);
+
+  /**
+   * Replaces an existing document.
+   */
+  void update(WorkloadDocument document, Completion completion);
+
+  /**
+   * Inserts a new document.
+   */
+  void insert(WorkloadDocument document, Completion completion);
+
+  /**
+   * Runs a N1QL query selecting up to 10 documents of a category.
+   */
+  void query(int category, Completion completion);
+
+  /**
+   * Receives the outcome of an operation.
+   */
+  interface Completion {
+
+    /**
+     * @param error the error the operation failed with, null if it succeeded.
+     */
+    void complete(Throwable error);
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import java.util.NoSuchElementException;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.cluster.ClusterInfo;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.query.N1qlQuery;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+import rx.Subscriber;
+
+import org.springframework.data.couchbase.benchmark.workload.WorkloadClient.Completion;
+import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.core.CouchbaseTemplate;
+import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
+import org.springframework.data.couchbase.core.RxJavaCouchbaseTemplate;
+import org.springframework.data.couchbase.core.WriteResultChecking;
+import org.springframework.data.couchbase.repository.config.ReactiveRepositoryOperationsMapping;
+import org.springframework.data.couchbase.repository.config.RepositoryOperationsMapping;
+import org.springframework.data.couchbase.repository.support.CouchbaseRepositoryFactory;
+import org.springframework.data.couchbase.repository.support.IndexManager;
+import org.springframework.data.couchbase.repository.support.ReactiveCouchbaseRepositoryFactory;
+
+/**
+ * Creates the {@link WorkloadClient} of each API.
+ *
+ * @since 3.2
+ */
+public final class WorkloadClients {
+
+  private WorkloadClients() {
+  }
+
+  /**
+   * Creates a client, along with the template or repository it issues its operations through. No index is created,
+   * so the queries of a workload need a primary index, or an index on <code>category</code>, on a real cluster.
+   *
+   * @param client the API to use.
+   * @param bucket the bucket to run the workload against.
+   * @param clusterInfo the information of the cluster of the bucket.
+   * @return the client.
+   */
+  public static WorkloadClient create(Workload.Client client, Bucket bucket, ClusterInfo clusterInfo) {
+    IndexManager noIndexes = new IndexManager(false, false, false);
+    switch (client) {
+      case TEMPLATE:
+        return template(blockingTemplate(bucket, clusterInfo));
+      case RX_TEMPLATE:
+        return rxTemplate(reactiveTemplate(bucket, clusterInfo));
+      case REPOSITORY:
+        CouchbaseRepositoryFactory factory = new CouchbaseRepositoryFactory(
+            new RepositoryOperationsMapping(blockingTemplate(bucket, clusterInfo)), noIndexes);
+        return repository(factory.getRepository(WorkloadRepository.class));
+      case REACTIVE_REPOSITORY:
+        ReactiveCouchbaseRepositoryFactory reactiveFactory = new ReactiveCouchbaseRepositoryFactory(
+            new ReactiveRepositoryOperationsMapping(reactiveTemplate(bucket, clusterInfo)), noIndexes);
+        return reactiveRepository(reactiveFactory.getRepository(ReactiveWorkloadRepository.class));
+      default:
+        throw new IllegalArgumentException("Unsupported client " + client);
+    }
+  }
+
+  /**
+   * The templates fail on write errors, rather than ignore them, so that they are counted.
+   */
+  private static CouchbaseTemplate blockingTemplate(Bucket bucket, ClusterInfo clusterInfo) {
+    CouchbaseTemplate template = new CouchbaseTemplate(clusterInfo, bucket);
+    template.setWriteResultChecking(WriteResultChecking.EXCEPTION);
+    return template;
+  }
+
+  private static RxJavaCouchbaseTemplate reactiveTemplate(Bucket bucket, ClusterInfo clusterInfo) {
+    RxJavaCouchbaseTemplate template = new RxJavaCouchbaseTemplate(clusterInfo, bucket);
+    template.setWriteResultChecking(WriteResultChecking.EXCEPTION);
+    return template;
+  }
+
+  /**
+   * @param operations the blocking template.
+   * @return a client issuing the operations through the template.
+   */
+  public static WorkloadClient template(final CouchbaseOperations operations) {
+    final String statement = queryStatement(operations.getCouchbaseBucket().name());
+    return new WorkloadClient() {
+      @Override
+      public void read(String id, Completion completion) {
+        complete(completion, () -> {
+          if (operations.findById(id, WorkloadDocument.class) == null) {
+            throw new NoSuchElementException(id);
+          }
+        });
+      }
+
+      @Override
+      public void update(WorkloadDocument document, Completion completion) {
+        complete(completion, () -> operations.update(document));
+      }
+
+      @Override
+      public void insert(WorkloadDocument document, Completion completion) {
+        complete(completion, () -> operations.insert(document));
+      }
+
+      @Override
+      public void query(int category, Completion completion) {
+        complete(completion, () -> operations.findByN1QL(N1qlQuery.parameterized(statement,
+            JsonArray.from(category)), WorkloadDocument.class));
+      }
+    };
+  }
+
+  /**
+   * @param operations the RxJava template.
+   * @return a client issuing the operations through the template.
+   */
+  public static WorkloadClient rxTemplate(final RxJavaCouchbaseOperations operations) {
+    final String statement = queryStatement(operations.getCouchbaseBucket().name());
+    return new WorkloadClient() {
+      @Override
+      public void read(String id, Completion completion) {
+        subscribe(operations.findById(id, WorkloadDocument.class), completion, id);
+      }
+
+      @Override
+      public void update(WorkloadDocument document, Completion completion) {
+        subscribe(operations.update(document), completion, null);
+      }
+
+      @Override
+      public void insert(WorkloadDocument document, Completion completion) {
+        subscribe(operations.insert(document), completion, null);
+      }
+
+      @Override
+      public void query(int category, Completion completion) {
+        subscribe(operations.findByN1QL(N1qlQuery.parameterized(statement, JsonArray.from(category)),
+            WorkloadDocument.class), completion, null);
+      }
+    };
+  }
+
+  /**
+   * @param repository the blocking repository.
+   * @return a client issuing the operations through the repository, which saves both updated and inserted documents.
+   */
+  public static WorkloadClient repository(final WorkloadRepository repository) {
+    return new WorkloadClient() {
+      @Override
+      public void read(String id, Completion completion) {
+        complete(completion, () -> {
+          if (!repository.findById(id).isPresent()) {
+            throw new NoSuchElementException(id);
+          }
+        });
+      }
+
+      @Override
+      public void update(WorkloadDocument document, Completion completion) {
+        complete(completion, () -> repository.save(document));
+      }
+
+      @Override
+      public void insert(WorkloadDocument document, Completion completion) {
+        complete(completion, () -> repository.save(document));
+      }
+
+      @Override
+      public void query(int category, Completion completion) {
+        complete(completion, () -> repository.findFirst10ByCategory(category));
+      }
+    };
+  }
+
+  /**
+   * @param repository the reactive repository.
+   * @return a client issuing the operations through the repository, which saves both updated and inserted documents.
+   */
+  public static WorkloadClient reactiveRepository(final ReactiveWorkloadRepository repository) {
+    return new WorkloadClient() {
+      @Override
+      public void read(String id, Completion completion) {
+        subscribe(repository.findById(id).switchIfEmpty(Mono.error(new NoSuchElementException(id))), completion);
+      }
+
+      @Override
+      public void update(WorkloadDocument document, Completion completion) {
+        subscribe(repository.save(document), completion);
+      }
+
+      @Override
+      public void insert(WorkloadDocument document, Completion completion) {
+        subscribe(repository.save(document), completion);
+      }
+
+      @Override
+      public void query(int category, Completion completion) {
+        subscribe(repository.findFirst10ByCategory(category), completion);
+      }
+    };
+  }
+
+  /**
+   * The statement of the queries of the templates, which is the one the repositories derive.
+   */
+  static String queryStatement(String bucketName) {
+    String bucket = "`" + bucketName + "`";
+    return "SELECT META(" + bucket + ").id AS _ID, META(" + bucket + ").cas AS _CAS, " + bucket + ".* FROM " + bucket
+        + " WHERE `category` = $1 AND `_class` = \"" + WorkloadDocument.class.getName() + "\" LIMIT 10";
+  }
+
+  private static void complete(Completion completion, Runnable operation) {
+    Throwable error = null;
+    try {
+      operation.run();
+    } catch (RuntimeException e) {
+      error = e;
+    }
+    completion.complete(error);
+  }
+
+  private static void subscribe(Publisher<?> publisher, final Completion completion) {
+    Flux.from(publisher).subscribe(null, completion::complete, () -> completion.complete(null));
+  }
+
+  private static void subscribe(Observable<?> observable, Completion completion, String requiredId) {
+    observable.subscribe(new CompletionSubscriber(completion, requiredId));
+  }
+
+  /**
+   * Completes on the termination of an {@link Observable}, failing if it had to emit a document and didn't (the
+   * template emits null for missing documents).
+   */
+  private static final class CompletionSubscriber extends Subscriber<Object> {
+
+    private final Completion completion;
+    private final String requiredId;
+    private boolean emitted;
+
+    private CompletionSubscriber(Completion completion, String requiredId) {
+      this.completion = completion;
+      this.requiredId = requiredId;
+    }
+
+    @Override
+    public void onNext(Object element) {
+      emitted |= element != null;
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      completion.complete(error);
+    }
+
+    @Override
+    public void onCompleted() {
+      completion.complete(requiredId != null && !emitted ? new NoSuchElementException(requiredId) : null);
+    }
+  }
+}
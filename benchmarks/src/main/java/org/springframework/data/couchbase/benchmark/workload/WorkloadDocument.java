@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.mapping.Document;
+
+/**
+ * The documents of a workload: a YCSB style record of string fields, and a category the queries select on.
+ *
+ * @since 3.2
+ */
+@Document
+public class WorkloadDocument {
+
+  @Id
+  private String id;
+
+  private int category;
+
+  private Map<String, String> fields = new LinkedHashMap<String, String>();
+
+  public WorkloadDocument() {
+  }
+
+  public WorkloadDocument(String id, int category) {
+    this.id = id;
+    this.category = category;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public int getCategory() {
+    return category;
+  }
+
+  public Map<String, String> getFields() {
+    return fields;
+  }
+}
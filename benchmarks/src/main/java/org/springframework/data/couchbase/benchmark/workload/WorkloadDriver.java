@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.data.couchbase.benchmark.workload.WorkloadResult.Operation;
+
+/**
+ * Drives a {@link Workload} through a {@link WorkloadClient}: the load phase inserts the initial documents, then the
+ * run phase issues the operation mix. Each of the threads of the workload issues operations until the operation count
+ * is reached or the maximum execution time elapsed, keeping up to the configured number of them in flight when the
+ * client is reactive. The latency of an operation is measured from its issue to its completion.
+ *
+ * @since 3.2
+ */
+public class WorkloadDriver {
+
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+  private final Workload workload;
+  private final WorkloadClient client;
+  private final NumberGenerator requests;
+  private final NumberGenerator fieldLengths;
+  /** The number of the next document to insert */
+  private final AtomicLong nextKey = new AtomicLong();
+  /** The number of successfully inserted documents, which bounds the documents to read and update */
+  private final AtomicLong insertedKeys = new AtomicLong();
+
+  public WorkloadDriver(Workload workload, WorkloadClient client) {
+    this.workload = workload;
+    this.client = client;
+    this.requests = NumberGenerator.create(workload.getRequestDistribution(), workload.getRecordCount(), true);
+    this.fieldLengths = NumberGenerator.create(workload.getFieldLengthDistribution(), workload.getFieldLength(),
+        false);
+  }
+
+  /**
+   * Inserts the initial documents of the workload.
+   *
+   * @return the measurements of the inserts.
+   */
+  public WorkloadResult load() {
+    return execute("load", workload.getRecordCount(), 0, true);
+  }
+
+  /**
+   * Runs the operation mix of the workload, after the documents were {@link #load() loaded}.
+   *
+   * @return the measurements of the operations.
+   */
+  public WorkloadResult run() {
+    if (insertedKeys.get() == 0) {
+      nextKey.set(workload.getRecordCount());
+      insertedKeys.set(workload.getRecordCount());
+    }
+    return execute("run", workload.getOperationCount(), TimeUnit.SECONDS.toNanos(workload.getMaxExecutionTime()),
+        false);
+  }
+
+  private WorkloadResult execute(String phase, long operations, long maxNanos, final boolean load) {
+    final WorkloadResult result = new WorkloadResult(phase);
+    final AtomicLong remaining = new AtomicLong(operations);
+    final AtomicLong workerAllocations = new AtomicLong();
+    final int inFlight = workload.getClient().isReactive() ? workload.getInFlight() : 1;
+    Thread[] threads = new Thread[workload.getThreadCount()];
+
+    Map<Long, Long> allocationsBefore = allocations();
+    final long start = System.nanoTime();
+    final long deadline = maxNanos > 0 ? start + maxNanos : Long.MAX_VALUE;
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        Semaphore permits = new Semaphore(inFlight);
+        while (System.nanoTime() - deadline < 0 && remaining.getAndDecrement() > 0) {
+          permits.acquireUninterruptibly();
+          issue(load ? Operation.INSERT : nextOperation(), result, permits);
+        }
+        permits.acquireUninterruptibly(inFlight);
+        workerAllocations.addAndGet(Math.max(0, allocatedBytes(Thread.currentThread().getId())));
+      }, "workload-" + phase + "-" + i);
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the workload to complete", e);
+      }
+    }
+    long duration = System.nanoTime() - start;
+    Map<Long, Long> allocationsAfter = allocations();
+
+    long allocated = -1;
+    if (allocationsBefore != null && allocationsAfter != null) {
+      allocated = workerAllocations.get();
+      for (Map.Entry<Long, Long> entry : allocationsAfter.entrySet()) {
+        Long before = allocationsBefore.get(entry.getKey());
+        allocated += entry.getValue() - (before == null ? 0 : before);
+      }
+    }
+    result.finish(duration, allocated);
+    return result;
+  }
+
+  private Operation nextOperation() {
+    double value = ThreadLocalRandom.current().nextDouble() * (workload.getReadProportion()
+        + workload.getUpdateProportion() + workload.getInsertProportion() + workload.getQueryProportion());
+    if ((value -= workload.getReadProportion()) < 0) {
+      return Operation.READ;
+    }
+    if ((value -= workload.getUpdateProportion()) < 0) {
+      return Operation.UPDATE;
+    }
+    if ((value -= workload.getInsertProportion()) < 0) {
+      return Operation.INSERT;
+    }
+    return Operation.QUERY;
+  }
+
+  private void issue(final Operation operation, final WorkloadResult result, final Semaphore permits) {
+    final long start = System.nanoTime();
+    WorkloadClient.Completion completion = error -> {
+      result.record(operation, System.nanoTime() - start, error);
+      if (operation == Operation.INSERT && error == null) {
+        insertedKeys.incrementAndGet();
+      }
+      permits.release();
+    };
+    try {
+      switch (operation) {
+        case READ:
+          client.read(key(existingKey()), completion);
+          break;
+        case UPDATE:
+          client.update(document(existingKey()), completion);
+          break;
+        case INSERT:
+          client.insert(document(nextKey.getAndIncrement()), completion);
+          break;
+        case QUERY:
+          client.query(ThreadLocalRandom.current().nextInt(workload.getCategoryCount()), completion);
+          break;
+        default:
+          throw new IllegalStateException("Unsupported operation " + operation);
+      }
+    } catch (RuntimeException e) {
+      //reactive clients may fail before subscribing
+      completion.complete(e);
+    }
+  }
+
+  private long existingKey() {
+    return requests.next(Math.max(1, insertedKeys.get()));
+  }
+
+  private String key(long number) {
+    return workload.getKeyPrefix() + number;
+  }
+
+  private WorkloadDocument document(long number) {
+    WorkloadDocument document = new WorkloadDocument(key(number), (int) (number % workload.getCategoryCount()));
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < workload.getFieldCount(); i++) {
+      int length = (int) fieldLengths.next(workload.getFieldLength()) + 1;
+      char[] value = new char[length];
+      for (int j = 0; j < length; j++) {
+        value[j] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+      }
+      document.getFields().put("field" + i, new String(value));
+    }
+    return document;
+  }
+
+  /**
+   * @return the bytes allocated so far by each live thread, or null if the JVM doesn't measure it.
+   */
+  private static Map<Long, Long> allocations() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!isAllocationMeasured(threads)) {
+      return null;
+    }
+    long[] ids = threads.getAllThreadIds();
+    long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+    Map<Long, Long> allocations = new HashMap<Long, Long>(ids.length * 2);
+    for (int i = 0; i < ids.length; i++) {
+      if (bytes[i] >= 0) {
+        allocations.put(ids[i], bytes[i]);
+      }
+    }
+    return allocations;
+  }
+
+  private static long allocatedBytes(long threadId) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    return isAllocationMeasured(threads)
+        ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : -1;
+  }
+
+  private static boolean isAllocationMeasured(ThreadMXBean threads) {
+    return threads instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+        && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+  }
+}
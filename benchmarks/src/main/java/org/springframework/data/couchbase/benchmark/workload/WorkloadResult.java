@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The measurements of a phase of a workload: the latencies and errors of each type of operation, its duration, and
+ * the memory allocated meanwhile.
+ *
+ * @since 3.2
+ */
+public class WorkloadResult {
+
+  /**
+   * The operations of a workload.
+   */
+  public enum Operation {
+    READ, UPDATE, INSERT, QUERY
+  }
+
+  private static final double[] PERCENTILES = { 50, 95, 99, 99.9 };
+
+  private final String phase;
+  private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+  private final Map<Operation, AtomicLong> errors = new EnumMap<Operation, AtomicLong>(Operation.class);
+  private long durationNanos;
+  private long allocatedBytes = -1;
+
+  WorkloadResult(String phase) {
+    this.phase = phase;
+    for (Operation operation : Operation.values()) {
+      latencies.put(operation, new LatencyHistogram());
+      errors.put(operation, new AtomicLong());
+    }
+  }
+
+  void record(Operation operation, long nanos, Throwable error) {
+    latencies.get(operation).record(nanos);
+    if (error != null) {
+      errors.get(operation).incrementAndGet();
+    }
+  }
+
+  void finish(long durationNanos, long allocatedBytes) {
+    this.durationNanos = durationNanos;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  /**
+   * @return the name of the phase, load or run.
+   */
+  public String getPhase() {
+    return phase;
+  }
+
+  /**
+   * @return the number of completed operations, failed ones included.
+   */
+  public long getOperationCount() {
+    long count = 0;
+    for (LatencyHistogram histogram : latencies.values()) {
+      count += histogram.getCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of failed operations.
+   */
+  public long getErrorCount() {
+    long count = 0;
+    for (AtomicLong errorCount : errors.values()) {
+      count += errorCount.get();
+    }
+    return count;
+  }
+
+  /**
+   * @param operation an operation.
+   * @return the number of failed operations of that type.
+   */
+  public long getErrorCount(Operation operation) {
+    return errors.get(operation).get();
+  }
+
+  /**
+   * @param operation an operation.
+   * @return the latencies, in nanoseconds, of the operations of that type.
+   */
+  public LatencyHistogram getLatencies(Operation operation) {
+    return latencies.get(operation);
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * @return the number of operations per second.
+   */
+  public double getThroughput() {
+    return durationNanos == 0 ? 0 : getOperationCount() / (durationNanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * @return the number of bytes allocated by all threads during the phase, -1 if the JVM doesn't measure it.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Prints the result in the format of the YCSB reports, with latencies in microseconds.
+   *
+   * @param out the stream to print to.
+   */
+  public void print(PrintStream out) {
+    String overall = "[" + phase.toUpperCase(Locale.ROOT) + "]";
+    out.println(line(overall, "RunTime(ms)", TimeUnit.NANOSECONDS.toMillis(durationNanos)));
+    out.println(line(overall, "Operations", getOperationCount()));
+    out.println(line(overall, "Throughput(ops/sec)", getThroughput()));
+    if (allocatedBytes >= 0) {
+      double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+      long operations = getOperationCount();
+      out.println(line(overall, "AllocationRate(MB/sec)", seconds == 0 ? 0 : allocatedBytes / seconds / 1048576));
+      out.println(line(overall, "Allocation(bytes/op)", operations == 0 ? 0 : allocatedBytes / (double) operations));
+    }
+    for (Operation operation : Operation.values()) {
+      LatencyHistogram histogram = latencies.get(operation);
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      String name = "[" + operation + "]";
+      out.println(line(name, "Operations", histogram.getCount()));
+      out.println(line(name, "Errors", errors.get(operation).get()));
+      out.println(line(name, "AverageLatency(us)", histogram.getMean() / 1000));
+      for (double percentile : PERCENTILES) {
+        String label = (percentile == Math.rint(percentile) ? String.valueOf((long) percentile)
+            : String.valueOf(percentile)) + "thPercentileLatency(us)";
+        out.println(line(name, label, TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(percentile))));
+      }
+      out.println(line(name, "MaxLatency(us)", TimeUnit.NANOSECONDS.toMicros(histogram.getMax())));
+    }
+  }
+
+  private static String line(String section, String metric, Object value) {
+    if (value instanceof Double) {
+      return String.format(Locale.ROOT, "%s, %s, %.2f", section, metric, (Double) value);
+    }
+    return section + ", " + metric + ", " + value;
+  }
+}
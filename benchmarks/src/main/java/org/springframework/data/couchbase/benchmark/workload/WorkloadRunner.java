@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.benchmark.workload;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.Cluster;
+import com.couchbase.client.java.CouchbaseCluster;
+import com.couchbase.client.java.cluster.ClusterInfo;
+import com.couchbase.client.java.error.TemporaryFailureException;
+
+import org.springframework.data.couchbase.inmemory.FailureInjector;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+/**
+ * Runs a {@link Workload} from the command line, in the manner of YCSB: <code>-P file</code> loads workload
+ * properties from a file, <code>-p name=value</code> sets a single property, and <code>-load</code> or
+ * <code>-run</code> only run one of the phases (both by default). See {@link Workload#fromProperties(Properties)}
+ * for the workload properties.
+ * <p>
+ * The workload runs against an {@link InMemoryBucket} unless <code>couchbase.nodes</code> is set, with:
+ * <ul>
+ * <li><code>inmemory.minlatency</code>, <code>inmemory.maxlatency</code>: the range of the latency, in
+ * microseconds, added to each operation (none).</li>
+ * <li><code>inmemory.failureratio</code>: the fraction of operations failing with a
+ * {@link TemporaryFailureException} (0).</li>
+ * <li><code>couchbase.nodes</code>, <code>couchbase.bucket</code>, <code>couchbase.username</code>,
+ * <code>couchbase.password</code>: the cluster, bucket and credentials to run against instead.</li>
+ * </ul>
+ *
+ * @since 3.2
+ */
+public class WorkloadRunner {
+
+  public static void main(String[] args) throws IOException {
+    Properties properties = new Properties();
+    boolean load = true;
+    boolean run = true;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-P") && i + 1 < args.length) {
+        try (InputStream in = new FileInputStream(args[++i])) {
+          properties.load(in);
+        }
+      } else if (args[i].equals("-p") && i + 1 < args.length && args[i + 1].contains("=")) {
+        String property = args[++i];
+        int separator = property.indexOf('=');
+        properties.setProperty(property.substring(0, separator), property.substring(separator + 1));
+      } else if (args[i].equals("-load")) {
+        run = false;
+      } else if (args[i].equals("-run")) {
+        load = false;
+      } else {
+        System.err.println("Usage: WorkloadRunner [-P file] [-p name=value]... [-load | -run]");
+        System.exit(1);
+      }
+    }
+
+    Workload workload = Workload.fromProperties(properties);
+    String nodes = properties.getProperty("couchbase.nodes");
+    if (nodes == null) {
+      InMemoryBucket bucket = new InMemoryBucket("workload");
+      long minLatency = Long.parseLong(properties.getProperty("inmemory.minlatency", "0"));
+      long maxLatency = Long.parseLong(properties.getProperty("inmemory.maxlatency", String.valueOf(minLatency)));
+      bucket.setLatency(minLatency, maxLatency, TimeUnit.MICROSECONDS);
+      bucket.setQueryLatency(minLatency, maxLatency, TimeUnit.MICROSECONDS);
+      double failureRatio = Double.parseDouble(properties.getProperty("inmemory.failureratio", "0"));
+      if (failureRatio > 0) {
+        bucket.setFailureInjector(FailureInjector.random(failureRatio, TemporaryFailureException::new));
+      }
+      run(workload, bucket.getBucket(), bucket.getClusterInfo(), load, run, System.out);
+    } else {
+      Cluster cluster = CouchbaseCluster.create(Arrays.asList(nodes.split(",")));
+      try {
+        String username = properties.getProperty("couchbase.username", "Administrator");
+        String password = properties.getProperty("couchbase.password", "password");
+        cluster.authenticate(username, password);
+        Bucket bucket = cluster.openBucket(properties.getProperty("couchbase.bucket", "default"));
+        ClusterInfo clusterInfo = cluster.clusterManager().info();
+        run(workload, bucket, clusterInfo, load, run, System.out);
+      } finally {
+        cluster.disconnect();
+      }
+    }
+  }
+
+  /**
+   * Runs a workload against a bucket, printing the result of each phase.
+   *
+   * @param workload the workload.
+   * @param bucket the bucket, an {@link InMemoryBucket#getBucket() in-memory one} or a real one.
+   * @param clusterInfo the information of the cluster of the bucket.
+   * @param load true to insert the initial documents.
+   * @param run true to run the operation mix.
+   * @param out the stream to print the results to.
+   * @return the results of the phases that ran.
+   */
+  public static List<WorkloadResult> run(Workload workload, Bucket bucket, ClusterInfo clusterInfo, boolean load,
+                                         boolean run, PrintStream out) {
+    out.println("Workload: " + workload);
+    WorkloadDriver driver = new WorkloadDriver(workload,
+        WorkloadClients.create(workload.getClient(), bucket, clusterInfo));
+    List<WorkloadResult> results = new ArrayList<WorkloadResult>(2);
+    if (load) {
+      results.add(driver.load());
+    }
+    if (run) {
+      results.add(driver.run());
+    }
+    for (WorkloadResult result : results) {
+      result.print(out);
+    }
+    return results;
+  }
+}
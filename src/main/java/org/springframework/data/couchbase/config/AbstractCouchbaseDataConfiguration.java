@@ -22,6 +22,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.couchbase.core.CouchbaseOperations;
 import org.springframework.data.couchbase.core.CouchbaseTemplate;
+import org.springframework.data.couchbase.core.IdentityMapScope;
+import org.springframework.data.couchbase.core.WriteBehindBuffer;
 import org.springframework.data.couchbase.repository.CouchbaseRepository;
 import org.springframework.data.couchbase.repository.config.RepositoryOperationsMapping;
 
@@ -42,8 +44,9 @@ public abstract class AbstractCouchbaseDataConfiguration extends CouchbaseConfig
   /**
    * Creates a {@link CouchbaseTemplate}.
    *
-   * This uses {@link #mappingCouchbaseConverter()}, {@link #translationService()} and {@link #getDefaultConsistency()}
-   * for construction.
+   * This uses {@link #mappingCouchbaseConverter()}, {@link #translationService()}, {@link #getDefaultConsistency()}, {@link #operationRecorder()},
+   * {@link #operationLimiter()}, {@link #operationRetrier()}, {@link #writeBehindBuffer()} and
+   * {@link #identityMapScope()} for construction.
    *
    * Additionally, it will expect injection of a {@link ClusterInfo} and a {@link Bucket} beans from the context (most
    * probably from another configuration). For a self-sufficient configuration that defines such beans, see
@@ -56,9 +59,35 @@ public abstract class AbstractCouchbaseDataConfiguration extends CouchbaseConfig
     CouchbaseTemplate template = new CouchbaseTemplate(couchbaseConfigurer().couchbaseClusterInfo(),
             couchbaseConfigurer().couchbaseClient(), mappingCouchbaseConverter(), translationService());
     template.setDefaultConsistency(getDefaultConsistency());
+    template.setOperationRecorder(operationRecorder());
+    template.setOperationLimiter(operationLimiter());
+    template.setOperationRetrier(operationRetrier());
+    template.setWriteBehindBuffer(writeBehindBuffer());
+    template.setIdentityMapScope(identityMapScope());
     return template;
   }
 
+  /**
+   * Configures the {@link WriteBehindBuffer} buffering the saves of selected entity types, which should be a bean so
+   * that the buffered documents are written when the context is closed. Defaults to null, which disables write-behind.
+   *
+   * @return the buffer of the saves, or null.
+   */
+  protected WriteBehindBuffer writeBehindBuffer() {
+    return null;
+  }
+
+  /**
+   * Configures the {@link IdentityMapScope} of the identity maps in which the template keeps the entities it
+   * materializes, for instance {@link org.springframework.data.couchbase.core.IdentityMap#requestScope()}. Defaults to
+   * null, which disables the identity maps.
+   *
+   * @return the scope of the identity maps, or null.
+   */
+  protected IdentityMapScope identityMapScope() {
+    return null;
+  }
+
   /**
    * Creates the {@link RepositoryOperationsMapping} bean which will be used by the framework to choose which
    * {@link CouchbaseOperations} should back which {@link CouchbaseRepository}.
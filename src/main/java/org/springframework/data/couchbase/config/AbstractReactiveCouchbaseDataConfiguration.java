@@ -35,7 +35,8 @@ public abstract class AbstractReactiveCouchbaseDataConfiguration extends Couchba
     /**
      * Creates a {@link RxJavaCouchbaseTemplate}.
      *
-     * This uses {@link #mappingCouchbaseConverter()}, {@link #translationService()} and {@link #getDefaultConsistency()}
+     * This uses {@link #mappingCouchbaseConverter()}, {@link #translationService()}, {@link #getDefaultConsistency()}, {@link #operationRecorder()},
+     * {@link #operationLimiter()} and {@link #operationRetrier()}
      * for construction.
      *
      *
@@ -46,6 +47,9 @@ public abstract class AbstractReactiveCouchbaseDataConfiguration extends Couchba
         RxJavaCouchbaseTemplate template = new RxJavaCouchbaseTemplate(couchbaseConfigurer().couchbaseClusterInfo(),
                 couchbaseConfigurer().couchbaseClient(), mappingCouchbaseConverter(), translationService());
         template.setDefaultConsistency(getDefaultConsistency());
+        template.setOperationRecorder(operationRecorder());
+        template.setOperationLimiter(operationLimiter());
+        template.setOperationRetrier(operationRetrier());
         return template;
     }
 
@@ -17,6 +17,7 @@ package org.springframework.data.couchbase.config;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import com.couchbase.client.java.query.N1qlQuery;
@@ -33,10 +34,17 @@ import org.springframework.data.couchbase.core.convert.translation.JacksonTransl
 import org.springframework.data.couchbase.core.convert.translation.TranslationService;
 import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
 import org.springframework.data.couchbase.core.mapping.Document;
+import org.springframework.data.couchbase.core.mapping.id.CounterBlockIdGenerator;
+import org.springframework.data.couchbase.core.mapping.id.GeneratedValue;
+import org.springframework.data.couchbase.core.mapping.id.GenerationStrategy;
+import org.springframework.data.couchbase.core.mapping.id.IdGenerator;
 import org.springframework.data.couchbase.core.query.Consistency;
 import org.springframework.data.couchbase.core.query.N1qlPrimaryIndexed;
 import org.springframework.data.couchbase.core.query.N1qlSecondaryIndexed;
 import org.springframework.data.couchbase.core.query.ViewIndexed;
+import org.springframework.data.couchbase.core.support.OperationLimiter;
+import org.springframework.data.couchbase.core.support.OperationRetrier;
+import org.springframework.data.couchbase.monitor.OperationRecorder;
 import org.springframework.data.couchbase.repository.support.IndexManager;
 import org.springframework.data.mapping.model.CamelCaseAbbreviatingFieldNamingStrategy;
 import org.springframework.data.mapping.model.FieldNamingStrategy;
@@ -85,6 +93,38 @@ public class CouchbaseConfigurationSupport {
         return MappingCouchbaseConverter.TYPEKEY_DEFAULT;
     }
 
+    /**
+     * Whether the {@link org.springframework.data.annotation.TypeAlias} of the entities, and the {@link #typeAliases()},
+     * are stored in the {@link #typeKey() type key} instead of their fully qualified class names. Registering
+     * {@link #typeAliases()} enables them too.
+     *
+     * @return true to store type aliases, default is false.
+     */
+    protected boolean useTypeAliases() {
+        return false;
+    }
+
+    /**
+     * Short aliases (eg. numeric codes) to store in the {@link #typeKey() type key} instead of the fully qualified
+     * class names of the given types, which enables type aliases. Entities can also declare their alias with
+     * {@link org.springframework.data.annotation.TypeAlias}. Empty by default.
+     *
+     * @return the aliases, per type.
+     */
+    protected Map<Class<?>, String> typeAliases() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Set to true while migrating existing documents to type aliases, for queries and indexes to also match documents
+     * holding the fully qualified class name of aliased types.
+     *
+     * @return true to also match fully qualified class names of aliased types, default is false.
+     */
+    protected boolean acceptFullyQualifiedTypeNames() {
+        return false;
+    }
+
     /**
      * Creates a {@link MappingCouchbaseConverter} using the configured {@link #couchbaseMappingContext}.
      *
@@ -94,9 +134,28 @@ public class CouchbaseConfigurationSupport {
     public MappingCouchbaseConverter mappingCouchbaseConverter() throws Exception {
         MappingCouchbaseConverter converter = new MappingCouchbaseConverter(couchbaseMappingContext(), typeKey());
         converter.setCustomConversions(customConversions());
+        Map<Class<?>, String> typeAliases = typeAliases();
+        if (!typeAliases.isEmpty()) {
+            converter.setTypeAliases(typeAliases);
+        } else if (useTypeAliases()) {
+            converter.setUseTypeAliases(true);
+        }
+        converter.setAcceptFullyQualifiedTypeNames(acceptFullyQualifiedTypeNames());
+        configureIdGenerators(converter);
         return converter;
     }
 
+    /**
+     * In order to plug custom {@link IdGenerator IdGenerators} for {@link GeneratedValue} ids, or to register the
+     * {@link CounterBlockIdGenerator} required by {@link GenerationStrategy#COUNTER}, use
+     * {@link MappingCouchbaseConverter#setIdGenerator(GenerationStrategy, IdGenerator)} on the provided converter.
+     *
+     * @param converter the converter being created.
+     */
+    protected void configureIdGenerators(MappingCouchbaseConverter converter) throws Exception {
+        //NO_OP
+    }
+
     /**
      * Creates a {@link TranslationService}.
      *
@@ -193,4 +252,35 @@ public class CouchbaseConfigurationSupport {
     protected Consistency getDefaultConsistency() {
         return Consistency.DEFAULT_CONSISTENCY;
     }
+
+    /**
+     * Configures the {@link OperationRecorder} the templates report their operations to, for instance an
+     * {@link org.springframework.data.couchbase.monitor.OperationMetrics} bean. Defaults to null, which disables
+     * operation metrics.
+     *
+     * @return the recorder of template operations, or null.
+     */
+    protected OperationRecorder operationRecorder() {
+        return null;
+    }
+
+    /**
+     * Configures the {@link OperationLimiter} bounding the operations the templates have in flight to each service,
+     * typically a bean so that its state is exposed through JMX. Defaults to null, which disables limiting.
+     *
+     * @return the limiter of template operations, or null.
+     */
+    protected OperationLimiter operationLimiter() {
+        return null;
+    }
+
+    /**
+     * Configures the {@link OperationRetrier} retrying the template operations which fail transiently. Defaults to
+     * null, which disables retries.
+     *
+     * @return the retrier of template operations, or null.
+     */
+    protected OperationRetrier operationRetrier() {
+        return null;
+    }
 }
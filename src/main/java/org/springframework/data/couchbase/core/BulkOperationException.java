@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Data Access Exception thrown by a bulk operation of which the operations on some ids failed. The operations on the
+ * other ids are executed nevertheless: the results give their values, and the errors why the others failed.
+ *
+ * @since 3.2
+ */
+public class BulkOperationException extends DataAccessException {
+
+  private static final long serialVersionUID = -8517851781307168289L;
+
+  private final Map<String, ?> results;
+  private final Map<String, Throwable> errors;
+
+  /**
+   * Constructor for BulkOperationException.
+   *
+   * @param results the values of the operations which succeeded, by id
+   * @param errors the errors of the operations which failed, by id
+   */
+  public BulkOperationException(final Map<String, ?> results, final Map<String, Throwable> errors) {
+    super(describe(errors), errors.isEmpty() ? null : errors.values().iterator().next());
+    this.results = Collections.unmodifiableMap(results);
+    this.errors = Collections.unmodifiableMap(errors);
+  }
+
+  private static String describe(Map<String, Throwable> errors) {
+    if (errors.isEmpty()) {
+      return "No operation of the bulk failed";
+    }
+    Map.Entry<String, Throwable> first = errors.entrySet().iterator().next();
+    return "The operations of the bulk failed for " + errors.size() + " ids, first for " + first.getKey() + ": "
+        + first.getValue().getMessage();
+  }
+
+  /**
+   * @return the values of the operations which succeeded, by id, as the bulk operation would have returned them.
+   */
+  public Map<String, ?> getResults() {
+    return results;
+  }
+
+  /**
+   * @return the errors of the operations which failed, by id, translated by the template.
+   */
+  public Map<String, Throwable> getErrors() {
+    return errors;
+  }
+}
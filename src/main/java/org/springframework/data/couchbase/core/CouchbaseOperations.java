@@ -19,6 +19,7 @@ package org.springframework.data.couchbase.core;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.PersistTo;
@@ -308,6 +309,60 @@ public interface CouchbaseOperations {
    */
   boolean exists(String id);
 
+  /**
+   * Atomically adds a delta to a counter document on the server, creating the document with an initial value if it
+   * doesn't exist, without reading the counter first. A counter can't go below 0.
+   *
+   * @param id the unique ID of the counter document.
+   * @param delta the delta to add, negative to decrement the counter.
+   * @param initial the value of the counter created if the document doesn't exist, the delta being ignored then.
+   * @return the new value of the counter.
+   * @since 3.2
+   */
+  long counter(String id, long delta, long initial);
+
+  /**
+   * Atomically adds a delta to a numeric property of an entity on the server, through a sub-document operation, without
+   * reading or replacing the document. The field of the property is created with the delta if it is missing, but the
+   * document must exist. The version of the document changes, so that the entities read before the update can't be
+   * saved.
+   *
+   * @param id the unique ID of the document.
+   * @param entityClass the class of the entity, which maps the property to its field.
+   * @param property the name of the property, or the dot-separated path of a property of an embedded object.
+   * @param delta the delta to add, negative to decrement the field.
+   * @return the new value of the field.
+   * @since 3.2
+   */
+  long counter(String id, Class<?> entityClass, String property, long delta);
+
+  /**
+   * Resets the expiry of many documents, touching them in parallel, a bounded number at a time. The documents which
+   * don't exist aren't touched, without failing the others.
+   *
+   * @param ids the unique IDs of the documents.
+   * @param expiry the new expiry of the documents, in seconds relative to now up to 30 days, as a Unix timestamp
+   *   otherwise, or 0 for the documents not to expire.
+   * @return whether each document was touched, false if it doesn't exist, by id in the order of the given ids.
+   * @throws BulkOperationException if touching some of the documents failed, once the others are touched.
+   * @since 3.2
+   */
+  Map<String, Boolean> touch(Collection<String> ids, int expiry);
+
+  /**
+   * Finds many objects by their Ids, resetting the expiry of their documents as they are read, a bounded number of
+   * documents being read in parallel. This extends the lifetime of sessions or cache-like entities read together,
+   * whatever the <code>touchOnRead</code> setting of their {@link org.springframework.data.couchbase.core.mapping.Document}.
+   *
+   * @param ids the unique IDs of the documents.
+   * @param entityClass the entity to map to.
+   * @param expiry the new expiry of the documents, like for {@link #touch(Collection, int)}.
+   * @return the entities found, by id in the order of the given ids, the documents which don't exist being left out.
+   * @throws BulkOperationException if reading some of the documents failed, once the others are read.
+   * @since 3.2
+   */
+  <T> Map<String, T> findAllByIdAndTouch(Collection<String> ids, Class<T> entityClass, int expiry);
+
   /**
    * Remove the given object from the bucket by id.
    * <p/>
@@ -17,16 +17,23 @@
 package org.springframework.data.couchbase.core;
 
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import com.couchbase.client.core.message.kv.subdoc.multi.Mutation;
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.PersistTo;
 import com.couchbase.client.java.ReplicateTo;
@@ -36,10 +43,13 @@ import com.couchbase.client.java.document.RawJsonDocument;
 import com.couchbase.client.java.document.json.JsonObject;
 import com.couchbase.client.java.error.CASMismatchException;
 import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
 import com.couchbase.client.java.error.TranscodingException;
 import com.couchbase.client.java.query.N1qlQuery;
 import com.couchbase.client.java.query.N1qlQueryResult;
 import com.couchbase.client.java.query.N1qlQueryRow;
+import com.couchbase.client.java.subdoc.DocumentFragment;
+import com.couchbase.client.java.subdoc.SubdocOptionsBuilder;
 import com.couchbase.client.java.util.features.CouchbaseFeature;
 import com.couchbase.client.java.view.AsyncViewResult;
 import com.couchbase.client.java.view.AsyncViewRow;
@@ -57,7 +67,15 @@ import org.springframework.data.couchbase.core.mapping.CouchbasePersistentEntity
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentProperty;
 import org.springframework.data.couchbase.core.mapping.CouchbaseStorable;
 import org.springframework.data.couchbase.core.mapping.KeySettings;
+import org.springframework.data.couchbase.core.mapping.ReplicaRead;
 import org.springframework.data.couchbase.core.query.N1qlJoin;
+import org.springframework.data.couchbase.core.support.CouchbaseService;
+import org.springframework.data.couchbase.core.support.OperationLimiter;
+import org.springframework.data.couchbase.core.support.OperationRetrier;
+import org.springframework.data.couchbase.core.support.ParallelRowMapper;
+import org.springframework.data.couchbase.monitor.OperationPhase;
+import org.springframework.data.couchbase.monitor.OperationRecorder;
+import org.springframework.data.couchbase.monitor.OperationTrace;
 import org.springframework.data.mapping.PropertyHandler;
 import org.springframework.data.util.TypeInformation;
 import rx.Observable;
@@ -65,6 +83,7 @@ import rx.functions.Func1;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.dao.QueryTimeoutException;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
@@ -82,6 +101,7 @@ import org.springframework.data.couchbase.core.query.Consistency;
 import org.springframework.data.mapping.PersistentPropertyAccessor;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.mapping.model.ConvertingPropertyAccessor;
+import org.springframework.util.Assert;
 
 import static org.springframework.data.couchbase.core.support.TemplateUtils.SELECT_ID;
 import static org.springframework.data.couchbase.core.support.TemplateUtils.SELECT_CAS;
@@ -98,6 +118,7 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CouchbaseTemplate.class);
   private static final WriteResultChecking DEFAULT_WRITE_RESULT_CHECKING = WriteResultChecking.NONE;
+  private static final int DEFAULT_BULK_PARALLELISM = 16;
   private static final Collection<String> ITERABLE_CLASSES;
 
   static {
@@ -124,6 +145,18 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
   //default value is in case the template isn't constructed through configuration mechanisms that use the setter.
   private Consistency configuredConsistency = Consistency.DEFAULT_CONSISTENCY;
 
+  //null unless parallel mapping of query results has been opted into.
+  private ParallelRowMapper parallelRowMapper;
+
+  private OperationRecorder operationRecorder;
+
+  private ReplicaReadPolicy replicaReadPolicy = ReplicaReadPolicy.activeOnly();
+  private OperationLimiter operationLimiter;
+  private OperationRetrier operationRetrier;
+  private WriteBehindBuffer writeBehindBuffer;
+  private IdentityMapScope identityMapScope;
+  private int bulkParallelism = DEFAULT_BULK_PARALLELISM;
+
   public CouchbaseTemplate(final ClusterInfo clusterInfo, final Bucket client) {
     this(clusterInfo, client, null, null);
   }
@@ -223,6 +256,193 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
     this.writeResultChecking = writeResultChecking == null ? DEFAULT_WRITE_RESULT_CHECKING : writeResultChecking;
   }
 
+  /**
+   * Enables parallel mapping of the rows returned by {@link #findByN1QL(N1qlQuery, Class)},
+   * {@link #findByN1QLProjection(N1qlQuery, Class)} and {@link #findBySpatialView(SpatialViewQuery, Class)}.
+   * Setting null (the default) maps all rows sequentially on the calling thread.
+   *
+   * @param parallelRowMapper the mapper defining the pool and the row count threshold to use.
+   */
+  public void setParallelRowMapper(ParallelRowMapper parallelRowMapper) {
+    this.parallelRowMapper = parallelRowMapper;
+  }
+
+  public ParallelRowMapper getParallelRowMapper() {
+    return parallelRowMapper;
+  }
+
+  /**
+   * Maps query result rows, in parallel if a {@link ParallelRowMapper} has been configured. The entities with eager
+   * joins are mapped on the calling thread, since resolving a join blocks on a query, which must see the state bound
+   * to the calling thread, like its identity map.
+   */
+  private <R, T> List<T> mapRows(List<R> rows, Class<?> entityClass, Function<? super R, ? extends T> mapper) {
+    if (parallelRowMapper == null || (entityClass != null && hasEagerJoins(entityClass))) {
+      return ParallelRowMapper.mapSequentially(rows, mapper);
+    }
+    return parallelRowMapper.map(rows, mapper);
+  }
+
+  private boolean hasEagerJoins(Class<?> entityClass) {
+    CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(entityClass);
+    for (CouchbasePersistentProperty property : entity) {
+      N1qlJoin join = property.findAnnotation(N1qlJoin.class);
+      if (join != null && !N1qlJoinResolver.isLazyJoin(join)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Enables operation metrics: each operation of the template is measured, split into encoding, network and decoding
+   * time, and reported to the given recorder. Setting null (the default) disables metrics.
+   *
+   * @param operationRecorder the recorder to report operations to.
+   */
+  public void setOperationRecorder(OperationRecorder operationRecorder) {
+    this.operationRecorder = operationRecorder;
+  }
+
+  public OperationRecorder getOperationRecorder() {
+    return operationRecorder;
+  }
+
+  /**
+   * Configures whether the documents read by {@link #findById(String, Class)} may be served by the replicas, for the
+   * entities which don't override it with {@link ReplicaRead}. Setting null resets the default of only reading the
+   * active copy.
+   *
+   * @param replicaReadPolicy the policy to use.
+   */
+  public void setReplicaReadPolicy(ReplicaReadPolicy replicaReadPolicy) {
+    this.replicaReadPolicy = replicaReadPolicy == null ? ReplicaReadPolicy.activeOnly() : replicaReadPolicy;
+  }
+
+  public ReplicaReadPolicy getReplicaReadPolicy() {
+    return replicaReadPolicy;
+  }
+
+  /**
+   * Bounds the key/value, N1QL and view operations in flight with the given limiter, which rejects operations with an
+   * {@link OperationRejectedException} when a service is overloaded. The callbacks given to
+   * {@link #execute(BucketCallback)} count as key/value operations. Setting null (the default) disables limiting.
+   *
+   * @param operationLimiter the limiter of the operations.
+   */
+  public void setOperationLimiter(OperationLimiter operationLimiter) {
+    this.operationLimiter = operationLimiter;
+  }
+
+  public OperationLimiter getOperationLimiter() {
+    return operationLimiter;
+  }
+
+  /**
+   * Retries the operations failing transiently with the given retrier. Only the idempotent operations are retried by
+   * default: reads, upserts, replaces and N1QL SELECT statements, but neither inserts nor removes. Setting null (the
+   * default) disables retries.
+   *
+   * @param operationRetrier the retrier of the operations.
+   */
+  public void setOperationRetrier(OperationRetrier operationRetrier) {
+    this.operationRetrier = operationRetrier;
+  }
+
+  public OperationRetrier getOperationRetrier() {
+    return operationRetrier;
+  }
+
+  /**
+   * Buffers the saves of the entity types of the given buffer, which writes them asynchronously. A buffer is used by a
+   * single template. Setting null (the default) disables write-behind, after writing the documents buffered so far.
+   *
+   * @param writeBehindBuffer the buffer of the saves.
+   * @throws InvalidDataAccessApiUsageException if a buffered entity type has a version property.
+   */
+  public void setWriteBehindBuffer(WriteBehindBuffer writeBehindBuffer) {
+    if (writeBehindBuffer != null) {
+      for (Class<?> entityType : writeBehindBuffer.getEntityTypes()) {
+        if (mappingContext.getRequiredPersistentEntity(entityType).getVersionProperty() != null) {
+          throw new InvalidDataAccessApiUsageException("The saves of " + entityType.getName()
+              + " can't be written behind, since it has a version property");
+        }
+      }
+      writeBehindBuffer.bind(this);
+    }
+    WriteBehindBuffer previous = this.writeBehindBuffer;
+    this.writeBehindBuffer = writeBehindBuffer;
+    if (previous != null && previous != writeBehindBuffer) {
+      previous.flush();
+    }
+  }
+
+  public WriteBehindBuffer getWriteBehindBuffer() {
+    return writeBehindBuffer;
+  }
+
+  /**
+   * Serves and registers the entities materialized by the template in the {@link IdentityMap} of the given scope,
+   * for instance {@link IdentityMap#requestScope()}. Setting null (the default) disables the identity maps.
+   *
+   * @param identityMapScope the scope of the identity maps.
+   */
+  public void setIdentityMapScope(IdentityMapScope identityMapScope) {
+    this.identityMapScope = identityMapScope;
+  }
+
+  public IdentityMapScope getIdentityMapScope() {
+    return identityMapScope;
+  }
+
+  private IdentityMap currentIdentityMap() {
+    IdentityMapScope scope = identityMapScope;
+    return scope == null ? null : scope.currentIdentityMap();
+  }
+
+  private void invalidateIdentity(String id) {
+    IdentityMap identityMap = currentIdentityMap();
+    if (identityMap != null) {
+      identityMap.invalidate(id);
+    }
+  }
+
+  /**
+   * Sets how many documents the bulk operations, like {@link #touch(Collection, int)}, operate on in parallel. Default
+   * is 16.
+   *
+   * @param bulkParallelism the number of key/value operations a bulk operation has in flight.
+   */
+  public void setBulkParallelism(int bulkParallelism) {
+    Assert.isTrue(bulkParallelism > 0, "The bulk parallelism must be positive");
+    this.bulkParallelism = bulkParallelism;
+  }
+
+  public int getBulkParallelism() {
+    return bulkParallelism;
+  }
+
+  /**
+   * Begins a {@link UnitOfWork} recording the writes made through the template by the current thread, until flushed.
+   *
+   * @return the unit of work, to be closed by the current thread.
+   * @throws IllegalStateException if a unit of work is already active on the template in the current thread.
+   */
+  public UnitOfWork beginUnitOfWork() {
+    return UnitOfWork.begin(this);
+  }
+
+  /**
+   * @return the unit of work active on the template in the current thread, or null.
+   */
+  public UnitOfWork getCurrentUnitOfWork() {
+    return UnitOfWork.current(this);
+  }
+
+  private OperationTrace startTrace(String operation, Class<?> entityType) {
+    return OperationTrace.start(operationRecorder, operation, entityType);
+  }
+
   @Override
   public void setApplicationEventPublisher(final ApplicationEventPublisher eventPublisher) {
     this.eventPublisher = eventPublisher;
@@ -240,6 +460,19 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
     }
   }
 
+  /**
+   * Publishes an event through {@link #maybeEmitEvent(CouchbaseMappingEvent)}, accounting for the time spent in the
+   * listeners.
+   */
+  private <T> void emitEvent(OperationTrace trace, final CouchbaseMappingEvent<T> event) {
+    if (eventPublisher == null) {
+      return;
+    }
+    long start = trace.now();
+    maybeEmitEvent(event);
+    trace.add(OperationPhase.EVENTS, start);
+  }
+
   @Override
   public void save(Object objectToSave) {
     save(objectToSave, PersistTo.NONE, ReplicateTo.NONE);
@@ -308,19 +541,55 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
 
   @Override
   public <T> T findById(final String id, Class<T> entityClass) {
-    final CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(entityClass);
-    RawJsonDocument result = execute(new BucketCallback<RawJsonDocument>() {
-      @Override
-      public RawJsonDocument doInBucket() {
-        if (entity.isTouchOnRead()) {
-          return client.getAndTouch(id, entity.getExpiry(), RawJsonDocument.class);
-        } else {
-          return client.get(id, RawJsonDocument.class);
+    OperationTrace trace = startTrace("findById", entityClass);
+    trace.target(id);
+    try {
+      final CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(entityClass);
+      final ReplicaReadPolicy readPolicy = ReplicaReadPolicy.resolve(replicaReadPolicy, entity);
+      RawJsonDocument pending = pendingDocument(id);
+      if (pending != null) {
+        return mapToEntity(id, pending, entityClass, trace, null);
+      }
+      final IdentityMap identityMap = currentIdentityMap();
+      //the entities touched on read are always read, to be touched
+      if (identityMap != null && !entity.isTouchOnRead()) {
+        T materialized = identityMap.get(entityClass, id);
+        if (materialized != null) {
+          return materialized;
         }
       }
-    });
-
-    return mapToEntity(id, result, entityClass);
+      trace.phase(OperationPhase.NETWORK);
+      RawJsonDocument result = execute(CouchbaseService.KV, retrying("findById", entityClass, true,
+          new BucketCallback<RawJsonDocument>() {
+        @Override
+        public RawJsonDocument doInBucket() throws TimeoutException {
+          if (entity.isTouchOnRead()) {
+            return client.getAndTouch(id, entity.getExpiry(), RawJsonDocument.class);
+          } else if (readPolicy.isActiveOnly()) {
+            return client.get(id, RawJsonDocument.class);
+          } else {
+            try {
+              return readPolicy.read(client.async(), id, client.environment().kvTimeout())
+                  .toBlocking()
+                  .singleOrDefault(null);
+            } catch (RuntimeException e) {
+              if (e.getCause() instanceof TimeoutException) {
+                throw (TimeoutException) e.getCause();
+              }
+              throw e;
+            }
+          }
+        }
+      }));
+
+      trace.phase(OperationPhase.DECODE);
+      return mapToEntity(id, result, entityClass, trace, identityMap);
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
   }
 
   @Override
@@ -337,7 +606,23 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
     //we'll always map the document to the entity, hence reduce never makes sense.
     query.reduce(false);
 
-    return executeAsync(client.async().query(query))
+    final OperationTrace trace = startTrace("findByView", entityClass);
+    trace.target(query);
+    trace.phase(OperationPhase.NETWORK);
+    try {
+      return findByView(query, entityClass, trace);
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  private <T> List<T> findByView(ViewQuery query, final Class<T> entityClass, final OperationTrace trace) {
+    final IdentityMap identityMap = currentIdentityMap();
+    return executeAsync(limited(CouchbaseService.VIEW,
+        retrying("findByView", entityClass, true, client.async().query(query))))
         .flatMap(new Func1<AsyncViewResult, Observable<AsyncViewRow>>() {
           @Override
           public Observable<AsyncViewRow> call(AsyncViewResult asyncViewResult) {
@@ -361,7 +646,7 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
                   @Override
                   public T call(RawJsonDocument rawJsonDocument) {
                     //cope with potential weak consistency and deletions
-                    T entity = mapToEntity(id, rawJsonDocument, entityClass);
+                    T entity = mapToEntity(id, rawJsonDocument, entityClass, trace, identityMap);
                     return entity;
                   }
                 });
@@ -389,12 +674,22 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
 
   @Override
   public ViewResult queryView(final ViewQuery query) {
-    return execute(new BucketCallback<ViewResult>() {
-      @Override
-      public ViewResult doInBucket() {
-        return client.query(query);
-      }
-    });
+    OperationTrace trace = startTrace("queryView", null);
+    trace.target(query);
+    trace.phase(OperationPhase.NETWORK);
+    try {
+      return execute(CouchbaseService.VIEW, retrying("queryView", null, true, new BucketCallback<ViewResult>() {
+        @Override
+        public ViewResult doInBucket() {
+          return client.query(query);
+        }
+      }));
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
   }
 
   @Override
@@ -403,8 +698,11 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
     //so that the caller doesn't set a bad target class unintentionally, pre-loading with a bad type.
     query.includeDocs(false);
 
+    OperationTrace trace = startTrace("findBySpatialView", entityClass);
+    trace.target(query);
     try {
-      final SpatialViewResult response = querySpatialView(query);
+      trace.phase(OperationPhase.NETWORK);
+      final SpatialViewResult response = doQuerySpatialView("findBySpatialView", entityClass, query);
       if (response.error() != null) {
         throw new CouchbaseQueryExecutionException("Unable to execute spatial view query due to the following view error: " +
             response.error().toString());
@@ -412,42 +710,68 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
 
       List<SpatialViewRow> allRows = response.allRows();
 
-      final List<T> result = new ArrayList<T>(allRows.size());
-      for (final SpatialViewRow row : allRows) {
-        //cope with potential weak consistency and deletions
-        T entity = mapToEntity(row.id(), row.document(RawJsonDocument.class), entityClass);
-        if (entity != null) {
-          result.add(entity);
-        }
-      }
+      trace.phase(OperationPhase.DECODE);
+      final IdentityMap identityMap = currentIdentityMap();
+      final List<T> result = mapRows(allRows, entityClass,
+          row -> mapToEntity(row.id(), row.document(RawJsonDocument.class), entityClass, trace, identityMap));
+      //cope with potential weak consistency and deletions
+      result.removeIf(Objects::isNull);
 
       return result;
     }
     catch (TranscodingException e) {
-      throw new CouchbaseQueryExecutionException("Unable to execute view query", e);
+      CouchbaseQueryExecutionException translated = new CouchbaseQueryExecutionException("Unable to execute view query", e);
+      trace.error(translated);
+      throw translated;
+    }
+    catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    }
+    finally {
+      trace.end();
     }
   }
 
   @Override
   public SpatialViewResult querySpatialView(final SpatialViewQuery query) {
-    return execute(new BucketCallback<SpatialViewResult>() {
+    OperationTrace trace = startTrace("querySpatialView", null);
+    trace.target(query);
+    trace.phase(OperationPhase.NETWORK);
+    try {
+      return doQuerySpatialView("querySpatialView", null, query);
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  private SpatialViewResult doQuerySpatialView(String operation, Class<?> entityType, final SpatialViewQuery query) {
+    return execute(CouchbaseService.VIEW, retrying(operation, entityType, true,
+        new BucketCallback<SpatialViewResult>() {
       @Override
       public SpatialViewResult doInBucket() throws TimeoutException, ExecutionException, InterruptedException {
         return client.query(query);
       }
-    });
+    }));
   }
 
   @Override
   public <T> List<T> findByN1QL(N1qlQuery n1ql, Class<T> entityClass) {
     checkN1ql();
+    OperationTrace trace = startTrace("findByN1QL", entityClass);
+    trace.target(n1ql.statement());
     try {
-      N1qlQueryResult queryResult = queryN1QL(n1ql);
+      trace.phase(OperationPhase.NETWORK);
+      N1qlQueryResult queryResult = doQueryN1QL("findByN1QL", entityClass, n1ql);
 
       if (queryResult.finalSuccess()) {
         List<N1qlQueryRow> allRows = queryResult.allRows();
-        List<T> result = new ArrayList<T>(allRows.size());
-        for (N1qlQueryRow row : allRows) {
+        trace.phase(OperationPhase.DECODE);
+        final IdentityMap identityMap = currentIdentityMap();
+        return mapRows(allRows, entityClass, row -> {
           JsonObject json = row.value();
           String id = json.getString(SELECT_ID);
           Long cas = json.getLong(SELECT_CAS);
@@ -457,10 +781,8 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
           }
           json = json.removeKey(SELECT_ID).removeKey(SELECT_CAS);
           RawJsonDocument entityDoc = RawJsonDocument.create(id, json.toString(), cas);
-          T decoded = mapToEntity(id, entityDoc, entityClass);
-          result.add(decoded);
-        }
-        return result;
+          return mapToEntity(id, entityDoc, entityClass, trace, identityMap);
+        });
       }
       else {
         StringBuilder message = new StringBuilder("Unable to execute query due to the following n1ql errors: ");
@@ -471,25 +793,33 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
       }
     }
     catch (TranscodingException e) {
-      throw new CouchbaseQueryExecutionException("Unable to execute query", e);
+      CouchbaseQueryExecutionException translated = new CouchbaseQueryExecutionException("Unable to execute query", e);
+      trace.error(translated);
+      throw translated;
+    }
+    catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    }
+    finally {
+      trace.end();
     }
   }
 
   @Override
   public <T> List<T> findByN1QLProjection(N1qlQuery n1ql, Class<T> entityClass) {
     checkN1ql();
+    OperationTrace trace = startTrace("findByN1QLProjection", entityClass);
+    trace.target(n1ql.statement());
     try {
-      N1qlQueryResult queryResult = queryN1QL(n1ql);
+      trace.phase(OperationPhase.NETWORK);
+      N1qlQueryResult queryResult = doQueryN1QL("findByN1QLProjection", entityClass, n1ql);
 
       if (queryResult.finalSuccess()) {
         List<N1qlQueryRow> allRows = queryResult.allRows();
-        List<T> result = new ArrayList<T>(allRows.size());
-        for (N1qlQueryRow row : allRows) {
-          JsonObject json = row.value();
-          T decoded = translationService.decodeFragment(json.toString(), entityClass);
-          result.add(decoded);
-        }
-        return result;
+        countRows(trace, allRows);
+        trace.phase(OperationPhase.DECODE);
+        return mapRows(allRows, null, row -> translationService.decodeFragment(row.value().toString(), entityClass));
       }
       else {
         StringBuilder message = new StringBuilder("Unable to execute query due to the following n1ql errors: ");
@@ -500,29 +830,388 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
       }
     }
     catch (TranscodingException e) {
-      throw new CouchbaseQueryExecutionException("Unable to execute query", e);
+      CouchbaseQueryExecutionException translated = new CouchbaseQueryExecutionException("Unable to execute query", e);
+      trace.error(translated);
+      throw translated;
+    }
+    catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    }
+    finally {
+      trace.end();
     }
   }
 
   @Override
   public N1qlQueryResult queryN1QL(final N1qlQuery query) {
     checkN1ql();
-    return execute(new BucketCallback<N1qlQueryResult>() {
+    OperationTrace trace = startTrace("queryN1QL", null);
+    trace.target(query.statement());
+    trace.phase(OperationPhase.NETWORK);
+    try {
+      N1qlQueryResult result = doQueryN1QL("queryN1QL", null, query);
+      countRows(trace, result.allRows());
+      return result;
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  private static void countRows(OperationTrace trace, List<N1qlQueryRow> rows) {
+    if (!trace.isEnabled() || rows == null) {
+      return;
+    }
+    long bytes = 0;
+    for (N1qlQueryRow row : rows) {
+      bytes += row.byteValue().length;
+    }
+    trace.rows(rows.size(), bytes);
+  }
+
+  private N1qlQueryResult doQueryN1QL(String operation, Class<?> entityType, final N1qlQuery query) {
+    return execute(CouchbaseService.QUERY, retrying(operation, entityType, OperationRetrier.isReadOnly(query),
+        new BucketCallback<N1qlQueryResult>() {
       @Override
       public N1qlQueryResult doInBucket() throws TimeoutException, ExecutionException, InterruptedException {
         return client.query(query);
       }
-    });
+    }));
   }
 
   @Override
   public boolean exists(final String id) {
-    return execute(new BucketCallback<Boolean>() {
-      @Override
-      public Boolean doInBucket() throws TimeoutException, ExecutionException, InterruptedException {
-        return client.exists(id);
+    OperationTrace trace = startTrace("exists", null);
+    trace.target(id);
+    try {
+      if (pendingDocument(id) != null) {
+        return true;
       }
-    });
+      trace.phase(OperationPhase.NETWORK);
+      return execute(CouchbaseService.KV, retrying("exists", null, true, new BucketCallback<Boolean>() {
+        @Override
+        public Boolean doInBucket() throws TimeoutException, ExecutionException, InterruptedException {
+          return client.exists(id);
+        }
+      }));
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  @Override
+  public long counter(final String id, final long delta, final long initial) {
+    OperationTrace trace = startTrace("counter", null);
+    trace.target(id);
+    try {
+      checkNoPendingWrite(id);
+      invalidateIdentity(id);
+      trace.phase(OperationPhase.NETWORK);
+      //counters aren't idempotent, the delta would be added twice
+      return execute(CouchbaseService.KV, retrying("counter", null, false, new BucketCallback<Long>() {
+        @Override
+        public Long doInBucket() {
+          return client.counter(id, delta, initial).content();
+        }
+      }));
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  @Override
+  public long counter(final String id, final Class<?> entityClass, final String property, final long delta) {
+    Assert.isTrue(delta != 0, "The delta of a counter field must not be 0");
+    OperationTrace trace = startTrace("counter", entityClass);
+    trace.target(id);
+    try {
+      final String path = fieldPath(entityClass, property);
+      checkNoPendingWrite(id);
+      invalidateIdentity(id);
+      WriteBehindBuffer buffer = writeBehindBuffer;
+      if (buffer != null) {
+        //the buffered save would overwrite the counter later on
+        buffer.flush(id);
+      }
+      trace.phase(OperationPhase.NETWORK);
+      return execute(CouchbaseService.KV, retrying("counter", entityClass, false, new BucketCallback<Long>() {
+        @Override
+        public Long doInBucket() {
+          DocumentFragment<Mutation> result = client.mutateIn(id)
+              .counter(path, delta, new SubdocOptionsBuilder().createPath(true))
+              .execute();
+          return result.content(path, Long.class);
+        }
+      }));
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  /**
+   * Rejects a counter on a document with a write pending in the current unit of work, which would overwrite the
+   * counter once flushed.
+   */
+  private void checkNoPendingWrite(String id) {
+    UnitOfWork unitOfWork = UnitOfWork.current(this);
+    if (unitOfWork != null && unitOfWork.hasPendingWrite(id)) {
+      throw new InvalidDataAccessApiUsageException("Cannot apply a counter to " + id
+          + " while the unit of work has a pending write of it, flush the unit of work first");
+    }
+  }
+
+  @Override
+  public Map<String, Boolean> touch(Collection<String> ids, final int expiry) {
+    OperationTrace trace = startTrace("touch", null);
+    trace.target(ids);
+    try {
+      final Set<String> keys = new LinkedHashSet<String>(ids);
+      WriteBehindBuffer buffer = writeBehindBuffer;
+      for (String id : keys) {
+        if (buffer != null) {
+          //the buffered save would reset the expiry once written
+          buffer.flush(id);
+        }
+        //touching changes the CAS of the document
+        invalidateIdentity(id);
+      }
+      trace.phase(OperationPhase.NETWORK);
+      Map<String, Throwable> errors = new LinkedHashMap<String, Throwable>();
+      Map<String, Boolean> touched = inParallel(keys, errors, id -> {
+        Observable<Boolean> touch = Observable.defer(() -> client.async().touch(id, expiry))
+            .timeout(client.environment().kvTimeout(), TimeUnit.MILLISECONDS)
+            .onErrorResumeNext(e -> e instanceof DocumentDoesNotExistException ? Observable.just(Boolean.FALSE)
+                : Observable.<Boolean>error(e));
+        return executeAsync(limited(CouchbaseService.KV, retrying("touch", null, true, touch)));
+      });
+      if (!errors.isEmpty()) {
+        throw new BulkOperationException(touched, errors);
+      }
+      return touched;
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  @Override
+  public <T> Map<String, T> findAllByIdAndTouch(Collection<String> ids, final Class<T> entityClass,
+                                                final int expiry) {
+    OperationTrace trace = startTrace("findAllByIdAndTouch", entityClass);
+    trace.target(ids);
+    try {
+      mappingContext.getRequiredPersistentEntity(entityClass);
+      final Set<String> keys = new LinkedHashSet<String>(ids);
+      WriteBehindBuffer buffer = writeBehindBuffer;
+      if (buffer != null) {
+        for (String id : keys) {
+          buffer.flush(id);
+        }
+      }
+      trace.phase(OperationPhase.NETWORK);
+      //the documents which don't exist are read as nothing
+      Map<String, Throwable> errors = new LinkedHashMap<String, Throwable>();
+      Map<String, RawJsonDocument> documents = inParallel(keys, errors, id -> {
+        Observable<RawJsonDocument> getAndTouch = Observable.defer(() -> client.async()
+            .getAndTouch(id, expiry, RawJsonDocument.class))
+            .timeout(client.environment().kvTimeout(), TimeUnit.MILLISECONDS);
+        return executeAsync(limited(CouchbaseService.KV,
+            retrying("findAllByIdAndTouch", entityClass, true, getAndTouch)));
+      });
+
+      trace.phase(OperationPhase.DECODE);
+      IdentityMap identityMap = currentIdentityMap();
+      Map<String, T> entities = new LinkedHashMap<String, T>(documents.size());
+      for (Map.Entry<String, RawJsonDocument> document : documents.entrySet()) {
+        entities.put(document.getKey(),
+            mapToEntity(document.getKey(), document.getValue(), entityClass, trace, identityMap));
+      }
+      if (!errors.isEmpty()) {
+        throw new BulkOperationException(entities, errors);
+      }
+      return entities;
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  /**
+   * Executes an operation for each id, up to the bulk parallelism at a time, and blocks until all of them complete.
+   * The operation on an id failing doesn't prevent the others from being executed.
+   *
+   * @param errors collects the errors of the operations which failed, by id, in the order of the ids.
+   * @return the values of the operations by id, in the order of the ids, the operations emitting nothing or failing
+   *   being left out.
+   */
+  private <V> Map<String, V> inParallel(Collection<String> ids, Map<String, Throwable> errors,
+                                        final Func1<String, Observable<V>> operation) {
+    int parallelism = bulkParallelism;
+    List<KeyResult<V>> results = Observable.from(ids)
+        .concatMapEager(id -> operation.call(id)
+                .map(value -> new KeyResult<V>(id, value, null))
+                .onErrorReturn(error -> new KeyResult<V>(id, null, error)),
+            parallelism, parallelism)
+        .toList()
+        .toBlocking()
+        .single();
+    Map<String, V> values = new LinkedHashMap<String, V>(results.size());
+    for (KeyResult<V> result : results) {
+      if (result.error != null) {
+        errors.put(result.id, result.error);
+      } else {
+        values.put(result.id, result.value);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * The value or the error of the operation on an id of a bulk operation.
+   */
+  private static final class KeyResult<V> {
+
+    private final String id;
+    private final V value;
+    private final Throwable error;
+
+    private KeyResult(String id, V value, Throwable error) {
+      this.id = id;
+      this.value = value;
+      this.error = error;
+    }
+  }
+
+  /**
+   * @return the path of the field of a property of an entity, or of one of its embedded objects.
+   */
+  private String fieldPath(Class<?> entityClass, String property) {
+    CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(entityClass);
+    StringBuilder path = new StringBuilder();
+    String[] names = property.split("\\.");
+    for (int i = 0; i < names.length; i++) {
+      CouchbasePersistentProperty persistentProperty = entity.getPersistentProperty(names[i]);
+      if (persistentProperty == null) {
+        throw new InvalidDataAccessApiUsageException("No property " + names[i] + " found on " + entity.getName());
+      }
+      if (i > 0) {
+        path.append('.');
+      }
+      path.append(persistentProperty.getFieldName());
+      if (i < names.length - 1) {
+        entity = mappingContext.getRequiredPersistentEntity(persistentProperty.getActualType());
+      }
+    }
+    return path.toString();
+  }
+
+  private RawJsonDocument pendingDocument(String id) {
+    WriteBehindBuffer buffer = writeBehindBuffer;
+    return buffer == null ? null : buffer.pendingDocument(id);
+  }
+
+  /**
+   * Writes a document buffered by the {@link WriteBehindBuffer}, and publishes the save of the entity once written.
+   */
+  Observable<Object> writeBehind(final Object entity, final CouchbaseDocument converted,
+                                 final RawJsonDocument document, final PersistTo persistTo,
+                                 final ReplicateTo replicateTo) {
+    Observable<RawJsonDocument> upsert = Observable.defer(() -> client.async().upsert(document, persistTo, replicateTo)
+        .timeout(client.environment().kvTimeout(), TimeUnit.MILLISECONDS));
+    return executeAsync(limited(CouchbaseService.KV, retrying("save", entity.getClass(), true, upsert)))
+        .map(stored -> {
+          maybeEmitEvent(new AfterSaveEvent<Object>(entity, converted));
+          return entity;
+        });
+  }
+
+  /**
+   * Executes a write recorded by a {@link UnitOfWork}, and publishes the save of the entity once written.
+   */
+  Observable<Object> writeRecorded(final String id, final UnitOfWork.Operation operation, final Object entity,
+                                   final CouchbaseDocument converted, final Document<String> document,
+                                   final boolean versioned, final PersistTo persistTo,
+                                   final ReplicateTo replicateTo) {
+    final WriteBehindBuffer buffer = writeBehindBuffer;
+    if (buffer != null) {
+      buffer.flush(id);
+    }
+    final boolean existingDocument = document.cas() != 0;
+    final boolean idempotent = operation == UnitOfWork.Operation.UPDATE
+        || (operation == UnitOfWork.Operation.SAVE && (!versioned || existingDocument));
+    Observable<Document<String>> write = Observable.defer(() -> {
+      switch (operation) {
+        case SAVE:
+          if (!versioned) {
+            return client.async().upsert(document, persistTo, replicateTo);
+          } else if (existingDocument) {
+            return client.async().replace(document, persistTo, replicateTo);
+          } else {
+            return client.async().insert(document, persistTo, replicateTo);
+          }
+        case UPDATE:
+          return client.async().replace(document, persistTo, replicateTo);
+        case INSERT:
+        default:
+          return client.async().insert(document, persistTo, replicateTo);
+      }
+    }).timeout(client.environment().kvTimeout(), TimeUnit.MILLISECONDS);
+    return executeAsync(limited(CouchbaseService.KV, retrying(operation.name().toLowerCase(), entity.getClass(),
+        idempotent, write)))
+        .onErrorResumeNext(e -> {
+          if (e.getCause() instanceof DocumentAlreadyExistsException || e.getCause() instanceof CASMismatchException) {
+            return Observable.error(new OptimisticLockingFailureException(operation.name().toLowerCase()
+                + " document with version value failed: " + document.cas(), e.getCause()));
+          }
+          return Observable.error(e);
+        })
+        .single()
+        .map(stored -> {
+          CouchbasePersistentProperty versionProperty = mappingContext
+              .getRequiredPersistentEntity(entity.getClass()).getVersionProperty();
+          if (versionProperty != null && stored.cas() != 0) {
+            getPropertyAccessor(entity).setProperty(versionProperty, stored.cas());
+          }
+          maybeEmitEvent(new AfterSaveEvent<Object>(entity, converted));
+          return entity;
+        });
+  }
+
+  /**
+   * Executes a removal recorded by a {@link UnitOfWork}, and publishes it once done.
+   */
+  Observable<Object> removeRecorded(final String id, final Object objectToRemove, final PersistTo persistTo,
+                                    final ReplicateTo replicateTo) {
+    final WriteBehindBuffer buffer = writeBehindBuffer;
+    if (buffer != null) {
+      buffer.discard(id);
+    }
+    Observable<RawJsonDocument> remove = Observable.defer(() ->
+        client.async().remove(id, persistTo, replicateTo, RawJsonDocument.class))
+        .timeout(client.environment().kvTimeout(), TimeUnit.MILLISECONDS);
+    return executeAsync(limited(CouchbaseService.KV, retrying("remove",
+        objectToRemove instanceof String ? null : objectToRemove.getClass(), false, remove)))
+        .single()
+        .map(removed -> {
+          maybeEmitEvent(new AfterDeleteEvent<Object>(objectToRemove));
+          return objectToRemove;
+        });
   }
 
   @Override
@@ -549,6 +1238,49 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
 
   @Override
   public <T> T execute(BucketCallback<T> action) {
+    return execute(CouchbaseService.KV, action);
+  }
+
+  private <T> T execute(CouchbaseService service, BucketCallback<T> action) {
+    if (operationLimiter == null) {
+      return doExecute(action);
+    }
+    OperationLimiter.Permit permit = operationLimiter.acquire(service);
+    RuntimeException failure = null;
+    try {
+      return doExecute(action);
+    } catch (RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      permit.release(failure);
+    }
+  }
+
+  private <T> Observable<T> limited(CouchbaseService service, Observable<T> operation) {
+    return operationLimiter == null ? operation : operationLimiter.limit(service, operation);
+  }
+
+  private <T> BucketCallback<T> retrying(final String operation, final Class<?> entityType, final boolean idempotent,
+                                         final BucketCallback<T> action) {
+    final OperationRetrier retrier = operationRetrier;
+    if (retrier == null) {
+      return action;
+    }
+    return new BucketCallback<T>() {
+      @Override
+      public T doInBucket() throws TimeoutException, ExecutionException, InterruptedException {
+        return retrier.execute(operation, entityType, idempotent, action);
+      }
+    };
+  }
+
+  private <T> Observable<T> retrying(String operation, Class<?> entityType, boolean idempotent,
+                                     Observable<T> action) {
+    return operationRetrier == null ? action : operationRetrier.retry(operation, entityType, idempotent, action);
+  }
+
+  private <T> T doExecute(BucketCallback<T> action) {
     try {
       return action.doInBucket();
     }
@@ -590,50 +1322,105 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
                          final PersistType persistType) {
     ensureNotIterable(objectToPersist);
 
+    OperationTrace trace = startTrace(persistType.getOperationName(), objectToPersist.getClass());
+    try {
+      doPersist(objectToPersist, persistTo, replicateTo, persistType, trace);
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  private void doPersist(Object objectToPersist, final PersistTo persistTo, final ReplicateTo replicateTo,
+                         final PersistType persistType, final OperationTrace trace) {
+
     final ConvertingPropertyAccessor<Object> accessor = getPropertyAccessor(objectToPersist);
     final CouchbasePersistentEntity<?> persistentEntity = mappingContext.getRequiredPersistentEntity(objectToPersist.getClass());
     final CouchbasePersistentProperty versionProperty = persistentEntity.getVersionProperty();
     final Long version = versionProperty != null ? accessor.getProperty(versionProperty, Long.class) : null;
 
-    maybeEmitEvent(new BeforeConvertEvent<Object>(objectToPersist));
+    emitEvent(trace, new BeforeConvertEvent<Object>(objectToPersist));
+    trace.phase(OperationPhase.MAPPING);
     final CouchbaseDocument converted = new CouchbaseDocument();
     converter.write(objectToPersist, converted);
-
-    maybeEmitEvent(new BeforeSaveEvent<Object>(objectToPersist, converted));
-    execute(new BucketCallback<Boolean>() {
+    trace.phase(null);
+
+    emitEvent(trace, new BeforeSaveEvent<Object>(objectToPersist, converted));
+    final String generatedId = addCommonPrefixAndSuffix(converted.getId());
+    invalidateIdentity(generatedId);
+    final UnitOfWork unitOfWork = UnitOfWork.current(this);
+    if (unitOfWork != null) {
+      converted.setId(generatedId);
+      trace.target(generatedId);
+      trace.phase(OperationPhase.ENCODE);
+      Document<String> doc = encodeAndWrap(converted, version);
+      trace.rows(1, doc.content().length());
+      setGeneratedId(accessor, persistentEntity, generatedId);
+      unitOfWork.record(generatedId, UnitOfWork.Operation.valueOf(persistType.name()), objectToPersist, converted, doc,
+          versionProperty != null, persistTo, replicateTo);
+      trace.phase(null);
+      return;
+    }
+    final WriteBehindBuffer buffer = writeBehindBuffer;
+    if (buffer != null && buffer.isBuffered(persistentEntity.getType())) {
+      if (persistType == PersistType.SAVE && persistTo == PersistTo.NONE && replicateTo == ReplicateTo.NONE) {
+        converted.setId(generatedId);
+        trace.target(generatedId);
+        trace.phase(OperationPhase.ENCODE);
+        RawJsonDocument doc = (RawJsonDocument) encodeAndWrap(converted, null);
+        trace.rows(1, doc.content().length());
+        setGeneratedId(accessor, persistentEntity, generatedId);
+        buffer.buffer(generatedId, objectToPersist, converted, doc);
+        trace.phase(null);
+        return;
+      }
+      //the buffered save must not overwrite this write later on
+      buffer.flush(generatedId);
+    }
+    execute(CouchbaseService.KV, new BucketCallback<Boolean>() {
       @Override
       public Boolean doInBucket() throws InterruptedException, ExecutionException {
-        String generatedId = addCommonPrefixAndSuffix(converted.getId());
         converted.setId(generatedId);
-        Document<String> doc = encodeAndWrap(converted, version);
-        Document<String> storedDoc;
+        trace.target(generatedId);
+        trace.phase(OperationPhase.ENCODE);
+        final Document<String> doc = encodeAndWrap(converted, version);
+        trace.rows(1, doc.content().length());
+        trace.phase(OperationPhase.NETWORK);
         //We will check version only if required
-        boolean versionPresent = versionProperty != null;
+        final boolean versionPresent = versionProperty != null;
         //If version is not set - assumption that document is new, otherwise updating
-        boolean existingDocument = version != null && version > 0L;
+        final boolean existingDocument = version != null && version > 0L;
+        //inserts fail if retried after being applied, upserts and replaces don't
+        boolean idempotent = persistType == PersistType.UPDATE
+            || (persistType == PersistType.SAVE && (!versionPresent || existingDocument));
 
         try {
-          switch (persistType) {
-            case SAVE:
-              if (!versionPresent) {
-                //No version field - no cas
-                storedDoc = client.upsert(doc, persistTo, replicateTo);
-              } else if (existingDocument) {
-                //Updating existing document with cas
-                storedDoc = client.replace(doc, persistTo, replicateTo);
-              } else {
-                //Creating new document
-                storedDoc = client.insert(doc, persistTo, replicateTo);
+          Document<String> storedDoc = retrying(persistType.getOperationName(), persistentEntity.getType(), idempotent,
+              new BucketCallback<Document<String>>() {
+            @Override
+            public Document<String> doInBucket() {
+              switch (persistType) {
+                case SAVE:
+                  if (!versionPresent) {
+                    //No version field - no cas
+                    return client.upsert(doc, persistTo, replicateTo);
+                  } else if (existingDocument) {
+                    //Updating existing document with cas
+                    return client.replace(doc, persistTo, replicateTo);
+                  } else {
+                    //Creating new document
+                    return client.insert(doc, persistTo, replicateTo);
+                  }
+                case UPDATE:
+                  return client.replace(doc, persistTo, replicateTo);
+                case INSERT:
+                default:
+                  return client.insert(doc, persistTo, replicateTo);
               }
-              break;
-            case UPDATE:
-              storedDoc = client.replace(doc, persistTo, replicateTo);
-              break;
-            case INSERT:
-            default:
-              storedDoc = client.insert(doc, persistTo, replicateTo);
-              break;
-          }
+            }
+          }).doInBucket();
           CouchbasePersistentProperty idProperty = persistentEntity.getIdProperty();
 		  Object entityId = accessor.getProperty(idProperty);
           if (!generatedId.equals(entityId)) {
@@ -655,62 +1442,145 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
           throw new OptimisticLockingFailureException(persistType.getSpringDataOperationName() +
               " document with version value failed: " + version, e);
         } catch (Exception e) {
+          trace.error(e);
           handleWriteResultError(persistType.getSpringDataOperationName() + " document failed: " + e.getMessage(), e);
           return false; //this could be skipped if WriteResultChecking.EXCEPTION
         }
       }
     });
-    maybeEmitEvent(new AfterSaveEvent<Object>(objectToPersist, converted));
+    trace.phase(null);
+    emitEvent(trace, new AfterSaveEvent<Object>(objectToPersist, converted));
+  }
+
+  private static void setGeneratedId(ConvertingPropertyAccessor<Object> accessor,
+                                     CouchbasePersistentEntity<?> persistentEntity, String generatedId) {
+    CouchbasePersistentProperty idProperty = persistentEntity.getIdProperty();
+    if (!generatedId.equals(accessor.getProperty(idProperty))) {
+      accessor.setProperty(idProperty, generatedId);
+    }
   }
 
   private void doRemove(final Object objectToRemove, final PersistTo persistTo, final ReplicateTo replicateTo) {
     ensureNotIterable(objectToRemove);
 
-    maybeEmitEvent(new BeforeDeleteEvent<Object>(objectToRemove));
+    OperationTrace trace = startTrace("remove", objectToRemove instanceof String ? null : objectToRemove.getClass());
+    try {
+      doRemove(objectToRemove, persistTo, replicateTo, trace);
+    } catch (RuntimeException e) {
+      trace.error(e);
+      throw e;
+    } finally {
+      trace.end();
+    }
+  }
+
+  private void doRemove(final Object objectToRemove, final PersistTo persistTo, final ReplicateTo replicateTo,
+                        final OperationTrace trace) {
+
+    emitEvent(trace, new BeforeDeleteEvent<Object>(objectToRemove));
+    final UnitOfWork unitOfWork = UnitOfWork.current(this);
+    final WriteBehindBuffer buffer = writeBehindBuffer;
     if (objectToRemove instanceof String) {
-      execute(new BucketCallback<Boolean>() {
+      trace.target(objectToRemove);
+      invalidateIdentity((String) objectToRemove);
+      if (unitOfWork != null) {
+        unitOfWork.record((String) objectToRemove, UnitOfWork.Operation.REMOVE, objectToRemove, null, null, false,
+            persistTo, replicateTo);
+        return;
+      }
+      if (buffer != null) {
+        buffer.discard((String) objectToRemove);
+      }
+      trace.phase(OperationPhase.NETWORK);
+      execute(CouchbaseService.KV, new BucketCallback<Boolean>() {
         @Override
         public Boolean doInBucket() throws InterruptedException, ExecutionException {
           try {
-            RawJsonDocument deletedDoc = client.remove((String) objectToRemove , persistTo, replicateTo, RawJsonDocument.class);
+            RawJsonDocument deletedDoc = retrying("remove", null, false, new BucketCallback<RawJsonDocument>() {
+              @Override
+              public RawJsonDocument doInBucket() {
+                return client.remove((String) objectToRemove , persistTo, replicateTo, RawJsonDocument.class);
+              }
+            }).doInBucket();
             return deletedDoc != null;
           } catch (Exception e) {
+            trace.error(e);
             handleWriteResultError("Delete document failed: " + e.getMessage(), e);
             return false; //this could be skipped if WriteResultChecking.EXCEPTION
           }
         }
       });
-      maybeEmitEvent(new AfterDeleteEvent<Object>(objectToRemove));
+      trace.phase(null);
+      emitEvent(trace, new AfterDeleteEvent<Object>(objectToRemove));
       return;
     }
 
+    trace.phase(OperationPhase.MAPPING);
     final CouchbaseDocument converted = new CouchbaseDocument();
     converter.write(objectToRemove, converted);
+    invalidateIdentity(addCommonPrefixAndSuffix(converted.getId()));
+    if (unitOfWork != null) {
+      String id = addCommonPrefixAndSuffix(converted.getId());
+      trace.target(id);
+      unitOfWork.record(id, UnitOfWork.Operation.REMOVE, objectToRemove, null, null, false, persistTo, replicateTo);
+      trace.phase(null);
+      return;
+    }
+    if (buffer != null && buffer.isBuffered(objectToRemove.getClass())) {
+      buffer.discard(addCommonPrefixAndSuffix(converted.getId()));
+    }
 
-    execute(new BucketCallback<Boolean>() {
+    trace.phase(OperationPhase.NETWORK);
+
+    execute(CouchbaseService.KV, new BucketCallback<Boolean>() {
       @Override
       public Boolean doInBucket() {
         try {
-          RawJsonDocument deletedDoc = client.remove(addCommonPrefixAndSuffix(converted.getId()), persistTo, replicateTo
-              , RawJsonDocument.class);
+          final String id = addCommonPrefixAndSuffix(converted.getId());
+          trace.target(id);
+          RawJsonDocument deletedDoc = retrying("remove", objectToRemove.getClass(), false,
+              new BucketCallback<RawJsonDocument>() {
+            @Override
+            public RawJsonDocument doInBucket() {
+              return client.remove(id, persistTo, replicateTo, RawJsonDocument.class);
+            }
+          }).doInBucket();
           return deletedDoc != null;
         } catch (Exception e) {
+          trace.error(e);
           handleWriteResultError("Delete document failed: " + e.getMessage(), e);
           return false; //this could be skipped if WriteResultChecking.EXCEPTION
         }
       }
     });
-    maybeEmitEvent(new AfterDeleteEvent<Object>(objectToRemove));
+    trace.phase(null);
+    emitEvent(trace, new AfterDeleteEvent<Object>(objectToRemove));
   }
 
-  private <T> T mapToEntity(String id, Document<String> data, Class<T> entityClass) {
+  private <T> T mapToEntity(String id, Document<String> data, Class<T> entityClass, final OperationTrace trace,
+                            final IdentityMap identityMap) {
 
     if (data == null) {
       return null;
     }
+    if (identityMap != null) {
+      return identityMap.merge(entityClass, id, data.cas(),
+          () -> doMapToEntity(id, data, entityClass, trace, identityMap));
+    }
+    return doMapToEntity(id, data, entityClass, trace, null);
+  }
 
+  private <T> T doMapToEntity(String id, Document<String> data, Class<T> entityClass, final OperationTrace trace,
+                              final IdentityMap identityMap) {
+    long start = trace.now();
     final CouchbaseDocument converted = new CouchbaseDocument(id);
-    T readEntity = converter.read(entityClass, (CouchbaseDocument) decodeAndUnwrap(data, converted));
+    CouchbaseDocument decoded = (CouchbaseDocument) decodeAndUnwrap(data, converted);
+    if (trace.isEnabled()) {
+      trace.add(OperationPhase.DECODE, start);
+      trace.rows(1, data.content().length());
+      start = trace.now();
+    }
+    T readEntity = converter.read(entityClass, decoded);
 
     final ConvertingPropertyAccessor<T> accessor = getPropertyAccessor(readEntity);
     CouchbasePersistentEntity<?> persistentEntity = mappingContext.getRequiredPersistentEntity(readEntity.getClass());
@@ -718,19 +1588,24 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
     if (persistentEntity.getVersionProperty() != null) {
       accessor.setProperty(persistentEntity.getVersionProperty(), data.cas());
     }
+    trace.add(OperationPhase.MAPPING, start);
 
     persistentEntity.doWithProperties((PropertyHandler<CouchbasePersistentProperty>) prop -> {
       if (prop.isAnnotationPresent(N1qlJoin.class)) {
         N1qlJoin definition = prop.findAnnotation(N1qlJoin.class);
-        TypeInformation type =  prop.getTypeInformation().getActualType();
-        Class clazz = type.getType();
+        TypeInformation<?> type =  prop.getTypeInformation().getActualType();
+        Class<?> clazz = type.getType();
         N1qlJoinResolver.N1qlJoinResolverParameters parameters = new N1qlJoinResolver.N1qlJoinResolverParameters(definition, id, persistentEntity.getTypeInformation(), type);
         if (N1qlJoinResolver.isLazyJoin(definition)) {
           N1qlJoinResolver.N1qlJoinProxy proxy = new N1qlJoinResolver.N1qlJoinProxy(this, parameters);
           accessor.setProperty(prop, java.lang.reflect.Proxy.newProxyInstance(List.class.getClassLoader(),
                   new Class[]{List.class}, proxy));
         } else {
-          accessor.setProperty(prop, N1qlJoinResolver.doResolve(this, parameters, clazz));
+          long joinStart = trace.now();
+          Supplier<List<?>> resolver = () -> N1qlJoinResolver.doResolve(this, parameters, clazz);
+          accessor.setProperty(prop, identityMap != null ? identityMap.join(persistentEntity.getType(), id, data.cas(),
+              prop.getName(), resolver, this::getIdOf) : resolver.get());
+          trace.add(OperationPhase.JOIN, joinStart);
         }
       }
     });
@@ -738,6 +1613,12 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
     return accessor.getBean();
   }
 
+  private String getIdOf(Object entity) {
+    CouchbasePersistentProperty idProperty = mappingContext.getRequiredPersistentEntity(entity.getClass())
+        .getIdProperty();
+    return addCommonPrefixAndSuffix(String.valueOf(getPropertyAccessor(entity).getProperty(idProperty)));
+  }
+
   private final <T> ConvertingPropertyAccessor<T> getPropertyAccessor(T source) {
 
     CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(source.getClass());
@@ -784,6 +1665,7 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
 
     private final String sdkOperationName;
     private final String springDataOperationName;
+    private final String operationName = name().toLowerCase();
 
     PersistType(String sdkOperationName, String springDataOperationName) {
       this.sdkOperationName = sdkOperationName;
@@ -797,6 +1679,10 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
     public String getSpringDataOperationName() {
       return springDataOperationName;
     }
+
+    public String getOperationName() {
+      return operationName;
+    }
   }
 
   @Override
@@ -821,13 +1707,20 @@ public class CouchbaseTemplate implements CouchbaseOperations, ApplicationEventP
   }
 
   private String addCommonPrefixAndSuffix(final String id) {
+    return addCommonPrefixAndSuffix(keySettings, id);
+  }
+
+  /**
+   * Adds the common prefix and suffix of key settings to the id of an entity, giving the key of its document.
+   */
+  static String addCommonPrefixAndSuffix(final KeySettings keySettings, final String id) {
     String convertedKey = id;
-    if (this.keySettings == null) {
+    if (keySettings == null) {
       return id;
     }
-    String prefix = this.keySettings.prefix();
-    String delimiter = this.keySettings.delimiter();
-    String suffix = this.keySettings.suffix();
+    String prefix = keySettings.prefix();
+    String delimiter = keySettings.delimiter();
+    String suffix = keySettings.suffix();
     if (prefix != null && !prefix.equals("")) {
       convertedKey = prefix + delimiter + convertedKey;
     }
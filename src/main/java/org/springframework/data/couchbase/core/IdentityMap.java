@@ -0,0 +1,314 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Keeps the entities materialized by a {@link CouchbaseTemplate} during a unit of processing, typically a request, so
+ * that loading the same document again returns the same instance instead of fetching and mapping it again:
+ * <ul>
+ *   <li>{@link CouchbaseOperations#findById(String, Class)} returns the instance already materialized for the id, if
+ *   any, without reading the document;</li>
+ *   <li>the entities of the N1QL and view results are merged by id: a row whose CAS is the one of the instance already
+ *   materialized for its id returns that instance, a row of another version replaces it;</li>
+ *   <li>the collections of a {@link org.springframework.data.couchbase.core.query.N1qlJoin} resolved for a version of
+ *   a parent are reused when the parent is materialized again.</li>
+ * </ul>
+ * Writing or removing a document through the template invalidates its entities and the joins involving it, so that it
+ * is read again. The writes made by other processes aren't seen by the reads served by the identity map, which is
+ * therefore meant to live as long as a request, not to be a cache.
+ * <p>
+ * The template uses the identity map of its {@link IdentityMapScope}: the one bound to the current thread by
+ * {@link #bindToThread()} with {@link #threadScope()}, or the one of the current web request with
+ * {@link #requestScope()}. Reactive repositories use the identity map of the subscriber context, stored under
+ * {@link #CONTEXT_KEY}.
+ *
+ * @since 3.2
+ */
+public class IdentityMap implements AutoCloseable {
+
+  /**
+   * The key of the identity map in the subscriber context of the reactive repositories.
+   */
+  public static final Object CONTEXT_KEY = IdentityMap.class;
+
+  private static final ThreadLocal<IdentityMap> THREAD =
+      new NamedThreadLocal<IdentityMap>("Couchbase Identity Map");
+  private static final String REQUEST_ATTRIBUTE = IdentityMap.class.getName();
+  private static final IdentityMapScope THREAD_SCOPE = THREAD::get;
+  private static final IdentityMapScope REQUEST_SCOPE = IdentityMap::forCurrentRequest;
+
+  private final ConcurrentMap<EntityKey, Entity> entities = new ConcurrentHashMap<EntityKey, Entity>();
+  private final ConcurrentMap<JoinKey, Join> joins = new ConcurrentHashMap<JoinKey, Join>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private volatile Thread thread;
+
+  /**
+   * @return the scope of the identity maps bound to the threads by {@link #bindToThread()}.
+   */
+  public static IdentityMapScope threadScope() {
+    return THREAD_SCOPE;
+  }
+
+  /**
+   * @return the scope of the identity maps of the web requests, created on their first use by the request and
+   *   exposed by the {@link RequestContextHolder}. There is no identity map outside of a request.
+   */
+  public static IdentityMapScope requestScope() {
+    return REQUEST_SCOPE;
+  }
+
+  private static IdentityMap forCurrentRequest() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes == null) {
+      return null;
+    }
+    IdentityMap identityMap = (IdentityMap) attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (identityMap == null) {
+      identityMap = new IdentityMap();
+      attributes.setAttribute(REQUEST_ATTRIBUTE, identityMap, RequestAttributes.SCOPE_REQUEST);
+    }
+    return identityMap;
+  }
+
+  /**
+   * Binds a new identity map to the current thread, until {@link #close() closed}.
+   *
+   * @return the identity map.
+   * @throws IllegalStateException if an identity map is already bound to the current thread.
+   */
+  public static IdentityMap bindToThread() {
+    Assert.state(THREAD.get() == null, "An identity map is already bound to the current thread");
+    IdentityMap identityMap = new IdentityMap();
+    identityMap.thread = Thread.currentThread();
+    THREAD.set(identityMap);
+    return identityMap;
+  }
+
+  /**
+   * @param type the type of the entity.
+   * @param id the id of the document.
+   * @return the instance materialized for the document with the given type, or null.
+   */
+  public <T> T get(Class<T> type, String id) {
+    Entity entity = entities.get(new EntityKey(type, id));
+    if (entity == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return type.cast(entity.instance);
+  }
+
+  /**
+   * Registers an entity materialized for a document of unknown version, which a N1QL or view row replaces.
+   *
+   * @param id the id of the document.
+   * @param instance the entity.
+   */
+  public void put(String id, Object instance) {
+    Assert.notNull(instance, "Entity must not be null");
+    entities.put(new EntityKey(instance.getClass(), id), new Entity(instance, 0));
+  }
+
+  /**
+   * Returns the instance materialized for a version of a document, or materializes and registers it.
+   */
+  <T> T merge(Class<T> type, String id, long cas, Supplier<T> materializer) {
+    EntityKey key = new EntityKey(type, id);
+    Entity entity = entities.get(key);
+    if (entity != null && cas != 0 && entity.cas == cas) {
+      hits.increment();
+      return type.cast(entity.instance);
+    }
+    misses.increment();
+    T instance = materializer.get();
+    if (instance != null) {
+      entities.put(key, new Entity(instance, cas));
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the collection joined to a version of a parent document, or resolves and registers it.
+   */
+  List<?> join(Class<?> parentType, String parentId, long parentCas, String property,
+               Supplier<List<?>> resolver, Function<Object, String> idOf) {
+    JoinKey key = new JoinKey(parentType, parentId, property);
+    Join join = joins.get(key);
+    if (join != null && parentCas != 0 && join.parentCas == parentCas) {
+      hits.increment();
+      return join.joined;
+    }
+    misses.increment();
+    List<?> joined = resolver.get();
+    Set<String> joinedIds = new HashSet<String>();
+    for (Object item : joined) {
+      joinedIds.add(idOf.apply(item));
+    }
+    joins.put(key, new Join(parentCas, joined, joinedIds));
+    return joined;
+  }
+
+  /**
+   * Forgets the entities materialized for a document, and the joins of which it is the parent or a member.
+   *
+   * @param id the id of the document.
+   */
+  public void invalidate(String id) {
+    entities.keySet().removeIf(key -> key.id.equals(id));
+    joins.entrySet().removeIf(join -> join.getKey().parentId.equals(id) || join.getValue().joinedIds.contains(id));
+  }
+
+  /**
+   * Forgets all the entities and joins.
+   */
+  public void clear() {
+    entities.clear();
+    joins.clear();
+  }
+
+  /**
+   * @return the number of entities registered.
+   */
+  public int size() {
+    return entities.size();
+  }
+
+  /**
+   * @return the number of entities and joins served by the identity map.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of entities and joins which had to be materialized.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Unbinds the identity map from the current thread, if it was {@link #bindToThread() bound} to it.
+   */
+  @Override
+  public void close() {
+    if (thread != null) {
+      Assert.state(Thread.currentThread() == thread, "An identity map must be unbound by the thread it is bound to");
+      thread = null;
+      THREAD.remove();
+    }
+  }
+
+  private static final class EntityKey {
+
+    private final Class<?> type;
+    private final String id;
+
+    private EntityKey(Class<?> type, String id) {
+      this.type = type;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof EntityKey)) {
+        return false;
+      }
+      EntityKey that = (EntityKey) o;
+      return type == that.type && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * type.hashCode() + id.hashCode();
+    }
+  }
+
+  private static final class Entity {
+
+    private final Object instance;
+    private final long cas;
+
+    private Entity(Object instance, long cas) {
+      this.instance = instance;
+      this.cas = cas;
+    }
+  }
+
+  private static final class JoinKey {
+
+    private final Class<?> parentType;
+    private final String parentId;
+    private final String property;
+
+    private JoinKey(Class<?> parentType, String parentId, String property) {
+      this.parentType = parentType;
+      this.parentId = parentId;
+      this.property = property;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof JoinKey)) {
+        return false;
+      }
+      JoinKey that = (JoinKey) o;
+      return parentType == that.parentType && parentId.equals(that.parentId) && property.equals(that.property);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(parentType, parentId, property);
+    }
+  }
+
+  private static final class Join {
+
+    private final long parentCas;
+    private final List<?> joined;
+    private final Set<String> joinedIds;
+
+    private Join(long parentCas, List<?> joined, Set<String> joinedIds) {
+      this.parentCas = parentCas;
+      this.joined = joined;
+      this.joinedIds = Collections.unmodifiableSet(joinedIds);
+    }
+  }
+}
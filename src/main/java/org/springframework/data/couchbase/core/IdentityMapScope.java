@@ -0,0 +1,31 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+/**
+ * Tells which {@link IdentityMap} the template uses for the operation in progress, if any. See
+ * {@link IdentityMap#threadScope()} and {@link IdentityMap#requestScope()}.
+ *
+ * @since 3.2
+ */
+@FunctionalInterface
+public interface IdentityMapScope {
+
+  /**
+   * @return the identity map of the current scope, or null if there is none.
+   */
+  IdentityMap currentIdentityMap();
+}
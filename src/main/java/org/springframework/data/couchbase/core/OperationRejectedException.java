@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core;
+
+import org.springframework.data.couchbase.core.support.CouchbaseService;
+
+/**
+ * Data Access Exception that identifies operations rejected by an
+ * {@link org.springframework.data.couchbase.core.support.OperationLimiter} before being sent to the cluster, either
+ * because too many operations are already in flight to the service, or because its circuit breaker is open. Like
+ * other cancelled operations, they can be retried later.
+ *
+ * @since 3.2
+ */
+public class OperationRejectedException extends OperationCancellationException {
+
+  private static final long serialVersionUID = 6989549716484623197L;
+
+  /**
+   * Why an operation was rejected.
+   */
+  public enum Reason {
+
+    /**
+     * The number of operations in flight to the service reached its current concurrency limit.
+     */
+    LIMIT_REACHED,
+
+    /**
+     * The circuit breaker of the service is open after too many failures.
+     */
+    CIRCUIT_OPEN
+  }
+
+  private final CouchbaseService service;
+  private final Reason reason;
+
+  /**
+   * Constructor for OperationRejectedException.
+   *
+   * @param msg the detail message
+   * @param service the service the operation was meant for
+   * @param reason why the operation was rejected
+   */
+  public OperationRejectedException(final String msg, final CouchbaseService service, final Reason reason) {
+    super(msg);
+    this.service = service;
+    this.reason = reason;
+  }
+
+  /**
+   * @return the service the operation was meant for.
+   */
+  public CouchbaseService getService() {
+    return service;
+  }
+
+  /**
+   * @return why the operation was rejected.
+   */
+  public Reason getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.couchbase.client.core.RequestCancelledException;
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.ReplicaMode;
+import com.couchbase.client.java.document.RawJsonDocument;
+import rx.Observable;
+
+import org.springframework.data.couchbase.core.mapping.CouchbasePersistentEntity;
+import org.springframework.data.couchbase.core.mapping.ReplicaRead;
+import org.springframework.util.Assert;
+
+/**
+ * Tells whether the documents read by id may be served by the replicas, when the active copy is slow or unavailable,
+ * for instance while a node fails over or during a rebalance:
+ * <ul>
+ *   <li>{@link #activeOnly()} only reads the active copy, which is the default;</li>
+ *   <li>{@link #fallbackOnTimeout()} reads the replicas when the read of the active copy times out or is cancelled;</li>
+ *   <li>{@link #hedged(long, TimeUnit)} also reads the replicas when the active copy hasn't answered within a latency
+ *   budget, and returns the first document found, by the active copy or a replica.</li>
+ * </ul>
+ * A document read from a replica may be stale, since the replication is asynchronous: it may miss the latest
+ * mutations, or not exist yet. Its CAS is the one of the replica, so that saving an entity with a {@link
+ * org.springframework.data.annotation.Version} read from a stale replica fails with an {@link
+ * org.springframework.dao.OptimisticLockingFailureException}, as if the document had been concurrently modified. The
+ * answer of the active copy that the document doesn't exist is final, the replicas not being read in that case, but
+ * a replica not having the document doesn't hide the answer of the active copy.
+ * <p>
+ * A hedged read doesn't wait for the answer of the active copy once the replicas are read, though: when a replica
+ * answers first, its copy is returned even if the document was removed from the active copy and the removal isn't
+ * replicated yet. Hedge the reads of an entity only if reading a document shortly after its removal is acceptable.
+ * <p>
+ * The policy applies to {@link CouchbaseOperations#findById(String, Class)}, except for entities touched on read,
+ * which must be read from the active copy. It is set on a template, and overridden per entity by {@link ReplicaRead}.
+ *
+ * @since 3.2
+ */
+public final class ReplicaReadPolicy {
+
+  private static final ReplicaReadPolicy ACTIVE_ONLY = new ReplicaReadPolicy(-1, false);
+  private static final ReplicaReadPolicy FALLBACK_ON_TIMEOUT = new ReplicaReadPolicy(-1, true);
+
+  private final long hedgeAfterMillis;
+  private final boolean fallback;
+
+  private ReplicaReadPolicy(long hedgeAfterMillis, boolean fallback) {
+    this.hedgeAfterMillis = hedgeAfterMillis;
+    this.fallback = fallback;
+  }
+
+  /**
+   * @return the policy only reading the active copy of the documents.
+   */
+  public static ReplicaReadPolicy activeOnly() {
+    return ACTIVE_ONLY;
+  }
+
+  /**
+   * @return the policy reading the replicas when the read of the active copy times out or is cancelled.
+   */
+  public static ReplicaReadPolicy fallbackOnTimeout() {
+    return FALLBACK_ON_TIMEOUT;
+  }
+
+  /**
+   * @param hedgeAfter the time to wait for the active copy before reading the replicas too, which should be around a
+   *   high percentile of the latency of the reads, so that only a few of them are duplicated.
+   * @param unit the unit of the time.
+   * @return the policy reading the replicas when the active copy is slow to answer, or when its read times out or is
+   *   cancelled. A removed document may still be read from a replica which answers before the active copy.
+   */
+  public static ReplicaReadPolicy hedged(long hedgeAfter, TimeUnit unit) {
+    Assert.isTrue(hedgeAfter >= 0, "The hedging delay must not be negative");
+    return new ReplicaReadPolicy(unit.toMillis(hedgeAfter), true);
+  }
+
+  /**
+   * @param replicaRead the annotation of an entity.
+   * @return the policy the annotation describes.
+   */
+  static ReplicaReadPolicy of(ReplicaRead replicaRead) {
+    if (replicaRead.hedgeAfter() >= 0) {
+      return new ReplicaReadPolicy(replicaRead.unit().toMillis(replicaRead.hedgeAfter()), replicaRead.fallback());
+    }
+    return replicaRead.fallback() ? FALLBACK_ON_TIMEOUT : ACTIVE_ONLY;
+  }
+
+  /**
+   * @param templatePolicy the policy of the template.
+   * @param entity the entity read.
+   * @return the policy of the entity if it is annotated with {@link ReplicaRead}, the one of the template otherwise.
+   */
+  static ReplicaReadPolicy resolve(ReplicaReadPolicy templatePolicy, CouchbasePersistentEntity<?> entity) {
+    ReplicaRead replicaRead = entity.findAnnotation(ReplicaRead.class);
+    return replicaRead == null ? templatePolicy : of(replicaRead);
+  }
+
+  /**
+   * @return true if only the active copy is read.
+   */
+  public boolean isActiveOnly() {
+    return hedgeAfterMillis < 0 && !fallback;
+  }
+
+  /**
+   * Reads a document according to the policy.
+   *
+   * @param bucket the bucket of the document.
+   * @param id the id of the document.
+   * @param timeoutMillis the timeout of the read of the active copy, and of the replicas.
+   * @return the document, or nothing if the active copy doesn't exist.
+   */
+  Observable<RawJsonDocument> read(AsyncBucket bucket, String id, long timeoutMillis) {
+    Observable<RawJsonDocument> activeRead = bucket.get(id, RawJsonDocument.class)
+        .timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    if (isActiveOnly()) {
+      return activeRead;
+    }
+
+    final Observable<Read> active = activeRead
+        .map(Read::new)
+        .defaultIfEmpty(Read.MISSING)
+        .onErrorReturn(Read::new)
+        .cache();
+    //the replicas which don't have the document emit nothing, so the first one having it answers
+    final Observable<Read> replicas = bucket.getFromReplica(id, ReplicaMode.ALL, RawJsonDocument.class)
+        .timeout(timeoutMillis, TimeUnit.MILLISECONDS)
+        .onErrorResumeNext(Observable.<RawJsonDocument>empty())
+        .take(1)
+        .map(Read::new)
+        .cache();
+
+    Observable<Read> answers = active.filter(read -> read.error == null);
+    if (hedgeAfterMillis >= 0) {
+      answers = answers.mergeWith(Observable.timer(hedgeAfterMillis, TimeUnit.MILLISECONDS)
+          .flatMap(ignored -> replicas));
+    }
+    if (fallback) {
+      answers = answers.mergeWith(active.filter(read -> isUnavailable(read.error)).flatMap(ignored -> replicas));
+    }
+    return answers
+        .take(1)
+        .switchIfEmpty(active.flatMap(read -> read.error != null ? Observable.<Read>error(read.error)
+            : Observable.<Read>empty()))
+        .flatMap(read -> read.document != null ? Observable.just(read.document)
+            : Observable.<RawJsonDocument>empty());
+  }
+
+  private static boolean isUnavailable(Throwable error) {
+    return error instanceof TimeoutException || error instanceof RequestCancelledException;
+  }
+
+  @Override
+  public String toString() {
+    if (isActiveOnly()) {
+      return "ReplicaReadPolicy{activeOnly}";
+    }
+    return "ReplicaReadPolicy{hedgeAfter=" + (hedgeAfterMillis < 0 ? "never" : hedgeAfterMillis + "ms")
+        + ", fallback=" + fallback + "}";
+  }
+
+  /**
+   * The answer of a copy of the document: the document, its absence or an error.
+   */
+  private static final class Read {
+
+    private static final Read MISSING = new Read((RawJsonDocument) null);
+
+    private final RawJsonDocument document;
+    private final Throwable error;
+
+    private Read(RawJsonDocument document) {
+      this.document = document;
+      this.error = null;
+    }
+
+    private Read(Throwable error) {
+      this.document = null;
+      this.error = error;
+    }
+  }
+}
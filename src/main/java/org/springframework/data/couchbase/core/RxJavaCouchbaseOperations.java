@@ -15,6 +15,8 @@
  */
 package org.springframework.data.couchbase.core;
 
+import java.util.Map;
+
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.PersistTo;
 import com.couchbase.client.java.ReplicateTo;
@@ -72,6 +74,31 @@ public interface RxJavaCouchbaseOperations {
 
     <T>Observable<T> findById(String id, Class<T> entityClass);
 
+    /**
+     * Resets the expiry of many documents, touching them in parallel, a bounded number at a time. The documents which
+     * don't exist aren't touched, without failing the others.
+     *
+     * @param ids the unique IDs of the documents.
+     * @param expiry the new expiry of the documents, in seconds relative to now up to 30 days, as a Unix timestamp
+     *   otherwise, or 0 for the documents not to expire.
+     * @return a single map of whether each document was touched, false if it doesn't exist, by id in the order of the
+     *   given ids.
+     * @since 3.2
+     */
+    Observable<Map<String, Boolean>> touch(Iterable<String> ids, int expiry);
+
+    /**
+     * Finds many objects by their Ids, resetting the expiry of their documents as they are read, a bounded number of
+     * documents being read in parallel.
+     *
+     * @param ids the unique IDs of the documents.
+     * @param entityClass the entity to map to.
+     * @param expiry the new expiry of the documents, like for {@link #touch(Iterable, int)}.
+     * @return the entities found, in the order of the given ids, the documents which don't exist being left out.
+     * @since 3.2
+     */
+    <T>Observable<T> findAllByIdAndTouch(Iterable<String> ids, Class<T> entityClass, int expiry);
+
     Observable<AsyncN1qlQueryResult> queryN1QL(N1qlQuery n1ql);
 
     Observable<AsyncViewResult> queryView(ViewQuery query);
@@ -18,6 +18,10 @@ package org.springframework.data.couchbase.core;
 
 import static org.springframework.data.couchbase.core.CouchbaseTemplate.ensureNotIterable;
 
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import com.couchbase.client.java.AsyncBucket;
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.PersistTo;
@@ -28,6 +32,7 @@ import com.couchbase.client.java.document.RawJsonDocument;
 import com.couchbase.client.java.document.json.JsonObject;
 import com.couchbase.client.java.error.CASMismatchException;
 import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
 import com.couchbase.client.java.query.*;
 import com.couchbase.client.java.view.*;
 import org.slf4j.Logger;
@@ -39,11 +44,20 @@ import org.springframework.data.couchbase.core.convert.translation.JacksonTransl
 import org.springframework.data.couchbase.core.convert.translation.TranslationService;
 import org.springframework.data.couchbase.core.mapping.*;
 import org.springframework.data.couchbase.core.query.Consistency;
+import org.springframework.data.couchbase.core.support.CouchbaseService;
+import org.springframework.data.couchbase.core.support.OperationLimiter;
+import org.springframework.data.couchbase.core.support.OperationRetrier;
 import org.springframework.data.couchbase.core.support.TemplateUtils;
+import org.springframework.data.couchbase.monitor.OperationPhase;
+import org.springframework.data.couchbase.monitor.OperationRecorder;
+import org.springframework.data.couchbase.monitor.OperationTrace;
 import org.springframework.data.mapping.PersistentPropertyAccessor;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.mapping.model.ConvertingPropertyAccessor;
+import org.springframework.util.Assert;
+import rx.Notification;
 import rx.Observable;
+import rx.functions.Func1;
 import rx.functions.Func3;
 
 /**
@@ -56,6 +70,7 @@ import rx.functions.Func3;
 public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
 
     private static final WriteResultChecking DEFAULT_WRITE_RESULT_CHECKING = WriteResultChecking.NONE;
+    private static final int DEFAULT_BULK_PARALLELISM = 16;
 
     protected final MappingContext<? extends CouchbasePersistentEntity<?>, CouchbasePersistentProperty> mappingContext;
 
@@ -66,6 +81,11 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
     private final TranslationService translationService;
     private Consistency configuredConsistency = Consistency.DEFAULT_CONSISTENCY;
     private WriteResultChecking writeResultChecking = DEFAULT_WRITE_RESULT_CHECKING;
+    private OperationRecorder operationRecorder;
+    private ReplicaReadPolicy replicaReadPolicy = ReplicaReadPolicy.activeOnly();
+    private OperationLimiter operationLimiter;
+    private OperationRetrier operationRetrier;
+    private int bulkParallelism = DEFAULT_BULK_PARALLELISM;
 
     public <T> Observable<T> save(T objectToSave) {
         return save(objectToSave, PersistTo.NONE, ReplicateTo.NONE);
@@ -160,6 +180,135 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
         this.writeResultChecking = writeResultChecking == null ? DEFAULT_WRITE_RESULT_CHECKING : writeResultChecking;
     }
 
+    /**
+     * Enables operation metrics: each operation of the template is measured from its call to the termination or
+     * cancellation of the returned {@link Observable}, split into encoding, network and decoding time, and reported to
+     * the given recorder. Setting null (the default) disables metrics.
+     *
+     * @param operationRecorder the recorder to report operations to.
+     */
+    public void setOperationRecorder(OperationRecorder operationRecorder) {
+        this.operationRecorder = operationRecorder;
+    }
+
+    public OperationRecorder getOperationRecorder() {
+        return operationRecorder;
+    }
+
+    /**
+     * Sets whether the documents read by {@link #findById(String, Class)} may be served by the replicas, for the
+     * entities which don't override it with a {@link org.springframework.data.couchbase.core.mapping.ReplicaRead}.
+     * Setting null resets the default of only reading the active copy.
+     *
+     * @param replicaReadPolicy the policy of the reads by id.
+     */
+    public void setReplicaReadPolicy(ReplicaReadPolicy replicaReadPolicy) {
+        this.replicaReadPolicy = replicaReadPolicy == null ? ReplicaReadPolicy.activeOnly() : replicaReadPolicy;
+    }
+
+    public ReplicaReadPolicy getReplicaReadPolicy() {
+        return replicaReadPolicy;
+    }
+
+    /**
+     * Bounds the key/value, N1QL and view operations in flight with the given limiter. An operation takes a permit
+     * when the returned {@link Observable} is subscribed, and fails with an {@link OperationRejectedException} if the
+     * service is overloaded. Setting null (the default) disables limiting.
+     *
+     * @param operationLimiter the limiter of the operations.
+     */
+    public void setOperationLimiter(OperationLimiter operationLimiter) {
+        this.operationLimiter = operationLimiter;
+    }
+
+    public OperationLimiter getOperationLimiter() {
+        return operationLimiter;
+    }
+
+    /**
+     * Retries the operations failing transiently with the given retrier, by subscribing again to the operation after
+     * a backoff. Only the idempotent operations are retried by default: reads, upserts, replaces and N1QL SELECT
+     * statements, but neither inserts nor removes. Setting null (the default) disables retries.
+     *
+     * @param operationRetrier the retrier of the operations.
+     */
+    public void setOperationRetrier(OperationRetrier operationRetrier) {
+        this.operationRetrier = operationRetrier;
+    }
+
+    public OperationRetrier getOperationRetrier() {
+        return operationRetrier;
+    }
+
+    /**
+     * Sets how many documents the bulk operations, like {@link #touch(Iterable, int)}, operate on in parallel. Default
+     * is 16.
+     *
+     * @param bulkParallelism the number of key/value operations a bulk operation has in flight.
+     */
+    public void setBulkParallelism(int bulkParallelism) {
+        Assert.isTrue(bulkParallelism > 0, "The bulk parallelism must be positive");
+        this.bulkParallelism = bulkParallelism;
+    }
+
+    public int getBulkParallelism() {
+        return bulkParallelism;
+    }
+
+    private <T> Observable<T> traced(CouchbaseService service, String operation, Class<?> entityType,
+                                     boolean idempotent, Func1<OperationTrace, Observable<T>> body) {
+        OperationTrace trace = OperationTrace.start(operationRecorder, operation, entityType);
+        if (!trace.isEnabled()) {
+            return limited(service, retrying(operation, entityType, idempotent, body.call(trace)));
+        }
+        Observable<T> result;
+        try {
+            result = body.call(trace);
+        } catch (RuntimeException e) {
+            trace.error(e);
+            trace.end();
+            throw e;
+        }
+        return limited(service, retrying(operation, entityType, idempotent, result))
+                .doOnError(trace::error)
+                .doOnTerminate(trace::end)
+                .doOnUnsubscribe(trace::end);
+    }
+
+    /**
+     * Traces a bulk operation, whose operations on each key are limited and retried on their own.
+     */
+    private <T> Observable<T> tracedBulk(String operation, Class<?> entityType, Iterable<String> ids,
+                                         Func1<OperationTrace, Observable<T>> body) {
+        OperationTrace trace = OperationTrace.start(operationRecorder, operation, entityType);
+        trace.target(ids);
+        trace.phase(OperationPhase.NETWORK);
+        if (!trace.isEnabled()) {
+            return body.call(trace);
+        }
+        Observable<T> result;
+        try {
+            result = body.call(trace);
+        } catch (RuntimeException e) {
+            trace.error(e);
+            trace.end();
+            throw e;
+        }
+        return result
+                .doOnError(trace::error)
+                .doOnTerminate(trace::end)
+                .doOnUnsubscribe(trace::end);
+    }
+
+    private <T> Observable<T> limited(CouchbaseService service, Observable<T> operation) {
+        return operationLimiter == null ? operation : operationLimiter.limit(service, operation);
+    }
+
+    private <T> Observable<T> retrying(String operation, Class<?> entityType, boolean idempotent,
+                                       Observable<T> action) {
+        return operationRetrier == null ? action : operationRetrier.retry(operation, entityType, idempotent, action);
+    }
+
     public RxJavaCouchbaseTemplate(final ClusterInfo clusterInfo, final Bucket client,
                                    final CouchbaseConverter converter,
                                    final TranslationService translationService) {
@@ -203,6 +352,16 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
     }
 
     private <T> Observable<T> doPersist(T objectToPersist, PersistType persistType, PersistTo persistTo, ReplicateTo replicateTo) {
+        Long version = getVersion(objectToPersist);
+        //inserts fail if retried after being applied, upserts and replaces don't
+        boolean idempotent = persistType == PersistType.UPDATE
+                || (persistType == PersistType.SAVE && (version == null || version > 0));
+        return traced(CouchbaseService.KV, persistType.operationName, objectToPersist.getClass(), idempotent,
+                trace -> doPersist(objectToPersist, persistType, persistTo, replicateTo, trace));
+    }
+
+    private <T> Observable<T> doPersist(T objectToPersist, PersistType persistType, PersistTo persistTo, ReplicateTo replicateTo,
+                                        OperationTrace trace) {
         // If version is not set - assumption that document is new, otherwise updating
         Long version = getVersion(objectToPersist);
         Func3<RawJsonDocument, PersistTo, ReplicateTo, Observable<RawJsonDocument>> persistFunction;
@@ -227,7 +386,10 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
                 persistFunction = client::insert;
                 break;
         }
-        return persistFunction.call(toJsonDocument(objectToPersist), persistTo, replicateTo)
+        RawJsonDocument doc = toJsonDocument(objectToPersist, trace);
+        trace.target(doc.id());
+        trace.phase(OperationPhase.NETWORK);
+        return persistFunction.call(doc, persistTo, replicateTo)
                 .flatMap(storedDoc -> {
                     if (storedDoc != null) {
                         if (storedDoc.cas() != 0) {
@@ -255,12 +417,17 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
                 });
     }
 
-    private <T> RawJsonDocument toJsonDocument(T object) {
+    private <T> RawJsonDocument toJsonDocument(T object, OperationTrace trace) {
         ensureNotIterable(object);
 
+        trace.phase(OperationPhase.MAPPING);
         final CouchbaseDocument converted = new CouchbaseDocument();
         converter.write(object, converted);
-        return encodeAndWrap(converted, getVersion(object));
+        Long version = getVersion(object);
+        trace.phase(OperationPhase.ENCODE);
+        RawJsonDocument doc = encodeAndWrap(converted, version);
+        trace.rows(1, doc.content().length());
+        return doc;
     }
 
     private <T> CouchbasePersistentProperty versionProperty(T object) {
@@ -312,12 +479,22 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
     }
 
     private <T> Observable<T> doRemove(T objectToRemove, final PersistTo persistTo, final ReplicateTo replicateTo) {
+        return traced(CouchbaseService.KV, "remove", objectToRemove instanceof String ? null : objectToRemove.getClass(), false,
+                trace -> doRemove(objectToRemove, persistTo, replicateTo, trace));
+    }
+
+    private <T> Observable<T> doRemove(T objectToRemove, final PersistTo persistTo, final ReplicateTo replicateTo,
+                                       OperationTrace trace) {
         if(objectToRemove instanceof String) {
+            trace.target(objectToRemove);
+            trace.phase(OperationPhase.NETWORK);
             return client.remove((String) objectToRemove, persistTo, replicateTo)
                     .flatMap(rawJsonDocument -> Observable.just(objectToRemove))
                     .doOnError(e -> TemplateUtils.translateError(e));
         } else {
-            RawJsonDocument doc = toJsonDocument(objectToRemove);
+            RawJsonDocument doc = toJsonDocument(objectToRemove, trace);
+            trace.target(doc.id());
+            trace.phase(OperationPhase.NETWORK);
             return client.remove(doc, persistTo, replicateTo)
                     .flatMap(rawJsonDocument -> Observable.just(objectToRemove))
                     .doOnError(e -> TemplateUtils.translateError(e));
@@ -327,42 +504,149 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
 
     @Override
     public Observable<Boolean> exists(String id) {
-        return client.exists(id)
-                        .doOnError(e -> TemplateUtils.translateError(e));
+        return traced(CouchbaseService.KV, "exists", null, true, trace -> {
+            trace.target(id);
+            trace.phase(OperationPhase.NETWORK);
+            return client.exists(id)
+                            .doOnError(e -> TemplateUtils.translateError(e));
+        });
     }
 
     @Override
     public Observable<AsyncN1qlQueryResult> queryN1QL(N1qlQuery query) {
+        return traced(CouchbaseService.QUERY, "queryN1QL", null, OperationRetrier.isReadOnly(query), trace -> {
+            trace.target(query.statement());
+            trace.phase(OperationPhase.NETWORK);
+            return doQueryN1QL(query);
+        });
+    }
+
+    private Observable<AsyncN1qlQueryResult> doQueryN1QL(N1qlQuery query) {
         return client.query(query)
                         .doOnError(e -> TemplateUtils.translateError(e));
     }
 
     @Override
     public Observable<AsyncViewResult> queryView(ViewQuery query) {
+        return traced(CouchbaseService.VIEW, "queryView", null, true, trace -> {
+            trace.target(query);
+            trace.phase(OperationPhase.NETWORK);
+            return doQueryView(query);
+        });
+    }
+
+    private Observable<AsyncViewResult> doQueryView(ViewQuery query) {
         return client.query(query)
                         .doOnError(e -> TemplateUtils.translateError(e));
     }
 
     @Override
     public Observable<AsyncSpatialViewResult> querySpatialView(SpatialViewQuery query){
+        return traced(CouchbaseService.VIEW, "querySpatialView", null, true, trace -> {
+            trace.target(query);
+            trace.phase(OperationPhase.NETWORK);
+            return doQuerySpatialView(query);
+        });
+    }
+
+    private Observable<AsyncSpatialViewResult> doQuerySpatialView(SpatialViewQuery query){
         return client.query(query)
                 .doOnError(e -> TemplateUtils.translateError(e));
     }
 
     @Override
     public <T> Observable<T> findById(String id, Class<T> entityClass) {
-        final CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(entityClass);
-        if (entity.isTouchOnRead()) {
-            return client.getAndTouch(id, entity.getExpiry(), RawJsonDocument.class)
-                            .switchIfEmpty(Observable.just(null))
-                            .map(doc -> mapToEntity(id, doc, entityClass))
-                            .doOnError(e -> TemplateUtils.translateError(e));
-        } else {
-            return client.get(id, RawJsonDocument.class)
-                            .switchIfEmpty(Observable.just(null))
-                            .map(doc -> mapToEntity(id, doc, entityClass))
-                            .doOnError(e -> TemplateUtils.translateError(e));
-        }
+        return traced(CouchbaseService.KV, "findById", entityClass, true, trace -> {
+            trace.target(id);
+            final CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(entityClass);
+            trace.phase(OperationPhase.NETWORK);
+            if (entity.isTouchOnRead()) {
+                return client.getAndTouch(id, entity.getExpiry(), RawJsonDocument.class)
+                                .switchIfEmpty(Observable.just(null))
+                                .map(doc -> mapToEntity(id, doc, entityClass, trace))
+                                .doOnError(e -> TemplateUtils.translateError(e));
+            }
+            final ReplicaReadPolicy readPolicy = ReplicaReadPolicy.resolve(replicaReadPolicy, entity);
+            if (readPolicy.isActiveOnly()) {
+                return client.get(id, RawJsonDocument.class)
+                                .switchIfEmpty(Observable.just(null))
+                                .map(doc -> mapToEntity(id, doc, entityClass, trace))
+                                .doOnError(e -> TemplateUtils.translateError(e));
+            } else {
+                return readPolicy.read(client, id, client.environment().kvTimeout())
+                                .switchIfEmpty(Observable.just(null))
+                                .map(doc -> mapToEntity(id, doc, entityClass, trace))
+                                .doOnError(e -> TemplateUtils.translateError(e));
+            }
+        });
+    }
+
+    @Override
+    public Observable<Map<String, Boolean>> touch(Iterable<String> ids, int expiry) {
+        return tracedBulk("touch", null, ids, trace -> inParallel(ids, id -> limited(CouchbaseService.KV,
+                retrying("touch", null, true, Observable.defer(() -> client.touch(id, expiry))
+                        .onErrorResumeNext(e -> e instanceof DocumentDoesNotExistException
+                                ? Observable.just(Boolean.FALSE) : Observable.<Boolean>error(e)))))
+                .toList()
+                .flatMap(results -> {
+                    Map<String, Boolean> touched = new LinkedHashMap<String, Boolean>(results.size());
+                    Map<String, Throwable> errors = new LinkedHashMap<String, Throwable>();
+                    for (Map.Entry<String, Notification<Boolean>> result : results) {
+                        if (result.getValue().isOnError()) {
+                            errors.put(result.getKey(), result.getValue().getThrowable());
+                        } else {
+                            touched.put(result.getKey(), result.getValue().getValue());
+                        }
+                    }
+                    return errors.isEmpty() ? Observable.just(touched)
+                            : Observable.<Map<String, Boolean>>error(new BulkOperationException(touched, errors));
+                }));
+    }
+
+    @Override
+    public <T> Observable<T> findAllByIdAndTouch(Iterable<String> ids, Class<T> entityClass, int expiry) {
+        return tracedBulk("findAllByIdAndTouch", entityClass, ids, trace -> {
+            mappingContext.getRequiredPersistentEntity(entityClass);
+            return Observable.defer(() -> {
+                Map<String, T> found = new LinkedHashMap<String, T>();
+                Map<String, Throwable> errors = new LinkedHashMap<String, Throwable>();
+                //the documents which don't exist are read as nothing
+                return inParallel(ids, id -> limited(CouchbaseService.KV, retrying("findAllByIdAndTouch",
+                        entityClass, true, Observable.defer(() -> client.getAndTouch(id, expiry,
+                                RawJsonDocument.class))))
+                        .map(document -> mapToEntity(document.id(), document, entityClass, trace)))
+                        .concatMap(result -> {
+                            if (result.getValue().isOnError()) {
+                                errors.put(result.getKey(), result.getValue().getThrowable());
+                                return Observable.<T>empty();
+                            }
+                            found.put(result.getKey(), result.getValue().getValue());
+                            return Observable.just(result.getValue().getValue());
+                        })
+                        .concatWith(Observable.defer(() -> errors.isEmpty() ? Observable.<T>empty()
+                                : Observable.<T>error(new BulkOperationException(found, errors))));
+            });
+        });
+    }
+
+    /**
+     * Executes an operation for each distinct id, up to the bulk parallelism at a time. The operation on an id
+     * failing doesn't prevent the others from being executed.
+     *
+     * @return the values and the translated errors of the operations, with their id, in the order of the ids, the
+     *   operations emitting nothing being left out.
+     */
+    private <V> Observable<Map.Entry<String, Notification<V>>> inParallel(Iterable<String> ids,
+                                                                        Func1<String, Observable<V>> operation) {
+        return Observable.from(ids)
+                .distinct()
+                .concatMapEager(id -> operation.call(id)
+                        .onErrorResumeNext(e -> TemplateUtils.<V>translateError(e))
+                        .materialize()
+                        .filter(notification -> !notification.isOnCompleted())
+                        .map(notification -> (Map.Entry<String, Notification<V>>)
+                                new AbstractMap.SimpleImmutableEntry<String, Notification<V>>(id, notification)),
+                        bulkParallelism, bulkParallelism);
     }
 
     @Override
@@ -377,14 +661,22 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
         //we'll always map the document to the entity, hence reduce never makes sense.
         query.reduce(false);
 
-        return queryView(query)
+        return traced(CouchbaseService.VIEW, "findByView", entityClass, true, trace -> {
+            trace.target(query);
+            trace.phase(OperationPhase.NETWORK);
+            return findByView(query, entityClass, trace);
+        });
+    }
+
+    private <T>Observable<T> findByView(ViewQuery query, Class<T> entityClass, OperationTrace trace) {
+        return doQueryView(query)
                 .flatMap(asyncViewResult -> asyncViewResult.error()
                         .flatMap(error -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute view query due to error:" + error.toString())))
                         .switchIfEmpty(asyncViewResult.rows()))
                 .map(row -> {
                     AsyncViewRow asyncViewRow = (AsyncViewRow) row;
                     return asyncViewRow.document(RawJsonDocument.class)
-                            .map(doc ->  mapToEntity(doc.id(), doc, entityClass)).toBlocking().single();
+                            .map(doc ->  mapToEntity(doc.id(), doc, entityClass, trace)).toBlocking().single();
                 })
                 .doOnError(throwable -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute view query", throwable)));
     }
@@ -392,7 +684,15 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
 
     @Override
     public <T>Observable<T> findByN1QL(N1qlQuery query, Class<T> entityClass) {
-        return queryN1QL(query)
+        return traced(CouchbaseService.QUERY, "findByN1QL", entityClass, OperationRetrier.isReadOnly(query), trace -> {
+            trace.target(query.statement());
+            trace.phase(OperationPhase.NETWORK);
+            return findByN1QL(query, entityClass, trace);
+        });
+    }
+
+    private <T>Observable<T> findByN1QL(N1qlQuery query, Class<T> entityClass, OperationTrace trace) {
+        return doQueryN1QL(query)
                 .flatMap(asyncN1qlQueryResult -> asyncN1qlQueryResult.errors()
                         .flatMap(error -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute n1ql query due to error:" + error.toString())))
                         .switchIfEmpty(asyncN1qlQueryResult.rows()))
@@ -406,7 +706,7 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
                     }
                     json = json.removeKey(TemplateUtils.SELECT_ID).removeKey(TemplateUtils.SELECT_CAS);
                     RawJsonDocument entityDoc = RawJsonDocument.create(id, json.toString(), cas);
-                    T decoded = mapToEntity(id, entityDoc, entityClass);
+                    T decoded = mapToEntity(id, entityDoc, entityClass, trace);
                     return decoded;
                 })
                 .doOnError(throwable -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute n1ql query", throwable)));
@@ -414,14 +714,22 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
 
     @Override
     public <T>Observable<T> findBySpatialView(SpatialViewQuery query, Class<T> entityClass) {
-        return querySpatialView(query)
+        return traced(CouchbaseService.VIEW, "findBySpatialView", entityClass, true, trace -> {
+            trace.target(query);
+            trace.phase(OperationPhase.NETWORK);
+            return findBySpatialView(query, entityClass, trace);
+        });
+    }
+
+    private <T>Observable<T> findBySpatialView(SpatialViewQuery query, Class<T> entityClass, OperationTrace trace) {
+        return doQuerySpatialView(query)
                 .flatMap(spatialViewResult -> spatialViewResult.error()
                         .flatMap(error -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute spatial view query due to error:" + error.toString())))
                         .switchIfEmpty(spatialViewResult.rows()))
                 .map(row -> {
                     AsyncSpatialViewRow asyncSpatialViewRow = (AsyncSpatialViewRow) row;
                     return asyncSpatialViewRow.document(RawJsonDocument.class)
-                            .map(doc ->  mapToEntity(doc.id(), doc, entityClass))
+                            .map(doc ->  mapToEntity(doc.id(), doc, entityClass, trace))
                             .toBlocking().single();
                 })
                 .doOnError(throwable -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute spatial view query", throwable)));
@@ -429,13 +737,25 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
 
     @Override
     public <T>Observable<T> findByN1QLProjection(N1qlQuery query, Class<T> entityClass) {
-        return queryN1QL(query)
+        return traced(CouchbaseService.QUERY, "findByN1QLProjection", entityClass, OperationRetrier.isReadOnly(query), trace -> {
+            trace.target(query.statement());
+            trace.phase(OperationPhase.NETWORK);
+            return findByN1QLProjection(query, entityClass, trace);
+        });
+    }
+
+    private <T>Observable<T> findByN1QLProjection(N1qlQuery query, Class<T> entityClass, OperationTrace trace) {
+        return doQueryN1QL(query)
                 .flatMap(asyncN1qlQueryResult -> asyncN1qlQueryResult.errors()
                         .flatMap(error -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute n1ql query due to error:" + error.toString())))
                         .switchIfEmpty(asyncN1qlQueryResult.rows()))
                 .map(row -> {
                     JsonObject json = ((AsyncN1qlQueryRow)row).value();
-                    T decoded = translationService.decodeFragment(json.toString(), entityClass);
+                    long start = trace.now();
+                    String content = json.toString();
+                    T decoded = translationService.decodeFragment(content, entityClass);
+                    trace.add(OperationPhase.DECODE, start);
+                    trace.rows(1, content.length());
                     return decoded;
                 })
                 .doOnError(throwable -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute n1ql query", throwable)));
@@ -458,13 +778,20 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
     }
 
 
-    private <T> T mapToEntity(String id, Document<String> data, Class<T> entityClass) {
+    private <T> T mapToEntity(String id, Document<String> data, Class<T> entityClass, OperationTrace trace) {
         if (data == null) {
             return null;
         }
 
+        long start = trace.now();
         final CouchbaseDocument converted = new CouchbaseDocument(id);
-        Object readEntity = converter.read(entityClass, (CouchbaseDocument) decodeAndUnwrap(data, converted));
+        CouchbaseDocument decoded = (CouchbaseDocument) decodeAndUnwrap(data, converted);
+        if (trace.isEnabled()) {
+            trace.add(OperationPhase.DECODE, start);
+            trace.rows(1, data.content().length());
+            start = trace.now();
+        }
+        Object readEntity = converter.read(entityClass, decoded);
 
         final ConvertingPropertyAccessor accessor = getPropertyAccessor(readEntity);
         CouchbasePersistentEntity<?> persistentEntity = mappingContext.getRequiredPersistentEntity(readEntity.getClass());
@@ -472,6 +799,7 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
         if (versionProperty != null) {
             accessor.setProperty(versionProperty, data.cas());
         }
+        trace.add(OperationPhase.MAPPING, start);
 
         return (T) readEntity;
     }
@@ -502,6 +830,7 @@ public class RxJavaCouchbaseTemplate implements RxJavaCouchbaseOperations {
 
         private final String sdkOperationName;
         private final String springDataOperationName;
+        private final String operationName = name().toLowerCase();
 
         PersistType(String sdkOperationName, String springDataOperationName) {
             this.sdkOperationName = sdkOperationName;
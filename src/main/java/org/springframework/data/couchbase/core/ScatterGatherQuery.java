@@ -0,0 +1,598 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.ParameterizedN1qlQuery;
+import com.couchbase.client.java.query.PreparedN1qlQuery;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * The plan of a N1QL query scattered to every shard of a {@link ShardedCouchbaseOperations}: the statement sent to
+ * the shards, and how their results are gathered.
+ * <p>
+ * Each shard can only apply the <code>LIMIT</code> and <code>OFFSET</code> of the statement to its own documents, so
+ * the shards are asked for the first <code>offset + limit</code> rows in the statement's order, which are then
+ * merge-sorted on the <code>ORDER BY</code> terms before skipping the offset and applying the limit. A term is
+ * evaluated on the gathered values as a path of field names (<code>`address`.`city`</code>), its leading alias being
+ * optional, and <code>META().id</code> reads the id. The rows of a <code>RAW</code> projection being the projected
+ * values themselves, they are merged on their own value, which requires the statement to be ordered on the projected
+ * expression first.
+ * <p>
+ * A statement only selecting <code>COUNT(*)</code>, like the counts of the repositories, has the counts of the shards
+ * summed. The statements whose results can't be gathered exactly are rejected with an
+ * {@link InvalidDataAccessApiUsageException}: other aggregations, <code>GROUP BY</code>, <code>DISTINCT</code>
+ * projections, whose shards may return the same values, and set operations, <code>ORDER BY</code> terms that aren't paths, like function calls, <code>LIMIT</code> and <code>OFFSET</code> values
+ * that aren't numbers or parameters, <code>RAW</code> projections ordered on another expression, and prepared queries, whose statement can't be rewritten.
+ *
+ * @since 3.2
+ */
+class ScatterGatherQuery {
+
+  /** The path of the document id, which is selected as <code>_ID</code> by the repository queries */
+  static final List<String> ID_PATH = Collections.singletonList("_ID");
+
+  private static final Object MISSING = new Object();
+
+  private static final Pattern COUNT = Pattern.compile(
+      "\\s*SELECT\\s+COUNT\\s*\\(\\s*\\*\\s*\\)(?:\\s+AS\\s+`?(\\w+)`?)?\\s+FROM\\s.*", Pattern.CASE_INSENSITIVE
+          | Pattern.DOTALL);
+  private static final Pattern IDENTIFIER = Pattern.compile("`([^`]*)`|([A-Za-z_$][\\w$]*)");
+  private static final Pattern DIRECTION = Pattern.compile("\\s+(ASC|DESC)$", Pattern.CASE_INSENSITIVE);
+  private static final Pattern AGGREGATE = Pattern.compile(
+      "\\b(?:COUNT|COUNTN|SUM|AVG|MEAN|MEDIAN|MIN|MAX|ARRAY_AGG|STDDEV\\w*|VARIANCE\\w*|VAR_\\w+)\\s*\\(",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern QUOTED = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\"|'(?:[^'\\\\]|\\\\.)*'|`[^`]*`");
+  private static final Pattern QUANTIFIER = Pattern.compile("(ALL|DISTINCT)\\b\\s*", Pattern.CASE_INSENSITIVE);
+  private static final Pattern RAW = Pattern.compile("(?:RAW|ELEMENT|VALUE)\\b\\s*", Pattern.CASE_INSENSITIVE);
+  private static final Pattern META_ID = Pattern.compile("META\\s*\\([^)]*\\)\\s*\\.\\s*`?id`?",
+      Pattern.CASE_INSENSITIVE);
+
+  private final N1qlQuery query;
+  private final String statement;
+  private final String shardStatement;
+  private final List<OrderTerm> orderTerms;
+  private final long offset;
+  private final long limit;
+  private final String countAlias;
+
+  /**
+   * @param query the query to scatter.
+   * @throws InvalidDataAccessApiUsageException if the results of the query can't be gathered exactly.
+   */
+  ScatterGatherQuery(N1qlQuery query) {
+    if (query instanceof PreparedN1qlQuery) {
+      throw ShardedCouchbaseOperations.unsupported("Prepared N1QL queries");
+    }
+    this.query = query;
+    this.statement = query.statement().toString();
+
+    Clauses clauses = new Clauses(statement);
+    if (clauses.setOperation) {
+      throw ShardedCouchbaseOperations.unsupported("N1QL set operations");
+    }
+    String projection = clauses.projection == null ? "" : clauses.projection.trim();
+    Matcher quantifier = QUANTIFIER.matcher(projection);
+    boolean distinct = false;
+    if (quantifier.lookingAt()) {
+      distinct = quantifier.group(1).equalsIgnoreCase("DISTINCT");
+      projection = projection.substring(quantifier.end());
+    }
+    Matcher raw = RAW.matcher(projection);
+    String rawExpression = raw.lookingAt() ? projection.substring(raw.end()).trim() : null;
+
+    Matcher count = COUNT.matcher(statement);
+    if (count.matches() && !clauses.grouped) {
+      //an unaliased expression is named after its position
+      this.countAlias = count.group(1) != null ? count.group(1) : "$1";
+    } else if (clauses.grouped || clauses.projection != null
+        && AGGREGATE.matcher(QUOTED.matcher(clauses.projection).replaceAll("``")).find()) {
+      throw ShardedCouchbaseOperations.unsupported("N1QL aggregations other than COUNT(*)");
+    } else if (distinct) {
+      throw ShardedCouchbaseOperations.unsupported("N1QL DISTINCT projections");
+    } else {
+      this.countAlias = null;
+    }
+
+    List<OrderTerm> orderTerms = clauses.orderBy == null ? Collections.<OrderTerm>emptyList()
+        : parseOrderBy(clauses.orderBy);
+    this.orderTerms = rawExpression == null || orderTerms.isEmpty() ? orderTerms
+        : orderByRawValue(rawExpression, orderTerms);
+    this.offset = clauses.offset == null ? 0 : resolveNumber("OFFSET", clauses.offset);
+    this.limit = clauses.limit == null ? -1 : resolveNumber("LIMIT", clauses.limit);
+    StringBuilder shardStatement = new StringBuilder(statement.substring(0, clauses.pagingStart).trim());
+    if (clauses.orderBy != null) {
+      shardStatement.append(" ORDER BY ").append(clauses.orderBy.trim());
+    }
+    if (limit >= 0) {
+      shardStatement.append(" LIMIT ").append(offset + limit);
+    }
+    this.shardStatement = clauses.pagingStart == statement.length() ? statement : shardStatement.toString();
+  }
+
+  /**
+   * @return the name of the count if the statement only selects <code>COUNT(*)</code>, null otherwise.
+   */
+  String getCountAlias() {
+    return countAlias;
+  }
+
+  /**
+   * @return the terms of the <code>ORDER BY</code> clause, empty if there is none.
+   */
+  List<OrderTerm> getOrderTerms() {
+    return orderTerms;
+  }
+
+  /**
+   * Builds the query to send to a shard, which requests the rows of the offset along with the limited ones, and
+   * refers to the bucket of the shard rather than the one the statement was built for.
+   *
+   * @param bucketName the name of the bucket the statement was built for.
+   * @param shardBucketName the name of the bucket of the shard.
+   * @return the query of the shard.
+   */
+  N1qlQuery forShard(String bucketName, String shardBucketName) {
+    String shardStatement = this.shardStatement;
+    if (!bucketName.equals(shardBucketName)) {
+      shardStatement = shardStatement.replace("`" + bucketName + "`", "`" + shardBucketName + "`");
+    }
+    if (shardStatement.equals(statement)) {
+      return query;
+    }
+    if (query instanceof ParameterizedN1qlQuery) {
+      ParameterizedN1qlQuery parameterized = (ParameterizedN1qlQuery) query;
+      return parameterized.isPositional()
+          ? N1qlQuery.parameterized(shardStatement, (JsonArray) parameterized.statementParameters(), query.params())
+          : N1qlQuery.parameterized(shardStatement, (JsonObject) parameterized.statementParameters(), query.params());
+    }
+    return N1qlQuery.simple(shardStatement, query.params());
+  }
+
+  /**
+   * Gathers the results of the shards: merge-sorts them if the statement is ordered, then skips the offset and
+   * applies the limit.
+   *
+   * @param results the results of each shard, in the statement's order.
+   * @param reader reads the value of a path in a result.
+   * @return the gathered results.
+   */
+  <T> List<T> merge(List<List<T>> results, final ValueReader<? super T> reader) {
+    int size = 0;
+    for (List<T> result : results) {
+      size += result.size();
+    }
+    long end = limit < 0 ? size : Math.min(size, offset + limit);
+    List<T> merged = new ArrayList<T>((int) Math.max(0, end - offset));
+    if (offset >= end) {
+      return merged;
+    }
+
+    Iterator<T> iterator;
+    if (orderTerms.isEmpty()) {
+      List<T> all = new ArrayList<T>(size);
+      for (List<T> result : results) {
+        all.addAll(result);
+      }
+      iterator = all.iterator();
+    } else {
+      iterator = new MergeIterator<T>(results, reader);
+    }
+    for (long i = 0; i < end && iterator.hasNext(); i++) {
+      T next = iterator.next();
+      if (i >= offset) {
+        merged.add(next);
+      }
+    }
+    return merged;
+  }
+
+  private List<OrderTerm> parseOrderBy(String orderBy) {
+    List<OrderTerm> terms = new ArrayList<OrderTerm>();
+    for (String term : splitTopLevel(orderBy)) {
+      String expression = term.trim();
+      boolean descending = false;
+      Matcher direction = DIRECTION.matcher(expression);
+      if (direction.find()) {
+        descending = direction.group(1).equalsIgnoreCase("DESC");
+        expression = expression.substring(0, direction.start()).trim();
+      }
+      List<String> path = parsePath(expression);
+      if (path == null) {
+        throw ShardedCouchbaseOperations.unsupported("N1QL ORDER BY terms other than paths, like " + expression + ",");
+      }
+      terms.add(new OrderTerm(path, descending));
+    }
+    return terms;
+  }
+
+  /**
+   * Orders the rows of a <code>RAW</code> projection on their own value, the first term being the projected
+   * expression: the rows it ties are equal, so that the other terms can't change their merged order.
+   */
+  private static List<OrderTerm> orderByRawValue(String rawExpression, List<OrderTerm> terms) {
+    List<String> projected = parsePath(rawExpression);
+    OrderTerm first = terms.get(0);
+    if (projected == null || !samePath(projected, first.getPath())) {
+      throw ShardedCouchbaseOperations.unsupported("N1QL RAW projections ordered on another expression than the"
+          + " projected one");
+    }
+    return Collections.singletonList(new OrderTerm(Collections.<String>emptyList(), first.isDescending()));
+  }
+
+  /**
+   * @return true if the paths are equal, one of them possibly starting with the alias of the bucket.
+   */
+  private static boolean samePath(List<String> left, List<String> right) {
+    if (left.size() == right.size() + 1) {
+      return left.subList(1, left.size()).equals(right);
+    }
+    if (right.size() == left.size() + 1) {
+      return right.subList(1, right.size()).equals(left);
+    }
+    return left.equals(right);
+  }
+
+  /**
+   * Parses a path of identifiers like <code>`b`.`address`.city</code>, returning null for other expressions.
+   */
+  static List<String> parsePath(String expression) {
+    if (META_ID.matcher(expression).matches()) {
+      return ID_PATH;
+    }
+    List<String> path = new ArrayList<String>();
+    Matcher identifier = IDENTIFIER.matcher(expression);
+    int position = 0;
+    while (position < expression.length()) {
+      if (!identifier.find(position) || identifier.start() != position) {
+        return null;
+      }
+      path.add(identifier.group(1) != null ? identifier.group(1) : identifier.group(2));
+      position = identifier.end();
+      if (position < expression.length()) {
+        if (expression.charAt(position) != '.') {
+          return null;
+        }
+        position++;
+      }
+    }
+    return path.isEmpty() ? null : path;
+  }
+
+  private long resolveNumber(String clause, String expression) {
+    String value = expression.trim();
+    Object resolved = value;
+    if (value.startsWith("$")) {
+      JsonObject n1ql = query.n1ql();
+      String name = value.substring(1);
+      if (name.matches("\\d+")) {
+        JsonArray args = n1ql.getArray("args");
+        int index = Integer.parseInt(name) - 1;
+        resolved = args != null && index >= 0 && index < args.size() ? args.get(index) : null;
+      } else {
+        resolved = n1ql.get(value);
+      }
+    }
+    if (resolved instanceof Number) {
+      return ((Number) resolved).longValue();
+    }
+    if (resolved instanceof String && ((String) resolved).matches("\\d+")) {
+      return Long.parseLong((String) resolved);
+    }
+    throw ShardedCouchbaseOperations.unsupported("N1QL " + clause + " values other than numbers and parameters, like "
+        + value + ",");
+  }
+
+  private static List<String> splitTopLevel(String list) {
+    List<String> parts = new ArrayList<String>();
+    int depth = 0;
+    int start = 0;
+    char quote = 0;
+    for (int i = 0; i < list.length(); i++) {
+      char c = list.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'' || c == '`') {
+        quote = c;
+      } else if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        parts.add(list.substring(start, i));
+        start = i + 1;
+      }
+    }
+    parts.add(list.substring(start));
+    return parts;
+  }
+
+  /**
+   * Compares two values in the N1QL collation order: missing, null, false, true, numbers, strings, arrays, objects.
+   * Values of other types compare naturally when they are of the same type, and as equal otherwise.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static int compareValues(Object left, Object right) {
+    int leftRank = rank(left);
+    int rightRank = rank(right);
+    if (leftRank != rightRank) {
+      return leftRank < rightRank ? -1 : 1;
+    }
+    if (left instanceof Number && right instanceof Number) {
+      return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+    }
+    if (left instanceof Collection || left instanceof JsonArray) {
+      Iterator<?> leftElements = elements(left);
+      Iterator<?> rightElements = elements(right);
+      while (leftElements.hasNext() && rightElements.hasNext()) {
+        int compared = compareValues(leftElements.next(), rightElements.next());
+        if (compared != 0) {
+          return compared;
+        }
+      }
+      return Boolean.compare(leftElements.hasNext(), rightElements.hasNext());
+    }
+    if (left instanceof Comparable && left.getClass().equals(right.getClass())) {
+      return ((Comparable) left).compareTo(right);
+    }
+    return 0;
+  }
+
+  private static int rank(Object value) {
+    if (value == MISSING) {
+      return 0;
+    } else if (value == null) {
+      return 1;
+    } else if (value instanceof Boolean) {
+      return 2;
+    } else if (value instanceof Number) {
+      return 3;
+    } else if (value instanceof CharSequence || value instanceof Enum) {
+      return 4;
+    } else if (value instanceof Collection || value instanceof JsonArray || value.getClass().isArray()) {
+      return 5;
+    } else if (value instanceof Map || value instanceof JsonObject) {
+      return 6;
+    }
+    return 3;
+  }
+
+  private static Iterator<?> elements(Object array) {
+    return array instanceof JsonArray ? ((JsonArray) array).iterator() : ((Collection<?>) array).iterator();
+  }
+
+  /**
+   * @return the marker of a value missing from a result.
+   */
+  static Object missing() {
+    return MISSING;
+  }
+
+  /**
+   * Reads the value of a path in a result, returning {@link ScatterGatherQuery#missing()} if it has none. An empty
+   * path reads the value of the result itself.
+   */
+  interface ValueReader<T> {
+
+    Object read(T result, List<String> path);
+  }
+
+  /**
+   * A term of the <code>ORDER BY</code> clause.
+   */
+  static final class OrderTerm {
+
+    private final List<String> path;
+    private final boolean descending;
+
+    OrderTerm(List<String> path, boolean descending) {
+      this.path = path;
+      this.descending = descending;
+    }
+
+    /**
+     * @return the path of the ordering value, empty to order on the value of the results themselves.
+     */
+    List<String> getPath() {
+      return path;
+    }
+
+    boolean isDescending() {
+      return descending;
+    }
+  }
+
+  /**
+   * Merges the ordered results of the shards, reading the ordering values of each result once.
+   */
+  private final class MergeIterator<T> implements Iterator<T> {
+
+    private final List<Iterator<T>> shards = new ArrayList<Iterator<T>>();
+    private final PriorityQueue<Head<T>> heads;
+    private final ValueReader<? super T> reader;
+
+    MergeIterator(List<List<T>> results, ValueReader<? super T> reader) {
+      this.reader = reader;
+      this.heads = new PriorityQueue<Head<T>>(Math.max(1, results.size()), (left, right) -> {
+        for (int i = 0; i < orderTerms.size(); i++) {
+          int compared = compareValues(left.values[i], right.values[i]);
+          if (compared != 0) {
+            return orderTerms.get(i).isDescending() ? -compared : compared;
+          }
+        }
+        return Integer.compare(left.shard, right.shard);
+      });
+      for (int i = 0; i < results.size(); i++) {
+        shards.add(results.get(i).iterator());
+        advance(i);
+      }
+    }
+
+    private void advance(int shard) {
+      Iterator<T> iterator = shards.get(shard);
+      if (iterator.hasNext()) {
+        T result = iterator.next();
+        Object[] values = new Object[orderTerms.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = reader.read(result, orderTerms.get(i).getPath());
+        }
+        heads.add(new Head<T>(result, values, shard));
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      Head<T> head = heads.poll();
+      advance(head.shard);
+      return head.result;
+    }
+  }
+
+  private static final class Head<T> {
+
+    private final T result;
+    private final Object[] values;
+    private final int shard;
+
+    private Head(T result, Object[] values, int shard) {
+      this.result = result;
+      this.values = values;
+      this.shard = shard;
+    }
+  }
+
+  /**
+   * Locates the top level clauses of a statement, outside of parentheses and quotes.
+   */
+  private static final class Clauses {
+
+    private String projection;
+    private String orderBy;
+    private String limit;
+    private String offset;
+    private boolean grouped;
+    private boolean setOperation;
+    /** The start of the first of the ORDER BY, LIMIT and OFFSET clauses, or the length of the statement */
+    private int pagingStart;
+
+    private Clauses(String statement) {
+      int depth = 0;
+      char quote = 0;
+      int orderStart = -1;
+      int limitStart = -1;
+      int offsetStart = -1;
+      int selectEnd = -1;
+      for (int i = 0; i < statement.length(); i++) {
+        char c = statement.charAt(i);
+        if (quote != 0) {
+          if (c == quote) {
+            quote = 0;
+          }
+        } else if (c == '"' || c == '\'' || c == '`') {
+          quote = c;
+        } else if (c == '(' || c == '[' || c == '{') {
+          depth++;
+        } else if (c == ')' || c == ']' || c == '}') {
+          depth--;
+        } else if (depth == 0 && isWordStart(statement, i)) {
+          if (selectEnd < 0 && keywordAt(statement, i, "SELECT")) {
+            selectEnd = i + 6;
+          } else if (selectEnd >= 0 && projection == null && keywordAt(statement, i, "FROM")) {
+            projection = statement.substring(selectEnd, i);
+          } else if (keywordAt(statement, i, "ORDER") && keywordAfter(statement, i + 5, "BY")) {
+            orderStart = i;
+          } else if (keywordAt(statement, i, "GROUP") && keywordAfter(statement, i + 5, "BY")) {
+            grouped = true;
+          } else if (keywordAt(statement, i, "LIMIT")) {
+            limitStart = i;
+          } else if (keywordAt(statement, i, "OFFSET")) {
+            offsetStart = i;
+          } else if (keywordAt(statement, i, "UNION") || keywordAt(statement, i, "INTERSECT")
+              || keywordAt(statement, i, "EXCEPT")) {
+            setOperation = true;
+            break;
+          }
+        }
+      }
+
+      pagingStart = statement.length();
+      for (int start : new int[] { orderStart, limitStart, offsetStart }) {
+        if (start >= 0) {
+          pagingStart = Math.min(pagingStart, start);
+        }
+      }
+      if (orderStart >= 0) {
+        int byEnd = statement.toUpperCase().indexOf("BY", orderStart + 5) + 2;
+        orderBy = statement.substring(byEnd, clauseEnd(statement, orderStart, limitStart, offsetStart));
+      }
+      if (limitStart >= 0) {
+        limit = statement.substring(limitStart + 5, clauseEnd(statement, limitStart, orderStart, offsetStart));
+      }
+      if (offsetStart >= 0) {
+        offset = statement.substring(offsetStart + 6, clauseEnd(statement, offsetStart, orderStart, limitStart));
+      }
+    }
+
+    private static int clauseEnd(String statement, int start, int... others) {
+      int end = statement.length();
+      for (int other : others) {
+        if (other > start) {
+          end = Math.min(end, other);
+        }
+      }
+      return end;
+    }
+
+    private static boolean isWordStart(String statement, int i) {
+      return i == 0 || !Character.isLetterOrDigit(statement.charAt(i - 1)) && statement.charAt(i - 1) != '_';
+    }
+
+    private static boolean keywordAt(String statement, int i, String keyword) {
+      int end = i + keyword.length();
+      return statement.regionMatches(true, i, keyword, 0, keyword.length())
+          && (end == statement.length() || !Character.isLetterOrDigit(statement.charAt(end))
+          && statement.charAt(end) != '_');
+    }
+
+    private static boolean keywordAfter(String statement, int i, String keyword) {
+      while (i < statement.length() && Character.isWhitespace(statement.charAt(i))) {
+        i++;
+      }
+      return keywordAt(statement, i, keyword);
+    }
+  }
+}
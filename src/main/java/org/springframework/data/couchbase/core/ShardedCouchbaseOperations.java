@@ -0,0 +1,708 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.cluster.ClusterInfo;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.DefaultAsyncN1qlQueryRow;
+import com.couchbase.client.java.query.DefaultN1qlQueryRow;
+import com.couchbase.client.java.query.N1qlMetrics;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.N1qlQueryResult;
+import com.couchbase.client.java.query.N1qlQueryRow;
+import com.couchbase.client.java.transcoder.JacksonTransformers;
+import com.couchbase.client.java.view.SpatialViewQuery;
+import com.couchbase.client.java.view.SpatialViewResult;
+import com.couchbase.client.java.view.ViewQuery;
+import com.couchbase.client.java.view.ViewResult;
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import org.springframework.beans.ConfigurablePropertyAccessor;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.couchbase.core.convert.CouchbaseConverter;
+import org.springframework.data.couchbase.core.mapping.CouchbaseDocument;
+import org.springframework.data.couchbase.core.mapping.CouchbasePersistentEntity;
+import org.springframework.data.couchbase.core.mapping.CouchbasePersistentProperty;
+import org.springframework.data.couchbase.core.mapping.KeySettings;
+import org.springframework.data.couchbase.core.mapping.id.GeneratedValue;
+import org.springframework.data.couchbase.core.query.Consistency;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mapping.model.ConvertingPropertyAccessor;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link CouchbaseOperations} spreading the documents across several shards, each being a {@link CouchbaseOperations}
+ * of its own bucket or cluster, so that an entity type can outgrow a single bucket. It can back repositories like any
+ * other {@link CouchbaseOperations}, for instance by
+ * {@link org.springframework.data.couchbase.repository.config.RepositoryOperationsMapping#mapEntity(Class,
+ * CouchbaseOperations) mapping} the sharded entity types to it.
+ * <p>
+ * The key/value operations are routed to the shard of the document id, chosen by a consistent hash of the id: adding
+ * a shard at the end of the list only moves the documents it takes over, about <code>1/n</code> of them, while removing
+ * or reordering shards moves most documents. The batch operations are split per shard and run on the shards in
+ * parallel. The ids of entities with a {@link GeneratedValue generated id} are generated before routing them, and set
+ * on the entity.
+ * <p>
+ * The N1QL queries are scattered to all the shards in parallel, and their results gathered: ordered queries are
+ * merge-sorted, paged and limited ones are requested from each shard up to the last requested row, then skipped and
+ * limited once merged, and the counts of <code>SELECT COUNT(*)</code> statements, like the ones of the repositories,
+ * are summed. The statements whose results can't be gathered exactly, like other aggregations and <code>GROUP
+ * BY</code> queries, are rejected with an {@link InvalidDataAccessApiUsageException}. Statements are expected to refer to the bucket of the first shard, which is replaced by the bucket of each shard
+ * when their names differ.
+ * <p>
+ * The view queries and {@link #execute(BucketCallback) bucket callbacks} can't be spread and aren't supported; use
+ * {@link #getShard(String)} or {@link #getShards()} for them. The converter, bucket, cluster information and default
+ * consistency are the ones of the first shard, and all shards are expected to share the same mapping configuration.
+ * The indexes the repositories need must exist on each shard.
+ *
+ * @since 3.2
+ */
+public class ShardedCouchbaseOperations implements CouchbaseOperations {
+
+  private final List<CouchbaseOperations> shards;
+  private Scheduler scheduler = Schedulers.io();
+
+  /**
+   * @param shards the operations of each shard, whose order must not change once documents were written.
+   */
+  public ShardedCouchbaseOperations(CouchbaseOperations... shards) {
+    this(Arrays.asList(shards));
+  }
+
+  /**
+   * @param shards the operations of each shard, whose order must not change once documents were written.
+   */
+  public ShardedCouchbaseOperations(List<? extends CouchbaseOperations> shards) {
+    Assert.notEmpty(shards, "At least one shard is required");
+    Assert.noNullElements(shards.toArray(), "Shards must not be null");
+    this.shards = Collections.unmodifiableList(new ArrayList<CouchbaseOperations>(shards));
+  }
+
+  /**
+   * Set the scheduler the operations of the shards are run on, when several shards are involved ({@link
+   * Schedulers#io()} by default).
+   *
+   * @param scheduler the scheduler.
+   */
+  public void setScheduler(Scheduler scheduler) {
+    Assert.notNull(scheduler, "Scheduler must not be null");
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * @return the operations of each shard.
+   */
+  public List<CouchbaseOperations> getShards() {
+    return shards;
+  }
+
+  /**
+   * @param id the id of a document.
+   * @return the operations of the shard the document is stored in.
+   */
+  public CouchbaseOperations getShard(String id) {
+    return shards.get(shardIndex(id, shards.size()));
+  }
+
+  /**
+   * Hashes an id with 64 bits FNV-1a, then picks the shard with Lamping and Veach's jump consistent hash.
+   */
+  static int shardIndex(String id, int shardCount) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    long shard = -1;
+    long next = 0;
+    while (next < shardCount) {
+      shard = next;
+      hash = hash * 2862933555777941757L + 1;
+      next = (long) ((shard + 1) * ((double) (1L << 31) / (double) ((hash >>> 33) + 1)));
+    }
+    return (int) shard;
+  }
+
+  @Override
+  public void save(Object objectToSave) {
+    shardOf(objectToSave, true).save(objectToSave);
+  }
+
+  @Override
+  public void save(Object objectToSave, PersistTo persistTo, ReplicateTo replicateTo) {
+    shardOf(objectToSave, true).save(objectToSave, persistTo, replicateTo);
+  }
+
+  @Override
+  public void save(Collection<?> batchToSave) {
+    scatterBatch(batchToSave, true, (shard, batch) -> shard.save(batch));
+  }
+
+  @Override
+  public void save(Collection<?> batchToSave, PersistTo persistTo, ReplicateTo replicateTo) {
+    scatterBatch(batchToSave, true, (shard, batch) -> shard.save(batch, persistTo, replicateTo));
+  }
+
+  @Override
+  public void insert(Object objectToInsert) {
+    shardOf(objectToInsert, true).insert(objectToInsert);
+  }
+
+  @Override
+  public void insert(Object objectToInsert, PersistTo persistTo, ReplicateTo replicateTo) {
+    shardOf(objectToInsert, true).insert(objectToInsert, persistTo, replicateTo);
+  }
+
+  @Override
+  public void insert(Collection<?> batchToInsert) {
+    scatterBatch(batchToInsert, true, (shard, batch) -> shard.insert(batch));
+  }
+
+  @Override
+  public void insert(Collection<?> batchToInsert, PersistTo persistTo, ReplicateTo replicateTo) {
+    scatterBatch(batchToInsert, true, (shard, batch) -> shard.insert(batch, persistTo, replicateTo));
+  }
+
+  @Override
+  public void update(Object objectToUpdate) {
+    shardOf(objectToUpdate, false).update(objectToUpdate);
+  }
+
+  @Override
+  public void update(Object objectToUpdate, PersistTo persistTo, ReplicateTo replicateTo) {
+    shardOf(objectToUpdate, false).update(objectToUpdate, persistTo, replicateTo);
+  }
+
+  @Override
+  public void update(Collection<?> batchToUpdate) {
+    scatterBatch(batchToUpdate, false, (shard, batch) -> shard.update(batch));
+  }
+
+  @Override
+  public void update(Collection<?> batchToUpdate, PersistTo persistTo, ReplicateTo replicateTo) {
+    scatterBatch(batchToUpdate, false, (shard, batch) -> shard.update(batch, persistTo, replicateTo));
+  }
+
+  @Override
+  public <T> T findById(String id, Class<T> entityClass) {
+    return getShard(id).findById(id, entityClass);
+  }
+
+  @Override
+  public boolean exists(String id) {
+    return getShard(id).exists(id);
+  }
+
+  @Override
+  public long counter(String id, long delta, long initial) {
+    return getShard(id).counter(id, delta, initial);
+  }
+
+  @Override
+  public long counter(String id, Class<?> entityClass, String property, long delta) {
+    return getShard(id).counter(id, entityClass, property, delta);
+  }
+
+  @Override
+  public Map<String, Boolean> touch(Collection<String> ids, int expiry) {
+    return scatterIds(ids, (shard, shardIds) -> shard.touch(shardIds, expiry));
+  }
+
+  @Override
+  public <T> Map<String, T> findAllByIdAndTouch(Collection<String> ids, Class<T> entityClass, int expiry) {
+    return scatterIds(ids, (shard, shardIds) -> shard.findAllByIdAndTouch(shardIds, entityClass, expiry));
+  }
+
+  @Override
+  public void remove(Object objectToRemove) {
+    shardOf(objectToRemove, false).remove(objectToRemove);
+  }
+
+  @Override
+  public void remove(Object objectToRemove, PersistTo persistTo, ReplicateTo replicateTo) {
+    shardOf(objectToRemove, false).remove(objectToRemove, persistTo, replicateTo);
+  }
+
+  @Override
+  public void remove(Collection<?> batchToRemove) {
+    scatterBatch(batchToRemove, false, (shard, batch) -> shard.remove(batch));
+  }
+
+  @Override
+  public void remove(Collection<?> batchToRemove, PersistTo persistTo, ReplicateTo replicateTo) {
+    scatterBatch(batchToRemove, false, (shard, batch) -> shard.remove(batch, persistTo, replicateTo));
+  }
+
+  @Override
+  public <T> List<T> findByN1QL(N1qlQuery n1ql, Class<T> entityClass) {
+    ScatterGatherQuery query = new ScatterGatherQuery(n1ql);
+    List<List<T>> results = scatterQuery(query, (shard, shardQuery) -> shard.findByN1QL(shardQuery, entityClass));
+    return query.merge(results, this::readValue);
+  }
+
+  @Override
+  public <T> List<T> findByN1QLProjection(N1qlQuery n1ql, Class<T> fragmentClass) {
+    ScatterGatherQuery query = new ScatterGatherQuery(n1ql);
+    List<List<T>> results = scatterQuery(query,
+        (shard, shardQuery) -> shard.findByN1QLProjection(shardQuery, fragmentClass));
+    if (query.getCountAlias() != null) {
+      return sumCounts(results, query.getCountAlias());
+    }
+    return query.merge(results, this::readValue);
+  }
+
+  @Override
+  public N1qlQueryResult queryN1QL(N1qlQuery n1ql) {
+    ScatterGatherQuery query = new ScatterGatherQuery(n1ql);
+    List<N1qlQueryResult> results = scatter(shards, shard -> shard.queryN1QL(query.forShard(bucketName(),
+        shard.getCouchbaseBucket().name())));
+    List<List<N1qlQueryRow>> rows = new ArrayList<List<N1qlQueryRow>>(results.size());
+    for (N1qlQueryResult result : results) {
+      if (!result.finalSuccess()) {
+        return result;
+      }
+      rows.add(result.allRows());
+    }
+    List<N1qlQueryRow> merged;
+    if (query.getCountAlias() != null) {
+      long count = 0;
+      for (N1qlQueryRow row : flatten(rows)) {
+        count += row.value().getLong(query.getCountAlias());
+      }
+      JsonObject value = JsonObject.create().put(query.getCountAlias(), count);
+      merged = Collections.<N1qlQueryRow>singletonList(new DefaultN1qlQueryRow(
+          new DefaultAsyncN1qlQueryRow(value.toString().getBytes(StandardCharsets.UTF_8))));
+    } else {
+      merged = query.merge(rows, (row, path) -> path.isEmpty() ? rawValue(row) : readValue(row.value(), path));
+    }
+    return new GatheredN1qlQueryResult(merged, results.get(0));
+  }
+
+  @Override
+  public <T> List<T> findByView(ViewQuery query, Class<T> entityClass) {
+    throw unsupported("View queries");
+  }
+
+  @Override
+  public ViewResult queryView(ViewQuery query) {
+    throw unsupported("View queries");
+  }
+
+  @Override
+  public <T> List<T> findBySpatialView(SpatialViewQuery query, Class<T> entityClass) {
+    throw unsupported("Spatial view queries");
+  }
+
+  @Override
+  public SpatialViewResult querySpatialView(SpatialViewQuery query) {
+    throw unsupported("Spatial view queries");
+  }
+
+  @Override
+  public <T> T execute(BucketCallback<T> action) {
+    throw unsupported("Bucket callbacks");
+  }
+
+  @Override
+  public Bucket getCouchbaseBucket() {
+    return shards.get(0).getCouchbaseBucket();
+  }
+
+  @Override
+  public ClusterInfo getCouchbaseClusterInfo() {
+    return shards.get(0).getCouchbaseClusterInfo();
+  }
+
+  @Override
+  public CouchbaseConverter getConverter() {
+    return shards.get(0).getConverter();
+  }
+
+  @Override
+  public Consistency getDefaultConsistency() {
+    return shards.get(0).getDefaultConsistency();
+  }
+
+  /**
+   * Sets the key settings of every shard.
+   */
+  @Override
+  public void keySettings(KeySettings settings) {
+    for (CouchbaseOperations shard : shards) {
+      shard.keySettings(settings);
+    }
+  }
+
+  @Override
+  public KeySettings keySettings() {
+    return shards.get(0).keySettings();
+  }
+
+  @Override
+  public String getGeneratedId(Object entity) {
+    return shards.get(0).getGeneratedId(entity);
+  }
+
+  static InvalidDataAccessApiUsageException unsupported(String operation) {
+    return new InvalidDataAccessApiUsageException(operation + " are not supported across shards, use the operations"
+        + " of a single shard instead");
+  }
+
+  private String bucketName() {
+    return getCouchbaseBucket().name();
+  }
+
+  /**
+   * Finds the shard of an entity, or of an id given as a String.
+   *
+   * @param object the entity or id.
+   * @param assignGeneratedId true to generate the id of an entity which has none yet, and set it, so that the shard
+   *   stores the document under the id it was routed by.
+   */
+  private CouchbaseOperations shardOf(Object object, boolean assignGeneratedId) {
+    return shards.get(shardIndexOf(object, assignGeneratedId));
+  }
+
+  private int shardIndexOf(Object object, boolean assignGeneratedId) {
+    if (shards.size() == 1) {
+      return 0;
+    }
+    if (object instanceof String) {
+      return shardIndex((String) object, shards.size());
+    }
+    CouchbaseConverter converter = getConverter();
+    CouchbasePersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(object.getClass());
+    CouchbasePersistentProperty idProperty = entity.getIdProperty();
+    String id = null;
+    if (idProperty != null) {
+      ConvertingPropertyAccessor<Object> accessor = new ConvertingPropertyAccessor<Object>(
+          entity.getPropertyAccessor(object), converter.getConversionService());
+      id = accessor.getProperty(idProperty, String.class);
+      if (assignGeneratedId && idProperty.isAnnotationPresent(GeneratedValue.class) && (id == null || id.isEmpty())) {
+        //only the converter generates ids, from the parts of the entity they are made of
+        CouchbaseDocument converted = new CouchbaseDocument();
+        converter.write(object, converted);
+        id = converted.getId();
+        accessor.setProperty(idProperty, id);
+      }
+    }
+    if (id == null) {
+      throw new InvalidDataAccessApiUsageException("The " + object.getClass().getName() + " entity has no id to route"
+          + " it by");
+    }
+    return shardIndex(CouchbaseTemplate.addCommonPrefixAndSuffix(keySettings(), id), shards.size());
+  }
+
+  private void scatterBatch(Collection<?> batch, boolean assignGeneratedIds, BatchOperation operation) {
+    List<List<Object>> batches = new ArrayList<List<Object>>(shards.size());
+    for (int i = 0; i < shards.size(); i++) {
+      batches.add(new ArrayList<Object>());
+    }
+    for (Object object : batch) {
+      batches.get(shardIndexOf(object, assignGeneratedIds)).add(object);
+    }
+    final List<Integer> targets = new ArrayList<Integer>(shards.size());
+    for (int i = 0; i < batches.size(); i++) {
+      if (!batches.get(i).isEmpty()) {
+        targets.add(i);
+      }
+    }
+    scatter(targets, shard -> {
+      operation.execute(shards.get(shard), batches.get(shard));
+      return Boolean.TRUE;
+    });
+  }
+
+  /**
+   * Splits ids by shard, and merges the results of the shards in the order of the ids.
+   */
+  private <V> Map<String, V> scatterIds(Collection<String> ids, IdsOperation<V> operation) {
+    final List<List<String>> batches = new ArrayList<List<String>>(shards.size());
+    for (int i = 0; i < shards.size(); i++) {
+      batches.add(new ArrayList<String>());
+    }
+    for (String id : ids) {
+      batches.get(shardIndex(id, shards.size())).add(id);
+    }
+    final List<Integer> targets = new ArrayList<Integer>(shards.size());
+    for (int i = 0; i < batches.size(); i++) {
+      if (!batches.get(i).isEmpty()) {
+        targets.add(i);
+      }
+    }
+    final Map<String, Throwable> errors = new ConcurrentHashMap<String, Throwable>();
+    List<Map<String, V>> results = scatter(targets, shard -> {
+      try {
+        return operation.execute(shards.get(shard), batches.get(shard));
+      } catch (BulkOperationException e) {
+        //the other shards complete nevertheless, the errors of all shards are reported together
+        errors.putAll(e.getErrors());
+        return partialResults(e);
+      }
+    });
+    Map<String, V> merged = new LinkedHashMap<String, V>();
+    for (Map<String, V> result : results) {
+      merged.putAll(result);
+    }
+    Map<String, V> ordered = new LinkedHashMap<String, V>(merged.size());
+    Map<String, Throwable> orderedErrors = new LinkedHashMap<String, Throwable>(errors.size());
+    for (String id : ids) {
+      if (merged.containsKey(id)) {
+        ordered.put(id, merged.get(id));
+      } else if (errors.containsKey(id)) {
+        orderedErrors.put(id, errors.get(id));
+      }
+    }
+    if (!orderedErrors.isEmpty()) {
+      throw new BulkOperationException(ordered, orderedErrors);
+    }
+    return ordered;
+  }
+
+  /**
+   * @return the results of the operations of a shard which succeeded, which have the type of the results the shard
+   *   returns when none fails.
+   */
+  @SuppressWarnings("unchecked")
+  private static <V> Map<String, V> partialResults(BulkOperationException e) {
+    return (Map<String, V>) e.getResults();
+  }
+
+  private <T> List<List<T>> scatterQuery(ScatterGatherQuery query, QueryOperation<T> operation) {
+    final String bucketName = bucketName();
+    return scatter(shards, shard -> operation.execute(shard, query.forShard(bucketName,
+        shard.getCouchbaseBucket().name())));
+  }
+
+  /**
+   * Calls each target on the scheduler, returning their results in the order of the targets.
+   */
+  private <S, R> List<R> scatter(List<S> targets, Func1<S, R> call) {
+    if (targets.size() == 1) {
+      return Collections.singletonList(call.call(targets.get(0)));
+    }
+    return Observable.from(targets)
+        .concatMapEager(target -> Observable.fromCallable(() -> call.call(target)).subscribeOn(scheduler))
+        .toList()
+        .toBlocking()
+        .single();
+  }
+
+  private static <T> List<T> flatten(List<List<T>> results) {
+    List<T> all = new ArrayList<T>();
+    for (List<T> result : results) {
+      all.addAll(result);
+    }
+    return all;
+  }
+
+  /**
+   * Sums the counts of the shards into the first count fragment.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> List<T> sumCounts(List<List<T>> results, String alias) {
+    List<T> fragments = flatten(results);
+    if (fragments.isEmpty()) {
+      return fragments;
+    }
+    long count = 0;
+    for (T fragment : fragments) {
+      Object value = readValue(fragment, Collections.singletonList(alias));
+      if (value instanceof Number) {
+        count += ((Number) value).longValue();
+      }
+    }
+    T total = fragments.get(0);
+    if (total instanceof Map) {
+      ((Map<String, Object>) total).put(alias, count);
+    } else {
+      ConfigurablePropertyAccessor accessor = PropertyAccessorFactory.forDirectFieldAccess(total);
+      accessor.setPropertyValue(alias, count);
+    }
+    return Collections.singletonList(total);
+  }
+
+  /**
+   * Decodes a row of a <code>RAW</code> projection, which may not be an object.
+   */
+  private static Object rawValue(N1qlQueryRow row) {
+    try {
+      return JacksonTransformers.MAPPER.readValue(row.byteValue(), Object.class);
+    } catch (IOException e) {
+      throw new CouchbaseQueryExecutionException("Unable to decode the N1QL row " + row, e);
+    }
+  }
+
+  /**
+   * Reads the value of a path in a result, which may start with the alias of the bucket.
+   */
+  private Object readValue(Object result, List<String> path) {
+    Object value = readValue(result, path, 0);
+    if (value == ScatterGatherQuery.missing() && path.size() > 1) {
+      value = readValue(result, path, 1);
+    }
+    return value;
+  }
+
+  private Object readValue(Object value, List<String> path, int from) {
+    for (int i = from; i < path.size() && value != ScatterGatherQuery.missing(); i++) {
+      value = readProperty(value, path.get(i));
+    }
+    return value instanceof Enum ? ((Enum<?>) value).name() : value;
+  }
+
+  private Object readProperty(Object target, String name) {
+    if (target == null) {
+      return ScatterGatherQuery.missing();
+    }
+    if (target instanceof JsonObject) {
+      JsonObject json = (JsonObject) target;
+      return json.containsKey(name) ? json.get(name) : ScatterGatherQuery.missing();
+    }
+    if (target instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) target;
+      return map.containsKey(name) ? map.get(name) : ScatterGatherQuery.missing();
+    }
+
+    MappingContext<? extends CouchbasePersistentEntity<?>, CouchbasePersistentProperty> mappingContext =
+        getConverter().getMappingContext();
+    if (mappingContext.hasPersistentEntityFor(target.getClass())) {
+      CouchbasePersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(target.getClass());
+      CouchbasePersistentProperty idProperty = entity.getIdProperty();
+      if (idProperty != null && ScatterGatherQuery.ID_PATH.get(0).equals(name)) {
+        return entity.getPropertyAccessor(target).getProperty(idProperty);
+      }
+      for (CouchbasePersistentProperty property : entity) {
+        if (property.getFieldName().equals(name)) {
+          return entity.getPropertyAccessor(target).getProperty(property);
+        }
+      }
+      return ScatterGatherQuery.missing();
+    }
+
+    ConfigurablePropertyAccessor accessor = PropertyAccessorFactory.forDirectFieldAccess(target);
+    return accessor.isReadableProperty(name) ? accessor.getPropertyValue(name) : ScatterGatherQuery.missing();
+  }
+
+  private interface BatchOperation {
+
+    void execute(CouchbaseOperations shard, Collection<?> batch);
+  }
+
+  private interface IdsOperation<V> {
+
+    Map<String, V> execute(CouchbaseOperations shard, Collection<String> ids);
+  }
+
+  private interface QueryOperation<T> {
+
+    List<T> execute(CouchbaseOperations shard, N1qlQuery shardQuery);
+  }
+
+  /**
+   * The merged rows of the shards, with the metrics and identifiers of the first shard's result.
+   */
+  private static final class GatheredN1qlQueryResult implements N1qlQueryResult {
+
+    private final List<N1qlQueryRow> rows;
+    private final N1qlQueryResult first;
+
+    private GatheredN1qlQueryResult(List<N1qlQueryRow> rows, N1qlQueryResult first) {
+      this.rows = rows;
+      this.first = first;
+    }
+
+    @Override
+    public List<N1qlQueryRow> allRows() {
+      return rows;
+    }
+
+    @Override
+    public Iterator<N1qlQueryRow> rows() {
+      return rows.iterator();
+    }
+
+    @Override
+    public Iterator<N1qlQueryRow> iterator() {
+      return rows.iterator();
+    }
+
+    @Override
+    public Object signature() {
+      return first.signature();
+    }
+
+    @Override
+    public N1qlMetrics info() {
+      return first.info();
+    }
+
+    @Override
+    public JsonObject profileInfo() {
+      return first.profileInfo();
+    }
+
+    @Override
+    public boolean parseSuccess() {
+      return true;
+    }
+
+    @Override
+    public boolean finalSuccess() {
+      return true;
+    }
+
+    @Override
+    public String status() {
+      return first.status();
+    }
+
+    @Override
+    public List<JsonObject> errors() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public String requestId() {
+      return first.requestId();
+    }
+
+    @Override
+    public String clientContextId() {
+      return first.clientContextId();
+    }
+  }
+}
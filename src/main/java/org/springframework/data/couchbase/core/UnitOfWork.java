@@ -0,0 +1,339 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.document.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.data.couchbase.core.mapping.CouchbaseDocument;
+import org.springframework.util.Assert;
+
+/**
+ * Records the writes made through a {@link CouchbaseTemplate} by the current thread, and executes them together when
+ * flushed: the {@link CouchbaseOperations#save(Object) saves}, {@link CouchbaseOperations#insert(Object) inserts},
+ * {@link CouchbaseOperations#update(Object) updates} and {@link CouchbaseOperations#remove(Object) removals} made
+ * while the unit of work is active aren't sent to the cluster, but recorded, and {@link #flush()} sends them in
+ * parallel, returning the result of each write. The writes of a same document collapse to the last one, except that
+ * an insert followed by another write stays an insert, a save followed by an update stays a save, an insert followed
+ * by a removal isn't written at all, and a removal followed by a write replaces the document, or upserts it when the
+ * entity isn't versioned.
+ * <p>
+ * The entities are mapped when their write is recorded, and later changes aren't written. Their id is set when the
+ * write is recorded, their version once written. The writes of different documents are executed in no particular
+ * order, and the reads made while the unit of work is active don't see the writes not flushed yet.
+ * <p>
+ * A unit of work is {@link CouchbaseTemplate#beginUnitOfWork() begun} on a template, and bound to the current thread
+ * until {@link #close() closed}, which discards the writes not flushed yet:
+ * <pre>
+ * try (UnitOfWork unitOfWork = template.beginUnitOfWork()) {
+ *   orderRepository.save(order);
+ *   customerRepository.save(customer);
+ *   unitOfWork.commit();
+ * }
+ * </pre>
+ * The methods annotated with {@link WithUnitOfWork} run in a unit of work committed when they return, see
+ * {@link org.springframework.data.couchbase.core.support.UnitOfWorkAdvisor}.
+ *
+ * @since 3.2
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(UnitOfWork.class);
+
+  private static final ThreadLocal<Map<CouchbaseTemplate, UnitOfWork>> CURRENT =
+      new NamedThreadLocal<Map<CouchbaseTemplate, UnitOfWork>>("Couchbase Units of Work");
+
+  private final CouchbaseTemplate template;
+  private final Thread thread = Thread.currentThread();
+  private final Map<String, PendingWrite> writes = new LinkedHashMap<String, PendingWrite>();
+  private int parallelism = 16;
+  private int collapsed;
+  private boolean closed;
+
+  private UnitOfWork(CouchbaseTemplate template) {
+    this.template = template;
+  }
+
+  /**
+   * Begins a unit of work on the template, bound to the current thread.
+   */
+  static UnitOfWork begin(CouchbaseTemplate template) {
+    Map<CouchbaseTemplate, UnitOfWork> units = CURRENT.get();
+    if (units == null) {
+      units = new IdentityHashMap<CouchbaseTemplate, UnitOfWork>();
+      CURRENT.set(units);
+    }
+    Assert.state(!units.containsKey(template), "A unit of work is already active on the template");
+    UnitOfWork unitOfWork = new UnitOfWork(template);
+    units.put(template, unitOfWork);
+    return unitOfWork;
+  }
+
+  /**
+   * @return the unit of work active on the template in the current thread, or null.
+   */
+  static UnitOfWork current(CouchbaseTemplate template) {
+    Map<CouchbaseTemplate, UnitOfWork> units = CURRENT.get();
+    return units == null ? null : units.get(template);
+  }
+
+  /**
+   * @param parallelism the number of writes executed concurrently by a flush, 16 by default.
+   */
+  public void setParallelism(int parallelism) {
+    Assert.isTrue(parallelism > 0, "Parallelism must be positive");
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @return the number of writes recorded and not flushed yet.
+   */
+  public int getPendingCount() {
+    return writes.size();
+  }
+
+  /**
+   * @return the number of writes collapsed with a later write of the same document since the last flush.
+   */
+  public int getCollapsedCount() {
+    return collapsed;
+  }
+
+  /**
+   * @return true if a write of the document is recorded and not flushed yet.
+   */
+  boolean hasPendingWrite(String id) {
+    return writes.containsKey(id);
+  }
+
+  /**
+   * Records a write of an entity, or the removal of a document.
+   */
+  void record(String id, Operation operation, Object entity, CouchbaseDocument converted, Document<String> document,
+              boolean versioned, PersistTo persistTo, ReplicateTo replicateTo) {
+    checkActive();
+    PendingWrite write = new PendingWrite(id, operation, entity, converted, document, versioned, persistTo,
+        replicateTo);
+    PendingWrite previous = writes.get(id);
+    if (previous != null) {
+      collapsed++;
+      if (previous.operation == Operation.INSERT) {
+        if (operation == Operation.REMOVE) {
+          writes.remove(id);
+          return;
+        }
+        write = new PendingWrite(id, Operation.INSERT, entity, converted, document, versioned, persistTo,
+            replicateTo);
+      } else if (previous.operation == Operation.SAVE && operation == Operation.UPDATE) {
+        // the document saved may not exist yet, so it can't be replaced
+        write = new PendingWrite(id, Operation.SAVE, entity, converted, document, versioned, persistTo, replicateTo);
+      } else if (previous.operation == Operation.REMOVE && operation != Operation.REMOVE) {
+        // the document removed still exists until flushed, so it can't be inserted
+        write = versioned
+            ? new PendingWrite(id, Operation.UPDATE, entity, converted, document, true, persistTo, replicateTo)
+            : new PendingWrite(id, Operation.SAVE, entity, converted, document, false, persistTo, replicateTo);
+      }
+    }
+    writes.put(id, write);
+  }
+
+  /**
+   * Executes the writes recorded so far, in parallel, and waits for them to complete. A write failing doesn't prevent
+   * the others from being executed.
+   *
+   * @return the result of each write executed.
+   */
+  public List<Result> flush() {
+    checkActive();
+    if (writes.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<PendingWrite> pending = new ArrayList<PendingWrite>(writes.values());
+    writes.clear();
+    collapsed = 0;
+    List<Result> results = Observable.from(pending)
+        .concatMapEager(write -> execute(write)
+                .map(ignored -> new Result(write.id, write.operation, write.entity, null))
+                .onErrorReturn(error -> new Result(write.id, write.operation, write.entity, error)),
+            parallelism, parallelism)
+        .toList()
+        .toBlocking()
+        .single();
+    return Collections.unmodifiableList(results);
+  }
+
+  private Observable<Object> execute(PendingWrite write) {
+    if (write.operation == Operation.REMOVE) {
+      return template.removeRecorded(write.id, write.entity, write.persistTo, write.replicateTo);
+    }
+    return template.writeRecorded(write.id, write.operation, write.entity, write.converted, write.document,
+        write.versioned, write.persistTo, write.replicateTo);
+  }
+
+  /**
+   * Flushes the writes recorded so far, and closes the unit of work.
+   *
+   * @return the result of each write executed.
+   * @throws UnitOfWorkException if a write failed, once all the writes are executed.
+   */
+  public List<Result> commit() {
+    try {
+      List<Result> results = flush();
+      for (Result result : results) {
+        if (!result.isSuccess()) {
+          throw new UnitOfWorkException(results);
+        }
+      }
+      return results;
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Unbinds the unit of work from the current thread, discarding the writes not flushed yet.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    Assert.state(Thread.currentThread() == thread, "A unit of work must be closed by the thread which began it");
+    closed = true;
+    if (!writes.isEmpty()) {
+      LOGGER.debug("Discarding {} writes not flushed", writes.size());
+      writes.clear();
+    }
+    Map<CouchbaseTemplate, UnitOfWork> units = CURRENT.get();
+    units.remove(template);
+    if (units.isEmpty()) {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * @return true if the unit of work is closed.
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  private void checkActive() {
+    Assert.state(!closed, "The unit of work is closed");
+  }
+
+  /**
+   * The kind of a write.
+   */
+  public enum Operation {
+    SAVE, INSERT, UPDATE, REMOVE
+  }
+
+  /**
+   * The result of a write executed by a flush.
+   */
+  public static final class Result {
+
+    private final String id;
+    private final Operation operation;
+    private final Object entity;
+    private final Throwable error;
+
+    private Result(String id, Operation operation, Object entity, Throwable error) {
+      this.id = id;
+      this.operation = operation;
+      this.entity = entity;
+      this.error = error;
+    }
+
+    /**
+     * @return the id of the document written.
+     */
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * @return the kind of the write.
+     */
+    public Operation getOperation() {
+      return operation;
+    }
+
+    /**
+     * @return the entity written, or the id of the document removed when it was removed by id.
+     */
+    public Object getEntity() {
+      return entity;
+    }
+
+    /**
+     * @return the error of the write, translated by the template, or null if it succeeded.
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    /**
+     * @return true if the write succeeded.
+     */
+    public boolean isSuccess() {
+      return error == null;
+    }
+
+    @Override
+    public String toString() {
+      return operation + " " + id + (error == null ? "" : " failed: " + error.getMessage());
+    }
+  }
+
+  private static final class PendingWrite {
+
+    private final String id;
+    private final Operation operation;
+    private final Object entity;
+    private final CouchbaseDocument converted;
+    private final Document<String> document;
+    private final boolean versioned;
+    private final PersistTo persistTo;
+    private final ReplicateTo replicateTo;
+
+    private PendingWrite(String id, Operation operation, Object entity, CouchbaseDocument converted,
+                         Document<String> document, boolean versioned, PersistTo persistTo,
+                         ReplicateTo replicateTo) {
+      this.id = id;
+      this.operation = operation;
+      this.entity = entity;
+      this.converted = converted;
+      this.document = document;
+      this.versioned = versioned;
+      this.persistTo = persistTo;
+      this.replicateTo = replicateTo;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Data Access Exception thrown when committing a {@link UnitOfWork} of which some writes failed. The other writes are
+ * executed nevertheless: the results tell which ones succeeded, and why the others failed.
+ *
+ * @since 3.2
+ */
+public class UnitOfWorkException extends DataAccessException {
+
+  private static final long serialVersionUID = 7609519117728505157L;
+
+  private final List<UnitOfWork.Result> results;
+
+  /**
+   * Constructor for UnitOfWorkException.
+   *
+   * @param results the results of the writes of the unit of work, some of which failed
+   */
+  public UnitOfWorkException(final List<UnitOfWork.Result> results) {
+    super(describe(results), firstError(results));
+    this.results = results;
+  }
+
+  /**
+   * @return the results of all the writes of the unit of work.
+   */
+  public List<UnitOfWork.Result> getResults() {
+    return results;
+  }
+
+  /**
+   * @return the results of the writes which failed.
+   */
+  public List<UnitOfWork.Result> getFailures() {
+    List<UnitOfWork.Result> failures = new ArrayList<UnitOfWork.Result>();
+    for (UnitOfWork.Result result : results) {
+      if (!result.isSuccess()) {
+        failures.add(result);
+      }
+    }
+    return failures;
+  }
+
+  private static String describe(List<UnitOfWork.Result> results) {
+    int failed = 0;
+    for (UnitOfWork.Result result : results) {
+      if (!result.isSuccess()) {
+        failed++;
+      }
+    }
+    return failed + " of the " + results.size() + " writes of the unit of work failed";
+  }
+
+  private static Throwable firstError(List<UnitOfWork.Result> results) {
+    for (UnitOfWork.Result result : results) {
+      if (!result.isSuccess()) {
+        return result.getError();
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.document.RawJsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.couchbase.core.mapping.CouchbaseDocument;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * Buffers the saves of selected entity types on a {@link CouchbaseTemplate}, and writes them asynchronously: the
+ * saves of a same document within a flush window are coalesced, only the last one being written, and the buffered
+ * documents are upserted in parallel, at most {@link #setMaxLag(long, TimeUnit) the maximum lag} after they were
+ * saved. It suits the entities saved many times per second under the same key, like session states or counters
+ * mirrored into documents, which can afford losing their latest saves if the application dies.
+ * <p>
+ * Only the {@link CouchbaseOperations#save(Object)} of the buffered types without durability requirement are
+ * buffered, their {@link org.springframework.data.couchbase.core.mapping.event.AfterSaveEvent} being published when
+ * the document is written. The inserts and updates of a buffered document write it first, its removal discards it,
+ * and {@link CouchbaseOperations#findById(String, Class)} and {@link CouchbaseOperations#exists(String)} see it, but
+ * the queries and views don't until it is written. The buffered types can't have a
+ * {@link org.springframework.data.annotation.Version}, since the saves are blind upserts.
+ * <p>
+ * When the buffer is full, the thread saving an entity writes the buffer, which bounds the memory used and slows the
+ * application down to the pace of the cluster. The writes failing are reported to the {@link FlushFailureHandler},
+ * which logs them by default. The buffer is written when destroyed, so that a buffer registered as a bean is written
+ * when the context is closed.
+ *
+ * @since 3.2
+ */
+@ManagedResource(description = "Couchbase Write-Behind Buffer")
+public class WriteBehindBuffer implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+  private final Set<Class<?>> entityTypes;
+  private final ConcurrentMap<String, PendingWrite> pending = new ConcurrentHashMap<String, PendingWrite>();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final LongAdder buffered = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder written = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  private volatile int maxSize = 10000;
+  private volatile long maxLagMillis = 1000;
+  private volatile int parallelism = 16;
+  private volatile PersistTo persistTo = PersistTo.NONE;
+  private volatile ReplicateTo replicateTo = ReplicateTo.NONE;
+  private volatile boolean flushOnShutdown = true;
+  private volatile FlushFailureHandler failureHandler = (entity, id, error) ->
+      LOGGER.warn("Write-behind of document " + id + " failed, the save is lost", error);
+
+  private CouchbaseTemplate template;
+  private Scheduler.Worker worker;
+  private Subscription flusher;
+  private boolean destroyed;
+
+  /**
+   * @param entityTypes the entity types whose saves are buffered, their subtypes included.
+   */
+  public WriteBehindBuffer(Class<?>... entityTypes) {
+    Assert.notEmpty(entityTypes, "At least one entity type must be buffered");
+    this.entityTypes = Collections.unmodifiableSet(new LinkedHashSet<Class<?>>(Arrays.asList(entityTypes)));
+  }
+
+  /**
+   * @return the entity types whose saves are buffered.
+   */
+  public Set<Class<?>> getEntityTypes() {
+    return entityTypes;
+  }
+
+  /**
+   * @param maxSize the number of documents buffered beyond which a save writes the buffer, 10000 by default.
+   */
+  public void setMaxSize(int maxSize) {
+    Assert.isTrue(maxSize > 0, "Maximum size must be positive");
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param maxLag the time after which the buffered documents are written, one second by default. It is the window
+   *   within which the saves of a document are coalesced, and bounds the saves lost if the application dies.
+   * @param unit the unit of the time.
+   */
+  public synchronized void setMaxLag(long maxLag, TimeUnit unit) {
+    Assert.isTrue(maxLag > 0, "Maximum lag must be positive");
+    this.maxLagMillis = unit.toMillis(maxLag);
+    if (flusher != null) {
+      flusher.unsubscribe();
+      scheduleFlushes();
+    }
+  }
+
+  /**
+   * @param parallelism the number of documents written concurrently by a flush, 16 by default.
+   */
+  public void setParallelism(int parallelism) {
+    Assert.isTrue(parallelism > 0, "Parallelism must be positive");
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param persistTo the persistence constraint of the writes, none by default.
+   * @param replicateTo the replication constraint of the writes, none by default.
+   */
+  public void setDurability(PersistTo persistTo, ReplicateTo replicateTo) {
+    Assert.notNull(persistTo, "PersistTo must not be null");
+    Assert.notNull(replicateTo, "ReplicateTo must not be null");
+    this.persistTo = persistTo;
+    this.replicateTo = replicateTo;
+  }
+
+  /**
+   * @param flushOnShutdown whether the buffered documents are written when the buffer is destroyed, or dropped. True
+   *   by default.
+   */
+  public void setFlushOnShutdown(boolean flushOnShutdown) {
+    this.flushOnShutdown = flushOnShutdown;
+  }
+
+  /**
+   * @param failureHandler the handler of the writes failing.
+   */
+  public void setFailureHandler(FlushFailureHandler failureHandler) {
+    Assert.notNull(failureHandler, "Failure handler must not be null");
+    this.failureHandler = failureHandler;
+  }
+
+  /**
+   * @param entityType the type of an entity.
+   * @return true if the saves of the entity are buffered.
+   */
+  public boolean isBuffered(Class<?> entityType) {
+    for (Class<?> type : entityTypes) {
+      if (type.isAssignableFrom(entityType)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Binds the buffer to the template writing its documents, and starts writing them periodically.
+   */
+  synchronized void bind(CouchbaseTemplate template) {
+    Assert.state(!destroyed, "The write-behind buffer is destroyed");
+    Assert.state(this.template == null || this.template == template,
+        "The write-behind buffer is already used by another template");
+    if (this.template == null) {
+      this.template = template;
+      this.worker = Schedulers.io().createWorker();
+      scheduleFlushes();
+    }
+  }
+
+  private void scheduleFlushes() {
+    flusher = worker.schedulePeriodically(this::flushQuietly, maxLagMillis, maxLagMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Buffers the save of a document, replacing its previous save not written yet.
+   */
+  void buffer(String id, Object entity, CouchbaseDocument converted, RawJsonDocument document) {
+    if (pending.put(id, new PendingWrite(id, entity, converted, document)) != null) {
+      coalesced.increment();
+    }
+    buffered.increment();
+    if (pending.size() >= maxSize) {
+      flush();
+    }
+  }
+
+  /**
+   * @return the document saved under the id and not written yet, or null.
+   */
+  RawJsonDocument pendingDocument(String id) {
+    PendingWrite write = pending.get(id);
+    return write == null ? null : write.document;
+  }
+
+  /**
+   * Writes the document saved under the id, if any, before it is written otherwise.
+   */
+  void flush(String id) {
+    if (!pending.containsKey(id)) {
+      return;
+    }
+    flushLock.lock();
+    try {
+      PendingWrite write = pending.get(id);
+      if (write != null) {
+        write(Collections.singletonList(write));
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Drops the document saved under the id, if any, waiting for a flush writing it to complete, so that it doesn't
+   * overwrite a later removal.
+   */
+  void discard(String id) {
+    flushLock.lock();
+    try {
+      pending.remove(id);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Writes the buffered documents, and waits for the writes to complete. The saves buffered meanwhile are written by
+   * the next flush.
+   */
+  @ManagedOperation(description = "Writes the buffered documents")
+  public void flush() {
+    flushLock.lock();
+    try {
+      write(new ArrayList<PendingWrite>(pending.values()));
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Periodic write-behind flush failed", e);
+    }
+  }
+
+  /**
+   * Writes buffered documents, which stay visible to the reads until their write completes. Each is then removed
+   * unless saved again meanwhile, the later save being written by the next flush.
+   */
+  private void write(List<PendingWrite> writes) {
+    if (writes.isEmpty()) {
+      return;
+    }
+    final CouchbaseTemplate template;
+    synchronized (this) {
+      template = this.template;
+    }
+    Assert.state(template != null, "The write-behind buffer is not used by a template");
+    final PersistTo persistTo = this.persistTo;
+    final ReplicateTo replicateTo = this.replicateTo;
+    Observable.from(writes)
+        .flatMap(write -> template.writeBehind(write.entity, write.converted, write.document, persistTo, replicateTo)
+            .doOnCompleted(written::increment)
+            .onErrorResumeNext(error -> {
+              failed.increment();
+              handleFailure(write, error);
+              return Observable.empty();
+            })
+            .doOnTerminate(() -> pending.remove(write.id, write)), parallelism)
+        .toBlocking()
+        .lastOrDefault(null);
+  }
+
+  private void handleFailure(PendingWrite write, Throwable error) {
+    try {
+      failureHandler.onFailure(write.entity, write.id, error);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Write-behind failure handler failed for document " + write.id, e);
+    }
+  }
+
+  /**
+   * Stops writing the buffer periodically, and writes the documents buffered unless
+   * {@link #setFlushOnShutdown(boolean) told otherwise}.
+   */
+  @Override
+  public void destroy() {
+    synchronized (this) {
+      if (destroyed || template == null) {
+        destroyed = true;
+        return;
+      }
+      destroyed = true;
+      worker.unsubscribe();
+    }
+    if (flushOnShutdown) {
+      flush();
+    } else if (!pending.isEmpty()) {
+      LOGGER.warn("Dropping {} buffered documents on shutdown", pending.size());
+      pending.clear();
+    }
+  }
+
+  @ManagedAttribute(description = "Documents saved and not written yet")
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  @ManagedAttribute(description = "Saves buffered")
+  public long getBufferedCount() {
+    return buffered.sum();
+  }
+
+  @ManagedAttribute(description = "Saves replaced by a later save of the same document before being written")
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  @ManagedAttribute(description = "Documents written")
+  public long getWrittenCount() {
+    return written.sum();
+  }
+
+  @ManagedAttribute(description = "Documents whose write failed")
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  /**
+   * Handles the buffered documents whose write failed, for instance to save them again or to record them.
+   */
+  @FunctionalInterface
+  public interface FlushFailureHandler {
+
+    /**
+     * @param entity the last entity saved under the id, whose save is lost.
+     * @param id the id of the document.
+     * @param error the error of the write, translated by the template.
+     */
+    void onFailure(Object entity, String id, Throwable error);
+  }
+
+  private static final class PendingWrite {
+
+    private final String id;
+    private final Object entity;
+    private final CouchbaseDocument converted;
+    private final RawJsonDocument document;
+
+    private PendingWrite(String id, Object entity, CouchbaseDocument converted, RawJsonDocument document) {
+      this.id = id;
+      this.entity = entity;
+      this.converted = converted;
+      this.document = document;
+    }
+  }
+}
@@ -16,6 +16,9 @@
 
 package org.springframework.data.couchbase.core.convert;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.data.convert.EntityConverter;
 import org.springframework.data.convert.EntityReader;
 import org.springframework.data.couchbase.core.mapping.CouchbaseDocument;
@@ -56,4 +59,18 @@ public interface CouchbaseConverter
    * @return the name of the field that will hold type information.
    */
   String getTypeKey();
+
+  /**
+   * Returns the values of the {@link #getTypeKey() type key} identifying documents of the given type, to be used when
+   * filtering queries and indexes on a type. The first value is the one written for the type, which is its alias if
+   * one is declared. It is followed by the fully qualified class name if documents written before the alias was
+   * declared are still accepted.
+   *
+   * @param type the type to get the aliases for.
+   * @return the type key values matching the type, never empty.
+   * @since 3.2
+   */
+  default List<String> getTypeAliases(Class<?> type) {
+    return Collections.singletonList(type.getName());
+  }
 }
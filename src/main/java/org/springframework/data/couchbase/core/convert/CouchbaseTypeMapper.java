@@ -28,4 +28,15 @@ public interface CouchbaseTypeMapper extends TypeMapper<CouchbaseDocument> {
 
   String getTypeKey();
 
+  /**
+   * Returns the value written in the {@link #getTypeKey() type key} for the given type.
+   *
+   * @param type the type to get the alias for.
+   * @return the alias of the type, defaulting to its fully qualified class name.
+   * @since 3.2
+   */
+  default String getTypeAlias(Class<?> type) {
+    return type.getName();
+  }
+
 }
@@ -16,11 +16,19 @@
 
 package org.springframework.data.couchbase.core.convert;
 
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.convert.ConfigurableTypeInformationMapper;
 import org.springframework.data.convert.DefaultTypeMapper;
+import org.springframework.data.convert.SimpleTypeInformationMapper;
 import org.springframework.data.convert.TypeAliasAccessor;
 import org.springframework.data.couchbase.core.mapping.CouchbaseDocument;
 import org.springframework.data.mapping.Alias;
+import org.springframework.data.mapping.PersistentEntity;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.util.ClassTypeInformation;
 
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -48,11 +56,35 @@ public class DefaultCouchbaseTypeMapper extends DefaultTypeMapper<CouchbaseDocum
     this.typeKey = typeKey;
   }
 
+  /**
+   * Create a new type mapper with the type key, which writes short aliases instead of fully qualified class names:
+   * the {@link TypeAlias} of entities from the mapping context first, then the aliases registered for a type. Types
+   * without alias are still written with their class name, and documents holding class names can always be read.
+   *
+   * @param typeKey the typeKey to use.
+   * @param mappingContext the mapping context to look up {@link TypeAlias} annotations in.
+   * @param typeAliases the aliases (eg. short numeric codes) registered per type.
+   * @since 3.2
+   */
+  public DefaultCouchbaseTypeMapper(final String typeKey,
+      final MappingContext<? extends PersistentEntity<?, ?>, ?> mappingContext,
+      final Map<? extends Class<?>, String> typeAliases) {
+    super(new CouchbaseDocumentTypeAliasAccessor(typeKey), mappingContext,
+        Arrays.asList(new ConfigurableTypeInformationMapper(typeAliases), new SimpleTypeInformationMapper()));
+    this.typeKey = typeKey;
+  }
+
   @Override
   public String getTypeKey() {
     return this.typeKey;
   }
 
+  @Override
+  public String getTypeAlias(Class<?> type) {
+    Alias alias = getAliasFor(ClassTypeInformation.from(type));
+    return alias.isPresent() ? alias.getValue().toString() : type.getName();
+  }
+
   public static final class CouchbaseDocumentTypeAliasAccessor implements TypeAliasAccessor<CouchbaseDocument> {
 
     private final String typeKey;
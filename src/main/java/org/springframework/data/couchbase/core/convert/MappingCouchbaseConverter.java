@@ -18,8 +18,10 @@ package org.springframework.data.couchbase.core.convert;
 
 import static org.springframework.data.couchbase.core.mapping.id.GenerationStrategy.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -40,9 +42,13 @@ import org.springframework.data.couchbase.core.mapping.CouchbaseList;
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentEntity;
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentProperty;
 import org.springframework.data.couchbase.core.mapping.id.GeneratedValue;
+import org.springframework.data.couchbase.core.mapping.id.GenerationStrategy;
 import org.springframework.data.couchbase.core.mapping.id.IdAttribute;
+import org.springframework.data.couchbase.core.mapping.id.IdGenerator;
 import org.springframework.data.couchbase.core.mapping.id.IdPrefix;
 import org.springframework.data.couchbase.core.mapping.id.IdSuffix;
+import org.springframework.data.couchbase.core.mapping.id.SnowflakeIdGenerator;
+import org.springframework.data.couchbase.core.mapping.id.TimeOrderedUuidGenerator;
 import org.springframework.data.couchbase.core.query.N1qlJoin;
 import org.springframework.data.mapping.Association;
 import org.springframework.data.mapping.AssociationHandler;
@@ -117,6 +123,26 @@ public class MappingCouchbaseConverter extends AbstractCouchbaseConverter
    */
   private boolean enableStrictFieldChecking = false;
 
+  /**
+   * Write type aliases instead of fully qualified class names.
+   */
+  private boolean useTypeAliases = false;
+
+  /**
+   * The aliases registered per type.
+   */
+  private Map<? extends Class<?>, String> typeAliases = Collections.emptyMap();
+
+  /**
+   * Accept documents holding the fully qualified class name of types which have an alias.
+   */
+  private boolean acceptFullyQualifiedTypeNames = false;
+
+  /**
+   * The generators used for {@link GeneratedValue} ids, per strategy.
+   */
+  private final Map<GenerationStrategy, IdGenerator> idGenerators = new EnumMap<>(GenerationStrategy.class);
+
   /**
    * Create a new {@link MappingCouchbaseConverter}.
    *
@@ -141,6 +167,9 @@ public class MappingCouchbaseConverter extends AbstractCouchbaseConverter
     this.mappingContext = mappingContext;
     typeMapper = new DefaultCouchbaseTypeMapper(typeKey != null ? typeKey : TYPEKEY_DEFAULT);
     spELContext = new SpELContext(CouchbaseDocumentPropertyAccessor.INSTANCE);
+    idGenerators.put(UNIQUE, entityType -> UUID.randomUUID().toString());
+    idGenerators.put(TIME_ORDERED_UUID, new TimeOrderedUuidGenerator());
+    idGenerators.put(SNOWFLAKE, new SnowflakeIdGenerator());
   }
 
   @Override
@@ -153,6 +182,54 @@ public class MappingCouchbaseConverter extends AbstractCouchbaseConverter
     return typeMapper.getTypeKey();
   }
 
+  /**
+   * Toggles type aliases. If enabled, the {@link org.springframework.data.annotation.TypeAlias} of an entity, or the
+   * alias registered for its type through {@link #setTypeAliases(Map)}, is written in the type key instead of its
+   * fully qualified class name, and queries and indexes filter on it. Disabled by default, so that the documents
+   * written before with class names remain visible: see {@link #setAcceptFullyQualifiedTypeNames(boolean)} to
+   * migrate them.
+   *
+   * @param useTypeAliases true to write and match type aliases.
+   */
+  public void setUseTypeAliases(boolean useTypeAliases) {
+    this.useTypeAliases = useTypeAliases;
+    this.typeMapper = useTypeAliases ? new DefaultCouchbaseTypeMapper(getTypeKey(), mappingContext, typeAliases)
+        : new DefaultCouchbaseTypeMapper(getTypeKey());
+  }
+
+  /**
+   * Registers short aliases (eg. numeric codes) to write in the type key instead of the fully qualified class name of
+   * the given types, and enables {@link #setUseTypeAliases(boolean) type aliases}. Aliases declared with
+   * {@link org.springframework.data.annotation.TypeAlias} on an entity take precedence. Aliases must be unique and
+   * should never change once documents have been written with them.
+   *
+   * @param typeAliases the aliases, per type.
+   */
+  public void setTypeAliases(Map<? extends Class<?>, String> typeAliases) {
+    this.typeAliases = typeAliases;
+    setUseTypeAliases(true);
+  }
+
+  /**
+   * Toggles the compatibility mode used while migrating to type aliases. If enabled, queries and indexes on a type
+   * that has an alias also match documents holding its fully qualified class name, which were written before the
+   * alias was declared. Such documents are always readable, and are rewritten with the alias when saved.
+   *
+   * @param acceptFullyQualifiedTypeNames true to also match fully qualified class names of aliased types.
+   */
+  public void setAcceptFullyQualifiedTypeNames(boolean acceptFullyQualifiedTypeNames) {
+    this.acceptFullyQualifiedTypeNames = acceptFullyQualifiedTypeNames;
+  }
+
+  @Override
+  public List<String> getTypeAliases(Class<?> type) {
+    String alias = typeMapper.getTypeAlias(type);
+    if (acceptFullyQualifiedTypeNames && !alias.equals(type.getName())) {
+      return Arrays.asList(alias, type.getName());
+    }
+    return Collections.singletonList(alias);
+  }
+
   /**
    * Toggles strict checking of the couchbase {@link Field} annotation. If enabled,
    * strict checking will prevent non-annotated properties to be serialized. This only
@@ -167,6 +244,20 @@ public class MappingCouchbaseConverter extends AbstractCouchbaseConverter
     this.enableStrictFieldChecking = enableStrictFieldChecking;
   }
 
+  /**
+   * Registers the {@link IdGenerator} to use for {@link GeneratedValue} ids with the given strategy, replacing
+   * the default one if any. The generated value is combined with the {@link IdPrefix} and {@link IdSuffix} parts
+   * of the entity.
+   *
+   * @param strategy the strategy, any but {@link GenerationStrategy#USE_ATTRIBUTES}.
+   * @param idGenerator the generator to use for this strategy.
+   */
+  public void setIdGenerator(GenerationStrategy strategy, IdGenerator idGenerator) {
+    Assert.notNull(idGenerator, "IdGenerator must not be null");
+    Assert.isTrue(strategy != USE_ATTRIBUTES, "Keys using attributes are not generated by an IdGenerator");
+    idGenerators.put(strategy, idGenerator);
+  }
+
   @Override
   public <R> R read(final Class<R> clazz, final CouchbaseDocument source) {
     return read(ClassTypeInformation.from(clazz), source, null);
@@ -522,7 +613,7 @@ public class MappingCouchbaseConverter extends AbstractCouchbaseConverter
       String id = accessor.getProperty(idProperty, String.class);
       if(idProperty.isAnnotationPresent(GeneratedValue.class) && (id == null || id.equals(""))) {
         generatedValueInfo = idProperty.findAnnotation(GeneratedValue.class);
-        target.setId(generateId(generatedValueInfo, prefixes, suffixes, idAttributes));
+        target.setId(generateId(generatedValueInfo, entity.getType(), prefixes, suffixes, idAttributes));
       } else {
         target.setId(id);
       }
@@ -896,8 +987,8 @@ public class MappingCouchbaseConverter extends AbstractCouchbaseConverter
     }
   }
 
-  private String generateId(GeneratedValue generatedValue, TreeMap<Integer, String> prefixes, TreeMap<Integer, String> suffixes,
-                            TreeMap<Integer, String> idAttributes) {
+  private String generateId(GeneratedValue generatedValue, Class<?> entityType, TreeMap<Integer, String> prefixes,
+                            TreeMap<Integer, String> suffixes, TreeMap<Integer, String> idAttributes) {
     String delimiter = generatedValue.delimiter();
     StringBuilder sb = new StringBuilder();
     boolean isAppending = false;
@@ -913,11 +1004,16 @@ public class MappingCouchbaseConverter extends AbstractCouchbaseConverter
       appendKeyParts(sb, idAttributes.values(), delimiter);
     }
 
-    if (generatedValue.strategy() == UNIQUE) {
+    if (generatedValue.strategy() != USE_ATTRIBUTES) {
+      IdGenerator idGenerator = idGenerators.get(generatedValue.strategy());
+      if (idGenerator == null) {
+        throw new MappingException("No IdGenerator registered for strategy " + generatedValue.strategy()
+            + " used by " + entityType.getName());
+      }
       if(isAppending) {
         sb.append(delimiter);
       }
-      sb.append(UUID.randomUUID());
+      sb.append(idGenerator.generate(entityType));
     }
 
     if (suffixes.size() > 0) {
@@ -16,7 +16,9 @@
 
 package org.springframework.data.couchbase.core.convert.join;
 
+import static com.couchbase.client.java.query.dsl.Expression.x;
 import static org.springframework.data.couchbase.core.support.TemplateUtils.*;
+import static org.springframework.data.couchbase.repository.query.support.N1qlUtils.createTypeSelector;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
@@ -53,8 +55,10 @@ public class N1qlJoinResolver {
         String useLKS = useLKSBuilder.length() > 0 ? "USE " + useLKSBuilder.toString() + " " : "";
 
         String from = "FROM `" + template.getCouchbaseBucket().name() + "` lks " + useLKS + joinType + " " + template.getCouchbaseBucket().name() + " rks";
-        String onLks = "lks." + template.getConverter().getTypeKey() + " = \""+ parameters.getEntityTypeInfo().getType().getName() + "\"";
-        String onRks = "rks." + template.getConverter().getTypeKey() + " = \"" + parameters.getAssociatedEntityTypeInfo().getType().getName() + "\"";
+        String onLks = createTypeSelector(x("lks." + template.getConverter().getTypeKey()), template.getConverter(),
+                parameters.getEntityTypeInfo().getType()).toString();
+        String onRks = createTypeSelector(x("rks." + template.getConverter().getTypeKey()), template.getConverter(),
+                parameters.getAssociatedEntityTypeInfo().getType()).toString();
 
 
         StringBuilder useRKSBuilder = new StringBuilder();
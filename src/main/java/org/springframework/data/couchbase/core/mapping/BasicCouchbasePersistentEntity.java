@@ -26,7 +26,6 @@ import org.springframework.util.StringUtils;
 
 import java.util.Calendar;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
  * The representation of a persistent entity.
@@ -102,21 +101,24 @@ public class BasicCouchbasePersistentEntity<T> extends BasicPersistentEntity<T,
       return 0;
 
     int expiryValue = getExpiryValue(annotation);
+    return toExpiry(annotation.expiryUnit().toSeconds(expiryValue));
+  }
 
-    long secondsShift = annotation.expiryUnit().toSeconds(expiryValue);
-    if (secondsShift > TTL_IN_SECONDS_INCLUSIVE_END) {
+  /**
+   * Converts a time to live into the Couchbase format for expiration time, see {@link #getExpiry()}.
+   *
+   * @param ttlSeconds the time to live, in seconds.
+   * @return the time to live itself up to 30 days, the Unix UTC time of expiry beyond.
+   * @since 3.2
+   */
+  public static int toExpiry(long ttlSeconds) {
+    if (ttlSeconds > TTL_IN_SECONDS_INCLUSIVE_END) {
       //we want it to be represented as a UNIX timestamp style, seconds since Epoch in UTC
       Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-      if (annotation.expiryUnit() == TimeUnit.DAYS) {
-        //makes sure we won't lose resolution
-        cal.add(Calendar.DAY_OF_MONTH, expiryValue);
-      } else {
-        //use the shift in seconds since resolution should be smaller
-        cal.add(Calendar.SECOND, (int) secondsShift);
-      }
+      cal.add(Calendar.SECOND, (int) ttlSeconds);
       return (int) (cal.getTimeInMillis() / 1000); //note: Unix UTC time representation in int is okay until year 2038
     } else {
-      return (int) secondsShift;
+      return (int) ttlSeconds;
     }
   }
 
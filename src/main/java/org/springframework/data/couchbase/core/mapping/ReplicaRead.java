@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allows the documents of an entity read by id to be served by the replicas, overriding the
+ * {@link org.springframework.data.couchbase.core.ReplicaReadPolicy} of the template. A document read from a replica
+ * may be stale, see {@link org.springframework.data.couchbase.core.ReplicaReadPolicy} for the details.
+ *
+ * @since 3.2
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface ReplicaRead {
+
+  /**
+   * The time to wait for the active copy before reading the replicas too, returning the first document found. Negative
+   * by default, for no hedged read.
+   */
+  long hedgeAfter() default -1;
+
+  /**
+   * The unit of {@link #hedgeAfter()}. Default is {@link TimeUnit#MILLISECONDS}.
+   */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+  /**
+   * Whether the replicas are read when the read of the active copy times out or is cancelled. Default is true.
+   */
+  boolean fallback() default true;
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.mapping.id;
+
+import com.couchbase.client.java.Bucket;
+
+import org.springframework.util.Assert;
+
+/**
+ * Generates sequential numeric ids backed by a Couchbase counter document. Rather than incrementing the counter for
+ * every key, a block of ids is reserved with a single counter operation and then handed out locally, so that the
+ * counter is only hit once every {@code blockSize} keys. Ids are unique across all the application instances sharing
+ * the counter document, but ids of blocks reserved and not fully used before a restart are lost.
+ *
+ * @since 3.2
+ */
+public class CounterBlockIdGenerator implements IdGenerator {
+
+	/**
+	 * The default number of ids reserved per counter operation.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+	private final Bucket bucket;
+	private final String counterKey;
+	private final int blockSize;
+
+	//next id to hand out and exclusive upper bound of the reserved block, guarded by this
+	private long next;
+	private long limit;
+
+	/**
+	 * @param bucket the bucket holding the counter document.
+	 * @param counterKey the key of the counter document.
+	 */
+	public CounterBlockIdGenerator(Bucket bucket, String counterKey) {
+		this(bucket, counterKey, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param bucket the bucket holding the counter document.
+	 * @param counterKey the key of the counter document.
+	 * @param blockSize the number of ids reserved per counter operation.
+	 */
+	public CounterBlockIdGenerator(Bucket bucket, String counterKey, int blockSize) {
+		Assert.notNull(bucket, "Bucket must not be null");
+		Assert.hasText(counterKey, "Counter key must not be empty");
+		Assert.isTrue(blockSize > 0, "Block size must be greater than zero");
+		this.bucket = bucket;
+		this.counterKey = counterKey;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public String generate(Class<?> entityType) {
+		return String.valueOf(nextId());
+	}
+
+	/**
+	 * @return the next id, reserving a new block from the counter document if the current one is exhausted.
+	 */
+	public synchronized long nextId() {
+		if (next >= limit) {
+			//the counter is created with the size of the first block, then holds the last id of the last reserved block
+			long blockEnd = bucket.counter(counterKey, blockSize, blockSize).content();
+			next = blockEnd - blockSize + 1;
+			limit = blockEnd + 1;
+		}
+		return next++;
+	}
+}
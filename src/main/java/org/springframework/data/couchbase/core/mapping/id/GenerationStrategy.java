@@ -30,5 +30,21 @@ public enum GenerationStrategy {
 	/**
 	 * Uses an uuid generator
 	 */
-	UNIQUE
+	UNIQUE,
+
+	/**
+	 * Uses a time-ordered uuid generator, see {@link TimeOrderedUuidGenerator}
+	 */
+	TIME_ORDERED_UUID,
+
+	/**
+	 * Uses a Snowflake-style 64-bit id generator, see {@link SnowflakeIdGenerator}
+	 */
+	SNOWFLAKE,
+
+	/**
+	 * Uses ids reserved by blocks from a counter document. There is no default generator for this strategy,
+	 * a {@link CounterBlockIdGenerator} must be registered on the converter
+	 */
+	COUNTER
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.mapping.id;
+
+/**
+ * Generates the unique part of a document key for a {@link GeneratedValue} id. The generated value is combined
+ * with the {@link IdPrefix} and {@link IdSuffix} parts of the entity, and with the common prefix and suffix of the
+ * {@link org.springframework.data.couchbase.core.mapping.KeySettings}, like the default UUID would be.
+ * <p/>
+ * Implementations are called concurrently by all the writer threads and must be thread safe.
+ *
+ * @since 3.2
+ * @see org.springframework.data.couchbase.core.convert.MappingCouchbaseConverter#setIdGenerator(GenerationStrategy, IdGenerator)
+ */
+public interface IdGenerator {
+
+	/**
+	 * @param entityType the type of the entity which key is being generated.
+	 * @return the generated value, never null.
+	 */
+	String generate(Class<?> entityType);
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.mapping.id;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Generates Snowflake-style 64-bit ids made of 41 bits of milliseconds since a custom epoch, a 10-bit worker id and
+ * a 12-bit per-millisecond sequence. Ids are rendered as 19-digit zero-padded decimal strings, so that keys sort in
+ * generation order. Up to 4096 ids can be generated per millisecond and per worker, beyond that generation waits for
+ * the next millisecond.
+ * <p/>
+ * Each application instance writing to the same bucket must use a distinct worker id for the ids to be unique. The
+ * default worker id is derived from the JVM name (pid and host) and is only a best effort.
+ *
+ * @since 3.2
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+	/**
+	 * The default epoch, 2019-01-01T00:00:00Z.
+	 */
+	public static final long DEFAULT_EPOCH = 1546300800000L;
+
+	static final int WORKER_ID_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+	static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+	static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private final long epoch;
+	private final long workerId;
+
+	//the last timestamp (relative to the epoch) shifted left by SEQUENCE_BITS, or'ed with the last sequence
+	private final AtomicLong state = new AtomicLong();
+
+	/**
+	 * Creates a generator with a worker id derived from the JVM name, using the {@link #DEFAULT_EPOCH}.
+	 */
+	public SnowflakeIdGenerator() {
+		this(ManagementFactory.getRuntimeMXBean().getName().hashCode() & MAX_WORKER_ID);
+	}
+
+	/**
+	 * @param workerId the id of this worker, between 0 and 1023.
+	 */
+	public SnowflakeIdGenerator(long workerId) {
+		this(workerId, DEFAULT_EPOCH);
+	}
+
+	/**
+	 * @param workerId the id of this worker, between 0 and 1023.
+	 * @param epoch the epoch in milliseconds from which timestamps are counted.
+	 */
+	public SnowflakeIdGenerator(long workerId, long epoch) {
+		Assert.isTrue(workerId >= 0 && workerId <= MAX_WORKER_ID, "Worker id must be between 0 and " + MAX_WORKER_ID);
+		Assert.isTrue(epoch <= System.currentTimeMillis(), "Epoch must not be in the future");
+		this.workerId = workerId;
+		this.epoch = epoch;
+	}
+
+	@Override
+	public String generate(Class<?> entityType) {
+		return String.format("%019d", nextId());
+	}
+
+	/**
+	 * @return the next id.
+	 */
+	public long nextId() {
+		while (true) {
+			long current = state.get();
+			long lastTimestamp = current >>> SEQUENCE_BITS;
+			long timestamp = currentTimeMillis() - epoch;
+			long next;
+			if (timestamp > lastTimestamp) {
+				next = timestamp << SEQUENCE_BITS;
+			} else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+				//same millisecond (or clock moved backwards), keep using the last timestamp
+				next = current + 1;
+			} else {
+				//sequence exhausted for this millisecond
+				Thread.yield();
+				continue;
+			}
+			if (state.compareAndSet(current, next)) {
+				long sequence = next & SEQUENCE_MASK;
+				return ((next >>> SEQUENCE_BITS) << (WORKER_ID_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+			}
+		}
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
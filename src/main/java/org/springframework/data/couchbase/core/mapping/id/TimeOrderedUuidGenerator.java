@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.mapping.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates UUIDs whose 48 most significant bits are the creation time in milliseconds, followed by random bits
+ * (the layout of version 7 UUIDs). Keys generated close in time share a common prefix and sort in creation order,
+ * and the random bits come from a {@link ThreadLocalRandom} rather than the shared {@link java.security.SecureRandom}
+ * of {@link UUID#randomUUID()}, so generation doesn't contend between writer threads.
+ * <p/>
+ * Note that these UUIDs are not suitable where keys must not be guessable.
+ *
+ * @since 3.2
+ */
+public class TimeOrderedUuidGenerator implements IdGenerator {
+
+	@Override
+	public String generate(Class<?> entityType) {
+		return next().toString();
+	}
+
+	/**
+	 * @return a new time-ordered {@link UUID}.
+	 */
+	public UUID next() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long mostSignificantBits = (System.currentTimeMillis() << 16)
+				| 0x7000L //version 7
+				| (random.nextLong() & 0x0FFFL);
+		long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL)
+				| 0x8000000000000000L; //IETF variant
+		return new UUID(mostSignificantBits, leastSignificantBits);
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.query;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an aggregation to be computed by the query service for a derived N1QL query method, optionally
+ * alongside a {@link GroupBy} clause. Can be repeated to select several aggregations in the same pass.
+ *
+ * @since 3.2
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(Aggregates.class)
+public @interface Aggregate {
+
+  /**
+   * The {@link AggregateFunction} to apply.
+   */
+  AggregateFunction function();
+
+  /**
+   * The entity property (possibly a dotted path) to aggregate. Can be left empty for
+   * {@link AggregateFunction#COUNT}, which then counts the grouped documents.
+   */
+  String property() default "";
+
+  /**
+   * The name under which the aggregated value is selected, which should match the property of the returned
+   * projection. Defaults to the aggregated property name.
+   */
+  String alias() default "";
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.query;
+
+import static com.couchbase.client.java.query.dsl.functions.AggregateFunctions.avg;
+import static com.couchbase.client.java.query.dsl.functions.AggregateFunctions.count;
+import static com.couchbase.client.java.query.dsl.functions.AggregateFunctions.max;
+import static com.couchbase.client.java.query.dsl.functions.AggregateFunctions.min;
+import static com.couchbase.client.java.query.dsl.functions.AggregateFunctions.sum;
+
+import com.couchbase.client.java.query.dsl.Expression;
+
+/**
+ * The N1QL aggregate functions that can be used in an {@link Aggregate} declaration.
+ *
+ * @since 3.2
+ */
+public enum AggregateFunction {
+
+  SUM {
+    @Override
+    public Expression apply(Expression field) {
+      return sum(field);
+    }
+  },
+
+  AVG {
+    @Override
+    public Expression apply(Expression field) {
+      return avg(field);
+    }
+  },
+
+  MIN {
+    @Override
+    public Expression apply(Expression field) {
+      return min(field);
+    }
+  },
+
+  MAX {
+    @Override
+    public Expression apply(Expression field) {
+      return max(field);
+    }
+  },
+
+  COUNT {
+    @Override
+    public Expression apply(Expression field) {
+      return field == null ? count("*") : count(field);
+    }
+  };
+
+  /**
+   * Wraps the given field expression into this aggregate function.
+   *
+   * @param field the aggregated field, or null to aggregate over whole rows (only meaningful for {@link #COUNT}).
+   * @return the aggregate {@link Expression}.
+   */
+  public abstract Expression apply(Expression field);
+
+}
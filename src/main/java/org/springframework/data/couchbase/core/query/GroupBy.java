@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.query;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.data.annotation.QueryAnnotation;
+
+/**
+ * Annotation to turn a derived N1QL query method into a grouped aggregation, executed entirely by the query
+ * service. The predicate is still derived from the method name, the given properties are used in the GROUP BY
+ * clause and selected under their property name, next to the {@link Aggregate aggregations} declared on the method.
+ * <p/>
+ * Grouped rows do not carry document metadata, so they are mapped directly into the DTO (or interface projection)
+ * returned by the method instead of going through entity conversion:
+ * <pre>
+ * &#64;GroupBy("merchant")
+ * &#64;Aggregate(function = AggregateFunction.SUM, property = "amount", alias = "total")
+ * List&lt;MerchantTotal&gt; findByStatus(String status);
+ * </pre>
+ *
+ * @since 3.2
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@QueryAnnotation
+public @interface GroupBy {
+
+  /**
+   * The entity properties (possibly dotted paths) to group on.
+   */
+  String[] value() default {};
+
+}
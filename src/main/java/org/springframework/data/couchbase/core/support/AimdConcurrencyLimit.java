@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ConcurrencyLimit} with additive increase and multiplicative decrease: the limit grows by one after each
+ * operation completing while at least half of it is used, and is multiplied by a backoff ratio after each operation
+ * failing because the service is overloaded. It reacts to failures only, so it suits services whose overload shows
+ * as timeouts and backpressure rather than as a gradual latency increase.
+ *
+ * @since 3.2
+ */
+public class AimdConcurrencyLimit implements ConcurrencyLimit {
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private int limit;
+
+  /**
+   * @param initialLimit the limit before any operation completed.
+   * @param minLimit the lower bound of the limit.
+   * @param maxLimit the upper bound of the limit.
+   * @param backoffRatio the ratio the limit is multiplied by on overload, between 0.5 and 1 (exclusive).
+   */
+  public AimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+    Assert.isTrue(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit,
+        "Limits must be positive and ordered");
+    Assert.isTrue(backoffRatio >= 0.5 && backoffRatio < 1, "Backoff ratio must be between 0.5 and 1");
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.limit = initialLimit;
+  }
+
+  @Override
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  @Override
+  public synchronized void onSample(long rttNanos, int inFlight, boolean overloaded) {
+    if (overloaded) {
+      limit = Math.max(minLimit, (int) (limit * backoffRatio));
+    } else if (inFlight * 2 >= limit) {
+      limit = Math.min(maxLimit, limit + 1);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "AimdConcurrencyLimit{limit=" + getLimit() + "}";
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * A circuit breaker of an {@link OperationLimiter}, failing the operations to a service fast while it is unavailable,
+ * instead of letting each of them wait for its timeout:
+ * <ul>
+ *   <li>while {@link State#CLOSED closed}, it records the outcome of the last operations, and opens when their
+ *   failure rate reaches the threshold, once enough of them were recorded;</li>
+ *   <li>while {@link State#OPEN open}, operations are rejected, until the open duration elapsed;</li>
+ *   <li>then {@link State#HALF_OPEN half open}, it lets a few probe operations through: it closes if they all succeed,
+ *   and opens again on the first failure.</li>
+ * </ul>
+ * Only the failures showing that the service is overloaded or unreachable count, not the ones caused by the operation
+ * itself (eg. a missing document or a CAS mismatch). The breaker is configured before being set on the limiter.
+ *
+ * @since 3.2
+ */
+public class CircuitBreaker {
+
+  /**
+   * The states of a {@link CircuitBreaker}.
+   */
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private double failureRateThreshold = 0.5;
+  private int minimumCalls = 20;
+  private long openDurationNanos = TimeUnit.SECONDS.toNanos(10);
+  private int halfOpenCalls = 5;
+
+  private State state = State.CLOSED;
+  private boolean[] window = new boolean[100];
+  private int windowPosition;
+  private int windowCalls;
+  private int windowFailures;
+  private long openUntil;
+  private int probesLeft;
+  private int probeSuccesses;
+  private long openCount;
+
+  /**
+   * @param failureRateThreshold the failure rate opening the breaker, between 0 (exclusive) and 1. Default is 0.5.
+   */
+  public synchronized void setFailureRateThreshold(double failureRateThreshold) {
+    Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 1, "Threshold must be between 0 and 1");
+    this.failureRateThreshold = failureRateThreshold;
+  }
+
+  /**
+   * @param windowSize the number of last operations the failure rate is computed on. Default is 100.
+   */
+  public synchronized void setWindowSize(int windowSize) {
+    Assert.isTrue(windowSize > 0, "Window size must be greater than zero");
+    this.window = new boolean[windowSize];
+    resetWindow();
+  }
+
+  /**
+   * @param minimumCalls the number of operations to record before the breaker can open. Default is 20.
+   */
+  public synchronized void setMinimumCalls(int minimumCalls) {
+    Assert.isTrue(minimumCalls > 0, "Minimum calls must be greater than zero");
+    this.minimumCalls = minimumCalls;
+  }
+
+  /**
+   * @param openDuration how long the breaker stays open before letting probe operations through. Default is 10
+   *   seconds.
+   * @param unit the unit of the duration.
+   */
+  public synchronized void setOpenDuration(long openDuration, TimeUnit unit) {
+    Assert.isTrue(openDuration > 0, "Open duration must be greater than zero");
+    this.openDurationNanos = unit.toNanos(openDuration);
+  }
+
+  /**
+   * @param halfOpenCalls the number of probe operations which must succeed to close the breaker. Default is 5.
+   */
+  public synchronized void setHalfOpenCalls(int halfOpenCalls) {
+    Assert.isTrue(halfOpenCalls > 0, "Half open calls must be greater than zero");
+    this.halfOpenCalls = halfOpenCalls;
+  }
+
+  /**
+   * @return the current state of the breaker.
+   */
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * @return the failure rate of the last operations, recorded while closed.
+   */
+  public synchronized double getFailureRate() {
+    return windowCalls == 0 ? 0 : (double) windowFailures / windowCalls;
+  }
+
+  /**
+   * @return the number of times the breaker opened.
+   */
+  public synchronized long getOpenCount() {
+    return openCount;
+  }
+
+  /**
+   * @param now the current time, in nanoseconds.
+   * @return true if an operation can be started, false if it must be rejected.
+   */
+  synchronized boolean tryAcquire(long now) {
+    if (state == State.OPEN) {
+      if (now - openUntil < 0) {
+        return false;
+      }
+      state = State.HALF_OPEN;
+      probesLeft = halfOpenCalls;
+      probeSuccesses = 0;
+    }
+    if (state == State.HALF_OPEN) {
+      if (probesLeft == 0) {
+        return false;
+      }
+      probesLeft--;
+    }
+    return true;
+  }
+
+  /**
+   * Records the outcome of an operation started after {@link #tryAcquire(long)}.
+   *
+   * @param failed true if the operation failed because the service is overloaded or unreachable.
+   * @param now the current time, in nanoseconds.
+   */
+  synchronized void onResult(boolean failed, long now) {
+    if (state == State.HALF_OPEN) {
+      if (failed) {
+        open(now);
+      } else if (++probeSuccesses == halfOpenCalls) {
+        state = State.CLOSED;
+        resetWindow();
+      }
+      return;
+    }
+    if (state == State.OPEN) {
+      //an operation started before the breaker opened
+      return;
+    }
+    if (windowCalls == window.length) {
+      if (window[windowPosition]) {
+        windowFailures--;
+      }
+    } else {
+      windowCalls++;
+    }
+    window[windowPosition] = failed;
+    if (failed) {
+      windowFailures++;
+    }
+    windowPosition = (windowPosition + 1) % window.length;
+    if (windowCalls >= minimumCalls && windowFailures >= failureRateThreshold * windowCalls) {
+      open(now);
+    }
+  }
+
+  /**
+   * Gives back the probe of an operation which was cancelled before completing.
+   */
+  synchronized void onCancel() {
+    if (state == State.HALF_OPEN && probesLeft + probeSuccesses < halfOpenCalls) {
+      probesLeft++;
+    }
+  }
+
+  private void open(long now) {
+    state = State.OPEN;
+    openUntil = now + openDurationNanos;
+    openCount++;
+    resetWindow();
+  }
+
+  private void resetWindow() {
+    windowPosition = 0;
+    windowCalls = 0;
+    windowFailures = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CircuitBreaker{" + state + ", failureRate=" + Math.round(getFailureRate() * 100) + "%}";
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+/**
+ * The adaptive limit of the number of operations an {@link OperationLimiter} lets run concurrently against a service,
+ * adjusted from the latency and the failures of the completed operations. Implementations must be thread safe.
+ *
+ * @since 3.2
+ * @see AimdConcurrencyLimit
+ * @see GradientConcurrencyLimit
+ */
+public interface ConcurrencyLimit {
+
+  /**
+   * @return the current maximum number of operations in flight.
+   */
+  int getLimit();
+
+  /**
+   * Adjusts the limit after an operation completed.
+   *
+   * @param rttNanos the round trip time of the operation, in nanoseconds.
+   * @param inFlight the number of operations that were in flight when it started, including itself.
+   * @param overloaded true if the operation failed because the service is overloaded (timeout, cancellation,
+   *   temporary failure or backpressure).
+   */
+  void onSample(long rttNanos, int inFlight, boolean overloaded);
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+/**
+ * The Couchbase services the template operations are sent to, which are limited separately by an
+ * {@link OperationLimiter} since they degrade independently.
+ *
+ * @since 3.2
+ */
+public enum CouchbaseService {
+
+  /**
+   * The key/value service, serving the operations by id.
+   */
+  KV,
+
+  /**
+   * The N1QL query service.
+   */
+  QUERY,
+
+  /**
+   * The view service, serving view and spatial view queries.
+   */
+  VIEW
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ConcurrencyLimit} following the latency of the service: it compares the recent round trip time of the
+ * operations to its long term average and shrinks the limit in proportion when the service slows down, as queueing
+ * builds up, before it starts timing out. While the latency is stable, the limit grows by about its square root, so
+ * that a higher capacity is discovered. Failures because of overload multiply the limit by 0.9.
+ * <p>
+ * The long term average is pulled down when the recent latency is less than half of it, so that the limit doesn't
+ * stay low after a slow period, for instance when the workload changed to faster operations.
+ *
+ * @since 3.2
+ */
+public class GradientConcurrencyLimit implements ConcurrencyLimit {
+
+  private static final int SHORT_WINDOW = 10;
+  private static final int LONG_WINDOW = 600;
+  private static final double SMOOTHING = 0.2;
+  private static final double TOLERANCE = 1.5;
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private double limit;
+  private double shortRtt;
+  private double longRtt;
+
+  /**
+   * @param initialLimit the limit before any operation completed.
+   * @param minLimit the lower bound of the limit.
+   * @param maxLimit the upper bound of the limit.
+   */
+  public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+    Assert.isTrue(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit,
+        "Limits must be positive and ordered");
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = initialLimit;
+  }
+
+  @Override
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  @Override
+  public synchronized void onSample(long rttNanos, int inFlight, boolean overloaded) {
+    if (overloaded) {
+      limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+      return;
+    }
+    if (longRtt == 0) {
+      shortRtt = rttNanos;
+      longRtt = rttNanos;
+    } else {
+      shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+      longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+    }
+    if (longRtt > 2 * shortRtt) {
+      longRtt *= 0.95;
+    }
+    //an application using less than half of the limit says nothing about the capacity of the service
+    if (inFlight * 2 < limit) {
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / Math.max(shortRtt, 1)));
+    double newLimit = limit * gradient + Math.sqrt(limit);
+    limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "GradientConcurrencyLimit{limit=" + (int) limit + ", shortRtt=" + (long) shortRtt / 1000 + "us, longRtt="
+        + (long) longRtt / 1000 + "us}";
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.couchbase.client.core.BackpressureException;
+import com.couchbase.client.core.RequestCancelledException;
+import com.couchbase.client.core.ServiceNotAvailableException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import rx.Observable;
+
+import org.springframework.data.couchbase.core.OperationRejectedException;
+import org.springframework.data.couchbase.core.OperationRejectedException.Reason;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Protects the cluster and the application when a service slows down, by bounding the operations the templates have
+ * in flight to each {@link CouchbaseService}. Without it, a slow service keeps accepting work until the request ring
+ * buffer of the SDK overflows or every request thread waits for a timeout. Per service:
+ * <ul>
+ *   <li>a {@link ConcurrencyLimit} adapts the maximum number of operations in flight to the observed latency and
+ *   failures, and operations above the limit are rejected at once;</li>
+ *   <li>a {@link CircuitBreaker} rejects all operations for a while after too many of them failed.</li>
+ * </ul>
+ * Rejected operations fail with an {@link OperationRejectedException} without reaching the SDK. The failures that
+ * count as overload are timeouts, cancellations, backpressure, temporary failures and unavailable services.
+ * <p>
+ * By default, each service has a {@link GradientConcurrencyLimit} and a {@link CircuitBreaker} with its default
+ * settings.
+ *
+ * @since 3.2
+ */
+@ManagedResource(description = "Couchbase Operation Limiter")
+public class OperationLimiter {
+
+  private final Map<CouchbaseService, ServiceLimiter> services =
+      new EnumMap<CouchbaseService, ServiceLimiter>(CouchbaseService.class);
+
+  public OperationLimiter() {
+    services.put(CouchbaseService.KV,
+        new ServiceLimiter(new GradientConcurrencyLimit(64, 8, 1024), new CircuitBreaker()));
+    services.put(CouchbaseService.QUERY,
+        new ServiceLimiter(new GradientConcurrencyLimit(16, 2, 256), new CircuitBreaker()));
+    services.put(CouchbaseService.VIEW,
+        new ServiceLimiter(new GradientConcurrencyLimit(16, 2, 256), new CircuitBreaker()));
+  }
+
+  /**
+   * @param service the service to limit.
+   * @param limit the limit of the operations in flight to the service, or null for none.
+   */
+  public void setConcurrencyLimit(CouchbaseService service, ConcurrencyLimit limit) {
+    services.get(service).limit = limit;
+  }
+
+  /**
+   * @param service the service to protect.
+   * @param circuitBreaker the circuit breaker of the service, or null for none.
+   */
+  public void setCircuitBreaker(CouchbaseService service, CircuitBreaker circuitBreaker) {
+    services.get(service).circuitBreaker = circuitBreaker;
+  }
+
+  /**
+   * Starts an operation, which must then be {@link Permit#release(Throwable) released} or
+   * {@link Permit#cancel() cancelled}.
+   *
+   * @param service the service of the operation.
+   * @return the permit of the operation.
+   * @throws OperationRejectedException if the operation can't be started.
+   */
+  public Permit acquire(CouchbaseService service) {
+    ServiceLimiter serviceLimiter = services.get(service);
+    CircuitBreaker circuitBreaker = serviceLimiter.circuitBreaker;
+    long now = nanoTime();
+    if (circuitBreaker != null && !circuitBreaker.tryAcquire(now)) {
+      serviceLimiter.circuitRejected.increment();
+      throw new OperationRejectedException("The circuit breaker of the " + service + " service is open", service,
+          Reason.CIRCUIT_OPEN);
+    }
+    int inFlight = serviceLimiter.inFlight.incrementAndGet();
+    ConcurrencyLimit limit = serviceLimiter.limit;
+    if (limit != null && inFlight > limit.getLimit()) {
+      serviceLimiter.inFlight.decrementAndGet();
+      if (circuitBreaker != null) {
+        circuitBreaker.onCancel();
+      }
+      serviceLimiter.limitRejected.increment();
+      throw new OperationRejectedException("Too many operations in flight to the " + service + " service, limit is "
+          + limit.getLimit(), service, Reason.LIMIT_REACHED);
+    }
+    return new Permit(serviceLimiter, limit, circuitBreaker, now, inFlight);
+  }
+
+  /**
+   * Limits an asynchronous operation, which is started on subscription if a permit is acquired, and fails with an
+   * {@link OperationRejectedException} otherwise. The permit is released on termination or unsubscription.
+   *
+   * @param service the service of the operation.
+   * @param operation the operation.
+   * @return the limited operation.
+   */
+  public <T> Observable<T> limit(final CouchbaseService service, final Observable<T> operation) {
+    return Observable.defer(() -> {
+      final Permit permit = acquire(service);
+      return operation
+          .doOnError(permit::release)
+          .doOnCompleted(() -> permit.release(null))
+          .doOnUnsubscribe(permit::cancel);
+    });
+  }
+
+  /**
+   * @param error the failure of an operation.
+   * @return true if the failure, or one of its causes, shows that the service is overloaded or unreachable.
+   */
+  public static boolean isOverload(Throwable error) {
+    for (int depth = 0; error != null && depth < 10; depth++, error = error.getCause()) {
+      if (error instanceof TimeoutException
+          || error instanceof RequestCancelledException
+          || error instanceof BackpressureException
+          || error instanceof TemporaryFailureException
+          || error instanceof ServiceNotAvailableException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param service the service.
+   * @return the current limit of the operations in flight to the service, or -1 if it is unlimited.
+   */
+  public int getLimit(CouchbaseService service) {
+    ConcurrencyLimit limit = services.get(service).limit;
+    return limit == null ? -1 : limit.getLimit();
+  }
+
+  /**
+   * @param service the service.
+   * @return the number of operations in flight to the service.
+   */
+  public int getInFlight(CouchbaseService service) {
+    return services.get(service).inFlight.get();
+  }
+
+  /**
+   * @param service the service.
+   * @return the state of the circuit breaker of the service, null if it has none.
+   */
+  public CircuitBreaker.State getCircuitState(CouchbaseService service) {
+    CircuitBreaker circuitBreaker = services.get(service).circuitBreaker;
+    return circuitBreaker == null ? null : circuitBreaker.getState();
+  }
+
+  /**
+   * @param service the service.
+   * @param reason why the operations were rejected.
+   * @return the number of operations to the service rejected for the given reason.
+   */
+  public long getRejectedCount(CouchbaseService service, Reason reason) {
+    ServiceLimiter serviceLimiter = services.get(service);
+    return (reason == Reason.CIRCUIT_OPEN ? serviceLimiter.circuitRejected : serviceLimiter.limitRejected).sum();
+  }
+
+  @ManagedAttribute(description = "Number of rejected operations")
+  public long getRejectedCount() {
+    long count = 0;
+    for (ServiceLimiter serviceLimiter : services.values()) {
+      count += serviceLimiter.limitRejected.sum() + serviceLimiter.circuitRejected.sum();
+    }
+    return count;
+  }
+
+  @ManagedAttribute(description = "Limit, operations in flight, circuit breaker and rejections per service")
+  public String[] getServiceStates() {
+    List<String> states = new ArrayList<String>();
+    for (Map.Entry<CouchbaseService, ServiceLimiter> entry : services.entrySet()) {
+      ServiceLimiter serviceLimiter = entry.getValue();
+      states.add(entry.getKey() + "{limit=" + getLimit(entry.getKey()) + ", inFlight=" + serviceLimiter.inFlight.get()
+          + ", circuit=" + getCircuitState(entry.getKey()) + ", limitRejected=" + serviceLimiter.limitRejected.sum()
+          + ", circuitRejected=" + serviceLimiter.circuitRejected.sum() + "}");
+    }
+    return states.toArray(new String[0]);
+  }
+
+  /**
+   * The clock measuring the latency of the operations and the open duration of the circuit breakers, which tests can
+   * override.
+   *
+   * @return the current time in nanoseconds.
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * The right to run an operation, given by {@link #acquire(CouchbaseService)}, to give back once it completed.
+   */
+  public final class Permit {
+
+    private final ServiceLimiter serviceLimiter;
+    private final ConcurrencyLimit limit;
+    private final CircuitBreaker circuitBreaker;
+    private final long start;
+    private final int inFlight;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(ServiceLimiter serviceLimiter, ConcurrencyLimit limit, CircuitBreaker circuitBreaker, long start,
+                   int inFlight) {
+      this.serviceLimiter = serviceLimiter;
+      this.limit = limit;
+      this.circuitBreaker = circuitBreaker;
+      this.start = start;
+      this.inFlight = inFlight;
+    }
+
+    /**
+     * Ends the operation, adjusting the limit and the circuit breaker from its outcome. Calling it again, or after
+     * {@link #cancel()}, has no effect.
+     *
+     * @param error the failure of the operation, or null if it succeeded.
+     */
+    public void release(Throwable error) {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      serviceLimiter.inFlight.decrementAndGet();
+      long now = nanoTime();
+      boolean overloaded = error != null && isOverload(error);
+      if (limit != null) {
+        limit.onSample(now - start, inFlight, overloaded);
+      }
+      if (circuitBreaker != null) {
+        circuitBreaker.onResult(overloaded, now);
+      }
+    }
+
+    /**
+     * Ends an operation which was abandoned before completing, without adjusting the limit nor the circuit breaker.
+     */
+    public void cancel() {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      serviceLimiter.inFlight.decrementAndGet();
+      if (circuitBreaker != null) {
+        circuitBreaker.onCancel();
+      }
+    }
+  }
+
+  private static final class ServiceLimiter {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder limitRejected = new LongAdder();
+    private final LongAdder circuitRejected = new LongAdder();
+    private volatile ConcurrencyLimit limit;
+    private volatile CircuitBreaker circuitBreaker;
+
+    private ServiceLimiter(ConcurrencyLimit limit, CircuitBreaker circuitBreaker) {
+      this.limit = limit;
+      this.circuitBreaker = circuitBreaker;
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import com.couchbase.client.java.query.N1qlQuery;
+import rx.Observable;
+
+import org.springframework.data.couchbase.core.BucketCallback;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * Retries the template operations failing transiently, according to a {@link RetryPolicy} chosen per operation
+ * (<code>findById</code>, <code>save</code>, <code>findByN1QL</code>... as reported to the
+ * {@link org.springframework.data.couchbase.monitor.OperationRecorder}) and entity type, and within a
+ * {@link RetryBudget} shared by all operations. The most specific policy applies: the one of the entity type and
+ * operation, then the one of the entity type, then the one of the operation, and the default policy otherwise.
+ * <p>
+ * Retries happen within the permit of an {@link OperationLimiter}, if any, so that they don't bypass its limit.
+ *
+ * @since 3.2
+ */
+@ManagedResource(description = "Couchbase Operation Retrier")
+public class OperationRetrier {
+
+  private static final Pattern READ_ONLY_STATEMENT = Pattern.compile("^[\\s(]*(SELECT|EXPLAIN)\\b",
+      Pattern.CASE_INSENSITIVE);
+
+  private final ConcurrentMap<Key, RetryPolicy> policies = new ConcurrentHashMap<Key, RetryPolicy>();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder budgetExhausted = new LongAdder();
+  private volatile RetryPolicy defaultPolicy = new RetryPolicy();
+  private volatile RetryBudget budget = new RetryBudget();
+
+  /**
+   * @param defaultPolicy the policy of the operations without a more specific one.
+   */
+  public void setDefaultPolicy(RetryPolicy defaultPolicy) {
+    Assert.notNull(defaultPolicy, "Default policy must not be null");
+    this.defaultPolicy = defaultPolicy;
+  }
+
+  /**
+   * @param operation the name of the operation.
+   * @param policy the policy of the operation, or null to remove it.
+   */
+  public void setPolicy(String operation, RetryPolicy policy) {
+    setPolicy(new Key(null, operation), policy);
+  }
+
+  /**
+   * @param entityType the entity type.
+   * @param policy the policy of the operations on the entity type, or null to remove it.
+   */
+  public void setPolicy(Class<?> entityType, RetryPolicy policy) {
+    setPolicy(new Key(entityType, null), policy);
+  }
+
+  /**
+   * @param entityType the entity type.
+   * @param operation the name of the operation.
+   * @param policy the policy of the operation on the entity type, or null to remove it.
+   */
+  public void setPolicy(Class<?> entityType, String operation, RetryPolicy policy) {
+    setPolicy(new Key(entityType, operation), policy);
+  }
+
+  private void setPolicy(Key key, RetryPolicy policy) {
+    if (policy == null) {
+      policies.remove(key);
+    } else {
+      policies.put(key, policy);
+    }
+  }
+
+  /**
+   * @param budget the budget of the retries, or null for no bound but the attempts of each policy.
+   */
+  public void setBudget(RetryBudget budget) {
+    this.budget = budget;
+  }
+
+  public RetryBudget getBudget() {
+    return budget;
+  }
+
+  /**
+   * @param operation the name of the operation.
+   * @param entityType the entity type, or null.
+   * @return the policy applying to the operation.
+   */
+  public RetryPolicy getPolicy(String operation, Class<?> entityType) {
+    if (!policies.isEmpty()) {
+      RetryPolicy policy;
+      if (entityType != null) {
+        if ((policy = policies.get(new Key(entityType, operation))) != null
+            || (policy = policies.get(new Key(entityType, null))) != null) {
+          return policy;
+        }
+      }
+      if ((policy = policies.get(new Key(null, operation))) != null) {
+        return policy;
+      }
+    }
+    return defaultPolicy;
+  }
+
+  /**
+   * Executes a blocking operation, retrying it while it fails transiently, sleeping between the attempts.
+   *
+   * @param operation the name of the operation.
+   * @param entityType the entity type, or null.
+   * @param idempotent whether the operation can be applied twice with the same outcome.
+   * @param action the operation.
+   * @return the result of the first successful attempt.
+   */
+  public <T> T execute(String operation, Class<?> entityType, boolean idempotent, BucketCallback<T> action)
+      throws TimeoutException, ExecutionException, InterruptedException {
+    RetryPolicy policy = getPolicy(operation, entityType);
+    deposit();
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return action.doInBucket();
+      } catch (RuntimeException e) {
+        if (!shouldRetry(policy, idempotent, attempt, e)) {
+          throw e;
+        }
+        TimeUnit.NANOSECONDS.sleep(policy.backoffNanos(attempt));
+      }
+    }
+  }
+
+  /**
+   * Retries an asynchronous operation while it fails transiently, by subscribing again after a backoff. An operation
+   * which emitted items before failing is not retried, so that they are not emitted twice.
+   *
+   * @param operation the name of the operation.
+   * @param entityType the entity type, or null.
+   * @param idempotent whether the operation can be applied twice with the same outcome.
+   * @param action the operation, which must be executed anew on each subscription.
+   * @return the retried operation.
+   */
+  public <T> Observable<T> retry(String operation, Class<?> entityType, boolean idempotent, Observable<T> action) {
+    final RetryPolicy policy = getPolicy(operation, entityType);
+    return Observable.defer(() -> {
+      deposit();
+      final AtomicBoolean emitted = new AtomicBoolean();
+      final AtomicInteger attempts = new AtomicInteger();
+      return action
+          .doOnNext(item -> emitted.set(true))
+          .retryWhen(errors -> errors.flatMap(error -> {
+            int attempt = attempts.incrementAndGet();
+            if (emitted.get() || !shouldRetry(policy, idempotent, attempt, error)) {
+              return Observable.error(error);
+            }
+            return Observable.timer(policy.backoffNanos(attempt), TimeUnit.NANOSECONDS);
+          }));
+    });
+  }
+
+  /**
+   * @param query a N1QL query.
+   * @return true if the statement of the query only reads, so that it can be retried.
+   */
+  public static boolean isReadOnly(N1qlQuery query) {
+    return READ_ONLY_STATEMENT.matcher(query.statement().toString()).find();
+  }
+
+  private void deposit() {
+    RetryBudget budget = this.budget;
+    if (budget != null) {
+      budget.deposit();
+    }
+  }
+
+  private boolean shouldRetry(RetryPolicy policy, boolean idempotent, int attempt, Throwable error) {
+    if (attempt >= policy.getMaxAttempts() || !(idempotent || policy.isRetryNonIdempotent())
+        || !policy.isRetryable(error)) {
+      return false;
+    }
+    RetryBudget budget = this.budget;
+    if (budget != null && !budget.tryWithdraw(nanoTime())) {
+      budgetExhausted.increment();
+      return false;
+    }
+    retries.increment();
+    return true;
+  }
+
+  @ManagedAttribute(description = "Number of retried attempts")
+  public long getRetryCount() {
+    return retries.sum();
+  }
+
+  @ManagedAttribute(description = "Number of retries denied by the retry budget")
+  public long getBudgetExhaustedCount() {
+    return budgetExhausted.sum();
+  }
+
+  /**
+   * The clock of the retry budget, which tests can override.
+   *
+   * @return the current time in nanoseconds.
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
+  private static final class Key {
+
+    private final Class<?> entityType;
+    private final String operation;
+
+    private Key(Class<?> entityType, String operation) {
+      this.entityType = entityType;
+      this.operation = operation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return entityType == key.entityType && Objects.equals(operation, key.operation);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(entityType, operation);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+/**
+ * Maps query result rows to entities, splitting large row lists across a {@link ForkJoinPool}. The order of the
+ * rows is preserved in the resulting list. Row lists smaller than the configured threshold are mapped sequentially
+ * on the calling thread, as the cost of forking would outweigh the decoding work.
+ *
+ * @since 3.2
+ */
+public class ParallelRowMapper {
+
+  /**
+   * The default minimum number of rows for which mapping is done in parallel.
+   */
+  public static final int DEFAULT_THRESHOLD = 1000;
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+  private final int batchSize;
+
+  /**
+   * Creates a mapper using the {@link #DEFAULT_THRESHOLD}.
+   *
+   * @param pool the pool in which rows are mapped, dedicated to mapping rather than the common pool, since mapping
+   *   may block, for instance on the lazy loading of a join.
+   */
+  public ParallelRowMapper(ForkJoinPool pool) {
+    this(pool, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * @param pool the pool in which rows are mapped.
+   * @param threshold the minimum number of rows for which mapping is done in parallel.
+   */
+  public ParallelRowMapper(ForkJoinPool pool, int threshold) {
+    Assert.notNull(pool, "ForkJoinPool must not be null");
+    Assert.isTrue(threshold > 0, "Threshold must be greater than zero");
+    this.pool = pool;
+    this.threshold = threshold;
+    //leaves a few batches per worker so that uneven rows can be balanced by work stealing
+    this.batchSize = Math.max(1, threshold / (pool.getParallelism() * 4));
+  }
+
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Maps all the rows, in parallel if there are at least {@link #getThreshold() threshold} of them.
+   *
+   * @param rows the rows to map.
+   * @param mapper the function mapping a single row, must be safe to invoke concurrently.
+   * @return the mapped values, in the order of the rows.
+   */
+  public <R, T> List<T> map(List<R> rows, Function<? super R, ? extends T> mapper) {
+    if (rows.size() < threshold) {
+      return mapSequentially(rows, mapper);
+    }
+    List<R> indexedRows = rows instanceof RandomAccess ? rows : new ArrayList<R>(rows);
+    Object[] mapped = new Object[indexedRows.size()];
+    pool.invoke(new MappingAction<R>(indexedRows, mapper, mapped, 0, mapped.length, batchSize));
+    @SuppressWarnings("unchecked")
+    List<T> result = (List<T>) Arrays.asList(mapped);
+    return new ArrayList<T>(result);
+  }
+
+  /**
+   * Maps all the rows on the calling thread.
+   */
+  public static <R, T> List<T> mapSequentially(List<R> rows, Function<? super R, ? extends T> mapper) {
+    List<T> result = new ArrayList<T>(rows.size());
+    for (R row : rows) {
+      result.add(mapper.apply(row));
+    }
+    return result;
+  }
+
+  private static class MappingAction<R> extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<R> rows;
+    private final Function<? super R, ?> mapper;
+    private final Object[] target;
+    private final int from;
+    private final int to;
+    private final int batchSize;
+
+    MappingAction(List<R> rows, Function<? super R, ?> mapper, Object[] target, int from, int to, int batchSize) {
+      this.rows = rows;
+      this.mapper = mapper;
+      this.target = target;
+      this.from = from;
+      this.to = to;
+      this.batchSize = batchSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= batchSize) {
+        for (int i = from; i < to; i++) {
+          target[i] = mapper.apply(rows.get(i));
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new MappingAction<R>(rows, mapper, target, from, middle, batchSize),
+          new MappingAction<R>(rows, mapper, target, middle, to, batchSize));
+    }
+  }
+}
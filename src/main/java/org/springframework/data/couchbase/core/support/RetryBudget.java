@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * Bounds the retries of an {@link OperationRetrier} to a fraction of the operations, so that retries cannot multiply
+ * the load of a cluster which is already failing ("retry storm"). Each operation deposits a fraction of a retry in the
+ * budget and each retry withdraws a whole one, the balance being capped. A minimum number of retries per second is
+ * always allowed, so that the retries of a low traffic application are not starved.
+ *
+ * @since 3.2
+ */
+public class RetryBudget {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final double ratio;
+  private final int minRetriesPerSecond;
+  private final double maxBalance;
+
+  private double balance;
+  private long currentSecond = Long.MIN_VALUE;
+  private int retriesInSecond;
+
+  /**
+   * Creates a budget allowing retries for 10% of the operations, and at least 10 retries per second.
+   */
+  public RetryBudget() {
+    this(0.1, 10);
+  }
+
+  /**
+   * @param ratio the number of retries allowed per operation, between 0 and 1.
+   * @param minRetriesPerSecond the number of retries allowed each second regardless of the ratio.
+   */
+  public RetryBudget(double ratio, int minRetriesPerSecond) {
+    Assert.isTrue(ratio >= 0 && ratio <= 1, "Ratio must be between 0 and 1");
+    Assert.isTrue(minRetriesPerSecond >= 0, "Minimum retries must not be negative");
+    this.ratio = ratio;
+    this.minRetriesPerSecond = minRetriesPerSecond;
+    this.maxBalance = Math.max(1, ratio * 1000);
+  }
+
+  /**
+   * Records an operation, adding to the balance.
+   */
+  synchronized void deposit() {
+    balance = Math.min(maxBalance, balance + ratio);
+  }
+
+  /**
+   * @param now the current time, in nanoseconds.
+   * @return true if a retry is allowed, which is then withdrawn from the budget.
+   */
+  synchronized boolean tryWithdraw(long now) {
+    long second = now / SECOND;
+    if (second != currentSecond) {
+      currentSecond = second;
+      retriesInSecond = 0;
+    }
+    if (retriesInSecond < minRetriesPerSecond) {
+      retriesInSecond++;
+      return true;
+    }
+    if (balance >= 1) {
+      balance--;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of retries currently available beyond the minimum per second.
+   */
+  public synchronized double getBalance() {
+    return balance;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "RetryBudget{ratio=" + ratio + ", minRetriesPerSecond=" + minRetriesPerSecond + ", balance="
+        + (long) balance + "}";
+  }
+}
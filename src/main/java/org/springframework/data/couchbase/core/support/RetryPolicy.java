@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.core.BackpressureException;
+import com.couchbase.client.core.RequestCancelledException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import com.couchbase.client.java.error.TemporaryLockFailureException;
+
+import org.springframework.util.Assert;
+
+/**
+ * How an {@link OperationRetrier} retries an operation failing transiently: the number of attempts, the exponential
+ * backoff between them and whether operations which are not idempotent are retried too.
+ * <p>
+ * Each backoff is drawn at random between zero and the exponential delay of the attempt, capped by the maximum
+ * backoff ("full jitter"), so that the clients which failed together don't retry together. The failures retried are
+ * temporary failures, temporary locks, cancelled requests and backpressure from the SDK, found in the exception or in
+ * its causes. Override {@link #isRetryable(Throwable)} to change them.
+ *
+ * @since 3.2
+ */
+public class RetryPolicy {
+
+  private int maxAttempts = 3;
+  private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(10);
+  private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+  private double multiplier = 2;
+  private boolean retryNonIdempotent;
+
+  /**
+   * @return a policy never retrying.
+   */
+  public static RetryPolicy none() {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setMaxAttempts(1);
+    return policy;
+  }
+
+  /**
+   * @param maxAttempts the maximum number of attempts of an operation, including the first one. Default is 3.
+   */
+  public void setMaxAttempts(int maxAttempts) {
+    Assert.isTrue(maxAttempts > 0, "Max attempts must be greater than zero");
+    this.maxAttempts = maxAttempts;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @param initialBackoff the upper bound of the backoff before the first retry. Default is 10 milliseconds.
+   * @param maxBackoff the upper bound of all the backoffs. Default is 1 second.
+   * @param unit the unit of the backoffs.
+   */
+  public void setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+    Assert.isTrue(initialBackoff >= 0 && maxBackoff >= initialBackoff, "Backoffs must be positive and ordered");
+    this.initialBackoffNanos = unit.toNanos(initialBackoff);
+    this.maxBackoffNanos = unit.toNanos(maxBackoff);
+  }
+
+  /**
+   * @param multiplier the factor applied to the backoff after each retry. Default is 2.
+   */
+  public void setMultiplier(double multiplier) {
+    Assert.isTrue(multiplier >= 1, "Multiplier must be at least 1");
+    this.multiplier = multiplier;
+  }
+
+  /**
+   * Operations which may have been applied by the server although they failed (eg. an insert cancelled after being
+   * sent) then fail when retried, or apply twice. Only the idempotent ones (reads, upserts, replaces, N1QL SELECT
+   * statements) are retried by default.
+   *
+   * @param retryNonIdempotent true to also retry the operations which are not idempotent (inserts, removes, N1QL
+   *   statements other than SELECT). Default is false.
+   */
+  public void setRetryNonIdempotent(boolean retryNonIdempotent) {
+    this.retryNonIdempotent = retryNonIdempotent;
+  }
+
+  public boolean isRetryNonIdempotent() {
+    return retryNonIdempotent;
+  }
+
+  /**
+   * @param error the failure of an attempt.
+   * @return true if the failure is transient, so that the operation may succeed if retried.
+   */
+  public boolean isRetryable(Throwable error) {
+    for (int depth = 0; error != null && depth < 10; depth++, error = error.getCause()) {
+      if (error instanceof TemporaryFailureException
+          || error instanceof TemporaryLockFailureException
+          || error instanceof RequestCancelledException
+          || error instanceof BackpressureException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param attempt the number of the failed attempt, starting at 1.
+   * @return the time to wait before the next attempt, in nanoseconds.
+   */
+  public long backoffNanos(int attempt) {
+    double bound = Math.min(maxBackoffNanos, initialBackoffNanos * Math.pow(multiplier, attempt - 1));
+    return (long) (ThreadLocalRandom.current().nextDouble() * bound);
+  }
+
+  @Override
+  public String toString() {
+    return "RetryPolicy{maxAttempts=" + maxAttempts + ", backoff=" + TimeUnit.NANOSECONDS.toMillis(initialBackoffNanos)
+        + ".." + TimeUnit.NANOSECONDS.toMillis(maxBackoffNanos) + "ms, multiplier=" + multiplier
+        + ", retryNonIdempotent=" + retryNonIdempotent + "}";
+  }
+}
@@ -33,7 +33,7 @@ public class TemplateUtils {
 	private static PersistenceExceptionTranslator exceptionTranslator = new CouchbaseExceptionTranslator();
 
 
-	public static Observable translateError(Throwable e) {
+	public static <T> Observable<T> translateError(Throwable e) {
 		if (e instanceof RuntimeException) {
 			return Observable.error(exceptionTranslator.translateExceptionIfPossible((RuntimeException) e));
 		}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core.support;
+
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.data.couchbase.core.CouchbaseTemplate;
+import org.springframework.data.couchbase.core.UnitOfWork;
+import org.springframework.data.couchbase.core.WithUnitOfWork;
+import org.springframework.util.Assert;
+
+/**
+ * Runs the methods annotated with {@link WithUnitOfWork}, or declared by a type annotated with it, in a
+ * {@link UnitOfWork} of a template: the unit of work is committed when the outermost of these methods returns, and
+ * discarded when it throws an exception. Register it as a bean in a context creating proxies for the advisors, for
+ * instance with <code>@EnableAspectJAutoProxy</code>.
+ *
+ * @since 3.2
+ */
+public class UnitOfWorkAdvisor extends AbstractPointcutAdvisor {
+
+  private static final long serialVersionUID = 4304572186000620887L;
+
+  private final Pointcut pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(WithUnitOfWork.class, true))
+      .union(AnnotationMatchingPointcut.forMethodAnnotation(WithUnitOfWork.class));
+  private final Advice advice;
+
+  /**
+   * @param template the template whose writes are recorded by the units of work.
+   */
+  public UnitOfWorkAdvisor(final CouchbaseTemplate template) {
+    Assert.notNull(template, "Template must not be null");
+    this.advice = new UnitOfWorkInterceptor(template);
+  }
+
+  @Override
+  public Pointcut getPointcut() {
+    return pointcut;
+  }
+
+  @Override
+  public Advice getAdvice() {
+    return advice;
+  }
+
+  private static final class UnitOfWorkInterceptor implements MethodInterceptor {
+
+    private final CouchbaseTemplate template;
+
+    private UnitOfWorkInterceptor(CouchbaseTemplate template) {
+      this.template = template;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      if (template.getCurrentUnitOfWork() != null) {
+        return invocation.proceed();
+      }
+      try (UnitOfWork unitOfWork = template.beginUnitOfWork()) {
+        Object result = invocation.proceed();
+        unitOfWork.commit();
+        return result;
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.springframework.util.Assert;
+
+/**
+ * Decides which operations of an {@link InMemoryBucket} fail, to exercise the error handling of the code under test.
+ *
+ * @since 3.2
+ */
+@FunctionalInterface
+public interface FailureInjector {
+
+  /**
+   * Returns the failure of an operation about to be executed.
+   *
+   * @param operation the name of the bucket operation (eg. <code>get</code>, <code>upsert</code>, <code>query</code>).
+   * @param target the document key, the N1QL statement or the view of the operation.
+   * @return the exception the operation fails with, or null to execute it normally.
+   */
+  RuntimeException failureFor(String operation, String target);
+
+  /**
+   * Creates a {@link FailureInjector} failing a random fraction of all operations.
+   *
+   * @param ratio the probability of an operation to fail, between 0 and 1.
+   * @param failure supplies the exception of each failed operation.
+   * @return the failure injector.
+   */
+  static FailureInjector random(final double ratio, final Supplier<? extends RuntimeException> failure) {
+    Assert.isTrue(ratio >= 0 && ratio <= 1, "Ratio must be between 0 and 1");
+    Assert.notNull(failure, "Failure must not be null");
+    return (operation, target) -> ThreadLocalRandom.current().nextDouble() < ratio ? failure.get() : null;
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.bucket.AsyncBucketManager;
+import com.couchbase.client.java.bucket.BucketManager;
+import com.couchbase.client.java.cluster.ClusterInfo;
+import com.couchbase.client.java.env.CouchbaseEnvironment;
+import com.couchbase.client.java.error.CASMismatchException;
+import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+
+import org.springframework.util.Assert;
+
+/**
+ * An in-memory stand-in for a Couchbase bucket, exposed as a {@link Bucket} and an {@link AsyncBucket} so that a
+ * {@link org.springframework.data.couchbase.core.CouchbaseTemplate}, a
+ * {@link org.springframework.data.couchbase.core.RxJavaCouchbaseTemplate} and the repositories built on them run
+ * unchanged, without a server. It is meant for load and integration tests measuring the overhead of the library itself
+ * and the behavior of the application under latency and failures:
+ * <ul>
+ *   <li>the key/value operations (get, getAndTouch, exists, insert, upsert, replace, remove, touch and counter) honor
+ *   CAS and expiry, and fail with the exceptions of the SDK. getFromReplica reads the single copy of the document, as
+ *   a replica always up to date, and can be failed independently of get;</li>
+ *   <li>N1QL queries support the subset of N1QL generated by the repositories: SELECT and DELETE over the bucket,
+ *   with filters, ANY ... SATISFIES, grouping, aggregates, ordering and paging, as well as the joins of
+ *   {@link org.springframework.data.couchbase.core.query.N1qlJoin}. Index statements are accepted and ignored, as all
+ *   queries scan the whole bucket;</li>
+ *   <li>views are limited to the ones declared with
+ *   {@link org.springframework.data.couchbase.core.query.ViewIndexed} and their default map function, with the
+ *   built-in <code>_count</code> reduce;</li>
+ *   <li>an artificial latency can be added to each operation and failures injected with a {@link FailureInjector}.</li>
+ * </ul>
+ * Other operations (eg. sub-document, spatial views, full-text search) throw {@link UnsupportedOperationException}.
+ *
+ * @since 3.2
+ */
+public class InMemoryBucket {
+
+  /**
+   * Expiries up to 30 days are relative to the current time, longer ones are absolute Unix times.
+   */
+  private static final int MAX_RELATIVE_EXPIRY = 30 * 24 * 60 * 60;
+
+  private static final long KV_TIMEOUT = 2500;
+  private static final long QUERY_TIMEOUT = 75000;
+
+  private final String name;
+  private final ConcurrentNavigableMap<String, StoredDocument> documents =
+      new ConcurrentSkipListMap<String, StoredDocument>();
+  private final AtomicLong casSequence = new AtomicLong();
+  private final N1qlEngine n1qlEngine = new N1qlEngine(this);
+  private final InMemoryViews views = new InMemoryViews();
+
+  private final Bucket bucket;
+  private final AsyncBucket asyncBucket;
+  private final BucketManager bucketManager;
+  private final AsyncBucketManager asyncBucketManager;
+  private final CouchbaseEnvironment environment;
+  private final ClusterInfo clusterInfo = new InMemoryClusterInfo();
+
+  private volatile long minLatencyNanos;
+  private volatile long maxLatencyNanos;
+  private volatile long minQueryLatencyNanos;
+  private volatile long maxQueryLatencyNanos;
+  private volatile FailureInjector failureInjector;
+
+  /**
+   * @param name the name of the bucket, used in the generated N1QL statements.
+   */
+  public InMemoryBucket(String name) {
+    Assert.hasText(name, "Name must not be empty");
+    this.name = name;
+    this.bucket = proxy(Bucket.class, new InMemoryBucketHandler(this));
+    this.asyncBucket = proxy(AsyncBucket.class, new InMemoryBucketHandler(this));
+    this.bucketManager = proxy(BucketManager.class, new InMemoryBucketManagerHandler(this));
+    this.asyncBucketManager = proxy(AsyncBucketManager.class, new InMemoryBucketManagerHandler(this));
+    //only the timeouts of the environment are read, by the code applying them to asynchronous operations, and have
+    //the default values of the SDK
+    this.environment = proxy(CouchbaseEnvironment.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "kvTimeout":
+          return KV_TIMEOUT;
+        case "queryTimeout":
+        case "viewTimeout":
+          return QUERY_TIMEOUT;
+        case "toString":
+          return "InMemoryEnvironment{" + name + "}";
+        default:
+          throw new UnsupportedOperationException("The in-memory bucket does not support " + method);
+      }
+    });
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the blocking {@link Bucket} view of this bucket.
+   */
+  public Bucket getBucket() {
+    return bucket;
+  }
+
+  /**
+   * @return the asynchronous {@link AsyncBucket} view of this bucket.
+   */
+  public AsyncBucket getAsyncBucket() {
+    return asyncBucket;
+  }
+
+  /**
+   * @return a {@link ClusterInfo} of a single node cluster supporting N1QL, to be used along with this bucket.
+   */
+  public ClusterInfo getClusterInfo() {
+    return clusterInfo;
+  }
+
+  BucketManager getBucketManager() {
+    return bucketManager;
+  }
+
+  AsyncBucketManager getAsyncBucketManager() {
+    return asyncBucketManager;
+  }
+
+  CouchbaseEnvironment getEnvironment() {
+    return environment;
+  }
+
+  N1qlEngine getN1qlEngine() {
+    return n1qlEngine;
+  }
+
+  InMemoryViews getViews() {
+    return views;
+  }
+
+  /**
+   * Adds a latency to each key/value operation, drawn uniformly between the given bounds (no latency by default).
+   *
+   * @param min the minimum latency.
+   * @param max the maximum latency.
+   * @param unit the unit of the bounds.
+   */
+  public void setLatency(long min, long max, TimeUnit unit) {
+    Assert.isTrue(min >= 0 && max >= min, "Latency bounds must be positive and ordered");
+    this.minLatencyNanos = unit.toNanos(min);
+    this.maxLatencyNanos = unit.toNanos(max);
+  }
+
+  /**
+   * Adds a latency to each N1QL and view query, drawn uniformly between the given bounds (no latency by default).
+   *
+   * @param min the minimum latency.
+   * @param max the maximum latency.
+   * @param unit the unit of the bounds.
+   */
+  public void setQueryLatency(long min, long max, TimeUnit unit) {
+    Assert.isTrue(min >= 0 && max >= min, "Latency bounds must be positive and ordered");
+    this.minQueryLatencyNanos = unit.toNanos(min);
+    this.maxQueryLatencyNanos = unit.toNanos(max);
+  }
+
+  /**
+   * Sets the {@link FailureInjector} deciding which operations fail, or null for none (the default).
+   */
+  public void setFailureInjector(FailureInjector failureInjector) {
+    this.failureInjector = failureInjector;
+  }
+
+  /**
+   * @return the number of documents in the bucket that are not expired.
+   */
+  public int size() {
+    long now = currentTimeMillis();
+    int size = 0;
+    for (StoredDocument document : documents.values()) {
+      if (!document.isExpired(now)) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Removes all the documents of the bucket, like a flush.
+   */
+  public void clear() {
+    documents.clear();
+  }
+
+  /**
+   * The clock used for expiry, which tests can override to let documents expire without waiting.
+   *
+   * @return the current time in milliseconds.
+   */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  long latencyNanos(boolean query) {
+    long min = query ? minQueryLatencyNanos : minLatencyNanos;
+    long max = query ? maxQueryLatencyNanos : maxLatencyNanos;
+    return max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : max;
+  }
+
+  RuntimeException failureFor(String operation, String target) {
+    FailureInjector injector = this.failureInjector;
+    return injector == null ? null : injector.failureFor(operation, target);
+  }
+
+  StoredDocument get(String id) {
+    StoredDocument document = documents.get(id);
+    if (document != null && document.isExpired(currentTimeMillis())) {
+      documents.remove(id, document);
+      return null;
+    }
+    return document;
+  }
+
+  /**
+   * @return the documents that are not expired, ordered by id.
+   */
+  List<StoredDocument> scan() {
+    long now = currentTimeMillis();
+    List<StoredDocument> live = new ArrayList<StoredDocument>();
+    for (StoredDocument document : documents.values()) {
+      if (document.isExpired(now)) {
+        documents.remove(document.getId(), document);
+      } else {
+        live.add(document);
+      }
+    }
+    return live;
+  }
+
+  StoredDocument insert(final String id, final String content, final int expiry) {
+    return documents.compute(id, (key, existing) -> {
+      if (existing != null && !existing.isExpired(currentTimeMillis())) {
+        throw new DocumentAlreadyExistsException();
+      }
+      return newVersion(id, content, expiry);
+    });
+  }
+
+  StoredDocument upsert(final String id, final String content, final int expiry) {
+    return documents.compute(id, (key, existing) -> newVersion(id, content, expiry));
+  }
+
+  StoredDocument replace(final String id, final String content, final int expiry, final long cas) {
+    return documents.compute(id, (key, existing) -> {
+      checkExisting(existing, cas);
+      return newVersion(id, content, expiry);
+    });
+  }
+
+  StoredDocument remove(final String id, final long cas) {
+    final StoredDocument[] removed = new StoredDocument[1];
+    documents.compute(id, (key, existing) -> {
+      checkExisting(existing, cas);
+      removed[0] = new StoredDocument(id, null, casSequence.incrementAndGet(), 0, 0);
+      return null;
+    });
+    return removed[0];
+  }
+
+  /**
+   * Updates the expiry of a document.
+   *
+   * @return the touched document, null if it does not exist.
+   */
+  StoredDocument touch(final String id, final int expiry) {
+    return documents.computeIfPresent(id, (key, existing) -> existing.isExpired(currentTimeMillis()) ? null
+        : new StoredDocument(id, existing.getContent(), casSequence.incrementAndGet(), expiry,
+            expiresAtMillis(expiry)));
+  }
+
+  /**
+   * Adds the delta to a counter document, creating it with the initial value if it does not exist and initial is not
+   * null. As on the server, counters do not go below zero.
+   */
+  StoredDocument counter(final String id, final long delta, final Long initial, final int expiry) {
+    return documents.compute(id, (key, existing) -> {
+      if (existing == null || existing.isExpired(currentTimeMillis())) {
+        if (initial == null) {
+          throw new DocumentDoesNotExistException();
+        }
+        return newVersion(id, String.valueOf(initial), expiry);
+      }
+      long value;
+      try {
+        value = Long.parseLong(existing.getContent().trim());
+      } catch (NumberFormatException e) {
+        throw new CouchbaseException("Document " + id + " is not a counter");
+      }
+      value = Math.max(0, value + delta);
+      return new StoredDocument(id, String.valueOf(value), casSequence.incrementAndGet(), existing.getExpiry(),
+          existing.getExpiresAtMillis());
+    });
+  }
+
+  private void checkExisting(StoredDocument existing, long cas) {
+    if (existing == null || existing.isExpired(currentTimeMillis())) {
+      throw new DocumentDoesNotExistException();
+    }
+    if (cas != 0 && cas != existing.getCas()) {
+      throw new CASMismatchException();
+    }
+  }
+
+  private StoredDocument newVersion(String id, String content, int expiry) {
+    return new StoredDocument(id, content, casSequence.incrementAndGet(), expiry, expiresAtMillis(expiry));
+  }
+
+  private long expiresAtMillis(int expiry) {
+    if (expiry <= 0) {
+      return 0;
+    }
+    if (expiry <= MAX_RELATIVE_EXPIRY) {
+      return currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiry);
+    }
+    return TimeUnit.SECONDS.toMillis(expiry);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(InMemoryBucket.class.getClassLoader(), new Class<?>[] { type }, handler);
+  }
+
+  @Override
+  public String toString() {
+    return "InMemoryBucket{" + name + "}";
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.couchbase.client.java.document.Document;
+import com.couchbase.client.java.document.JsonArrayDocument;
+import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.JsonLongDocument;
+import com.couchbase.client.java.document.RawJsonDocument;
+import com.couchbase.client.java.document.StringDocument;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.Statement;
+import com.couchbase.client.java.view.ViewQuery;
+import rx.Observable;
+
+/**
+ * Implements the {@link com.couchbase.client.java.Bucket} and {@link com.couchbase.client.java.AsyncBucket} proxies of
+ * an {@link InMemoryBucket}. Methods returning an {@link Observable} are deferred until subscription, the others are
+ * executed directly. The <code>(timeout, unit)</code> variants of the methods are supported but ignore the timeout,
+ * just like the durability requirements.
+ *
+ * @since 3.2
+ */
+class InMemoryBucketHandler implements InvocationHandler {
+
+  private final InMemoryBucket bucket;
+
+  InMemoryBucketHandler(InMemoryBucket bucket) {
+    this.bucket = bucket;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final List<Object> arguments = arguments(args);
+    boolean async = method.getReturnType() == Observable.class;
+
+    switch (method.getName()) {
+      case "equals":
+        return proxy == arguments.get(0);
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return bucket.toString();
+      case "name":
+        return bucket.getName();
+      case "async":
+        return bucket.getAsyncBucket();
+      case "environment":
+        return bucket.getEnvironment();
+      case "bucketManager":
+        return async ? Observable.just(bucket.getAsyncBucketManager()) : bucket.getBucketManager();
+      case "close":
+        return async ? Observable.just(Boolean.TRUE) : Boolean.TRUE;
+      case "isClosed":
+        return Boolean.FALSE;
+      case "get":
+      case "getAndTouch":
+      case "exists":
+      case "insert":
+      case "upsert":
+      case "replace":
+      case "remove":
+      case "touch":
+      case "counter":
+        final String operation = method.getName();
+        return execute(async, operation, id(arguments.get(0)), false, () -> keyValue(operation, arguments));
+      case "getFromReplica":
+        //the bucket has a single copy of each document, which stands for all the replicas
+        return execute(async, "getFromReplica", id(arguments.get(0)), false, () -> {
+          Object document = keyValue("get", arguments);
+          if (async) {
+            return document;
+          }
+          return document == null ? Collections.emptyList() : Collections.singletonList(document);
+        });
+      case "query":
+        Object query = arguments.get(0);
+        if (query instanceof Statement) {
+          query = N1qlQuery.simple((Statement) query);
+        }
+        if (query instanceof N1qlQuery) {
+          final N1qlQuery n1qlQuery = (N1qlQuery) query;
+          return execute(async, "query", n1qlQuery.statement().toString(), true,
+              () -> bucket.getN1qlEngine().execute(n1qlQuery).toResult(async));
+        }
+        if (query instanceof ViewQuery) {
+          final ViewQuery viewQuery = (ViewQuery) query;
+          return execute(async, "view", viewQuery.getDesign() + "/" + viewQuery.getView(), true,
+              () -> bucket.getViews().query(viewQuery, bucket, async));
+        }
+        break;
+      default:
+        break;
+    }
+    throw new UnsupportedOperationException("The in-memory bucket does not support " + method);
+  }
+
+  /**
+   * Executes an operation after the artificial latency, unless a failure is injected. Asynchronous operations are
+   * executed on subscription and emit nothing for a null result.
+   */
+  private Object execute(boolean async, final String operation, final String target, final boolean query,
+                         final Callable<Object> body) throws Exception {
+    if (!async) {
+      RuntimeException failure = bucket.failureFor(operation, target);
+      if (failure != null) {
+        throw failure;
+      }
+      long latency = bucket.latencyNanos(query);
+      if (latency > 0) {
+        LockSupport.parkNanos(latency);
+      }
+      return body.call();
+    }
+
+    Observable<Object> result = Observable.defer(() -> {
+      RuntimeException failure = bucket.failureFor(operation, target);
+      if (failure != null) {
+        return Observable.error(failure);
+      }
+      try {
+        Object value = body.call();
+        return value == null ? Observable.empty() : Observable.just(value);
+      } catch (Exception e) {
+        return Observable.error(e);
+      }
+    });
+    long latency = bucket.latencyNanos(query);
+    return latency > 0 ? result.delaySubscription(latency, TimeUnit.NANOSECONDS) : result;
+  }
+
+  private Object keyValue(String operation, List<Object> arguments) {
+    Object first = arguments.get(0);
+    String id = id(first);
+    Document<?> document = first instanceof Document ? (Document<?>) first : null;
+    Class<?> target = targetClass(arguments, document);
+
+    switch (operation) {
+      case "get": {
+        StoredDocument stored = bucket.get(id);
+        return stored == null ? null : toDocument(target, stored);
+      }
+      case "getAndTouch": {
+        int expiry = document != null ? document.expiry() : (Integer) arguments.get(1);
+        StoredDocument stored = bucket.touch(id, expiry);
+        return stored == null ? null : toDocument(target, stored);
+      }
+      case "exists":
+        return bucket.get(id) != null;
+      case "insert":
+        return mutated(document, bucket.insert(id, encode(document), document.expiry()));
+      case "upsert":
+        return mutated(document, bucket.upsert(id, encode(document), document.expiry()));
+      case "replace":
+        return mutated(document, bucket.replace(id, encode(document), document.expiry(), document.cas()));
+      case "remove": {
+        StoredDocument removed = bucket.remove(id, document == null ? 0 : document.cas());
+        return newDocument(target, id, 0, null, removed.getCas());
+      }
+      case "touch": {
+        int expiry = document != null ? document.expiry() : (Integer) arguments.get(1);
+        if (bucket.touch(id, expiry) == null) {
+          throw new DocumentDoesNotExistException();
+        }
+        return Boolean.TRUE;
+      }
+      case "counter": {
+        //counter(id, delta[, initial[, expiry]])
+        long delta = (Long) arguments.get(1);
+        Long initial = arguments.size() > 2 && arguments.get(2) instanceof Long ? (Long) arguments.get(2) : null;
+        int expiry = arguments.size() > 3 && arguments.get(3) instanceof Integer ? (Integer) arguments.get(3) : 0;
+        StoredDocument stored = bucket.counter(id, delta, initial, expiry);
+        return JsonLongDocument.create(id, stored.getExpiry(), Long.valueOf(stored.getContent()), stored.getCas());
+      }
+      default:
+        throw new UnsupportedOperationException(operation);
+    }
+  }
+
+  /**
+   * Removes the trailing timeout and its unit from the arguments.
+   */
+  private static List<Object> arguments(Object[] args) {
+    if (args == null) {
+      return new ArrayList<Object>();
+    }
+    List<Object> arguments = new ArrayList<Object>(Arrays.asList(args));
+    if (arguments.size() >= 2 && arguments.get(arguments.size() - 1) instanceof TimeUnit) {
+      arguments.remove(arguments.size() - 1);
+      arguments.remove(arguments.size() - 1);
+    }
+    return arguments;
+  }
+
+  private static String id(Object idOrDocument) {
+    return idOrDocument instanceof Document ? ((Document<?>) idOrDocument).id() : String.valueOf(idOrDocument);
+  }
+
+  private static Class<?> targetClass(List<Object> arguments, Document<?> document) {
+    for (Object argument : arguments) {
+      if (argument instanceof Class) {
+        return (Class<?>) argument;
+      }
+    }
+    return document != null ? document.getClass() : JsonDocument.class;
+  }
+
+  private static Document<?> mutated(Document<?> document, StoredDocument stored) {
+    return newDocument(document.getClass(), document.id(), document.expiry(), document.content(), stored.getCas());
+  }
+
+  static Document<?> toDocument(Class<?> type, StoredDocument stored) {
+    String content = stored.getContent();
+    Object decoded;
+    if (type == JsonDocument.class) {
+      decoded = JsonObject.fromJson(content);
+    } else if (type == JsonArrayDocument.class) {
+      decoded = JsonArray.fromJson(content);
+    } else if (type == JsonLongDocument.class) {
+      decoded = Long.valueOf(content.trim());
+    } else {
+      decoded = content;
+    }
+    return newDocument(type, stored.getId(), stored.getExpiry(), decoded, stored.getCas());
+  }
+
+  private static Document<?> newDocument(Class<?> type, String id, int expiry, Object content, long cas) {
+    if (type == RawJsonDocument.class) {
+      return RawJsonDocument.create(id, expiry, (String) content, cas);
+    } else if (type == JsonDocument.class) {
+      return JsonDocument.create(id, expiry, (JsonObject) content, cas);
+    } else if (type == StringDocument.class) {
+      return StringDocument.create(id, expiry, (String) content, cas);
+    } else if (type == JsonArrayDocument.class) {
+      return JsonArrayDocument.create(id, expiry, (JsonArray) content, cas);
+    } else if (type == JsonLongDocument.class) {
+      return JsonLongDocument.create(id, expiry, (Long) content, cas);
+    }
+    throw new UnsupportedOperationException("The in-memory bucket does not support documents of type " + type);
+  }
+
+  private static String encode(Document<?> document) {
+    Object content = document.content();
+    if (content instanceof String || content instanceof JsonObject || content instanceof JsonArray
+        || content instanceof Long) {
+      return content.toString();
+    }
+    throw new UnsupportedOperationException("The in-memory bucket does not support documents of type "
+        + document.getClass());
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import com.couchbase.client.java.error.DesignDocumentAlreadyExistsException;
+import com.couchbase.client.java.error.DesignDocumentDoesNotExistException;
+import com.couchbase.client.java.view.DesignDocument;
+import rx.Observable;
+
+/**
+ * Implements the {@link com.couchbase.client.java.bucket.BucketManager} and
+ * {@link com.couchbase.client.java.bucket.AsyncBucketManager} proxies of an {@link InMemoryBucket}, which manage the
+ * design documents of its views and flush it.
+ *
+ * @since 3.2
+ */
+class InMemoryBucketManagerHandler implements InvocationHandler {
+
+  private final InMemoryBucket bucket;
+
+  InMemoryBucketManagerHandler(InMemoryBucket bucket) {
+    this.bucket = bucket;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    boolean async = method.getReturnType() == Observable.class;
+    InMemoryViews views = bucket.getViews();
+    Object result;
+
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "BucketManager{" + bucket.getName() + "}";
+      case "async":
+        return bucket.getAsyncBucketManager();
+      case "flush":
+        bucket.clear();
+        result = Boolean.TRUE;
+        break;
+      case "getDesignDocuments": {
+        List<DesignDocument> designDocuments = views.getDesignDocuments(development(args, 0));
+        return async ? Observable.from(designDocuments) : designDocuments;
+      }
+      case "getDesignDocument":
+        result = views.getDesignDocument((String) args[0], development(args, 1));
+        break;
+      case "insertDesignDocument": {
+        DesignDocument designDocument = (DesignDocument) args[0];
+        if (!views.insertDesignDocument(designDocument, development(args, 1))) {
+          return failure(async, new DesignDocumentAlreadyExistsException(designDocument.name()));
+        }
+        result = designDocument;
+        break;
+      }
+      case "upsertDesignDocument":
+        views.upsertDesignDocument((DesignDocument) args[0], development(args, 1));
+        result = args[0];
+        break;
+      case "removeDesignDocument":
+        result = views.removeDesignDocument((String) args[0], development(args, 1));
+        break;
+      case "publishDesignDocument":
+        result = views.publishDesignDocument((String) args[0]);
+        if (result == null) {
+          return failure(async, new DesignDocumentDoesNotExistException((String) args[0]));
+        }
+        break;
+      default:
+        throw new UnsupportedOperationException("The in-memory bucket does not support " + method);
+    }
+    if (async) {
+      return result == null ? Observable.empty() : Observable.just(result);
+    }
+    return result;
+  }
+
+  private static boolean development(Object[] args, int index) {
+    return args != null && args.length > index && args[index] instanceof Boolean && (Boolean) args[index];
+  }
+
+  private static Object failure(boolean async, RuntimeException failure) {
+    if (async) {
+      return Observable.error(failure);
+    }
+    throw failure;
+  }
+}
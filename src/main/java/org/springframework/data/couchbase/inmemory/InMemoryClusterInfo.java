@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.couchbase.client.java.cluster.ClusterInfo;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.util.features.CouchbaseFeature;
+import com.couchbase.client.java.util.features.Version;
+
+/**
+ * The {@link ClusterInfo} of an {@link InMemoryBucket}: a single node of a version supporting N1QL.
+ *
+ * @since 3.2
+ */
+class InMemoryClusterInfo implements ClusterInfo {
+
+  private static final Version VERSION = new Version(5, 5, 0);
+
+  @Override
+  public JsonObject raw() {
+    return JsonObject.create().put("nodes", JsonArray.from(
+        JsonObject.create().put("hostname", "in-memory").put("version", VERSION + "-in-memory")));
+  }
+
+  @Override
+  public boolean checkAvailable(CouchbaseFeature feature) {
+    return feature.isAvailableOn(VERSION);
+  }
+
+  @Override
+  public Version getMinVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public List<Version> getAllVersions() {
+    return Collections.singletonList(VERSION);
+  }
+}
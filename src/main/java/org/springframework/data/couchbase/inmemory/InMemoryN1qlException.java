@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+/**
+ * An error of a N1QL statement executed by an {@link InMemoryBucket}, reported in the errors of the query result with
+ * the code the query service would use.
+ *
+ * @since 3.2
+ */
+class InMemoryN1qlException extends RuntimeException {
+
+  private static final long serialVersionUID = 6150099667884248444L;
+
+  static final int SYNTAX_ERROR = 3000;
+  static final int EXECUTION_ERROR = 5000;
+  static final int KEYSPACE_NOT_FOUND = 12003;
+
+  private final int code;
+
+  InMemoryN1qlException(int code, String message) {
+    super(message);
+    this.code = code;
+  }
+
+  int getCode() {
+    return code;
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.couchbase.client.java.document.Document;
+import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.error.ViewDoesNotExistException;
+import com.couchbase.client.java.view.AsyncViewRow;
+import com.couchbase.client.java.view.DefaultAsyncViewResult;
+import com.couchbase.client.java.view.DefaultAsyncViewRow;
+import com.couchbase.client.java.view.DesignDocument;
+import com.couchbase.client.java.view.View;
+import com.couchbase.client.java.view.ViewQuery;
+import com.couchbase.client.java.view.ViewResult;
+import com.couchbase.client.java.view.ViewRow;
+import rx.Observable;
+
+/**
+ * The design documents of an {@link InMemoryBucket} and the execution of their views. Only the map function generated
+ * for {@link org.springframework.data.couchbase.core.query.ViewIndexed} is supported, which emits the id of the
+ * documents having one of the given values in a field (the type of the entity), along with the built-in
+ * <code>_count</code> reduce function.
+ *
+ * @since 3.2
+ */
+class InMemoryViews {
+
+  private static final String DEVELOPMENT_PREFIX = "dev_";
+
+  private static final Pattern MAP_FUNCTION = Pattern.compile(
+      "\\s*function\\s*\\(\\s*doc\\s*,\\s*meta\\s*\\)\\s*\\{\\s*(?:if\\s*\\((.*)\\)\\s*\\{\\s*)?"
+          + "emit\\(\\s*meta\\.id\\s*,\\s*null\\s*\\)\\s*;?\\s*(?:\\}\\s*)?\\}\\s*", Pattern.DOTALL);
+  private static final Pattern FIELD_CONDITION = Pattern.compile(
+      "\\s*doc\\.(\\w+)\\s*===?\\s*[\"']([^\"']*)[\"']\\s*");
+
+  private final ConcurrentMap<String, DesignDocument> designDocuments =
+      new ConcurrentHashMap<String, DesignDocument>();
+
+  List<DesignDocument> getDesignDocuments(boolean development) {
+    List<DesignDocument> result = new ArrayList<DesignDocument>();
+    for (Map.Entry<String, DesignDocument> entry : designDocuments.entrySet()) {
+      if (entry.getKey().startsWith(DEVELOPMENT_PREFIX) == development) {
+        result.add(entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  DesignDocument getDesignDocument(String name, boolean development) {
+    return designDocuments.get(key(name, development));
+  }
+
+  boolean insertDesignDocument(DesignDocument designDocument, boolean development) {
+    return designDocuments.putIfAbsent(key(designDocument.name(), development), designDocument) == null;
+  }
+
+  void upsertDesignDocument(DesignDocument designDocument, boolean development) {
+    designDocuments.put(key(designDocument.name(), development), designDocument);
+  }
+
+  boolean removeDesignDocument(String name, boolean development) {
+    return designDocuments.remove(key(name, development)) != null;
+  }
+
+  DesignDocument publishDesignDocument(String name) {
+    DesignDocument development = designDocuments.get(DEVELOPMENT_PREFIX + name);
+    if (development == null) {
+      return null;
+    }
+    DesignDocument published = DesignDocument.create(name, development.views(), development.options());
+    designDocuments.put(name, published);
+    return published;
+  }
+
+  private static String key(String name, boolean development) {
+    return development && !name.startsWith(DEVELOPMENT_PREFIX) ? DEVELOPMENT_PREFIX + name : name;
+  }
+
+  /**
+   * Executes a view query.
+   *
+   * @param query the query.
+   * @param bucket the bucket the documents of the rows are fetched from.
+   * @param async true to return an {@link com.couchbase.client.java.view.AsyncViewResult}, false for a
+   *  {@link ViewResult}.
+   * @return the result.
+   */
+  Object query(ViewQuery query, InMemoryBucket bucket, boolean async) {
+    View view = findView(query);
+    Map<String, String> params = parameters(query);
+
+    List<Row> rows = new ArrayList<Row>();
+    JsonObject error = null;
+    int totalRows = 0;
+    Map<String, String> conditions = conditions(view.map());
+    if (conditions == null) {
+      error = JsonObject.create().put("error", "unsupported")
+          .put("reason", "The in-memory bucket only supports the default map function of @ViewIndexed");
+    } else {
+      List<String> ids = new ArrayList<String>();
+      for (StoredDocument document : bucket.scan()) {
+        JsonObject json = document.getJson();
+        if (json != null && matches(json, conditions)) {
+          ids.add(document.getId());
+        }
+      }
+      totalRows = ids.size();
+      boolean reduce = params.containsKey("reduce") ? Boolean.parseBoolean(params.get("reduce")) : view.hasReduce();
+      if (reduce && !"_count".equals(view.reduce())) {
+        error = JsonObject.create().put("error", "unsupported")
+            .put("reason", "The in-memory bucket only supports the _count reduce function, not " + view.reduce());
+      } else {
+        ids = select(ids, query, params);
+        if (!reduce) {
+          for (String id : ids) {
+            rows.add(new Row(id, id, null));
+          }
+        } else if (params.containsKey("group") || params.containsKey("group_level")) {
+          for (String id : ids) {
+            rows.add(new Row(null, id, 1));
+          }
+        } else if (!ids.isEmpty()) {
+          rows.add(new Row(null, null, ids.size()));
+        }
+      }
+    }
+
+    if (async) {
+      List<AsyncViewRow> asyncRows = new ArrayList<AsyncViewRow>(rows.size());
+      for (Row row : rows) {
+        asyncRows.add(new DefaultAsyncViewRow(bucket.getAsyncBucket(), row.id, row.key, row.value, null));
+      }
+      return new DefaultAsyncViewResult(Observable.from(asyncRows), totalRows, error == null,
+          error == null ? Observable.<JsonObject>empty() : Observable.just(error), null);
+    }
+    List<ViewRow> syncRows = new ArrayList<ViewRow>(rows.size());
+    for (Row row : rows) {
+      syncRows.add(new InMemoryViewRow(bucket, row));
+    }
+    return new InMemoryViewResult(syncRows, totalRows, error);
+  }
+
+  private View findView(ViewQuery query) {
+    DesignDocument designDocument = getDesignDocument(query.getDesign(), query.isDevelopment());
+    if (designDocument != null) {
+      for (View view : designDocument.views()) {
+        if (view.name().equals(query.getView())) {
+          return view;
+        }
+      }
+    }
+    throw new ViewDoesNotExistException("View " + query.getDesign() + "/" + query.getView() + " does not exist.");
+  }
+
+  /**
+   * Parses the type conditions of the default map function.
+   *
+   * @return the values of the fields each document must have one of, null if the map function is not supported.
+   */
+  static Map<String, String> conditions(String mapFunction) {
+    Matcher matcher = MAP_FUNCTION.matcher(mapFunction);
+    if (!matcher.matches()) {
+      return null;
+    }
+    Map<String, String> conditions = new HashMap<String, String>();
+    if (matcher.group(1) != null) {
+      for (String condition : matcher.group(1).split("\\|\\|")) {
+        Matcher field = FIELD_CONDITION.matcher(condition);
+        if (!field.matches()) {
+          return null;
+        }
+        conditions.put(field.group(2), field.group(1));
+      }
+    }
+    return conditions;
+  }
+
+  private static boolean matches(JsonObject json, Map<String, String> conditions) {
+    if (conditions.isEmpty()) {
+      return true;
+    }
+    for (Map.Entry<String, String> condition : conditions.entrySet()) {
+      if (condition.getKey().equals(json.get(condition.getValue()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Applies the key, range, order and paging parameters of the query to the ids emitted by the view, which are also
+   * the keys of its rows.
+   */
+  private static List<String> select(List<String> ids, ViewQuery query, Map<String, String> params) {
+    List<String> selected = new ArrayList<String>();
+    if (query.getKeys() != null) {
+      Object keys = parseJson(query.getKeys());
+      if (keys instanceof JsonObject) {
+        keys = ((JsonObject) keys).getArray("keys");
+      }
+      for (Object key : (JsonArray) keys) {
+        if (ids.contains(key)) {
+          selected.add((String) key);
+        }
+      }
+    } else if (params.containsKey("key")) {
+      Object key = parseJson(params.get("key"));
+      if (ids.contains(key)) {
+        selected.add((String) key);
+      }
+    } else {
+      boolean descending = Boolean.parseBoolean(params.get("descending"));
+      String start = (String) parseJson(params.get("startkey"));
+      String end = (String) parseJson(params.get("endkey"));
+      boolean inclusiveEnd = !"false".equals(params.get("inclusive_end"));
+      for (String id : ids) {
+        int fromStart = start == null ? 1 : id.compareTo(start) * (descending ? -1 : 1);
+        int toEnd = end == null ? -1 : id.compareTo(end) * (descending ? -1 : 1);
+        if (fromStart >= 0 && (toEnd < 0 || (inclusiveEnd && toEnd == 0))) {
+          selected.add(id);
+        }
+      }
+      if (descending) {
+        Collections.reverse(selected);
+      }
+    }
+
+    int skip = params.containsKey("skip") ? Integer.parseInt(params.get("skip")) : 0;
+    int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+    int from = Math.min(skip, selected.size());
+    return new ArrayList<String>(selected.subList(from, (int) Math.min(selected.size(), (long) from + limit)));
+  }
+
+  private static Map<String, String> parameters(ViewQuery query) {
+    Map<String, String> params = new HashMap<String, String>();
+    for (String param : query.toQueryString().split("&")) {
+      int separator = param.indexOf('=');
+      if (separator > 0) {
+        try {
+          params.put(param.substring(0, separator), URLDecoder.decode(param.substring(separator + 1), "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+    return params;
+  }
+
+  private static Object parseJson(String json) {
+    return json == null ? null : JsonArray.fromJson("[" + json + "]").get(0);
+  }
+
+  private static final class Row {
+
+    private final String id;
+    private final Object key;
+    private final Object value;
+
+    private Row(String id, Object key, Object value) {
+      this.id = id;
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  private static final class InMemoryViewRow implements ViewRow {
+
+    private final InMemoryBucket bucket;
+    private final Row row;
+
+    private InMemoryViewRow(InMemoryBucket bucket, Row row) {
+      this.bucket = bucket;
+      this.row = row;
+    }
+
+    @Override
+    public String id() {
+      return row.id;
+    }
+
+    @Override
+    public Object key() {
+      return row.key;
+    }
+
+    @Override
+    public Object value() {
+      return row.value;
+    }
+
+    @Override
+    public JsonDocument document() {
+      return document(JsonDocument.class);
+    }
+
+    @Override
+    public JsonDocument document(long timeout, TimeUnit timeUnit) {
+      return document(JsonDocument.class);
+    }
+
+    @Override
+    public <D extends Document<?>> D document(Class<D> target) {
+      return row.id == null ? null : bucket.getBucket().get(row.id, target);
+    }
+
+    @Override
+    public <D extends Document<?>> D document(Class<D> target, long timeout, TimeUnit timeUnit) {
+      return document(target);
+    }
+
+    @Override
+    public String toString() {
+      return "InMemoryViewRow{id=" + row.id + ", key=" + row.key + ", value=" + row.value + "}";
+    }
+  }
+
+  private static final class InMemoryViewResult implements ViewResult {
+
+    private final List<ViewRow> rows;
+    private final int totalRows;
+    private final JsonObject error;
+
+    private InMemoryViewResult(List<ViewRow> rows, int totalRows, JsonObject error) {
+      this.rows = rows;
+      this.totalRows = totalRows;
+      this.error = error;
+    }
+
+    @Override
+    public List<ViewRow> allRows() {
+      return rows;
+    }
+
+    @Override
+    public List<ViewRow> allRows(long timeout, TimeUnit timeUnit) {
+      return rows;
+    }
+
+    @Override
+    public Iterator<ViewRow> rows() {
+      return rows.iterator();
+    }
+
+    @Override
+    public Iterator<ViewRow> rows(long timeout, TimeUnit timeUnit) {
+      return rows.iterator();
+    }
+
+    @Override
+    public Iterator<ViewRow> iterator() {
+      return rows.iterator();
+    }
+
+    @Override
+    public int totalRows() {
+      return totalRows;
+    }
+
+    @Override
+    public boolean success() {
+      return error == null;
+    }
+
+    @Override
+    public JsonObject error() {
+      return error;
+    }
+
+    @Override
+    public JsonObject error(long timeout, TimeUnit timeUnit) {
+      return error;
+    }
+
+    @Override
+    public JsonObject debug() {
+      return null;
+    }
+  }
+}
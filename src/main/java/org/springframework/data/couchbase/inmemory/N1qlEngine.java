@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.AsyncN1qlQueryRow;
+import com.couchbase.client.java.query.DefaultAsyncN1qlQueryResult;
+import com.couchbase.client.java.query.DefaultAsyncN1qlQueryRow;
+import com.couchbase.client.java.query.DefaultN1qlQueryResult;
+import com.couchbase.client.java.query.N1qlMetrics;
+import com.couchbase.client.java.query.N1qlQuery;
+import rx.Observable;
+
+import org.springframework.data.couchbase.inmemory.N1qlExpression.Parameters;
+
+/**
+ * Executes N1QL queries against the documents of an {@link InMemoryBucket}. Parsed statements are cached by their
+ * text, as the repositories issue the same few statements with different parameters.
+ *
+ * @since 3.2
+ */
+class N1qlEngine {
+
+  private static final int MAX_CACHED_STATEMENTS = 1000;
+
+  private final InMemoryBucket bucket;
+  private final ConcurrentMap<String, N1qlStatement> statements = new ConcurrentHashMap<String, N1qlStatement>();
+
+  N1qlEngine(InMemoryBucket bucket) {
+    this.bucket = bucket;
+  }
+
+  /**
+   * Executes a query, collecting its rows or the error it raised.
+   */
+  Outcome execute(N1qlQuery query) {
+    long start = System.nanoTime();
+    JsonObject n1ql = query.n1ql();
+    String clientContextId = n1ql.getString("client_context_id");
+    Outcome outcome = new Outcome(clientContextId == null ? "" : clientContextId);
+    try {
+      String text = n1ql.getString("statement");
+      if (text == null) {
+        throw new InMemoryN1qlException(InMemoryN1qlException.SYNTAX_ERROR, "No statement in " + n1ql);
+      }
+      N1qlStatement statement = parse(text);
+      Object args = n1ql.get("args");
+      N1qlStatement.Result result = new N1qlStatement.Result();
+      statement.execute(bucket, new Parameters(args instanceof JsonArray ? (JsonArray) args : null, n1ql), result);
+      for (Object row : result.getRows()) {
+        if (row != N1qlExpression.MISSING) {
+          outcome.rows.add(N1qlExpression.toJson(row));
+        }
+      }
+      outcome.mutationCount = result.getMutationCount();
+    } catch (InMemoryN1qlException e) {
+      outcome.fail(e.getCode(), e.getMessage());
+    } catch (RuntimeException e) {
+      outcome.fail(InMemoryN1qlException.EXECUTION_ERROR, String.valueOf(e));
+    }
+    outcome.elapsedNanos = System.nanoTime() - start;
+    return outcome;
+  }
+
+  private N1qlStatement parse(String text) {
+    N1qlStatement statement = statements.get(text);
+    if (statement == null) {
+      statement = N1qlParser.parse(text);
+      if (statements.size() >= MAX_CACHED_STATEMENTS) {
+        statements.clear();
+      }
+      statements.put(text, statement);
+    }
+    return statement;
+  }
+
+  /**
+   * The serialized rows, or the errors, of an executed query.
+   */
+  static final class Outcome {
+
+    private final String requestId = UUID.randomUUID().toString();
+    private final String clientContextId;
+    private final List<String> rows = new ArrayList<String>();
+    private final List<JsonObject> errors = new ArrayList<JsonObject>();
+    private boolean fatal;
+    private int mutationCount;
+    private long elapsedNanos;
+
+    private Outcome(String clientContextId) {
+      this.clientContextId = clientContextId;
+    }
+
+    private void fail(int code, String message) {
+      errors.add(JsonObject.create().put("code", code).put("msg", message));
+      fatal = code == InMemoryN1qlException.SYNTAX_ERROR;
+      rows.clear();
+    }
+
+    List<String> getRows() {
+      return Collections.unmodifiableList(rows);
+    }
+
+    List<JsonObject> getErrors() {
+      return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Builds the result the SDK would return, a {@link com.couchbase.client.java.query.N1qlQueryResult} or an
+     * {@link com.couchbase.client.java.query.AsyncN1qlQueryResult}.
+     */
+    Object toResult(boolean async) {
+      List<AsyncN1qlQueryRow> queryRows = new ArrayList<AsyncN1qlQueryRow>(rows.size());
+      long resultSize = 0;
+      for (String row : rows) {
+        byte[] bytes = row.getBytes(StandardCharsets.UTF_8);
+        resultSize += bytes.length;
+        queryRows.add(new DefaultAsyncN1qlQueryRow(bytes));
+      }
+      String elapsed = String.format(Locale.ROOT, "%.3fms", elapsedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+      JsonObject metrics = JsonObject.create()
+          .put("elapsedTime", elapsed)
+          .put("executionTime", elapsed)
+          .put("resultCount", rows.size())
+          .put("resultSize", resultSize)
+          .put("mutationCount", mutationCount)
+          .put("errorCount", errors.size());
+      N1qlMetrics info = new N1qlMetrics(metrics);
+      String status = errors.isEmpty() ? "success" : fatal ? "fatal" : "errors";
+      boolean success = errors.isEmpty();
+
+      if (async) {
+        return new DefaultAsyncN1qlQueryResult(Observable.from(queryRows), Observable.empty(), Observable.just(info),
+            Observable.from(errors), Observable.empty(), Observable.just(status), success, requestId,
+            clientContextId);
+      }
+      return new DefaultN1qlQueryResult(queryRows, null, info, errors, null, status, success, success, requestId,
+          clientContextId);
+    }
+  }
+}
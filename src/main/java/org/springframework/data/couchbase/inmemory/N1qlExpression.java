@@ -0,0 +1,1201 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+
+/**
+ * An expression of the N1QL subset supported by an {@link InMemoryBucket}, along with the N1QL value semantics:
+ * values are the ones of the SDK JSON model ({@link JsonObject}, {@link JsonArray}, strings, numbers and booleans),
+ * null for <code>NULL</code> and {@link #MISSING} for absent fields, which propagate through operators and functions
+ * and are ordered by the N1QL collation.
+ *
+ * @since 3.2
+ */
+abstract class N1qlExpression {
+
+  /**
+   * The value of a field that does not exist.
+   */
+  static final Object MISSING = new Object() {
+    @Override
+    public String toString() {
+      return "MISSING";
+    }
+  };
+
+  /**
+   * Evaluates the expression.
+   *
+   * @param scope the documents, variables and parameters the expression is evaluated against.
+   * @return the value, null for NULL or {@link #MISSING}.
+   */
+  abstract Object evaluate(Scope scope);
+
+  /**
+   * Collects the identifiers this expression references, notably keyspace aliases.
+   */
+  void collectReferences(Set<String> references) {
+  }
+
+  /**
+   * @return true if this expression is, or contains, an aggregate function.
+   */
+  boolean isAggregate() {
+    return false;
+  }
+
+  /**
+   * @return the name of the result field of this expression when it is selected without alias, null for a generated
+   *  positional name (<code>$1</code>, <code>$2</code>...).
+   */
+  String projectedName() {
+    return null;
+  }
+
+  // ---------------------------------------------------------------------------------------------------------------
+  // Values
+
+  /**
+   * Converts a value to its truth value: TRUE, FALSE, null or {@link #MISSING}.
+   */
+  static Object truth(Object value) {
+    if (value == null || value == MISSING || value instanceof Boolean) {
+      return value;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue() != 0;
+    }
+    if (value instanceof String) {
+      return !((String) value).isEmpty();
+    }
+    if (value instanceof JsonArray) {
+      return ((JsonArray) value).size() > 0;
+    }
+    return ((JsonObject) value).size() > 0;
+  }
+
+  static boolean isTrue(Object value) {
+    return truth(value) == Boolean.TRUE;
+  }
+
+  /**
+   * Compares two values according to the N1QL collation: MISSING, NULL, booleans, numbers, strings, arrays and
+   * objects.
+   */
+  static int collate(Object a, Object b) {
+    int rankA = rank(a);
+    int rankB = rank(b);
+    if (rankA != rankB) {
+      return rankA < rankB ? -1 : 1;
+    }
+    switch (rankA) {
+      case 2:
+        return Boolean.compare((Boolean) a, (Boolean) b);
+      case 3:
+        return compareNumbers((Number) a, (Number) b);
+      case 4:
+        return ((String) a).compareTo((String) b);
+      case 5: {
+        JsonArray arrayA = (JsonArray) a;
+        JsonArray arrayB = (JsonArray) b;
+        for (int i = 0; i < Math.min(arrayA.size(), arrayB.size()); i++) {
+          int compared = collate(arrayA.get(i), arrayB.get(i));
+          if (compared != 0) {
+            return compared;
+          }
+        }
+        return Integer.compare(arrayA.size(), arrayB.size());
+      }
+      case 6: {
+        JsonObject objectA = (JsonObject) a;
+        JsonObject objectB = (JsonObject) b;
+        if (objectA.size() != objectB.size()) {
+          return Integer.compare(objectA.size(), objectB.size());
+        }
+        Iterator<String> namesA = new TreeSet<String>(objectA.getNames()).iterator();
+        Iterator<String> namesB = new TreeSet<String>(objectB.getNames()).iterator();
+        while (namesA.hasNext()) {
+          String nameA = namesA.next();
+          String nameB = namesB.next();
+          int compared = nameA.compareTo(nameB);
+          if (compared == 0) {
+            compared = collate(objectA.get(nameA), objectB.get(nameB));
+          }
+          if (compared != 0) {
+            return compared;
+          }
+        }
+        return 0;
+      }
+      default:
+        return 0;
+    }
+  }
+
+  private static int rank(Object value) {
+    if (value == MISSING) {
+      return 0;
+    } else if (value == null) {
+      return 1;
+    } else if (value instanceof Boolean) {
+      return 2;
+    } else if (value instanceof Number) {
+      return 3;
+    } else if (value instanceof String) {
+      return 4;
+    } else if (value instanceof JsonArray) {
+      return 5;
+    }
+    return 6;
+  }
+
+  private static int compareNumbers(Number a, Number b) {
+    if (isIntegral(a) && isIntegral(b)) {
+      return Long.compare(a.longValue(), b.longValue());
+    }
+    if (a instanceof BigDecimal || b instanceof BigDecimal || a instanceof BigInteger || b instanceof BigInteger) {
+      return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+    }
+    return Double.compare(a.doubleValue(), b.doubleValue());
+  }
+
+  private static boolean isIntegral(Number number) {
+    return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+  }
+
+  /**
+   * @return the field of an object, or {@link #MISSING} if the value is not an object or does not have the field.
+   */
+  static Object field(Object value, String name) {
+    if (value instanceof JsonObject && ((JsonObject) value).containsKey(name)) {
+      return ((JsonObject) value).get(name);
+    }
+    return MISSING;
+  }
+
+  /**
+   * @return true if the value is NULL or {@link #MISSING}, in which case operators return that value.
+   */
+  static boolean isUnknown(Object value) {
+    return value == null || value == MISSING;
+  }
+
+  /**
+   * @return the value propagated by an operator with unknown operands: MISSING if any operand is missing, NULL
+   *  otherwise.
+   */
+  static Object unknown(Object... values) {
+    for (Object value : values) {
+      if (value == MISSING) {
+        return MISSING;
+      }
+    }
+    return null;
+  }
+
+  static boolean anyUnknown(Object... values) {
+    for (Object value : values) {
+      if (isUnknown(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Serializes a value to JSON.
+   */
+  static String toJson(Object value) {
+    if (value instanceof JsonObject || value instanceof JsonArray) {
+      return value.toString();
+    }
+    String array = JsonArray.create().add(value).toString();
+    return array.substring(1, array.length() - 1);
+  }
+
+  static String toDisplayString(Object value) {
+    return value instanceof String ? (String) value : toJson(value);
+  }
+
+  // ---------------------------------------------------------------------------------------------------------------
+  // Scope
+
+  /**
+   * The bindings an expression is evaluated with: the documents of the current row by keyspace alias, the variables
+   * of the enclosing collection expressions, the statement parameters and, once projected, the result of the row and
+   * the rows of its group.
+   */
+  static final class Scope {
+
+    private final String[] aliases;
+    private final StoredDocument[] documents;
+    private final Parameters parameters;
+    private final Map<String, Object> variables;
+    private final JsonObject projection;
+    private final Set<String> projectionAliases;
+    private final List<Scope> group;
+
+    Scope(String[] aliases, Parameters parameters) {
+      this(aliases, new StoredDocument[aliases.length], parameters, Collections.<String, Object>emptyMap(), null,
+          null, null);
+    }
+
+    private Scope(String[] aliases, StoredDocument[] documents, Parameters parameters, Map<String, Object> variables,
+                  JsonObject projection, Set<String> projectionAliases, List<Scope> group) {
+      this.aliases = aliases;
+      this.documents = documents;
+      this.parameters = parameters;
+      this.variables = variables;
+      this.projection = projection;
+      this.projectionAliases = projectionAliases;
+      this.group = group;
+    }
+
+    Scope withDocument(String alias, StoredDocument document) {
+      StoredDocument[] copy = Arrays.copyOf(documents, documents.length);
+      copy[indexOf(alias)] = document;
+      return new Scope(aliases, copy, parameters, variables, projection, projectionAliases, group);
+    }
+
+    Scope withVariable(String name, Object value) {
+      Map<String, Object> copy = new HashMap<String, Object>(variables);
+      copy.put(name, value);
+      return new Scope(aliases, documents, parameters, copy, projection, projectionAliases, group);
+    }
+
+    Scope withProjection(JsonObject projection, Set<String> projectionAliases) {
+      return new Scope(aliases, documents, parameters, variables, projection, projectionAliases, group);
+    }
+
+    Scope withGroup(List<Scope> group) {
+      return new Scope(aliases, documents, parameters, variables, projection, projectionAliases, group);
+    }
+
+    String[] getAliases() {
+      return aliases;
+    }
+
+    StoredDocument getDocument(String alias) {
+      int index = indexOf(alias);
+      return index < 0 ? null : documents[index];
+    }
+
+    /**
+     * @return the document of the first keyspace, which unqualified fields are resolved against.
+     */
+    StoredDocument getDefaultDocument() {
+      return documents.length == 0 ? null : documents[0];
+    }
+
+    Parameters getParameters() {
+      return parameters;
+    }
+
+    List<Scope> getGroup() {
+      return group;
+    }
+
+    Object resolve(String name) {
+      if (variables.containsKey(name)) {
+        return variables.get(name);
+      }
+      if (projectionAliases != null && projectionAliases.contains(name)) {
+        return field(projection, name);
+      }
+      int index = indexOf(name);
+      if (index >= 0) {
+        return json(documents[index]);
+      }
+      return field(json(getDefaultDocument()), name);
+    }
+
+    private static Object json(StoredDocument document) {
+      JsonObject json = document == null ? null : document.getJson();
+      return json == null ? MISSING : json;
+    }
+
+    private int indexOf(String alias) {
+      for (int i = 0; i < aliases.length; i++) {
+        if (aliases[i].equals(alias)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * The positional and named parameters of a statement.
+   */
+  static final class Parameters {
+
+    private final JsonArray positional;
+    private final JsonObject named;
+
+    Parameters(JsonArray positional, JsonObject named) {
+      this.positional = positional;
+      this.named = named;
+    }
+
+    Object positional(int position) {
+      if (positional == null || position < 1 || position > positional.size()) {
+        throw new InMemoryN1qlException(InMemoryN1qlException.EXECUTION_ERROR,
+            "No value for positional parameter $" + position);
+      }
+      return positional.get(position - 1);
+    }
+
+    Object named(String name) {
+      if (named == null || !named.containsKey("$" + name)) {
+        throw new InMemoryN1qlException(InMemoryN1qlException.EXECUTION_ERROR,
+            "No value for named parameter $" + name);
+      }
+      return named.get("$" + name);
+    }
+  }
+
+  // ---------------------------------------------------------------------------------------------------------------
+  // Expressions
+
+  static final class Literal extends N1qlExpression {
+
+    private final Object value;
+
+    Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      return value;
+    }
+  }
+
+  static final class Parameter extends N1qlExpression {
+
+    private final int position;
+    private final String name;
+
+    Parameter(int position, String name) {
+      this.position = position;
+      this.name = name;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      return name == null ? scope.getParameters().positional(position) : scope.getParameters().named(name);
+    }
+  }
+
+  static final class Identifier extends N1qlExpression {
+
+    private final String name;
+
+    Identifier(String name) {
+      this.name = name;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      return scope.resolve(name);
+    }
+
+    @Override
+    void collectReferences(Set<String> references) {
+      references.add(name);
+    }
+
+    @Override
+    String projectedName() {
+      return name;
+    }
+  }
+
+  static final class Field extends N1qlExpression {
+
+    private final N1qlExpression target;
+    private final String name;
+
+    Field(N1qlExpression target, String name) {
+      this.target = target;
+      this.name = name;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      return field(target.evaluate(scope), name);
+    }
+
+    @Override
+    void collectReferences(Set<String> references) {
+      target.collectReferences(references);
+    }
+
+    @Override
+    boolean isAggregate() {
+      return target.isAggregate();
+    }
+
+    @Override
+    String projectedName() {
+      return name;
+    }
+  }
+
+  static final class Element extends N1qlExpression {
+
+    private final N1qlExpression target;
+    private final N1qlExpression index;
+
+    Element(N1qlExpression target, N1qlExpression index) {
+      this.target = target;
+      this.index = index;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object value = target.evaluate(scope);
+      Object key = index.evaluate(scope);
+      if (value instanceof JsonArray && key instanceof Number) {
+        JsonArray array = (JsonArray) value;
+        int position = ((Number) key).intValue();
+        if (position < 0) {
+          position += array.size();
+        }
+        return position >= 0 && position < array.size() ? array.get(position) : MISSING;
+      }
+      if (key instanceof String) {
+        return field(value, (String) key);
+      }
+      return isUnknown(value) ? value : MISSING;
+    }
+
+    @Override
+    void collectReferences(Set<String> references) {
+      target.collectReferences(references);
+      index.collectReferences(references);
+    }
+
+    @Override
+    boolean isAggregate() {
+      return target.isAggregate() || index.isAggregate();
+    }
+  }
+
+  /**
+   * The <code>META()</code> function, returning the id, CAS and expiration of the document of a keyspace.
+   */
+  static final class Meta extends N1qlExpression {
+
+    private final String alias;
+
+    Meta(String alias) {
+      this.alias = alias;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      StoredDocument document = alias == null ? scope.getDefaultDocument() : scope.getDocument(alias);
+      return document == null ? MISSING : document.getMeta();
+    }
+
+    @Override
+    void collectReferences(Set<String> references) {
+      if (alias != null) {
+        references.add(alias);
+      }
+    }
+  }
+
+  abstract static class Composite extends N1qlExpression {
+
+    protected final List<N1qlExpression> operands;
+
+    Composite(N1qlExpression... operands) {
+      this(Arrays.asList(operands));
+    }
+
+    Composite(List<N1qlExpression> operands) {
+      this.operands = operands;
+    }
+
+    @Override
+    void collectReferences(Set<String> references) {
+      for (N1qlExpression operand : operands) {
+        operand.collectReferences(references);
+      }
+    }
+
+    @Override
+    boolean isAggregate() {
+      for (N1qlExpression operand : operands) {
+        if (operand.isAggregate()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    List<N1qlExpression> getOperands() {
+      return operands;
+    }
+  }
+
+  static final class And extends Composite {
+
+    And(N1qlExpression left, N1qlExpression right) {
+      super(left, right);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      boolean missing = false;
+      boolean hasNull = false;
+      for (N1qlExpression operand : operands) {
+        Object truth = truth(operand.evaluate(scope));
+        if (truth == Boolean.FALSE) {
+          return false;
+        }
+        missing |= truth == MISSING;
+        hasNull |= truth == null;
+      }
+      return missing ? MISSING : hasNull ? null : Boolean.TRUE;
+    }
+  }
+
+  static final class Or extends Composite {
+
+    Or(N1qlExpression left, N1qlExpression right) {
+      super(left, right);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      boolean hasNull = false;
+      boolean missing = false;
+      for (N1qlExpression operand : operands) {
+        Object truth = truth(operand.evaluate(scope));
+        if (truth == Boolean.TRUE) {
+          return true;
+        }
+        hasNull |= truth == null;
+        missing |= truth == MISSING;
+      }
+      return hasNull ? null : missing ? MISSING : Boolean.FALSE;
+    }
+  }
+
+  static final class Not extends Composite {
+
+    Not(N1qlExpression operand) {
+      super(operand);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object truth = truth(operands.get(0).evaluate(scope));
+      return truth instanceof Boolean ? !(Boolean) truth : truth;
+    }
+  }
+
+  enum ComparisonOperator {
+    EQ, NE, LT, LE, GT, GE
+  }
+
+  static final class Comparison extends Composite {
+
+    private final ComparisonOperator operator;
+
+    Comparison(ComparisonOperator operator, N1qlExpression left, N1qlExpression right) {
+      super(left, right);
+      this.operator = operator;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      return compare(operator, operands.get(0).evaluate(scope), operands.get(1).evaluate(scope));
+    }
+
+    static Object compare(ComparisonOperator operator, Object left, Object right) {
+      if (anyUnknown(left, right)) {
+        return unknown(left, right);
+      }
+      boolean sameType = rank(left) == rank(right);
+      int compared = collate(left, right);
+      switch (operator) {
+        case EQ:
+          return sameType && compared == 0;
+        case NE:
+          return !sameType || compared != 0;
+        case LT:
+          return compared < 0;
+        case LE:
+          return compared <= 0;
+        case GT:
+          return compared > 0;
+        default:
+          return compared >= 0;
+      }
+    }
+  }
+
+  static final class Like extends Composite {
+
+    private volatile String lastPattern;
+    private volatile Pattern lastRegex;
+
+    Like(N1qlExpression value, N1qlExpression pattern) {
+      super(value, pattern);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object value = operands.get(0).evaluate(scope);
+      Object pattern = operands.get(1).evaluate(scope);
+      if (anyUnknown(value, pattern)) {
+        return unknown(value, pattern);
+      }
+      if (!(value instanceof String) || !(pattern instanceof String)) {
+        return null;
+      }
+      return regex((String) pattern).matcher((String) value).matches();
+    }
+
+    private Pattern regex(String pattern) {
+      Pattern regex = lastRegex;
+      if (regex == null || !pattern.equals(lastPattern)) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+          char c = pattern.charAt(i);
+          if (c == '\\' && i + 1 < pattern.length()) {
+            sb.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+          } else if (c == '%') {
+            sb.append(".*");
+          } else if (c == '_') {
+            sb.append('.');
+          } else {
+            sb.append(Pattern.quote(String.valueOf(c)));
+          }
+        }
+        regex = Pattern.compile(sb.toString(), Pattern.DOTALL);
+        lastRegex = regex;
+        lastPattern = pattern;
+      }
+      return regex;
+    }
+  }
+
+  static final class In extends Composite {
+
+    In(N1qlExpression value, N1qlExpression collection) {
+      super(value, collection);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object value = operands.get(0).evaluate(scope);
+      Object collection = operands.get(1).evaluate(scope);
+      if (anyUnknown(value, collection)) {
+        return unknown(value, collection);
+      }
+      if (!(collection instanceof JsonArray)) {
+        return null;
+      }
+      for (Object element : (JsonArray) collection) {
+        if (Comparison.compare(ComparisonOperator.EQ, value, element) == Boolean.TRUE) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  static final class Between extends Composite {
+
+    Between(N1qlExpression value, N1qlExpression low, N1qlExpression high) {
+      super(value, low, high);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object value = operands.get(0).evaluate(scope);
+      Object low = operands.get(1).evaluate(scope);
+      Object high = operands.get(2).evaluate(scope);
+      if (anyUnknown(value, low, high)) {
+        return unknown(value, low, high);
+      }
+      return collate(value, low) >= 0 && collate(value, high) <= 0;
+    }
+  }
+
+  enum IsKind {
+    NULL, MISSING, VALUED
+  }
+
+  static final class Is extends Composite {
+
+    private final IsKind kind;
+    private final boolean negated;
+
+    Is(N1qlExpression value, IsKind kind, boolean negated) {
+      super(value);
+      this.kind = kind;
+      this.negated = negated;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object value = operands.get(0).evaluate(scope);
+      switch (kind) {
+        case MISSING:
+          return (value == N1qlExpression.MISSING) != negated;
+        case VALUED:
+          return !isUnknown(value) != negated;
+        default:
+          if (value == N1qlExpression.MISSING) {
+            return N1qlExpression.MISSING;
+          }
+          return (value == null) != negated;
+      }
+    }
+  }
+
+  static final class Arithmetic extends Composite {
+
+    private final char operator;
+
+    Arithmetic(char operator, N1qlExpression left, N1qlExpression right) {
+      super(left, right);
+      this.operator = operator;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object left = operands.get(0).evaluate(scope);
+      Object right = operands.get(1).evaluate(scope);
+      if (anyUnknown(left, right)) {
+        return unknown(left, right);
+      }
+      if (!(left instanceof Number) || !(right instanceof Number)) {
+        return null;
+      }
+      Number a = (Number) left;
+      Number b = (Number) right;
+      if (isIntegral(a) && isIntegral(b) && operator != '/') {
+        switch (operator) {
+          case '+':
+            return a.longValue() + b.longValue();
+          case '-':
+            return a.longValue() - b.longValue();
+          case '*':
+            return a.longValue() * b.longValue();
+          default:
+            return b.longValue() == 0 ? null : a.longValue() % b.longValue();
+        }
+      }
+      switch (operator) {
+        case '+':
+          return a.doubleValue() + b.doubleValue();
+        case '-':
+          return a.doubleValue() - b.doubleValue();
+        case '*':
+          return a.doubleValue() * b.doubleValue();
+        case '/':
+          return b.doubleValue() == 0 ? null : a.doubleValue() / b.doubleValue();
+        default:
+          return b.doubleValue() == 0 ? null : a.doubleValue() % b.doubleValue();
+      }
+    }
+  }
+
+  static final class Negate extends Composite {
+
+    Negate(N1qlExpression operand) {
+      super(operand);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object value = operands.get(0).evaluate(scope);
+      if (!(value instanceof Number)) {
+        return isUnknown(value) ? value : null;
+      }
+      return isIntegral((Number) value) ? (Object) (-((Number) value).longValue())
+          : (Object) (-((Number) value).doubleValue());
+    }
+  }
+
+  static final class Concat extends Composite {
+
+    Concat(N1qlExpression left, N1qlExpression right) {
+      super(left, right);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object left = operands.get(0).evaluate(scope);
+      Object right = operands.get(1).evaluate(scope);
+      if (anyUnknown(left, right)) {
+        return unknown(left, right);
+      }
+      if (!(left instanceof String) || !(right instanceof String)) {
+        return null;
+      }
+      return (String) left + right;
+    }
+  }
+
+  static final class ArrayConstructor extends Composite {
+
+    ArrayConstructor(List<N1qlExpression> elements) {
+      super(elements);
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      JsonArray array = JsonArray.create();
+      for (N1qlExpression element : operands) {
+        Object value = element.evaluate(scope);
+        array.add(value == MISSING ? null : value);
+      }
+      return array;
+    }
+  }
+
+  static final class ObjectConstructor extends Composite {
+
+    private final List<String> names;
+
+    ObjectConstructor(List<String> names, List<N1qlExpression> values) {
+      super(values);
+      this.names = names;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      JsonObject object = JsonObject.create();
+      for (int i = 0; i < names.size(); i++) {
+        Object value = operands.get(i).evaluate(scope);
+        if (value != MISSING) {
+          object.put(names.get(i), value);
+        }
+      }
+      return object;
+    }
+  }
+
+  /**
+   * <code>ANY</code> and <code>EVERY</code> ... <code>IN</code> ... <code>SATISFIES</code> ... <code>END</code>.
+   */
+  static final class CollectionPredicate extends Composite {
+
+    private final boolean every;
+    private final String variable;
+
+    CollectionPredicate(boolean every, String variable, N1qlExpression collection, N1qlExpression condition) {
+      super(collection, condition);
+      this.every = every;
+      this.variable = variable;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object collection = operands.get(0).evaluate(scope);
+      if (isUnknown(collection)) {
+        return collection;
+      }
+      if (!(collection instanceof JsonArray)) {
+        return null;
+      }
+      for (Object element : (JsonArray) collection) {
+        boolean satisfied = isTrue(operands.get(1).evaluate(scope.withVariable(variable, element)));
+        if (satisfied != every) {
+          return !every;
+        }
+      }
+      return every;
+    }
+  }
+
+  /**
+   * <code>[DISTINCT] ARRAY</code> ... <code>FOR</code> ... <code>IN</code> ... <code>[WHEN</code> ...<code>]
+   * END</code>.
+   */
+  static final class ArrayFor extends Composite {
+
+    private final boolean distinct;
+    private final String variable;
+
+    ArrayFor(boolean distinct, N1qlExpression mapping, String variable, N1qlExpression collection,
+             N1qlExpression condition) {
+      super(mapping, collection, condition == null ? new Literal(Boolean.TRUE) : condition);
+      this.distinct = distinct;
+      this.variable = variable;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      Object collection = operands.get(1).evaluate(scope);
+      if (!(collection instanceof JsonArray)) {
+        return isUnknown(collection) ? collection : null;
+      }
+      JsonArray result = JsonArray.create();
+      Set<String> seen = distinct ? new HashSet<String>() : null;
+      for (Object element : (JsonArray) collection) {
+        Scope elementScope = scope.withVariable(variable, element);
+        if (isTrue(operands.get(2).evaluate(elementScope))) {
+          Object value = operands.get(0).evaluate(elementScope);
+          if (value != MISSING && (seen == null || seen.add(toJson(value)))) {
+            result.add(value);
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The scalar functions used in generated statements, and a few common ones.
+   */
+  static final class Function extends Composite {
+
+    static final Set<String> NAMES = new HashSet<String>(Arrays.asList("LOWER", "UPPER", "LENGTH", "TOSTRING",
+        "TO_STRING", "TONUMBER", "TO_NUMBER", "ABS", "CONTAINS", "ARRAY_CONTAINS", "ARRAY_LENGTH", "REGEXP_LIKE",
+        "REGEXP_CONTAINS", "IFMISSING", "IFNULL", "IFMISSINGORNULL"));
+
+    private final String name;
+
+    Function(String name, List<N1qlExpression> arguments) {
+      super(arguments);
+      this.name = name;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      List<Object> args = new ArrayList<Object>(operands.size());
+      for (N1qlExpression operand : operands) {
+        args.add(operand.evaluate(scope));
+      }
+      switch (name) {
+        case "IFMISSING":
+          return firstMatching(args, false);
+        case "IFNULL":
+        case "IFMISSINGORNULL":
+          return firstMatching(args, true);
+        default:
+          break;
+      }
+      Object first = args.get(0);
+      if (isUnknown(first)) {
+        return first;
+      }
+      switch (name) {
+        case "LOWER":
+          return first instanceof String ? ((String) first).toLowerCase(Locale.ROOT) : null;
+        case "UPPER":
+          return first instanceof String ? ((String) first).toUpperCase(Locale.ROOT) : null;
+        case "LENGTH":
+          return first instanceof String ? (Object) (long) ((String) first).length() : null;
+        case "TOSTRING":
+        case "TO_STRING":
+          return toDisplayString(first);
+        case "TONUMBER":
+        case "TO_NUMBER":
+          return toNumber(first);
+        case "ABS":
+          return first instanceof Number ? abs((Number) first) : null;
+        case "ARRAY_LENGTH":
+          return first instanceof JsonArray ? (Object) (long) ((JsonArray) first).size() : null;
+        case "ARRAY_CONTAINS":
+          return first instanceof JsonArray ? new In(new Literal(args.get(1)), new Literal(first)).evaluate(scope)
+              : null;
+        default:
+          break;
+      }
+      Object second = args.get(1);
+      if (isUnknown(second)) {
+        return second;
+      }
+      if (!(first instanceof String) || !(second instanceof String)) {
+        return null;
+      }
+      switch (name) {
+        case "CONTAINS":
+          return ((String) first).contains((String) second);
+        case "REGEXP_LIKE":
+          return Pattern.compile((String) second).matcher((String) first).matches();
+        default:
+          return Pattern.compile((String) second).matcher((String) first).find();
+      }
+    }
+
+    private static Object firstMatching(List<Object> args, boolean skipNull) {
+      for (Object arg : args) {
+        if (arg != MISSING && (!skipNull || arg != null)) {
+          return arg;
+        }
+      }
+      return null;
+    }
+
+    private static Object toNumber(Object value) {
+      if (value instanceof Number) {
+        return value;
+      }
+      if (value instanceof Boolean) {
+        return (Boolean) value ? 1L : 0L;
+      }
+      if (value instanceof String) {
+        try {
+          return Long.valueOf(((String) value).trim());
+        } catch (NumberFormatException e) {
+          try {
+            return Double.valueOf(((String) value).trim());
+          } catch (NumberFormatException notANumber) {
+            return null;
+          }
+        }
+      }
+      return null;
+    }
+
+    private static Object abs(Number number) {
+      return isIntegral(number) ? (Object) Math.abs(number.longValue()) : (Object) Math.abs(number.doubleValue());
+    }
+  }
+
+  enum AggregateFunction {
+    COUNT, SUM, AVG, MIN, MAX, ARRAY_AGG
+  }
+
+  /**
+   * An aggregate function, evaluated over the rows of the group of the scope.
+   */
+  static final class Aggregate extends N1qlExpression {
+
+    private final AggregateFunction function;
+    private final N1qlExpression argument;
+    private final boolean distinct;
+
+    /**
+     * @param argument the aggregated expression, null for <code>COUNT(*)</code>.
+     */
+    Aggregate(AggregateFunction function, N1qlExpression argument, boolean distinct) {
+      this.function = function;
+      this.argument = argument;
+      this.distinct = distinct;
+    }
+
+    @Override
+    Object evaluate(Scope scope) {
+      List<Scope> group = scope.getGroup();
+      if (group == null) {
+        throw new InMemoryN1qlException(InMemoryN1qlException.EXECUTION_ERROR,
+            "Aggregate " + function + " used outside of a group");
+      }
+      if (argument == null) {
+        return (long) group.size();
+      }
+      List<Object> values = new ArrayList<Object>(group.size());
+      Set<String> seen = distinct ? new HashSet<String>() : null;
+      for (Scope row : group) {
+        Object value = argument.evaluate(row);
+        if (!isUnknown(value) && (seen == null || seen.add(toJson(value)))) {
+          values.add(value);
+        }
+      }
+
+      switch (function) {
+        case COUNT:
+          return (long) values.size();
+        case ARRAY_AGG: {
+          JsonArray array = JsonArray.create();
+          for (Object value : values) {
+            array.add(value);
+          }
+          return values.isEmpty() ? null : array;
+        }
+        case MIN:
+        case MAX: {
+          Object result = null;
+          for (Object value : values) {
+            if (result == null || (function == AggregateFunction.MIN ? collate(value, result) < 0
+                : collate(value, result) > 0)) {
+              result = value;
+            }
+          }
+          return result;
+        }
+        default: {
+          boolean integral = true;
+          long longSum = 0;
+          double doubleSum = 0;
+          int count = 0;
+          for (Object value : values) {
+            if (value instanceof Number) {
+              Number number = (Number) value;
+              integral &= isIntegral(number);
+              longSum += number.longValue();
+              doubleSum += number.doubleValue();
+              count++;
+            }
+          }
+          if (count == 0) {
+            return null;
+          }
+          if (function == AggregateFunction.AVG) {
+            return doubleSum / count;
+          }
+          return integral ? (Object) longSum : (Object) doubleSum;
+        }
+      }
+    }
+
+    @Override
+    void collectReferences(Set<String> references) {
+      if (argument != null) {
+        argument.collectReferences(references);
+      }
+    }
+
+    @Override
+    boolean isAggregate() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,790 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.data.couchbase.inmemory.N1qlExpression.AggregateFunction;
+import org.springframework.data.couchbase.inmemory.N1qlExpression.ComparisonOperator;
+import org.springframework.data.couchbase.inmemory.N1qlExpression.IsKind;
+import org.springframework.data.couchbase.inmemory.N1qlStatement.Delete;
+import org.springframework.data.couchbase.inmemory.N1qlStatement.Join;
+import org.springframework.data.couchbase.inmemory.N1qlStatement.KeyspaceTerm;
+import org.springframework.data.couchbase.inmemory.N1qlStatement.Ordering;
+import org.springframework.data.couchbase.inmemory.N1qlStatement.Query;
+import org.springframework.data.couchbase.inmemory.N1qlStatement.ResultTerm;
+import org.springframework.data.couchbase.inmemory.N1qlStatement.Select;
+
+/**
+ * A recursive descent parser of the N1QL subset supported by an {@link InMemoryBucket}: the statements generated by
+ * the repositories (derived, string-based and join queries) and the index statements of the
+ * {@link org.springframework.data.couchbase.repository.support.IndexManager}.
+ *
+ * @since 3.2
+ */
+class N1qlParser {
+
+  private static final Set<String> RESERVED = new HashSet<String>(Arrays.asList("ALL", "AND", "ANY", "ARRAY", "AS",
+      "ASC", "BETWEEN", "BY", "DELETE", "DESC", "DISTINCT", "ELEMENT", "END", "EVERY", "EXCEPT", "EXPLAIN", "FALSE",
+      "FOR", "FROM", "GROUP", "HAVING", "IN", "INNER", "INTERSECT", "IS", "JOIN", "KEYS", "LEFT", "LET", "LETTING",
+      "LIKE", "LIMIT", "MISSING", "NEST", "NOT", "NULL", "OFFSET", "ON", "OR", "ORDER", "OUTER", "RAW", "RETURNING",
+      "SATISFIES", "SELECT", "SOME", "TRUE", "UNION", "UNNEST", "USE", "VALUE", "VALUED", "WHEN", "WHERE", "WITHIN"));
+
+  private enum TokenType {
+    IDENTIFIER, ESCAPED_IDENTIFIER, STRING, NUMBER, PARAMETER, SYMBOL, END
+  }
+
+  private static final class Token {
+
+    private final TokenType type;
+    private final String text;
+    private final int position;
+
+    private Token(TokenType type, String text, int position) {
+      this.type = type;
+      this.text = text;
+      this.position = position;
+    }
+  }
+
+  private final String statement;
+  private final List<Token> tokens;
+  private int index;
+  private int nextPositionalParameter = 1;
+
+  private N1qlParser(String statement) {
+    this.statement = statement;
+    this.tokens = tokenize(statement);
+  }
+
+  /**
+   * Parses a statement.
+   *
+   * @throws InMemoryN1qlException if the statement is not valid, or not supported.
+   */
+  static N1qlStatement parse(String statement) {
+    return new N1qlParser(statement).parseStatement();
+  }
+
+  private N1qlStatement parseStatement() {
+    N1qlStatement result;
+    if (acceptKeyword("EXPLAIN")) {
+      String explained = statement.substring(peek().position);
+      parseStatement();
+      return new N1qlStatement.Explain(explained.trim());
+    } else if (isKeyword("CREATE") || isKeyword("BUILD") || isKeyword("DROP") || isKeyword("ALTER")) {
+      return new N1qlStatement.IndexStatement();
+    } else if (acceptKeyword("SELECT")) {
+      result = parseSelect();
+    } else if (acceptKeyword("DELETE")) {
+      result = parseDelete();
+    } else {
+      throw error("Only SELECT, DELETE, EXPLAIN and index statements are supported");
+    }
+    acceptSymbol(";");
+    if (peek().type != TokenType.END) {
+      throw error("Unexpected " + peek().text);
+    }
+    return result;
+  }
+
+  private Select parseSelect() {
+    Select select = new Select();
+    if (acceptKeyword("DISTINCT")) {
+      select.distinct = true;
+    } else {
+      acceptKeyword("ALL");
+    }
+    parseProjection(select);
+
+    if (acceptKeyword("FROM")) {
+      select.from = parseKeyspaceTerm();
+      while (isKeyword("JOIN") || isKeyword("INNER") || isKeyword("LEFT")) {
+        select.joins.add(parseJoin());
+      }
+    }
+    if (isKeyword("NEST") || isKeyword("UNNEST") || isKeyword("LET")) {
+      throw error(peek().text.toUpperCase(Locale.ROOT) + " is not supported");
+    }
+    if (acceptKeyword("WHERE")) {
+      select.where = parseExpression();
+    }
+    if (acceptKeyword("GROUP")) {
+      expectKeyword("BY");
+      do {
+        select.groupBy.add(parseExpression());
+      } while (acceptSymbol(","));
+      if (acceptKeyword("HAVING")) {
+        select.having = parseExpression();
+      }
+    }
+    if (acceptKeyword("ORDER")) {
+      expectKeyword("BY");
+      do {
+        N1qlExpression expression = parseExpression();
+        boolean descending = acceptKeyword("DESC");
+        if (!descending) {
+          acceptKeyword("ASC");
+        }
+        select.orderBy.add(new Ordering(expression, descending));
+      } while (acceptSymbol(","));
+    }
+    for (int i = 0; i < 2; i++) {
+      if (acceptKeyword("LIMIT")) {
+        select.limit = parseExpression();
+      } else if (acceptKeyword("OFFSET")) {
+        select.offset = parseExpression();
+      }
+    }
+    if (isKeyword("UNION") || isKeyword("INTERSECT") || isKeyword("EXCEPT")) {
+      throw error(peek().text.toUpperCase(Locale.ROOT) + " is not supported");
+    }
+
+    boolean aggregate = select.having != null;
+    for (ResultTerm term : select.projection) {
+      aggregate |= term.expression != null && term.expression.isAggregate();
+    }
+    for (Ordering ordering : select.orderBy) {
+      aggregate |= ordering.expression.isAggregate();
+    }
+    select.aggregate = aggregate;
+    return select;
+  }
+
+  private Delete parseDelete() {
+    Delete delete = new Delete();
+    expectKeyword("FROM");
+    delete.from = parseKeyspaceTerm();
+    if (acceptKeyword("WHERE")) {
+      delete.where = parseExpression();
+    }
+    if (acceptKeyword("LIMIT")) {
+      delete.limit = parseExpression();
+    }
+    if (acceptKeyword("RETURNING")) {
+      parseProjection(delete);
+    }
+    return delete;
+  }
+
+  private void parseProjection(Query query) {
+    query.raw = acceptKeyword("RAW") || acceptKeyword("ELEMENT") || acceptKeyword("VALUE");
+    do {
+      if (acceptSymbol("*")) {
+        query.projection.add(new ResultTerm(null, null, true));
+        continue;
+      }
+      N1qlExpression expression = parseExpression();
+      if (isSymbol(".") && peek(1).text.equals("*")) {
+        index += 2;
+        query.projection.add(new ResultTerm(expression, null, true));
+        continue;
+      }
+      query.projection.add(new ResultTerm(expression, parseAlias(), false));
+    } while (acceptSymbol(","));
+    if (query.raw && (query.projection.size() != 1 || query.projection.get(0).star)) {
+      throw error("RAW projections must have a single expression");
+    }
+  }
+
+  private KeyspaceTerm parseKeyspaceTerm() {
+    String keyspace = parseIdentifier();
+    if (acceptSymbol(":")) {
+      //namespace:keyspace
+      keyspace = parseIdentifier();
+    }
+    String alias = parseAlias();
+    N1qlExpression useKeys = null;
+    while (acceptKeyword("USE")) {
+      if (acceptKeyword("KEYS")) {
+        useKeys = parseExpression();
+      } else if (acceptKeyword("INDEX") || acceptKeyword("HASH")) {
+        //index and join hints
+        skipParentheses();
+      } else {
+        throw error("Unsupported USE clause");
+      }
+    }
+    return new KeyspaceTerm(keyspace, alias == null ? keyspace : alias, useKeys);
+  }
+
+  private Join parseJoin() {
+    boolean outer = false;
+    if (acceptKeyword("LEFT")) {
+      acceptKeyword("OUTER");
+      outer = true;
+    } else {
+      acceptKeyword("INNER");
+    }
+    expectKeyword("JOIN");
+    KeyspaceTerm term = parseKeyspaceTerm();
+    expectKeyword("ON");
+    if (acceptKeyword("KEYS")) {
+      return new Join(term, outer, parseExpression(), null);
+    }
+    return new Join(term, outer, null, parseExpression());
+  }
+
+  private String parseAlias() {
+    if (acceptKeyword("AS")) {
+      return parseIdentifier();
+    }
+    Token token = peek();
+    if (token.type == TokenType.ESCAPED_IDENTIFIER
+        || (token.type == TokenType.IDENTIFIER && !RESERVED.contains(token.text.toUpperCase(Locale.ROOT)))) {
+      index++;
+      return token.text;
+    }
+    return null;
+  }
+
+  private String parseIdentifier() {
+    Token token = next();
+    if (token.type != TokenType.IDENTIFIER && token.type != TokenType.ESCAPED_IDENTIFIER) {
+      throw error("Expected an identifier instead of " + token.text, token);
+    }
+    return token.text;
+  }
+
+  private void skipParentheses() {
+    expectSymbol("(");
+    int depth = 1;
+    while (depth > 0) {
+      Token token = next();
+      if (token.type == TokenType.END) {
+        throw error("Unbalanced parentheses");
+      } else if (token.type == TokenType.SYMBOL && token.text.equals("(")) {
+        depth++;
+      } else if (token.type == TokenType.SYMBOL && token.text.equals(")")) {
+        depth--;
+      }
+    }
+  }
+
+  // ---------------------------------------------------------------------------------------------------------------
+  // Expressions, by increasing precedence
+
+  private N1qlExpression parseExpression() {
+    N1qlExpression left = parseAnd();
+    while (acceptKeyword("OR")) {
+      left = new N1qlExpression.Or(left, parseAnd());
+    }
+    return left;
+  }
+
+  private N1qlExpression parseAnd() {
+    N1qlExpression left = parseNot();
+    while (acceptKeyword("AND")) {
+      left = new N1qlExpression.And(left, parseNot());
+    }
+    return left;
+  }
+
+  private N1qlExpression parseNot() {
+    if (acceptKeyword("NOT")) {
+      return new N1qlExpression.Not(parseNot());
+    }
+    return parseComparison();
+  }
+
+  private N1qlExpression parseComparison() {
+    N1qlExpression left = parseConcat();
+    Token token = peek();
+    if (token.type == TokenType.SYMBOL) {
+      ComparisonOperator operator = null;
+      switch (token.text) {
+        case "=":
+        case "==":
+          operator = ComparisonOperator.EQ;
+          break;
+        case "!=":
+        case "<>":
+          operator = ComparisonOperator.NE;
+          break;
+        case "<":
+          operator = ComparisonOperator.LT;
+          break;
+        case "<=":
+          operator = ComparisonOperator.LE;
+          break;
+        case ">":
+          operator = ComparisonOperator.GT;
+          break;
+        case ">=":
+          operator = ComparisonOperator.GE;
+          break;
+        default:
+          break;
+      }
+      if (operator != null) {
+        index++;
+        return new N1qlExpression.Comparison(operator, left, parseConcat());
+      }
+      return left;
+    }
+
+    if (acceptKeyword("IS")) {
+      boolean negated = acceptKeyword("NOT");
+      if (acceptKeyword("NULL")) {
+        return new N1qlExpression.Is(left, IsKind.NULL, negated);
+      } else if (acceptKeyword("MISSING")) {
+        return new N1qlExpression.Is(left, IsKind.MISSING, negated);
+      }
+      expectKeyword("VALUED");
+      return new N1qlExpression.Is(left, IsKind.VALUED, negated);
+    }
+
+    boolean negated = isKeyword("NOT")
+        && (isKeyword(1, "LIKE") || isKeyword(1, "IN") || isKeyword(1, "BETWEEN"));
+    if (negated) {
+      index++;
+    }
+    N1qlExpression result = null;
+    if (acceptKeyword("LIKE")) {
+      result = new N1qlExpression.Like(left, parseConcat());
+    } else if (acceptKeyword("IN")) {
+      result = new N1qlExpression.In(left, parseConcat());
+    } else if (acceptKeyword("BETWEEN")) {
+      N1qlExpression low = parseConcat();
+      expectKeyword("AND");
+      result = new N1qlExpression.Between(left, low, parseConcat());
+    }
+    if (result == null) {
+      return left;
+    }
+    return negated ? new N1qlExpression.Not(result) : result;
+  }
+
+  private N1qlExpression parseConcat() {
+    N1qlExpression left = parseAdditive();
+    while (acceptSymbol("||")) {
+      left = new N1qlExpression.Concat(left, parseAdditive());
+    }
+    return left;
+  }
+
+  private N1qlExpression parseAdditive() {
+    N1qlExpression left = parseMultiplicative();
+    while (isSymbol("+") || isSymbol("-")) {
+      char operator = next().text.charAt(0);
+      left = new N1qlExpression.Arithmetic(operator, left, parseMultiplicative());
+    }
+    return left;
+  }
+
+  private N1qlExpression parseMultiplicative() {
+    N1qlExpression left = parseUnary();
+    while (isSymbol("*") || isSymbol("/") || isSymbol("%")) {
+      char operator = next().text.charAt(0);
+      left = new N1qlExpression.Arithmetic(operator, left, parseUnary());
+    }
+    return left;
+  }
+
+  private N1qlExpression parseUnary() {
+    if (acceptSymbol("-")) {
+      return new N1qlExpression.Negate(parseUnary());
+    }
+    return parsePostfix(parsePrimary());
+  }
+
+  private N1qlExpression parsePostfix(N1qlExpression expression) {
+    while (true) {
+      if (isSymbol(".") && !peek(1).text.equals("*")) {
+        index++;
+        expression = new N1qlExpression.Field(expression, parseFieldName());
+      } else if (acceptSymbol("[")) {
+        N1qlExpression element = parseExpression();
+        expectSymbol("]");
+        expression = new N1qlExpression.Element(expression, element);
+      } else {
+        return expression;
+      }
+    }
+  }
+
+  private String parseFieldName() {
+    Token token = next();
+    if (token.type != TokenType.IDENTIFIER && token.type != TokenType.ESCAPED_IDENTIFIER) {
+      throw error("Expected a field name instead of " + token.text, token);
+    }
+    return token.text;
+  }
+
+  private N1qlExpression parsePrimary() {
+    Token token = next();
+    switch (token.type) {
+      case NUMBER:
+        return new N1qlExpression.Literal(parseNumber(token.text));
+      case STRING:
+        return new N1qlExpression.Literal(token.text);
+      case PARAMETER:
+        if (token.text.isEmpty()) {
+          return new N1qlExpression.Parameter(nextPositionalParameter++, null);
+        } else if (Character.isDigit(token.text.charAt(0))) {
+          return new N1qlExpression.Parameter(Integer.parseInt(token.text), null);
+        }
+        return new N1qlExpression.Parameter(0, token.text);
+      case ESCAPED_IDENTIFIER:
+        return new N1qlExpression.Identifier(token.text);
+      case SYMBOL:
+        return parseSymbolPrimary(token);
+      case IDENTIFIER:
+        return parseIdentifierPrimary(token);
+      default:
+        throw error("Unexpected end of statement", token);
+    }
+  }
+
+  private N1qlExpression parseSymbolPrimary(Token token) {
+    if (token.text.equals("(")) {
+      N1qlExpression expression = parseExpression();
+      expectSymbol(")");
+      return expression;
+    }
+    if (token.text.equals("[")) {
+      List<N1qlExpression> elements = new ArrayList<N1qlExpression>();
+      if (!acceptSymbol("]")) {
+        do {
+          elements.add(parseExpression());
+        } while (acceptSymbol(","));
+        expectSymbol("]");
+      }
+      return new N1qlExpression.ArrayConstructor(elements);
+    }
+    if (token.text.equals("{")) {
+      List<String> names = new ArrayList<String>();
+      List<N1qlExpression> values = new ArrayList<N1qlExpression>();
+      if (!acceptSymbol("}")) {
+        do {
+          Token name = next();
+          if (name.type != TokenType.STRING) {
+            throw error("Expected a field name instead of " + name.text, name);
+          }
+          names.add(name.text);
+          expectSymbol(":");
+          values.add(parseExpression());
+        } while (acceptSymbol(","));
+        expectSymbol("}");
+      }
+      return new N1qlExpression.ObjectConstructor(names, values);
+    }
+    throw error("Unexpected " + token.text, token);
+  }
+
+  private N1qlExpression parseIdentifierPrimary(Token token) {
+    String keyword = token.text.toUpperCase(Locale.ROOT);
+    switch (keyword) {
+      case "TRUE":
+        return new N1qlExpression.Literal(Boolean.TRUE);
+      case "FALSE":
+        return new N1qlExpression.Literal(Boolean.FALSE);
+      case "NULL":
+        return new N1qlExpression.Literal(null);
+      case "MISSING":
+        return new N1qlExpression.Literal(N1qlExpression.MISSING);
+      case "ANY":
+      case "SOME":
+      case "EVERY": {
+        String variable = parseIdentifier();
+        expectKeyword("IN");
+        N1qlExpression collection = parseExpression();
+        expectKeyword("SATISFIES");
+        N1qlExpression condition = parseExpression();
+        expectKeyword("END");
+        return new N1qlExpression.CollectionPredicate(keyword.equals("EVERY"), variable, collection, condition);
+      }
+      case "DISTINCT":
+        expectKeyword("ARRAY");
+        return parseArrayFor(true);
+      case "ARRAY":
+        return parseArrayFor(false);
+      default:
+        break;
+    }
+
+    if (acceptSymbol("(")) {
+      return parseFunction(keyword);
+    }
+    if (RESERVED.contains(keyword)) {
+      throw error("Unexpected " + token.text, token);
+    }
+    return new N1qlExpression.Identifier(token.text);
+  }
+
+  private N1qlExpression parseArrayFor(boolean distinct) {
+    N1qlExpression mapping = parseExpression();
+    expectKeyword("FOR");
+    String variable = parseIdentifier();
+    expectKeyword("IN");
+    N1qlExpression collection = parseExpression();
+    N1qlExpression condition = acceptKeyword("WHEN") ? parseExpression() : null;
+    expectKeyword("END");
+    return new N1qlExpression.ArrayFor(distinct, mapping, variable, collection, condition);
+  }
+
+  private N1qlExpression parseFunction(String name) {
+    if (name.equals("META")) {
+      String alias = null;
+      if (!acceptSymbol(")")) {
+        alias = parseIdentifier();
+        expectSymbol(")");
+      }
+      return new N1qlExpression.Meta(alias);
+    }
+
+    AggregateFunction aggregate = null;
+    for (AggregateFunction function : AggregateFunction.values()) {
+      if (function.name().equals(name)) {
+        aggregate = function;
+      }
+    }
+    if (aggregate != null) {
+      if (aggregate == AggregateFunction.COUNT && acceptSymbol("*")) {
+        expectSymbol(")");
+        return new N1qlExpression.Aggregate(aggregate, null, false);
+      }
+      boolean distinct = acceptKeyword("DISTINCT");
+      N1qlExpression argument = parseExpression();
+      expectSymbol(")");
+      return new N1qlExpression.Aggregate(aggregate, argument, distinct);
+    }
+
+    if (!N1qlExpression.Function.NAMES.contains(name)) {
+      throw error("Function " + name + " is not supported");
+    }
+    List<N1qlExpression> arguments = new ArrayList<N1qlExpression>();
+    if (!acceptSymbol(")")) {
+      do {
+        arguments.add(parseExpression());
+      } while (acceptSymbol(","));
+      expectSymbol(")");
+    }
+    if (arguments.isEmpty()) {
+      throw error("Function " + name + " requires arguments");
+    }
+    return new N1qlExpression.Function(name, arguments);
+  }
+
+  private static Object parseNumber(String text) {
+    if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+      try {
+        return Long.valueOf(text);
+      } catch (NumberFormatException e) {
+        //too large for a long
+      }
+    }
+    return Double.valueOf(text);
+  }
+
+  // ---------------------------------------------------------------------------------------------------------------
+  // Tokens
+
+  private Token peek() {
+    return peek(0);
+  }
+
+  private Token peek(int offset) {
+    return tokens.get(Math.min(index + offset, tokens.size() - 1));
+  }
+
+  private Token next() {
+    Token token = peek();
+    if (token.type != TokenType.END) {
+      index++;
+    }
+    return token;
+  }
+
+  private boolean isKeyword(String keyword) {
+    return isKeyword(0, keyword);
+  }
+
+  private boolean isKeyword(int offset, String keyword) {
+    Token token = peek(offset);
+    return token.type == TokenType.IDENTIFIER && token.text.equalsIgnoreCase(keyword);
+  }
+
+  private boolean acceptKeyword(String keyword) {
+    if (isKeyword(keyword)) {
+      index++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectKeyword(String keyword) {
+    if (!acceptKeyword(keyword)) {
+      throw error("Expected " + keyword + " instead of " + describe(peek()));
+    }
+  }
+
+  private boolean isSymbol(String symbol) {
+    Token token = peek();
+    return token.type == TokenType.SYMBOL && token.text.equals(symbol);
+  }
+
+  private boolean acceptSymbol(String symbol) {
+    if (isSymbol(symbol)) {
+      index++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectSymbol(String symbol) {
+    if (!acceptSymbol(symbol)) {
+      throw error("Expected " + symbol + " instead of " + describe(peek()));
+    }
+  }
+
+  private static String describe(Token token) {
+    return token.type == TokenType.END ? "end of statement" : token.text;
+  }
+
+  private InMemoryN1qlException error(String message) {
+    return error(message, peek());
+  }
+
+  private InMemoryN1qlException error(String message, Token token) {
+    return new InMemoryN1qlException(InMemoryN1qlException.SYNTAX_ERROR,
+        message + " at position " + token.position + " of: " + statement);
+  }
+
+  private List<Token> tokenize(String text) {
+    List<Token> result = new ArrayList<Token>();
+    int i = 0;
+    int length = text.length();
+    while (i < length) {
+      char c = text.charAt(i);
+      int start = i;
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '-' && i + 1 < length && text.charAt(i + 1) == '-') {
+        while (i < length && text.charAt(i) != '\n') {
+          i++;
+        }
+      } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+        int end = text.indexOf("*/", i + 2);
+        if (end < 0) {
+          throw new InMemoryN1qlException(InMemoryN1qlException.SYNTAX_ERROR, "Unterminated comment: " + text);
+        }
+        i = end + 2;
+      } else if (Character.isLetter(c) || c == '_') {
+        while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+          i++;
+        }
+        result.add(new Token(TokenType.IDENTIFIER, text.substring(start, i), start));
+      } else if (Character.isDigit(c)) {
+        while (i < length && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.'
+            || text.charAt(i) == 'e' || text.charAt(i) == 'E'
+            || ((text.charAt(i) == '+' || text.charAt(i) == '-')
+                && (text.charAt(i - 1) == 'e' || text.charAt(i - 1) == 'E')))) {
+          i++;
+        }
+        result.add(new Token(TokenType.NUMBER, text.substring(start, i), start));
+      } else if (c == '$') {
+        i++;
+        while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+          i++;
+        }
+        result.add(new Token(TokenType.PARAMETER, text.substring(start + 1, i), start));
+      } else if (c == '?') {
+        i++;
+        result.add(new Token(TokenType.PARAMETER, "", start));
+      } else if (c == '`') {
+        StringBuilder sb = new StringBuilder();
+        i = readQuoted(text, i, '`', sb);
+        result.add(new Token(TokenType.ESCAPED_IDENTIFIER, sb.toString(), start));
+      } else if (c == '"' || c == '\'') {
+        StringBuilder sb = new StringBuilder();
+        i = readQuoted(text, i, c, sb);
+        result.add(new Token(TokenType.STRING, sb.toString(), start));
+      } else {
+        String symbol = text.substring(i, Math.min(i + 2, length));
+        if (!Arrays.asList("==", "!=", "<>", "<=", ">=", "||").contains(symbol)) {
+          symbol = String.valueOf(c);
+          if ("=<>+-*/%()[]{},.:;".indexOf(c) < 0) {
+            throw new InMemoryN1qlException(InMemoryN1qlException.SYNTAX_ERROR,
+                "Unexpected character " + c + " at position " + i + " of: " + text);
+          }
+        }
+        i += symbol.length();
+        result.add(new Token(TokenType.SYMBOL, symbol, start));
+      }
+    }
+    result.add(new Token(TokenType.END, "", length));
+    return result;
+  }
+
+  /**
+   * Reads a quoted string or identifier, where the quote is escaped by doubling it or with a backslash.
+   *
+   * @return the position after the closing quote.
+   */
+  private static int readQuoted(String text, int start, char quote, StringBuilder sb) {
+    int i = start + 1;
+    while (i < text.length()) {
+      char c = text.charAt(i);
+      if (c == quote) {
+        if (i + 1 < text.length() && text.charAt(i + 1) == quote) {
+          sb.append(quote);
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      if (c == '\\' && quote != '`' && i + 1 < text.length()) {
+        char escaped = text.charAt(++i);
+        switch (escaped) {
+          case 'n':
+            sb.append('\n');
+            break;
+          case 't':
+            sb.append('\t');
+            break;
+          case 'r':
+            sb.append('\r');
+            break;
+          case 'b':
+            sb.append('\b');
+            break;
+          case 'f':
+            sb.append('\f');
+            break;
+          case 'u':
+            sb.append((char) Integer.parseInt(text.substring(i + 1, Math.min(i + 5, text.length())), 16));
+            i += 4;
+            break;
+          default:
+            sb.append(escaped);
+        }
+        i++;
+        continue;
+      }
+      sb.append(c);
+      i++;
+    }
+    throw new InMemoryN1qlException(InMemoryN1qlException.SYNTAX_ERROR,
+        "Unterminated " + (quote == '`' ? "identifier" : "string") + " at position " + start + " of: " + text);
+  }
+}
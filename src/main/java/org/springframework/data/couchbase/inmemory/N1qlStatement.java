@@ -0,0 +1,469 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+
+import org.springframework.data.couchbase.inmemory.N1qlExpression.Parameters;
+import org.springframework.data.couchbase.inmemory.N1qlExpression.Scope;
+
+/**
+ * A parsed N1QL statement of the subset supported by an {@link InMemoryBucket}, see {@link N1qlParser}.
+ *
+ * @since 3.2
+ */
+abstract class N1qlStatement {
+
+  /**
+   * Executes the statement.
+   *
+   * @param bucket the bucket the statement runs against.
+   * @param parameters the parameters of the query.
+   * @param result collects the rows and the number of mutations.
+   */
+  abstract void execute(InMemoryBucket bucket, Parameters parameters, Result result);
+
+  /**
+   * The rows returned by a statement, and the number of documents it mutated.
+   */
+  static final class Result {
+
+    private final List<Object> rows = new ArrayList<Object>();
+    private int mutationCount;
+
+    List<Object> getRows() {
+      return rows;
+    }
+
+    int getMutationCount() {
+      return mutationCount;
+    }
+  }
+
+  /**
+   * A keyspace of the FROM clause, or a joined one.
+   */
+  static final class KeyspaceTerm {
+
+    final String keyspace;
+    final String alias;
+    final N1qlExpression useKeys;
+
+    KeyspaceTerm(String keyspace, String alias, N1qlExpression useKeys) {
+      this.keyspace = keyspace;
+      this.alias = alias;
+      this.useKeys = useKeys;
+    }
+  }
+
+  /**
+   * An ANSI join (<code>ON</code> condition) or a lookup join (<code>ON KEYS</code>).
+   */
+  static final class Join {
+
+    final KeyspaceTerm term;
+    final boolean outer;
+    final N1qlExpression onKeys;
+    final N1qlExpression condition;
+
+    Join(KeyspaceTerm term, boolean outer, N1qlExpression onKeys, N1qlExpression condition) {
+      this.term = term;
+      this.outer = outer;
+      this.onKeys = onKeys;
+      this.condition = condition;
+    }
+  }
+
+  /**
+   * A term of a projection: <code>*</code> (null expression and star), <code>expression.*</code> or an expression
+   * with an optional alias.
+   */
+  static final class ResultTerm {
+
+    final N1qlExpression expression;
+    final String alias;
+    final boolean star;
+
+    ResultTerm(N1qlExpression expression, String alias, boolean star) {
+      this.expression = expression;
+      this.alias = alias;
+      this.star = star;
+    }
+  }
+
+  static final class Ordering {
+
+    final N1qlExpression expression;
+    final boolean descending;
+
+    Ordering(N1qlExpression expression, boolean descending) {
+      this.expression = expression;
+      this.descending = descending;
+    }
+  }
+
+  /**
+   * Common parts of SELECT and DELETE: the source of the rows and the projection.
+   */
+  abstract static class Query extends N1qlStatement {
+
+    KeyspaceTerm from;
+    final List<Join> joins = new ArrayList<Join>();
+    N1qlExpression where;
+    boolean raw;
+    final List<ResultTerm> projection = new ArrayList<ResultTerm>();
+    N1qlExpression limit;
+
+    private Set<String> projectionAliases;
+
+    /**
+     * @return the rows of the FROM clause and its joins matching the WHERE clause.
+     */
+    List<Scope> source(InMemoryBucket bucket, Parameters parameters) {
+      if (from == null) {
+        return Collections.singletonList(new Scope(new String[0], parameters));
+      }
+      String[] aliases = new String[joins.size() + 1];
+      aliases[0] = from.alias;
+      for (int i = 0; i < joins.size(); i++) {
+        aliases[i + 1] = joins.get(i).term.alias;
+      }
+      Scope empty = new Scope(aliases, parameters);
+
+      N1qlExpression pushedDown = joins.isEmpty() ? where : pushDown(aliases);
+      List<Scope> rows = new ArrayList<Scope>();
+      for (StoredDocument document : documents(bucket, from, empty)) {
+        Scope row = empty.withDocument(from.alias, document);
+        if (pushedDown == null || N1qlExpression.isTrue(pushedDown.evaluate(row))) {
+          rows.add(row);
+        }
+      }
+
+      for (Join join : joins) {
+        List<StoredDocument> all = join.onKeys == null ? documents(bucket, join.term, empty) : null;
+        List<Scope> joined = new ArrayList<Scope>();
+        for (Scope row : rows) {
+          boolean matched = false;
+          List<StoredDocument> candidates = join.onKeys == null ? all : lookup(bucket, join.onKeys.evaluate(row));
+          for (StoredDocument candidate : candidates) {
+            Scope joinedRow = row.withDocument(join.term.alias, candidate);
+            if (join.condition == null || N1qlExpression.isTrue(join.condition.evaluate(joinedRow))) {
+              joined.add(joinedRow);
+              matched = true;
+            }
+          }
+          if (!matched && join.outer) {
+            joined.add(row);
+          }
+        }
+        rows = joined;
+      }
+
+      if (!joins.isEmpty() && where != null) {
+        List<Scope> filtered = new ArrayList<Scope>(rows.size());
+        for (Scope row : rows) {
+          if (N1qlExpression.isTrue(where.evaluate(row))) {
+            filtered.add(row);
+          }
+        }
+        rows = filtered;
+      }
+      return rows;
+    }
+
+    /**
+     * @return the conjunction of the WHERE terms that only reference the first keyspace, which can filter its
+     *  documents before they are joined.
+     */
+    private N1qlExpression pushDown(String[] aliases) {
+      if (where == null) {
+        return null;
+      }
+      List<N1qlExpression> conjuncts = new ArrayList<N1qlExpression>();
+      collectConjuncts(where, conjuncts);
+      N1qlExpression pushedDown = null;
+      for (N1qlExpression conjunct : conjuncts) {
+        Set<String> references = new HashSet<String>();
+        conjunct.collectReferences(references);
+        boolean local = true;
+        for (int i = 1; i < aliases.length; i++) {
+          local &= !references.contains(aliases[i]);
+        }
+        if (local) {
+          pushedDown = pushedDown == null ? conjunct : new N1qlExpression.And(pushedDown, conjunct);
+        }
+      }
+      return pushedDown;
+    }
+
+    private static void collectConjuncts(N1qlExpression expression, List<N1qlExpression> conjuncts) {
+      if (expression instanceof N1qlExpression.And) {
+        for (N1qlExpression operand : ((N1qlExpression.And) expression).getOperands()) {
+          collectConjuncts(operand, conjuncts);
+        }
+      } else {
+        conjuncts.add(expression);
+      }
+    }
+
+    private static List<StoredDocument> documents(InMemoryBucket bucket, KeyspaceTerm term, Scope scope) {
+      if (!bucket.getName().equals(term.keyspace)) {
+        throw new InMemoryN1qlException(InMemoryN1qlException.KEYSPACE_NOT_FOUND,
+            "Keyspace not found: " + term.keyspace);
+      }
+      return term.useKeys == null ? bucket.scan() : lookup(bucket, term.useKeys.evaluate(scope));
+    }
+
+    private static List<StoredDocument> lookup(InMemoryBucket bucket, Object keys) {
+      List<StoredDocument> documents = new ArrayList<StoredDocument>();
+      for (Object key : keys instanceof JsonArray ? ((JsonArray) keys).toList() : Collections.singletonList(keys)) {
+        StoredDocument document = key instanceof String ? bucket.get((String) key) : null;
+        if (document != null) {
+          documents.add(document);
+        }
+      }
+      return documents;
+    }
+
+    /**
+     * Evaluates the projection for a row.
+     *
+     * @return the projected row, {@link N1qlExpression#MISSING} if a RAW projection is missing.
+     */
+    Object project(Scope scope) {
+      if (raw) {
+        return projection.get(0).expression.evaluate(scope);
+      }
+      JsonObject row = JsonObject.create();
+      for (int i = 0; i < projection.size(); i++) {
+        ResultTerm term = projection.get(i);
+        if (term.star && term.expression == null) {
+          for (String alias : scope.getAliases()) {
+            Object document = scope.resolve(alias);
+            if (document != N1qlExpression.MISSING) {
+              row.put(alias, document);
+            }
+          }
+          continue;
+        }
+        Object value = term.expression.evaluate(scope);
+        if (term.star) {
+          if (value instanceof JsonObject) {
+            for (String field : ((JsonObject) value).getNames()) {
+              row.put(field, ((JsonObject) value).get(field));
+            }
+          }
+        } else if (value != N1qlExpression.MISSING) {
+          row.put(name(term, i), value);
+        }
+      }
+      return row;
+    }
+
+    /**
+     * @return the explicit aliases of the projection, which ORDER BY can reference.
+     */
+    Set<String> getProjectionAliases() {
+      if (projectionAliases == null) {
+        Set<String> aliases = new HashSet<String>();
+        for (ResultTerm term : projection) {
+          if (term.alias != null) {
+            aliases.add(term.alias);
+          }
+        }
+        projectionAliases = aliases;
+      }
+      return projectionAliases;
+    }
+
+    private static String name(ResultTerm term, int index) {
+      if (term.alias != null) {
+        return term.alias;
+      }
+      String name = term.expression.projectedName();
+      return name != null ? name : "$" + (index + 1);
+    }
+
+    static long evaluateCount(N1qlExpression expression, Scope scope, String clause) {
+      Object value = expression.evaluate(scope);
+      if (!(value instanceof Number) || ((Number) value).longValue() < 0) {
+        throw new InMemoryN1qlException(InMemoryN1qlException.EXECUTION_ERROR,
+            "Invalid " + clause + " value " + value);
+      }
+      return ((Number) value).longValue();
+    }
+  }
+
+  static final class Select extends Query {
+
+    boolean distinct;
+    final List<N1qlExpression> groupBy = new ArrayList<N1qlExpression>();
+    N1qlExpression having;
+    final List<Ordering> orderBy = new ArrayList<Ordering>();
+    N1qlExpression offset;
+    boolean aggregate;
+
+    @Override
+    void execute(InMemoryBucket bucket, Parameters parameters, Result result) {
+      List<Scope> rows = source(bucket, parameters);
+      if (aggregate || !groupBy.isEmpty()) {
+        rows = group(rows, parameters);
+      }
+
+      List<Object> values = new ArrayList<Object>(rows.size());
+      List<Scope> scopes = new ArrayList<Scope>(rows.size());
+      Set<String> distinctValues = distinct ? new HashSet<String>() : null;
+      for (Scope row : rows) {
+        Object value = project(row);
+        if (value == N1qlExpression.MISSING
+            || (distinctValues != null && !distinctValues.add(N1qlExpression.toJson(value)))) {
+          continue;
+        }
+        values.add(value);
+        scopes.add(orderBy.isEmpty() ? row : row.withProjection(
+            value instanceof JsonObject ? (JsonObject) value : null, getProjectionAliases()));
+      }
+
+      List<Integer> order = new ArrayList<Integer>(values.size());
+      for (int i = 0; i < values.size(); i++) {
+        order.add(i);
+      }
+      if (!orderBy.isEmpty()) {
+        final Object[][] keys = new Object[values.size()][];
+        for (int i = 0; i < keys.length; i++) {
+          keys[i] = new Object[orderBy.size()];
+          for (int j = 0; j < orderBy.size(); j++) {
+            keys[i][j] = orderBy.get(j).expression.evaluate(scopes.get(i));
+          }
+        }
+        Collections.sort(order, (a, b) -> {
+          for (int j = 0; j < orderBy.size(); j++) {
+            int compared = N1qlExpression.collate(keys[a][j], keys[b][j]);
+            if (compared != 0) {
+              return orderBy.get(j).descending ? -compared : compared;
+            }
+          }
+          return 0;
+        });
+      }
+
+      Scope empty = new Scope(new String[0], parameters);
+      long skip = offset == null ? 0 : evaluateCount(offset, empty, "OFFSET");
+      long max = limit == null ? Long.MAX_VALUE : evaluateCount(limit, empty, "LIMIT");
+      for (long i = skip; i < order.size() && i - skip < max; i++) {
+        result.getRows().add(values.get(order.get((int) i)));
+      }
+    }
+
+    private List<Scope> group(List<Scope> rows, Parameters parameters) {
+      Map<String, List<Scope>> groups = new LinkedHashMap<String, List<Scope>>();
+      if (groupBy.isEmpty()) {
+        groups.put("", rows);
+      } else {
+        for (Scope row : rows) {
+          JsonArray key = JsonArray.create();
+          for (N1qlExpression expression : groupBy) {
+            Object value = expression.evaluate(row);
+            key.add(value == N1qlExpression.MISSING ? "#missing" : value);
+          }
+          List<Scope> group = groups.get(key.toString());
+          if (group == null) {
+            group = new ArrayList<Scope>();
+            groups.put(key.toString(), group);
+          }
+          group.add(row);
+        }
+      }
+
+      List<Scope> grouped = new ArrayList<Scope>(groups.size());
+      for (List<Scope> group : groups.values()) {
+        Scope first = group.isEmpty() ? new Scope(new String[0], parameters) : group.get(0);
+        Scope groupScope = first.withGroup(group);
+        if (having == null || N1qlExpression.isTrue(having.evaluate(groupScope))) {
+          grouped.add(groupScope);
+        }
+      }
+      return grouped;
+    }
+  }
+
+  static final class Delete extends Query {
+
+    @Override
+    void execute(InMemoryBucket bucket, Parameters parameters, Result result) {
+      Scope empty = new Scope(new String[0], parameters);
+      long max = limit == null ? Long.MAX_VALUE : evaluateCount(limit, empty, "LIMIT");
+      long deleted = 0;
+      for (Scope row : source(bucket, parameters)) {
+        if (deleted >= max) {
+          break;
+        }
+        Object returned = projection.isEmpty() ? null : project(row);
+        try {
+          bucket.remove(row.getDocument(from.alias).getId(), 0);
+        } catch (DocumentDoesNotExistException e) {
+          //removed concurrently
+          continue;
+        }
+        deleted++;
+        result.mutationCount++;
+        if (returned != null && returned != N1qlExpression.MISSING) {
+          result.getRows().add(returned);
+        }
+      }
+    }
+  }
+
+  /**
+   * <code>EXPLAIN</code>, returning a plan made of a single scan of the bucket, as all the statements are executed.
+   */
+  static final class Explain extends N1qlStatement {
+
+    private final String text;
+
+    Explain(String text) {
+      this.text = text;
+    }
+
+    @Override
+    void execute(InMemoryBucket bucket, Parameters parameters, Result result) {
+      JsonObject scan = JsonObject.create().put("#operator", "InMemoryScan").put("keyspace", bucket.getName());
+      JsonObject plan = JsonObject.create().put("#operator", "Sequence").put("~children", JsonArray.from(scan));
+      result.getRows().add(JsonObject.create().put("plan", plan).put("text", text));
+    }
+  }
+
+  /**
+   * Index management statements, which are accepted and ignored since all queries scan the whole bucket.
+   */
+  static final class IndexStatement extends N1qlStatement {
+
+    @Override
+    void execute(InMemoryBucket bucket, Parameters parameters, Result result) {
+    }
+  }
+}
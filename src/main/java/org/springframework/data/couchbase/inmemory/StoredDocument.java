@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import com.couchbase.client.java.document.json.JsonObject;
+
+/**
+ * An immutable version of a document stored in an {@link InMemoryBucket}: its raw content, CAS and expiry. The JSON
+ * object of the content is parsed once, the first time a query needs it.
+ *
+ * @since 3.2
+ */
+final class StoredDocument {
+
+  private static final Object NOT_AN_OBJECT = new Object();
+
+  private final String id;
+  private final String content;
+  private final long cas;
+  private final int expiry;
+  private final long expiresAtMillis;
+
+  private volatile Object json;
+
+  StoredDocument(String id, String content, long cas, int expiry, long expiresAtMillis) {
+    this.id = id;
+    this.content = content;
+    this.cas = cas;
+    this.expiry = expiry;
+    this.expiresAtMillis = expiresAtMillis;
+  }
+
+  String getId() {
+    return id;
+  }
+
+  String getContent() {
+    return content;
+  }
+
+  long getCas() {
+    return cas;
+  }
+
+  /**
+   * @return the expiry the document was last written or touched with, as given to the SDK.
+   */
+  int getExpiry() {
+    return expiry;
+  }
+
+  /**
+   * @return the time the document expires at in milliseconds, 0 if it never expires.
+   */
+  long getExpiresAtMillis() {
+    return expiresAtMillis;
+  }
+
+  boolean isExpired(long nowMillis) {
+    return expiresAtMillis != 0 && expiresAtMillis <= nowMillis;
+  }
+
+  /**
+   * @return the content parsed as a {@link JsonObject}, or null if the document is not a JSON object (eg. a counter).
+   */
+  JsonObject getJson() {
+    Object parsed = json;
+    if (parsed == null) {
+      try {
+        parsed = JsonObject.fromJson(content);
+      } catch (RuntimeException e) {
+        parsed = NOT_AN_OBJECT;
+      }
+      json = parsed;
+    }
+    return parsed == NOT_AN_OBJECT ? null : (JsonObject) parsed;
+  }
+
+  /**
+   * @return the metadata of the document, as returned by the N1QL <code>META()</code> function.
+   */
+  JsonObject getMeta() {
+    return JsonObject.create()
+        .put("id", id)
+        .put("cas", cas)
+        .put("expiration", expiresAtMillis / 1000)
+        .put("flags", 0)
+        .put("type", getJson() == null ? "base64" : "json");
+  }
+}
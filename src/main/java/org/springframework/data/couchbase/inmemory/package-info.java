@@ -0,0 +1,5 @@
+/**
+ * This package contains an in-memory implementation of the Couchbase {@link com.couchbase.client.java.Bucket},
+ * to run the templates and repositories without a cluster in load and integration tests.
+ */
+package org.springframework.data.couchbase.inmemory;
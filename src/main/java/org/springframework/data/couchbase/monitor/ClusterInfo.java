@@ -17,35 +17,88 @@
 package org.springframework.data.couchbase.monitor;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.bucket.BucketInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedMetric;
 import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
 import org.springframework.web.client.RestTemplate;
 
 /**
  * Exposes basic cluster information.
+ * <p>
+ * The attributes are read from a snapshot of <code>/pools/default</code>, rather than from a request per attribute,
+ * so that scraping all of them costs at most one HTTP call. The snapshot is taken on the first read, then refreshed in
+ * the background at the refresh interval. When a refresh fails, the previous snapshot is kept and the next attempt is
+ * delayed by an exponential, jittered backoff, up to the maximum backoff, so that an unavailable management port
+ * isn't polled by every client at once.
  *
  * @author Michael Nitschinger
  * @author Simon Baslé
  */
 @ManagedResource(description = "Cluster Information")
-public class ClusterInfo {
+public class ClusterInfo implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterInfo.class);
+
+  private static final long DEFAULT_REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+  private static final long DEFAULT_MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
 
   private final RestTemplate template;
   private final Bucket bucket;
   private final BucketInfo info;
+  private final long refreshIntervalMillis;
+  private long maxBackoffMillis = DEFAULT_MAX_BACKOFF;
+
+  private volatile Snapshot snapshot;
+  private volatile String lastRefreshError;
+  private volatile int consecutiveFailures;
+  private Scheduler.Worker refresher;
+  private boolean destroyed;
 
   public ClusterInfo(final Bucket bucket) {
+    this(bucket, DEFAULT_REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param bucket the bucket of the cluster.
+   * @param refreshInterval the interval between two refreshes of the snapshot.
+   * @param unit the unit of the interval.
+   * @since 3.2
+   */
+  public ClusterInfo(final Bucket bucket, long refreshInterval, TimeUnit unit) {
+    Assert.isTrue(refreshInterval > 0, "The refresh interval must be positive");
     this.template = new RestTemplate();
     this.bucket = bucket;
     this.info = bucket.bucketManager().info();
+    this.refreshIntervalMillis = unit.toMillis(refreshInterval);
+  }
+
+  /**
+   * Set the maximum delay between two attempts to refresh the snapshot while they fail (5 minutes by default).
+   *
+   * @param maxBackoff the maximum delay.
+   * @param unit the unit of the delay.
+   * @since 3.2
+   */
+  public void setMaxBackoff(long maxBackoff, TimeUnit unit) {
+    Assert.isTrue(maxBackoff > 0, "The maximum backoff must be positive");
+    this.maxBackoffMillis = unit.toMillis(maxBackoff);
   }
 
   @ManagedMetric(description = "Total RAM assigned")
@@ -88,6 +141,72 @@ public class ClusterInfo {
     return (Integer) fetchPoolInfo().get("maxBucketCount");
   }
 
+  /**
+   * @return the progress of the running rebalance in percent, averaged over the nodes, or -1 if none is running.
+   * @since 3.2
+   */
+  @ManagedMetric(description = "Rebalance Progress (%)")
+  public double getRebalanceProgress() {
+    return snapshot().rebalanceProgress;
+  }
+
+  /**
+   * @return the status and cluster membership of each node, as <code>hostname: status (membership)</code>.
+   * @since 3.2
+   */
+  @ManagedAttribute(description = "Status of each Node")
+  public String[] getNodeStatuses() {
+    List<String> statuses = new ArrayList<String>();
+    for (Map<?, ?> node : nodes()) {
+      statuses.add(node.get("hostname") + ": " + node.get("status") + " (" + node.get("clusterMembership") + ")");
+    }
+    return statuses.toArray(new String[statuses.size()]);
+  }
+
+  /**
+   * @return the number of nodes that are not healthy, or not active members of the cluster.
+   * @since 3.2
+   */
+  @ManagedMetric(description = "Number of unhealthy or inactive Nodes")
+  public int getUnhealthyNodeCount() {
+    int count = 0;
+    for (Map<?, ?> node : nodes()) {
+      if (!"healthy".equals(node.get("status")) || !"active".equals(node.get("clusterMembership"))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the age of the snapshot the attributes are read from, in milliseconds.
+   * @since 3.2
+   */
+  @ManagedMetric(description = "Age of the Cluster Information (ms)")
+  public long getSnapshotAge() {
+    return System.currentTimeMillis() - snapshot().timestamp;
+  }
+
+  /**
+   * @return the error of the last refresh of the snapshot if it failed, null otherwise.
+   * @since 3.2
+   */
+  @ManagedAttribute(description = "Error of the last failed Refresh")
+  public String getLastRefreshError() {
+    return lastRefreshError;
+  }
+
+  /**
+   * Stops refreshing the snapshot.
+   */
+  @Override
+  public synchronized void destroy() {
+    destroyed = true;
+    if (refresher != null) {
+      refresher.unsubscribe();
+    }
+  }
+
   /**
    * Depending on the value size, either int or long can be passed in and get
    * converted to long.
@@ -113,14 +232,134 @@ public class ClusterInfo {
     return available.get(0).getHostName();
   }
 
-  private HashMap<String, Object> fetchPoolInfo() {
-    return template.getForObject("http://"
-        + randomAvailableHostname() + ":8091/pools/default", HashMap.class);
+  /**
+   * Requests a resource of the management REST API of a node.
+   *
+   * @param path the path of the resource, like <code>/pools/default</code>.
+   * @return the JSON response.
+   * @since 3.2
+   */
+  protected Map<String, Object> fetch(String path) {
+    return template.getForObject("http://" + randomAvailableHostname() + ":8091" + path, HashMap.class);
+  }
+
+  private Map<String, Object> fetchPoolInfo() {
+    return snapshot().poolInfo;
   }
 
   private HashMap<String, HashMap> parseStorageTotals() {
-    HashMap<String, Object> stats = fetchPoolInfo();
+    Map<String, Object> stats = fetchPoolInfo();
     return (HashMap<String, HashMap>) stats.get("storageTotals");
   }
 
+  private List<Map<?, ?>> nodes() {
+    Object nodes = fetchPoolInfo().get("nodes");
+    if (!(nodes instanceof List)) {
+      return Collections.emptyList();
+    }
+    List<Map<?, ?>> result = new ArrayList<Map<?, ?>>();
+    for (Object node : (List<?>) nodes) {
+      if (node instanceof Map) {
+        result.add((Map<?, ?>) node);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the current snapshot, taking the first one and starting the refreshes if there is none yet.
+   */
+  private Snapshot snapshot() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        current = snapshot;
+        if (current == null) {
+          //the first read is synchronous, and fails if the cluster can't be reached
+          current = takeSnapshot();
+          snapshot = current;
+          if (!destroyed) {
+            refresher = Schedulers.io().createWorker();
+            refresher.schedule(this::refresh, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+          }
+        }
+      }
+    }
+    return current;
+  }
+
+  private Snapshot takeSnapshot() {
+    Map<String, Object> poolInfo = fetch("/pools/default");
+    double rebalanceProgress = -1;
+    if ("running".equals(poolInfo.get("rebalanceStatus"))) {
+      rebalanceProgress = rebalanceProgress(fetch("/pools/default/rebalanceProgress"));
+    }
+    return new Snapshot(poolInfo, rebalanceProgress, System.currentTimeMillis());
+  }
+
+  /**
+   * Averages the progress of the nodes, given as <code>{"status": "running", "ns_1@host": {"progress": 0.5}}</code>.
+   */
+  static double rebalanceProgress(Map<String, Object> response) {
+    if (response == null || !"running".equals(response.get("status"))) {
+      return -1;
+    }
+    double sum = 0;
+    int nodes = 0;
+    for (Object value : response.values()) {
+      if (value instanceof Map && ((Map<?, ?>) value).get("progress") instanceof Number) {
+        sum += ((Number) ((Map<?, ?>) value).get("progress")).doubleValue();
+        nodes++;
+      }
+    }
+    return nodes == 0 ? 0 : sum / nodes * 100;
+  }
+
+  private void refresh() {
+    long delay;
+    try {
+      snapshot = takeSnapshot();
+      lastRefreshError = null;
+      consecutiveFailures = 0;
+      delay = refreshIntervalMillis;
+    } catch (RuntimeException e) {
+      int failures = ++consecutiveFailures;
+      lastRefreshError = e.toString();
+      delay = backoff(failures);
+      LOGGER.debug("Could not refresh the cluster information, retrying in {}ms", delay, e);
+    }
+    synchronized (this) {
+      if (!refresher.isUnsubscribed()) {
+        refresher.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Doubles the refresh interval with each failure up to the maximum backoff, and draws the delay between half and
+   * all of it, so that clients which failed together don't retry together.
+   */
+  long backoff(int failures) {
+    long ceiling = refreshIntervalMillis << Math.min(failures, 20);
+    if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+      ceiling = Math.max(maxBackoffMillis, refreshIntervalMillis);
+    }
+    return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+  }
+
+  /**
+   * The cluster information at a point in time.
+   */
+  private static final class Snapshot {
+
+    private final Map<String, Object> poolInfo;
+    private final double rebalanceProgress;
+    private final long timestamp;
+
+    private Snapshot(Map<String, Object> poolInfo, double rebalanceProgress, long timestamp) {
+      this.poolInfo = poolInfo;
+      this.rebalanceProgress = rebalanceProgress;
+      this.timestamp = timestamp;
+    }
+  }
 }
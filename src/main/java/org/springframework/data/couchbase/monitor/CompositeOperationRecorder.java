@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * An {@link OperationRecorder} forwarding every operation to several recorders, for instance to both maintain
+ * {@link OperationMetrics} and log slow operations with a {@link SlowOperationLogger}.
+ *
+ * @since 3.2
+ */
+public class CompositeOperationRecorder implements OperationRecorder {
+
+  private final OperationRecorder[] recorders;
+
+  public CompositeOperationRecorder(OperationRecorder... recorders) {
+    Assert.noNullElements(recorders, "Recorders must not be null");
+    this.recorders = recorders.clone();
+  }
+
+  @Override
+  public void record(OperationSample sample) {
+    for (OperationRecorder recorder : recorders) {
+      recorder.record(sample);
+    }
+  }
+
+  public List<OperationRecorder> getRecorders() {
+    return Arrays.asList(recorders.clone());
+  }
+}
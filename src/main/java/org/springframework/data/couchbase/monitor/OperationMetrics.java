@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * An in-memory {@link OperationRecorder} keeping {@link OperationStatistics} per operation type, entity and repository
+ * method. To export metrics to another registry, implement {@link OperationRecorder} instead.
+ *
+ * @since 3.2
+ */
+@ManagedResource(description = "Couchbase Operation Metrics")
+public class OperationMetrics implements OperationRecorder {
+
+  private final ConcurrentMap<Key, OperationStatistics> statistics = new ConcurrentHashMap<Key, OperationStatistics>();
+
+  @Override
+  public void record(OperationSample sample) {
+    Key key = new Key(sample.getOperation(), sample.getEntityType(), sample.getRepositoryMethod());
+    OperationStatistics stats = statistics.get(key);
+    if (stats == null) {
+      stats = statistics.computeIfAbsent(key,
+          k -> new OperationStatistics(k.operation, k.entityType, k.repositoryMethod));
+    }
+    stats.record(sample);
+  }
+
+  /**
+   * @return the statistics of all the recorded operations.
+   */
+  public Collection<OperationStatistics> getStatistics() {
+    return new ArrayList<OperationStatistics>(statistics.values());
+  }
+
+  /**
+   * @param operation the name of the operation.
+   * @param entityType the entity type, or null.
+   * @param repositoryMethod the repository method, or null.
+   * @return the statistics of the given operations, null if none was recorded.
+   */
+  public OperationStatistics getStatistics(String operation, Class<?> entityType, String repositoryMethod) {
+    return statistics.get(new Key(operation, entityType, repositoryMethod));
+  }
+
+  @ManagedAttribute(description = "Number of operations")
+  public long getOperationCount() {
+    long count = 0;
+    for (OperationStatistics stats : statistics.values()) {
+      count += stats.getCount();
+    }
+    return count;
+  }
+
+  @ManagedAttribute(description = "Number of failed operations")
+  public long getErrorCount() {
+    long count = 0;
+    for (OperationStatistics stats : statistics.values()) {
+      count += stats.getErrorCount();
+    }
+    return count;
+  }
+
+  @ManagedAttribute(description = "Statistics per operation, entity and repository method")
+  public String[] getOperationStatistics() {
+    List<String> summaries = new ArrayList<String>();
+    for (OperationStatistics stats : statistics.values()) {
+      summaries.add(stats.toString());
+    }
+    return summaries.toArray(new String[0]);
+  }
+
+  @ManagedOperation(description = "Clear all statistics")
+  public void reset() {
+    statistics.clear();
+  }
+
+  private static final class Key {
+
+    private final String operation;
+    private final Class<?> entityType;
+    private final String repositoryMethod;
+
+    private Key(String operation, Class<?> entityType, String repositoryMethod) {
+      this.operation = operation;
+      this.entityType = entityType;
+      this.repositoryMethod = repositoryMethod;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return operation.equals(key.operation) && entityType == key.entityType
+          && Objects.equals(repositoryMethod, key.repositoryMethod);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(operation, entityType, repositoryMethod);
+    }
+  }
+}
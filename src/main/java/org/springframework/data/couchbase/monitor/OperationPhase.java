@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+/**
+ * The phases the time of an operation is broken down into, see {@link OperationTrace}.
+ *
+ * @since 3.2
+ */
+public enum OperationPhase {
+
+  /** Converting between entities and documents with the {@link org.springframework.data.couchbase.core.convert.CouchbaseConverter}. */
+  MAPPING,
+
+  /** Encoding documents to JSON. */
+  ENCODE,
+
+  /** The round trip through the SDK to the cluster. */
+  NETWORK,
+
+  /** Decoding JSON results. */
+  DECODE,
+
+  /** Resolving the {@link org.springframework.data.couchbase.core.query.N1qlJoin} properties of read entities. */
+  JOIN,
+
+  /** Publishing mapping events to the application listeners. */
+  EVENTS
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+/**
+ * Receives the {@link OperationSample samples} of the operations executed by the templates, for instance to maintain
+ * metrics. Implementations are called on the thread completing the operation and must be thread safe and fast.
+ *
+ * @since 3.2
+ * @see OperationMetrics
+ */
+public interface OperationRecorder {
+
+  /**
+   * Records an operation.
+   *
+   * @param sample the timings and outcome of the operation.
+   */
+  void record(OperationSample sample);
+}
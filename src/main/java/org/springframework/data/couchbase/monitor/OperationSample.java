@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+/**
+ * The timings and outcome of a single operation, as recorded by an {@link OperationTrace}.
+ *
+ * @since 3.2
+ */
+public class OperationSample {
+
+  private final String operation;
+  private final Class<?> entityType;
+  private final String repositoryMethod;
+  private final Object target;
+  private final long rowCount;
+  private final long payloadBytes;
+  private final long totalNanos;
+  private final long[] phaseNanos;
+  private final Throwable error;
+
+  public OperationSample(String operation, Class<?> entityType, String repositoryMethod, Object target, long rowCount,
+                         long payloadBytes, long totalNanos, long[] phaseNanos, Throwable error) {
+    this.operation = operation;
+    this.entityType = entityType;
+    this.repositoryMethod = repositoryMethod;
+    this.target = target;
+    this.rowCount = rowCount;
+    this.payloadBytes = payloadBytes;
+    this.totalNanos = totalNanos;
+    this.phaseNanos = phaseNanos;
+    this.error = error;
+  }
+
+  /**
+   * @return the name of the operation, eg. <code>findById</code>.
+   */
+  public String getOperation() {
+    return operation;
+  }
+
+  /**
+   * @return the entity type the operation is about, null if there is none (eg. raw queries).
+   */
+  public Class<?> getEntityType() {
+    return entityType;
+  }
+
+  /**
+   * @return the repository method the operation was executed for (<code>Repository.method</code>), null if it was
+   * executed directly on the template.
+   */
+  public String getRepositoryMethod() {
+    return repositoryMethod;
+  }
+
+  /**
+   * @return the document key or the statement the operation was executed on, null if unknown. It is only converted
+   * to a String when this method is called.
+   */
+  public String getTarget() {
+    return target == null ? null : target.toString();
+  }
+
+  /**
+   * @return the number of documents or rows read or written by the operation.
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * @return the size of the JSON payloads read or written by the operation, in bytes (or characters when only the
+   * decoded content was available).
+   */
+  public long getPayloadBytes() {
+    return payloadBytes;
+  }
+
+  /**
+   * @return the total duration of the operation, in nanoseconds.
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * @param phase the phase.
+   * @return the time spent in the given phase, in nanoseconds.
+   */
+  public long getPhaseNanos(OperationPhase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * @return the error the operation failed with, null if it succeeded.
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+  /**
+   * @return true if the operation failed.
+   */
+  public boolean isError() {
+    return error != null;
+  }
+}
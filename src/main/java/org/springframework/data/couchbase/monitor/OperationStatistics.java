@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the operations of a given type, on a given entity and for a given repository method: counts, errors,
+ * time per {@link OperationPhase phase} and a latency histogram. The histogram has one bucket per power of two of
+ * nanoseconds, so percentiles are approximated by the upper bound of their bucket (within a factor of two).
+ *
+ * @since 3.2
+ */
+public class OperationStatistics {
+
+  private static final int BUCKETS = 64;
+
+  private final String operation;
+  private final Class<?> entityType;
+  private final String repositoryMethod;
+  private final long since = System.nanoTime();
+
+  private final LongAdder count = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAdder[] phaseNanos = new LongAdder[OperationPhase.values().length];
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+  public OperationStatistics(String operation, Class<?> entityType, String repositoryMethod) {
+    this.operation = operation;
+    this.entityType = entityType;
+    this.repositoryMethod = repositoryMethod;
+    for (int i = 0; i < phaseNanos.length; i++) {
+      phaseNanos[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Adds an operation to the statistics.
+   *
+   * @param sample the operation.
+   */
+  public void record(OperationSample sample) {
+    count.increment();
+    if (sample.isError()) {
+      errors.increment();
+    }
+    long nanos = sample.getTotalNanos();
+    totalNanos.add(nanos);
+    for (OperationPhase phase : OperationPhase.values()) {
+      phaseNanos[phase.ordinal()].add(sample.getPhaseNanos(phase));
+    }
+    histogram.incrementAndGet(bucket(nanos));
+  }
+
+  private static int bucket(long nanos) {
+    return nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public Class<?> getEntityType() {
+    return entityType;
+  }
+
+  public String getRepositoryMethod() {
+    return repositoryMethod;
+  }
+
+  /**
+   * @return the number of operations.
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return the number of failed operations.
+   */
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+  /**
+   * @return the mean duration of the operations, in nanoseconds.
+   */
+  public long getMeanNanos() {
+    long n = count.sum();
+    return n == 0 ? 0L : totalNanos.sum() / n;
+  }
+
+  /**
+   * @param phase the phase.
+   * @return the mean time spent in the given phase per operation, in nanoseconds.
+   */
+  public long getMeanPhaseNanos(OperationPhase phase) {
+    long n = count.sum();
+    return n == 0 ? 0L : phaseNanos[phase.ordinal()].sum() / n;
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100.
+   * @return an upper bound of the duration of the given percentile of the operations, in nanoseconds.
+   */
+  public long getPercentileNanos(double percentile) {
+    long n = 0;
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = histogram.get(i);
+      n += counts[i];
+    }
+    if (n == 0) {
+      return 0L;
+    }
+    long rank = (long) Math.ceil(percentile / 100d * n);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        return i == 0 ? 0L : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * @return the number of operations per second since these statistics were created.
+   */
+  public double getThroughput() {
+    long elapsed = System.nanoTime() - since;
+    return elapsed <= 0 ? 0d : count.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder summary = new StringBuilder(operation);
+    if (entityType != null) {
+      summary.append(" ").append(entityType.getSimpleName());
+    }
+    if (repositoryMethod != null) {
+      summary.append(" (").append(repositoryMethod).append(")");
+    }
+    summary.append(": count=").append(getCount())
+        .append(", errors=").append(getErrorCount())
+        .append(String.format(Locale.ROOT, ", throughput=%.2f/s", getThroughput()))
+        .append(", meanMicros=").append(TimeUnit.NANOSECONDS.toMicros(getMeanNanos()))
+        .append(", p99Micros=").append(TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(99)));
+    for (OperationPhase phase : OperationPhase.values()) {
+      summary.append(", ").append(phase.name().toLowerCase()).append("MeanMicros=")
+          .append(TimeUnit.NANOSECONDS.toMicros(getMeanPhaseNanos(phase)));
+    }
+    return summary.toString();
+  }
+}
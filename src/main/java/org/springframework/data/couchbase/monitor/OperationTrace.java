@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+/**
+ * Measures an operation and its {@link OperationPhase phases}, then reports it to an {@link OperationRecorder}. The
+ * time between two calls to {@link #phase(OperationPhase)} is attributed to the phase started by the first one, and
+ * work that interleaves with the current phase (like mapping rows while others are still streamed) can be measured
+ * separately with {@link #add(OperationPhase, long)}.
+ * <p/>
+ * Without a recorder, {@link #start(OperationRecorder, String, Class)} returns a shared trace that ignores all calls,
+ * so that instrumentation costs next to nothing when metrics are disabled.
+ *
+ * @since 3.2
+ */
+public final class OperationTrace {
+
+  private static final OperationTrace DISABLED = new OperationTrace(null, null, null, null);
+
+  private static final ThreadLocal<String> REPOSITORY_METHOD = new ThreadLocal<String>();
+
+  private final OperationRecorder recorder;
+  private final String operation;
+  private final Class<?> entityType;
+  private final String repositoryMethod;
+  private final long[] phaseNanos;
+  private final long start;
+
+  private Object target;
+  private long rows;
+  private long bytes;
+  private OperationPhase current;
+  private long mark;
+  private long addedSinceMark;
+  private Throwable error;
+  private boolean ended;
+
+  private OperationTrace(OperationRecorder recorder, String operation, Class<?> entityType, String repositoryMethod) {
+    this.recorder = recorder;
+    this.operation = operation;
+    this.entityType = entityType;
+    this.repositoryMethod = repositoryMethod;
+    this.phaseNanos = recorder == null ? null : new long[OperationPhase.values().length];
+    this.start = recorder == null ? 0L : System.nanoTime();
+    this.mark = start;
+  }
+
+  /**
+   * Starts measuring an operation.
+   *
+   * @param recorder the recorder to report the operation to, null if metrics are disabled.
+   * @param operation the name of the operation.
+   * @param entityType the entity type the operation is about, null if there is none.
+   * @return the trace of the operation.
+   */
+  public static OperationTrace start(OperationRecorder recorder, String operation, Class<?> entityType) {
+    if (recorder == null) {
+      return DISABLED;
+    }
+    return new OperationTrace(recorder, operation, entityType, REPOSITORY_METHOD.get());
+  }
+
+  /**
+   * Sets the repository method executing on the current thread, which the operations started by it are attributed to.
+   *
+   * @param repositoryMethod the method, as <code>Repository.method</code>.
+   * @return the method that was executing before, to restore with {@link #exitRepositoryMethod(String)}.
+   */
+  public static String enterRepositoryMethod(String repositoryMethod) {
+    String previous = REPOSITORY_METHOD.get();
+    REPOSITORY_METHOD.set(repositoryMethod);
+    return previous;
+  }
+
+  /**
+   * Restores the repository method that was executing before {@link #enterRepositoryMethod(String)}.
+   *
+   * @param previous the value returned by {@link #enterRepositoryMethod(String)}.
+   */
+  public static void exitRepositoryMethod(String previous) {
+    if (previous == null) {
+      REPOSITORY_METHOD.remove();
+    } else {
+      REPOSITORY_METHOD.set(previous);
+    }
+  }
+
+  /**
+   * @return true if this trace reports to a recorder.
+   */
+  public boolean isEnabled() {
+    return recorder != null;
+  }
+
+  /**
+   * Ends the current phase and starts the given one.
+   *
+   * @param phase the phase starting now, null to not attribute the time that follows to any phase.
+   */
+  public void phase(OperationPhase phase) {
+    if (recorder == null) {
+      return;
+    }
+    synchronized (this) {
+      closeCurrentPhase(System.nanoTime());
+      current = phase;
+    }
+  }
+
+  /**
+   * Attributes the time elapsed since the given instant to a phase, excluding it from the current phase.
+   *
+   * @param phase the phase.
+   * @param startNanos the instant the work started at, as given by {@link #now()}.
+   */
+  public void add(OperationPhase phase, long startNanos) {
+    if (recorder == null) {
+      return;
+    }
+    long elapsed = System.nanoTime() - startNanos;
+    synchronized (this) {
+      phaseNanos[phase.ordinal()] += elapsed;
+      addedSinceMark += elapsed;
+    }
+  }
+
+  /**
+   * @return the current instant for {@link #add(OperationPhase, long)}, 0 if this trace is disabled.
+   */
+  public long now() {
+    return recorder == null ? 0L : System.nanoTime();
+  }
+
+  /**
+   * Sets what the operation is executed on.
+   *
+   * @param target the document key, or the statement or query, whose <code>toString()</code> is only called if the
+   * sample is inspected.
+   */
+  public void target(Object target) {
+    if (recorder == null) {
+      return;
+    }
+    synchronized (this) {
+      this.target = target;
+    }
+  }
+
+  /**
+   * Accounts for documents or rows read or written by the operation.
+   *
+   * @param count the number of documents or rows.
+   * @param payloadBytes the size of their JSON content.
+   */
+  public void rows(long count, long payloadBytes) {
+    if (recorder == null) {
+      return;
+    }
+    synchronized (this) {
+      this.rows += count;
+      this.bytes += payloadBytes;
+    }
+  }
+
+  /**
+   * Marks the operation as failed.
+   *
+   * @param error the error the operation failed with.
+   */
+  public void error(Throwable error) {
+    if (recorder == null) {
+      return;
+    }
+    synchronized (this) {
+      this.error = error;
+    }
+  }
+
+  /**
+   * Ends the operation and reports it. Subsequent calls are ignored.
+   */
+  public void end() {
+    if (recorder == null) {
+      return;
+    }
+    OperationSample sample;
+    synchronized (this) {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      long now = System.nanoTime();
+      closeCurrentPhase(now);
+      sample = new OperationSample(operation, entityType, repositoryMethod, target, rows, bytes, now - start,
+          phaseNanos.clone(), error);
+    }
+    recorder.record(sample);
+  }
+
+  private void closeCurrentPhase(long now) {
+    if (current != null) {
+      phaseNanos[current.ordinal()] += Math.max(0L, now - mark - addedSinceMark);
+    }
+    mark = now;
+    addedSinceMark = 0L;
+  }
+}
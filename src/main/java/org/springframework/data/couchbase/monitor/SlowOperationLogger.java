@@ -0,0 +1,228 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * An {@link OperationRecorder} logging one structured record for each operation slower than a threshold, with the
+ * document key or statement, the entity type, the repository method, the number of rows, the payload size and the time
+ * spent in each {@link OperationPhase}.
+ * <p/>
+ * To avoid flooding the logs when the cluster as a whole slows down, each key (the operation, entity type and key or
+ * statement) is logged at most once per sampling interval, the records skipped in between being counted in the next
+ * record of that key, and no more than a given number of records are logged per second overall.
+ *
+ * @since 3.2
+ */
+public class SlowOperationLogger implements OperationRecorder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SlowOperationLogger.class);
+
+  private static final int DEFAULT_MAX_RECORDS_PER_SECOND = 10;
+  private static final long DEFAULT_SAMPLING_INTERVAL_SECONDS = 60;
+  private static final int DEFAULT_MAX_TRACKED_KEYS = 10000;
+  private static final int DEFAULT_MAX_TARGET_LENGTH = 1000;
+
+  private final long thresholdNanos;
+  private final ConcurrentMap<String, KeyState> keys = new ConcurrentHashMap<String, KeyState>();
+  private final AtomicLong rateLimited = new AtomicLong();
+
+  private long samplingIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_SAMPLING_INTERVAL_SECONDS);
+  private int maxRecordsPerSecond = DEFAULT_MAX_RECORDS_PER_SECOND;
+  private int maxTrackedKeys = DEFAULT_MAX_TRACKED_KEYS;
+  private int maxTargetLength = DEFAULT_MAX_TARGET_LENGTH;
+
+  private long windowStart = System.nanoTime();
+  private int recordsInWindow;
+
+  /**
+   * @param threshold the duration above which an operation is logged.
+   * @param unit the unit of the threshold.
+   */
+  public SlowOperationLogger(long threshold, TimeUnit unit) {
+    Assert.isTrue(threshold >= 0, "Threshold must not be negative");
+    Assert.notNull(unit, "Unit must not be null");
+    this.thresholdNanos = unit.toNanos(threshold);
+  }
+
+  /**
+   * Sets the minimum delay between two records of the same operation on the same key or statement (one minute by
+   * default). Zero logs all slow operations, within the rate limit.
+   *
+   * @param interval the sampling interval.
+   * @param unit the unit of the interval.
+   */
+  public void setSamplingInterval(long interval, TimeUnit unit) {
+    Assert.isTrue(interval >= 0, "Sampling interval must not be negative");
+    this.samplingIntervalNanos = unit.toNanos(interval);
+  }
+
+  /**
+   * @param maxRecordsPerSecond the maximum number of records logged per second, 10 by default.
+   */
+  public void setMaxRecordsPerSecond(int maxRecordsPerSecond) {
+    Assert.isTrue(maxRecordsPerSecond > 0, "Max records per second must be positive");
+    this.maxRecordsPerSecond = maxRecordsPerSecond;
+  }
+
+  /**
+   * @param maxTrackedKeys the maximum number of keys whose last record is remembered for sampling, 10000 by default.
+   * Once reached, all keys are forgotten.
+   */
+  public void setMaxTrackedKeys(int maxTrackedKeys) {
+    Assert.isTrue(maxTrackedKeys > 0, "Max tracked keys must be positive");
+    this.maxTrackedKeys = maxTrackedKeys;
+  }
+
+  /**
+   * @param maxTargetLength the length statements are truncated at in records, 1000 by default.
+   */
+  public void setMaxTargetLength(int maxTargetLength) {
+    Assert.isTrue(maxTargetLength > 0, "Max target length must be positive");
+    this.maxTargetLength = maxTargetLength;
+  }
+
+  @Override
+  public void record(OperationSample sample) {
+    if (sample.getTotalNanos() < thresholdNanos) {
+      return;
+    }
+    long now = System.nanoTime();
+    String target = truncate(sample.getTarget());
+    String key = sample.getOperation() + '|' + (sample.getEntityType() == null ? "" : sample.getEntityType().getName())
+        + '|' + target;
+
+    KeyState state = keys.get(key);
+    if (state == null) {
+      if (keys.size() >= maxTrackedKeys) {
+        keys.clear();
+      }
+      state = keys.computeIfAbsent(key, k -> new KeyState());
+    }
+    long suppressed = state.tryLog(now, samplingIntervalNanos);
+    if (suppressed < 0) {
+      return;
+    }
+    if (!acquire(now)) {
+      rateLimited.incrementAndGet();
+      return;
+    }
+    log(format(sample, target, suppressed, rateLimited.getAndSet(0)));
+  }
+
+  private synchronized boolean acquire(long now) {
+    if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+      windowStart = now;
+      recordsInWindow = 0;
+    }
+    if (recordsInWindow >= maxRecordsPerSecond) {
+      return false;
+    }
+    recordsInWindow++;
+    return true;
+  }
+
+  private String truncate(String target) {
+    if (target == null || target.length() <= maxTargetLength) {
+      return target;
+    }
+    return target.substring(0, maxTargetLength) + "...";
+  }
+
+  /**
+   * Formats the record of a slow operation.
+   *
+   * @param sample the operation.
+   * @param target the key or statement of the operation, truncated.
+   * @param suppressed the number of slow operations on the same key that were not logged since the previous record.
+   * @param rateLimited the number of records of any key dropped by the rate limit since the previous record.
+   * @return the record.
+   */
+  protected String format(OperationSample sample, String target, long suppressed, long rateLimited) {
+    StringBuilder record = new StringBuilder("Slow Couchbase operation: operation=").append(sample.getOperation());
+    if (sample.getEntityType() != null) {
+      record.append(", entity=").append(sample.getEntityType().getName());
+    }
+    if (sample.getRepositoryMethod() != null) {
+      record.append(", repositoryMethod=").append(sample.getRepositoryMethod());
+    }
+    if (target != null) {
+      record.append(", target=\"").append(target).append('"');
+    }
+    record.append(", rows=").append(sample.getRowCount())
+        .append(", payloadBytes=").append(sample.getPayloadBytes())
+        .append(", totalMs=").append(millis(sample.getTotalNanos()));
+    for (OperationPhase phase : OperationPhase.values()) {
+      record.append(", ").append(phase.name().toLowerCase()).append("Ms=").append(millis(sample.getPhaseNanos(phase)));
+    }
+    if (sample.isError()) {
+      record.append(", error=").append(sample.getError());
+    }
+    if (suppressed > 0) {
+      record.append(", suppressed=").append(suppressed);
+    }
+    if (rateLimited > 0) {
+      record.append(", rateLimited=").append(rateLimited);
+    }
+    return record.toString();
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1000000d);
+  }
+
+  /**
+   * Logs a record, at WARN level by default.
+   *
+   * @param record the record.
+   */
+  protected void log(String record) {
+    LOGGER.warn(record);
+  }
+
+  private static final class KeyState {
+
+    private long lastLogged;
+    private boolean logged;
+    private long suppressed;
+
+    /**
+     * @return the number of operations suppressed since the last record if this one must be logged, -1 otherwise.
+     */
+    synchronized long tryLog(long now, long intervalNanos) {
+      if (logged && now - lastLogged < intervalNanos) {
+        suppressed++;
+        return -1;
+      }
+      logged = true;
+      lastLogged = now;
+      long count = suppressed;
+      suppressed = 0;
+      return count;
+    }
+  }
+}
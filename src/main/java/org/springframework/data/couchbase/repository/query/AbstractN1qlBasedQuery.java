@@ -21,6 +21,7 @@ import com.couchbase.client.java.document.json.JsonObject;
 import com.couchbase.client.java.document.json.JsonValue;
 import com.couchbase.client.java.query.N1qlParams;
 import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.N1qlQueryResult;
 import com.couchbase.client.java.query.Statement;
 import com.couchbase.client.java.query.consistency.ScanConsistency;
 import java.util.Collection;
@@ -28,8 +29,10 @@ import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.data.couchbase.core.CouchbaseOperations;
 import org.springframework.data.couchbase.core.CouchbaseQueryExecutionException;
+import org.springframework.data.couchbase.monitor.OperationTrace;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.SliceImpl;
@@ -51,7 +54,7 @@ import org.springframework.util.Assert;
  * @author Mark Paluch
  * @author Johannes Jasper
  */
-public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
+public abstract class AbstractN1qlBasedQuery implements ExplainableN1qlQuery {
 
   private static final Logger LOG = LoggerFactory.getLogger(AbstractN1qlBasedQuery.class);
 
@@ -80,6 +83,23 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
 
   protected abstract JsonValue getPlaceholderValues(ParameterAccessor accessor);
 
+  /**
+   * @return true if the rows returned by the {@link #getStatement(ParameterAccessor, Object[], ReturnedType) statement}
+   * don't carry the document metadata needed for entity mapping (eg. grouped aggregations), and should rather be
+   * mapped directly into the returned type.
+   */
+  protected boolean isRowProjection() {
+    return false;
+  }
+
+  /**
+   * @return true if the {@link #getStatement(ParameterAccessor, Object[], ReturnedType) statement} is an existence
+   * probe, whose result is whether or not it returned any row.
+   */
+  protected boolean isExistsQuery() {
+    return false;
+  }
+
   protected ScanConsistency getScanConsistency() {
 
     if (queryMethod.hasConsistencyAnnotation()) {
@@ -91,13 +111,25 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
 
   @Override
   public Object execute(Object[] parameters) {
+    String previousMethod = OperationTrace.enterRepositoryMethod(queryMethod.getRepositoryMethodName());
+    try {
+      return doExecute(parameters);
+    } finally {
+      OperationTrace.exitRepositoryMethod(previousMethod);
+    }
+  }
+
+  private Object doExecute(Object[] parameters) {
     ParametersParameterAccessor accessor = new ParametersParameterAccessor(queryMethod.getParameters(), parameters);
 
     ResultProcessor processor = this.queryMethod.getResultProcessor().withDynamicProjection(accessor);
     ReturnedType returnedType = processor.getReturnedType();
 
     Class<?> typeToRead = returnedType.getTypeToRead();
-    typeToRead = typeToRead == null ? returnedType.getDomainType() : typeToRead;
+    if (typeToRead == null) {
+      //interface projections over rows are backed by a map
+      typeToRead = isRowProjection() ? Map.class : returnedType.getDomainType();
+    }
 
     Statement statement = getStatement(accessor, parameters, returnedType);
     JsonValue queryPlaceholderValues = getPlaceholderValues(accessor);
@@ -112,6 +144,16 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
     return processor.processResult(executeDependingOnType(query, countQuery, queryMethod, accessor.getPageable(), typeToRead));
   }
 
+  @Override
+  public N1qlQuery createSampleQuery() {
+    Object[] parameters = SampleArguments.create(queryMethod);
+    ParametersParameterAccessor accessor = new ParametersParameterAccessor(queryMethod.getParameters(), parameters);
+    ReturnedType returnedType = queryMethod.getResultProcessor().withDynamicProjection(accessor).getReturnedType();
+
+    Statement statement = getStatement(accessor, parameters, returnedType);
+    return buildQuery(statement, getPlaceholderValues(accessor), getScanConsistency());
+  }
+
   protected static N1qlQuery buildQuery(Statement statement, JsonValue queryPlaceholderValues, ScanConsistency scanConsistency) {
     N1qlParams n1qlParams = N1qlParams.build().consistency(scanConsistency);
     N1qlQuery query;
@@ -129,7 +171,9 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
   protected Object executeDependingOnType(N1qlQuery query, N1qlQuery countQuery, QueryMethod queryMethod,
       Pageable pageable, Class<?> typeToRead) {
 
-    if (queryMethod.isPageQuery()) {
+    if (isExistsQuery()) {
+      return executeExists(query);
+    } else if (queryMethod.isPageQuery()) {
       return executePaged(query, countQuery, pageable, typeToRead);
     } else if (queryMethod.isSliceQuery()) {
       return executeSliced(query, countQuery, pageable, typeToRead);
@@ -139,6 +183,8 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
       return executeStream(query, typeToRead);
     } else if (queryMethod.isQueryForEntity()) {
       return executeEntity(query, typeToRead);
+    } else if (isRowProjection() && !BeanUtils.isSimpleValueType(queryMethod.getReturnedObjectType())) {
+      return executeEntity(query, typeToRead);
     } else if (queryMethod.getReturnedObjectType().isPrimitive()
         && useGeneratedCountQuery()) {
       //attempt to execute the created COUNT query
@@ -148,7 +194,6 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
       // (ie, a single row with a single k->v entry where v is the desired value)
       return executeSingleProjection(query);
     }
-    //more complex projections could be added in the future, like DTO direct mapping with a SELECT a,b,c FROM something
   }
 
   private void logIfNecessary(N1qlQuery query) {
@@ -159,8 +204,14 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
 
   protected List<?> executeCollection(N1qlQuery query, Class<?> typeToRead) {
     logIfNecessary(query);
-    List<?> result = couchbaseOperations.findByN1QL(query, typeToRead);
-    return result;
+    return find(query, typeToRead);
+  }
+
+  private List<?> find(N1qlQuery query, Class<?> typeToRead) {
+    if (isRowProjection()) {
+      return couchbaseOperations.findByN1QLProjection(query, typeToRead);
+    }
+    return couchbaseOperations.findByN1QL(query, typeToRead);
   }
 
   protected Object executeEntity(N1qlQuery query, Class<?> typeToRead) {
@@ -185,20 +236,33 @@ public abstract class AbstractN1qlBasedQuery implements RepositoryQuery {
     }
 
     logIfNecessary(query);
-    List<?> result = couchbaseOperations.findByN1QL(query, typeToRead);
+    List<?> result = find(query, typeToRead);
     return new PageImpl(result, pageable, total);
   }
 
   protected Object executeSliced(N1qlQuery query, N1qlQuery countQuery, Pageable pageable, Class<?> typeToRead) {
     Assert.notNull(pageable, "Pageable must not be null!");
     logIfNecessary(query);
-    List<?> result = couchbaseOperations.findByN1QL(query, typeToRead);
+    List<?> result = find(query, typeToRead);
     int pageSize = pageable.getPageSize();
     boolean hasNext = result.size() > pageSize;
 
     return new SliceImpl(hasNext ? result.subList(0, pageSize) : result, pageable, hasNext);
   }
 
+  protected boolean executeExists(N1qlQuery query) {
+    logIfNecessary(query);
+    N1qlQueryResult queryResult = couchbaseOperations.queryN1QL(query);
+    if (!queryResult.finalSuccess()) {
+      StringBuilder message = new StringBuilder("Unable to execute query due to the following n1ql errors: ");
+      for (JsonObject error : queryResult.errors()) {
+        message.append('\n').append(error);
+      }
+      throw new CouchbaseQueryExecutionException(message.toString());
+    }
+    return !queryResult.allRows().isEmpty();
+  }
+
   protected Object executeSingleProjection(N1qlQuery query) {
     logIfNecessary(query);
     //the structure of the response from N1QL gives us a JSON object even when selecting a single aggregation
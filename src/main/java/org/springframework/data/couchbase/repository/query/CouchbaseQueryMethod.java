@@ -17,11 +17,14 @@
 package org.springframework.data.couchbase.repository.query;
 
 import java.lang.reflect.Method;
+import java.util.regex.Pattern;
 
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentEntity;
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentProperty;
+import org.springframework.data.couchbase.core.query.Aggregate;
 import org.springframework.data.couchbase.core.query.Dimensional;
+import org.springframework.data.couchbase.core.query.GroupBy;
 import org.springframework.data.couchbase.core.query.Query;
 import org.springframework.data.couchbase.core.query.View;
 import org.springframework.data.couchbase.core.query.WithConsistency;
@@ -41,13 +44,26 @@ import org.springframework.util.StringUtils;
  */
 public class CouchbaseQueryMethod extends QueryMethod {
 
+  private static final Pattern COUNTER_METHOD = Pattern.compile("^(increment|decrement)\\p{Lu}\\w*ById$");
+
   private final Method method;
+  private final String repositoryMethodName;
 
   public CouchbaseQueryMethod(Method method, RepositoryMetadata metadata, ProjectionFactory factory,
     MappingContext<? extends CouchbasePersistentEntity<?>, CouchbasePersistentProperty> mappingContext) {
     super(method, metadata, factory);
 
     this.method = method;
+    this.repositoryMethodName = metadata.getRepositoryInterface().getSimpleName() + "." + method.getName();
+  }
+
+  /**
+   * Returns the name of the method qualified by the simple name of its repository, as used in operation metrics.
+   *
+   * @return the method name, as <code>Repository.method</code>.
+   */
+  public String getRepositoryMethodName() {
+    return repositoryMethodName;
   }
 
   /**
@@ -164,6 +180,66 @@ public class CouchbaseQueryMethod extends QueryMethod {
     return StringUtils.hasText(query) ? query : null;
   }
 
+  /**
+   * If the method has a @GroupBy annotation.
+   *
+   * @return true if it has the annotation, false otherwise.
+   */
+  public boolean hasGroupByAnnotation() {
+    return getGroupByAnnotation() != null;
+  }
+
+  /**
+   * Returns the @GroupBy annotation if set, null otherwise.
+   *
+   * @return the group by annotation if present.
+   */
+  public GroupBy getGroupByAnnotation() {
+    return method.getAnnotation(GroupBy.class);
+  }
+
+  /**
+   * Returns the @Aggregate annotations declared on the method, possibly empty.
+   *
+   * @return the aggregate annotations.
+   */
+  public Aggregate[] getAggregateAnnotations() {
+    return method.getAnnotationsByType(Aggregate.class);
+  }
+
+  /**
+   * If the method is a grouped or aggregated query, whose rows are projections that cannot be mapped as entities.
+   *
+   * @return true if the method has a @GroupBy or at least one @Aggregate annotation.
+   */
+  public boolean isAggregateQuery() {
+    return hasGroupByAnnotation() || getAggregateAnnotations().length > 0;
+  }
+
+  /**
+   * If the method updates a counter field of an entity, like <code>incrementViewsById(id, delta)</code> or
+   * <code>decrementStockById(id, delta)</code>.
+   *
+   * @return true if the method name follows the counter convention and takes an id and a delta.
+   */
+  public boolean isCounterMethod() {
+    return COUNTER_METHOD.matcher(method.getName()).matches() && method.getParameterCount() == 2
+        && !hasViewAnnotation() && !hasN1qlAnnotation();
+  }
+
+  /**
+   * If the method resets the expiry of many documents, like <code>touchAllById(ids, expiry)</code>, or reads their
+   * entities while resetting it, like <code>findAllByIdAndTouch(ids, expiry)</code>.
+   *
+   * @return true if the method name follows the touch convention and takes ids and an expiry.
+   */
+  public boolean isTouchMethod() {
+    String name = method.getName();
+    return ("touchAllById".equals(name) || "findAllByIdAndTouch".equals(name)) && method.getParameterCount() == 2
+        && Iterable.class.isAssignableFrom(method.getParameterTypes()[0])
+        && !hasViewAnnotation() && !hasN1qlAnnotation();
+  }
+
   @Override
   public String toString() {
     return super.toString();
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.repository.query;
+
+import java.beans.Introspector;
+import java.util.Collections;
+
+import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.core.mapping.CouchbasePersistentEntity;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.repository.query.RepositoryQuery;
+import org.springframework.data.util.ClassTypeInformation;
+
+/**
+ * Executes a {@link CouchbaseQueryMethod#isCounterMethod() counter method} of a repository, like
+ * <code>long incrementViewsById(String id, long delta)</code>, by adding the delta to the field of the property named
+ * after the method on the server, through {@link CouchbaseOperations#counter(String, Class, String, long)}. A
+ * <code>decrement</code> method subtracts the delta. The method returns the new value of the field as a
+ * <code>long</code>, an <code>int</code>, or nothing.
+ *
+ * @since 3.2
+ */
+public class CounterByIdQuery implements RepositoryQuery {
+
+  private final CouchbaseQueryMethod method;
+  private final CouchbaseOperations operations;
+  private final String property;
+  private final boolean decrement;
+
+  public CounterByIdQuery(CouchbaseQueryMethod method, CouchbaseOperations operations) {
+    this.method = method;
+    this.operations = operations;
+
+    String name = method.getName();
+    this.decrement = name.startsWith("decrement");
+    int prefixLength = decrement ? "decrement".length() : "increment".length();
+    this.property = Introspector.decapitalize(name.substring(prefixLength, name.length() - "ById".length()));
+
+    Class<?> domainType = method.getEntityInformation().getJavaType();
+    CouchbasePersistentEntity<?> entity = operations.getConverter().getMappingContext()
+        .getRequiredPersistentEntity(domainType);
+    if (entity.getPersistentProperty(property) == null) {
+      throw new PropertyReferenceException(property, ClassTypeInformation.from(domainType),
+          Collections.emptyList());
+    }
+  }
+
+  @Override
+  public Object execute(Object[] parameters) {
+    String id = String.valueOf(parameters[0]);
+    long delta = ((Number) parameters[1]).longValue();
+    long value = operations.counter(id, method.getEntityInformation().getJavaType(), property,
+        decrement ? -delta : delta);
+
+    Class<?> returnType = method.getReturnedObjectType();
+    if (returnType == int.class || returnType == Integer.class) {
+      return (int) value;
+    }
+    if (returnType == void.class || returnType == Void.class) {
+      return null;
+    }
+    return value;
+  }
+
+  @Override
+  public CouchbaseQueryMethod getQueryMethod() {
+    return method;
+  }
+}
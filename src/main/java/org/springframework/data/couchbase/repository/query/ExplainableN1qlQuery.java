@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.query;
+
+import com.couchbase.client.java.query.N1qlQuery;
+
+import org.springframework.data.repository.query.RepositoryQuery;
+
+/**
+ * A {@link RepositoryQuery} backed by a N1QL statement that can be built ahead of any invocation, so that its
+ * execution plan can be verified (eg. with <code>EXPLAIN</code>) when the repository is created.
+ *
+ * @since 3.2
+ */
+public interface ExplainableN1qlQuery extends RepositoryQuery {
+
+  /**
+   * Builds the query that this method would execute, using sample arguments in place of the runtime ones. As
+   * derived queries use placeholders, the statement is the same as for any argument, but statements built from
+   * SpEL expressions could differ.
+   *
+   * @return the query, with its placeholder values.
+   */
+  N1qlQuery createSampleQuery();
+
+  @Override
+  CouchbaseQueryMethod getQueryMethod();
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.query;
+
+import org.springframework.data.couchbase.core.convert.CouchbaseConverter;
+import org.springframework.data.repository.query.ParameterAccessor;
+import org.springframework.data.repository.query.parser.PartTree;
+
+import com.couchbase.client.java.query.dsl.Expression;
+import com.couchbase.client.java.query.dsl.path.GroupByPath;
+import com.couchbase.client.java.query.dsl.path.OrderByPath;
+import com.couchbase.client.java.query.dsl.path.WherePath;
+
+/**
+ * A {@link N1qlQueryCreator} for grouped aggregations: the WHERE clause is derived from the {@link PartTree} as usual,
+ * followed by a GROUP BY clause on the given expressions.
+ *
+ * @since 3.2
+ */
+public class N1qlAggregateQueryCreator extends N1qlQueryCreator {
+
+  private final Expression[] groupByExpressions;
+
+  public N1qlAggregateQueryCreator(PartTree tree, ParameterAccessor parameters, WherePath selectFrom,
+                                   CouchbaseConverter converter, CouchbaseQueryMethod queryMethod,
+                                   Expression[] groupByExpressions) {
+    super(tree, parameters, selectFrom, converter, queryMethod);
+    this.groupByExpressions = groupByExpressions;
+  }
+
+  @Override
+  protected OrderByPath groupBy(GroupByPath selectFromWhere) {
+    if (groupByExpressions.length == 0) {
+      return selectFromWhere;
+    }
+    return selectFromWhere.groupBy(groupByExpressions);
+  }
+}
@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import com.couchbase.client.java.document.json.JsonArray;
 import com.couchbase.client.java.document.json.JsonValue;
 import com.couchbase.client.java.query.dsl.Expression;
+import com.couchbase.client.java.query.dsl.path.GroupByPath;
 import com.couchbase.client.java.query.dsl.path.LimitPath;
 import com.couchbase.client.java.query.dsl.path.OrderByPath;
 import com.couchbase.client.java.query.dsl.path.WherePath;
@@ -127,7 +128,7 @@ public class N1qlQueryCreator extends AbstractQueryCreator<LimitPath, Expression
   protected LimitPath complete(Expression criteria, Sort sort) {
     Expression whereCriteria = N1qlUtils.createWhereFilterForEntity(criteria, this.converter, this.queryMethod.getEntityInformation());
 
-    OrderByPath selectFromWhere = selectFrom.where(whereCriteria);
+    OrderByPath selectFromWhere = groupBy(selectFrom.where(whereCriteria));
 
     //sort of the Pageable takes precedence over the sort in the query name
     if ((queryMethod.isPageQuery() || queryMethod.isSliceQuery()) && accessor.getPageable().isPaged()) {
@@ -142,6 +143,13 @@ public class N1qlQueryCreator extends AbstractQueryCreator<LimitPath, Expression
     return selectFromWhere;
   }
 
+  /**
+   * Hook to add a GROUP BY clause after the WHERE clause. By default, no grouping is done.
+   */
+  protected OrderByPath groupBy(GroupByPath selectFromWhere) {
+    return selectFromWhere;
+  }
+
   @Override
   public JsonValue getPlaceHolderValues() {
     return this.placeHolderValues;
@@ -18,9 +18,14 @@ package org.springframework.data.couchbase.repository.query;
 
 import static com.couchbase.client.java.query.Delete.deleteFrom;
 import static com.couchbase.client.java.query.Select.select;
+import static com.couchbase.client.java.query.Select.selectRaw;
 import static com.couchbase.client.java.query.dsl.Expression.i;
+import static com.couchbase.client.java.query.dsl.Expression.x;
 import static com.couchbase.client.java.query.dsl.functions.AggregateFunctions.count;
 import static org.springframework.data.couchbase.repository.query.support.N1qlUtils.createReturningExpressionForDelete;
+
+import java.util.List;
+
 import com.couchbase.client.java.document.json.JsonArray;
 import com.couchbase.client.java.document.json.JsonObject;
 import com.couchbase.client.java.document.json.JsonValue;
@@ -32,6 +37,7 @@ import com.couchbase.client.java.query.dsl.path.WherePath;
 import com.couchbase.client.java.query.dsl.path.MutateLimitPath;
 import com.couchbase.client.java.query.dsl.path.DeleteUsePath;
 import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.repository.query.support.N1qlIndexDefinition;
 import org.springframework.data.couchbase.repository.query.support.N1qlUtils;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.ParameterAccessor;
@@ -55,6 +61,21 @@ public class PartTreeN1qlBasedQuery extends AbstractN1qlBasedQuery {
   public PartTreeN1qlBasedQuery(CouchbaseQueryMethod queryMethod, CouchbaseOperations couchbaseOperations) {
     super(queryMethod, couchbaseOperations);
     this.partTree = new PartTree(queryMethod.getName(), queryMethod.getEntityInformation().getJavaType());
+    if (queryMethod.isAggregateQuery()
+        && (partTree.isDelete() || partTree.isCountProjection() || partTree.isExistsProjection())) {
+      throw new IllegalArgumentException("Aggregations cannot be combined with count, exists or delete queries: "
+          + queryMethod);
+    }
+  }
+
+  /**
+   * Derives the GSI indexes needed by the criteria of this query, see {@link N1qlIndexDefinition}.
+   *
+   * @return the index definitions, empty if the query has no criteria.
+   */
+  public List<N1qlIndexDefinition> deriveIndexes() {
+    return N1qlIndexDefinition.fromPartTree(partTree, queryMethod.getEntityInformation().getJavaType(),
+        getCouchbaseOperations().getConverter());
   }
 
   @Override
@@ -65,7 +86,13 @@ public class PartTreeN1qlBasedQuery extends AbstractN1qlBasedQuery {
   @Override
   protected Statement getCount(ParameterAccessor accessor, Object[] runtimeParameters) {
     Expression bucket = i(getCouchbaseOperations().getCouchbaseBucket().name());
-    WherePath countFrom = select(count("*").as(CountFragment.COUNT_ALIAS)).from(bucket);
+    WherePath countFrom;
+    if (queryMethod.isAggregateQuery()) {
+      //a page of grouped rows is counted in number of groups
+      countFrom = select(N1qlUtils.createGroupCountExpression(getGroupByExpressions())).from(bucket);
+    } else {
+      countFrom = select(count("*").as(CountFragment.COUNT_ALIAS)).from(bucket);
+    }
 
     N1qlCountQueryCreator queryCountCreator = new N1qlCountQueryCreator(partTree, accessor, countFrom,
         getCouchbaseOperations().getConverter(), getQueryMethod());
@@ -94,12 +121,25 @@ public class PartTreeN1qlBasedQuery extends AbstractN1qlBasedQuery {
       FromPath select;
       if (partTree.isCountProjection()) {
         select = select(count("*"));
+      } else if (partTree.isExistsProjection()) {
+        //the query service can stop at the first match instead of counting them all
+        select = selectRaw(x(1));
+      } else if (queryMethod.isAggregateQuery()) {
+        select = N1qlUtils.createSelectClauseForAggregation(bucketName, getGroupByProperties(),
+            queryMethod.getAggregateAnnotations(), queryMethod.getEntityInformation().getJavaType(),
+            getCouchbaseOperations().getConverter());
       } else {
         select = N1qlUtils.createSelectClauseForEntity(bucketName, returnedType, this.getCouchbaseOperations().getConverter());
       }
       WherePath selectFrom = select.from(bucket);
-      N1qlQueryCreator queryCreator = new N1qlQueryCreator(partTree, accessor, selectFrom,
-              getCouchbaseOperations().getConverter(), getQueryMethod());
+      N1qlQueryCreator queryCreator;
+      if (queryMethod.isAggregateQuery()) {
+        queryCreator = new N1qlAggregateQueryCreator(partTree, accessor, selectFrom,
+            getCouchbaseOperations().getConverter(), getQueryMethod(), getGroupByExpressions());
+      } else {
+        queryCreator = new N1qlQueryCreator(partTree, accessor, selectFrom,
+            getCouchbaseOperations().getConverter(), getQueryMethod());
+      }
       LimitPath selectFromWhereOrderBy = queryCreator.createQuery();
       this.placeHolderValues = queryCreator.getPlaceHolderValues();
 
@@ -111,6 +151,8 @@ public class PartTreeN1qlBasedQuery extends AbstractN1qlBasedQuery {
         Pageable pageable = accessor.getPageable();
         Assert.notNull(pageable, "Pageable must not be null!");
         return selectFromWhereOrderBy.limit(pageable.getPageSize() + 1).offset(Math.toIntExact(pageable.getOffset()));
+      } else if (partTree.isExistsProjection()) {
+        return selectFromWhereOrderBy.limit(1);
       } else if (partTree.isLimiting()) {
         return selectFromWhereOrderBy.limit(partTree.getMaxResults());
       } else {
@@ -119,6 +161,26 @@ public class PartTreeN1qlBasedQuery extends AbstractN1qlBasedQuery {
     }
   }
 
+  private String[] getGroupByProperties() {
+    return queryMethod.hasGroupByAnnotation() ? queryMethod.getGroupByAnnotation().value() : new String[0];
+  }
+
+  private Expression[] getGroupByExpressions() {
+    return N1qlUtils.createGroupByExpressions(getCouchbaseOperations().getCouchbaseBucket().name(),
+        getGroupByProperties(), queryMethod.getEntityInformation().getJavaType(),
+        getCouchbaseOperations().getConverter());
+  }
+
+  @Override
+  protected boolean isExistsQuery() {
+    return partTree.isExistsProjection();
+  }
+
+  @Override
+  protected boolean isRowProjection() {
+    return queryMethod.isAggregateQuery();
+  }
+
   @Override
   protected boolean useGeneratedCountQuery() {
     return false; //generated count query is just for Page/Slice, not projections
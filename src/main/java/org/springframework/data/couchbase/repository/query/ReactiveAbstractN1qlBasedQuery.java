@@ -22,12 +22,14 @@ import com.couchbase.client.java.query.N1qlQuery;
 import com.couchbase.client.java.query.Statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.data.couchbase.core.CouchbaseQueryExecutionException;
 import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
 import org.springframework.data.couchbase.repository.query.support.N1qlUtils;
 import org.springframework.data.repository.query.*;
 import org.springframework.data.repository.util.ReactiveWrapperConverters;
 import reactor.core.publisher.Flux;
+import rx.Observable;
 
 /**
  * @author Subhashni Balakrishnan
@@ -35,7 +37,7 @@ import reactor.core.publisher.Flux;
  * @author Johannes Jasper
  * @since 3.0
  */
-public abstract class ReactiveAbstractN1qlBasedQuery implements RepositoryQuery {
+public abstract class ReactiveAbstractN1qlBasedQuery implements ExplainableN1qlQuery {
     private static final Logger LOG = LoggerFactory.getLogger(ReactiveAbstractN1qlBasedQuery.class);
 
     protected final CouchbaseQueryMethod queryMethod;
@@ -50,6 +52,21 @@ public abstract class ReactiveAbstractN1qlBasedQuery implements RepositoryQuery
 
     protected abstract JsonValue getPlaceholderValues(ParameterAccessor accessor);
 
+    /**
+     * @return true if the rows returned by the statement don't carry the document metadata needed for entity
+     * mapping (eg. grouped aggregations), and should rather be mapped directly into the returned type.
+     */
+    protected boolean isRowProjection() {
+        return false;
+    }
+
+    /**
+     * @return true if the statement is an existence probe, whose result is whether or not it returned any row.
+     */
+    protected boolean isExistsQuery() {
+        return false;
+    }
+
     @Override
     public Object execute(Object[] parameters) {
         ReactiveCouchbaseParameterAccessor accessor = new ReactiveCouchbaseParameterAccessor(queryMethod, parameters);
@@ -57,7 +74,10 @@ public abstract class ReactiveAbstractN1qlBasedQuery implements RepositoryQuery
         ReturnedType returnedType = processor.getReturnedType();
 
         Class<?> typeToRead = returnedType.getTypeToRead();
-        typeToRead = typeToRead == null ? returnedType.getDomainType() : typeToRead;
+        if (typeToRead == null) {
+            //interface projections over rows are backed by a map
+            typeToRead = isRowProjection() ? Map.class : returnedType.getDomainType();
+        }
 
         Statement statement = getStatement(accessor, parameters, returnedType);
         JsonValue queryPlaceholderValues = getPlaceholderValues(accessor);
@@ -69,6 +89,16 @@ public abstract class ReactiveAbstractN1qlBasedQuery implements RepositoryQuery
     }
 
 
+    @Override
+    public N1qlQuery createSampleQuery() {
+        Object[] parameters = SampleArguments.create(queryMethod);
+        ReactiveCouchbaseParameterAccessor accessor = new ReactiveCouchbaseParameterAccessor(queryMethod, parameters);
+        ReturnedType returnedType = queryMethod.getResultProcessor().withDynamicProjection(accessor).getReturnedType();
+
+        Statement statement = getStatement(accessor, parameters, returnedType);
+        return N1qlUtils.buildQuery(statement, getPlaceholderValues(accessor), getScanConsistency());
+    }
+
     protected Object executeDependingOnType(N1qlQuery query,
                                             QueryMethod queryMethod,
                                             Class<?> typeToRead) {
@@ -77,8 +107,13 @@ public abstract class ReactiveAbstractN1qlBasedQuery implements RepositoryQuery
             throw new UnsupportedOperationException("Modifying queries not yet supported");
         }
 
-        if (queryMethod.isQueryForEntity()) {
+        if (isExistsQuery()) {
+            return executeExists(query);
+        } else if (queryMethod.isQueryForEntity()) {
             return execute(query, typeToRead);
+        } else if (isRowProjection() && !BeanUtils.isSimpleValueType(queryMethod.getReturnedObjectType())) {
+            logIfNecessary(query);
+            return couchbaseOperations.findByN1QLProjection(query, typeToRead);
         } else {
             return executeSingleProjection(query, typeToRead);
         }
@@ -92,9 +127,22 @@ public abstract class ReactiveAbstractN1qlBasedQuery implements RepositoryQuery
 
     protected Object execute(N1qlQuery query, Class<?> typeToRead) {
         logIfNecessary(query);
+        if (isRowProjection()) {
+            return couchbaseOperations.findByN1QLProjection(query, typeToRead);
+        }
         return couchbaseOperations.findByN1QL(query, typeToRead);
     }
 
+    protected Object executeExists(N1qlQuery query) {
+        logIfNecessary(query);
+        return couchbaseOperations.queryN1QL(query)
+                .flatMap(asyncN1qlQueryResult -> asyncN1qlQueryResult.errors()
+                        .flatMap(error -> Observable.error(new CouchbaseQueryExecutionException("Unable to execute n1ql query due to error:" + error.toString())))
+                        .switchIfEmpty(asyncN1qlQueryResult.rows()))
+                .isEmpty()
+                .map(empty -> !empty);
+    }
+
     protected Object executeSingleProjection(N1qlQuery query, final Class<?> typeToRead) {
         logIfNecessary(query);
         return couchbaseOperations.findByN1QLProjection(query, Map.class)
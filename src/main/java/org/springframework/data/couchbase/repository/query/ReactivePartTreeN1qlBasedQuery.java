@@ -16,6 +16,8 @@
 package org.springframework.data.couchbase.repository.query;
 
 import static com.couchbase.client.java.query.Select.select;
+import static com.couchbase.client.java.query.Select.selectRaw;
+import static com.couchbase.client.java.query.dsl.Expression.x;
 import static com.couchbase.client.java.query.dsl.functions.AggregateFunctions.count;
 
 import com.couchbase.client.java.document.json.JsonArray;
@@ -47,6 +49,11 @@ public class ReactivePartTreeN1qlBasedQuery extends ReactiveAbstractN1qlBasedQue
     public ReactivePartTreeN1qlBasedQuery(CouchbaseQueryMethod queryMethod, RxJavaCouchbaseOperations operations) {
         super(queryMethod, operations);
         this.partTree = new PartTree(queryMethod.getName(), queryMethod.getEntityInformation().getJavaType());
+        if (queryMethod.isAggregateQuery() && (partTree.isDelete()
+                || partTree.isCountProjection() || partTree.isExistsProjection())) {
+            throw new IllegalArgumentException("Aggregations cannot be combined with count, exists or delete queries: "
+                    + queryMethod);
+        }
     }
 
     @Override
@@ -62,19 +69,50 @@ public class ReactivePartTreeN1qlBasedQuery extends ReactiveAbstractN1qlBasedQue
         FromPath select;
         if (partTree.isCountProjection()) {
             select = select(count("*"));
+        } else if (partTree.isExistsProjection()) {
+            //the query service can stop at the first match instead of counting them all
+            select = selectRaw(x(1));
+        } else if (queryMethod.isAggregateQuery()) {
+            select = N1qlUtils.createSelectClauseForAggregation(bucketName, getGroupByProperties(),
+                    queryMethod.getAggregateAnnotations(), queryMethod.getEntityInformation().getJavaType(),
+                    getCouchbaseOperations().getConverter());
         } else {
             select = N1qlUtils.createSelectClauseForEntity(bucketName, returnedType, this.getCouchbaseOperations().getConverter());
         }
         WherePath selectFrom = select.from(bucket);
 
-        N1qlQueryCreator queryCreator = new N1qlQueryCreator(partTree, accessor, selectFrom,
-                getCouchbaseOperations().getConverter(), getQueryMethod());
+        N1qlQueryCreator queryCreator;
+        if (queryMethod.isAggregateQuery()) {
+            Expression[] groupBy = N1qlUtils.createGroupByExpressions(bucketName, getGroupByProperties(),
+                    queryMethod.getEntityInformation().getJavaType(), getCouchbaseOperations().getConverter());
+            queryCreator = new N1qlAggregateQueryCreator(partTree, accessor, selectFrom,
+                    getCouchbaseOperations().getConverter(), getQueryMethod(), groupBy);
+        } else {
+            queryCreator = new N1qlQueryCreator(partTree, accessor, selectFrom,
+                    getCouchbaseOperations().getConverter(), getQueryMethod());
+        }
         LimitPath selectFromWhereOrderBy = queryCreator.createQuery();
         this.placeHolderValues = queryCreator.getPlaceHolderValues();
-        if (partTree.isLimiting()) {
+        if (partTree.isExistsProjection()) {
+            return selectFromWhereOrderBy.limit(1);
+        } else if (partTree.isLimiting()) {
             return selectFromWhereOrderBy.limit(partTree.getMaxResults());
         } else {
             return selectFromWhereOrderBy;
         }
     }
+
+    private String[] getGroupByProperties() {
+        return queryMethod.hasGroupByAnnotation() ? queryMethod.getGroupByAnnotation().value() : new String[0];
+    }
+
+    @Override
+    protected boolean isExistsQuery() {
+        return partTree.isExistsProjection();
+    }
+
+    @Override
+    protected boolean isRowProjection() {
+        return queryMethod.isAggregateQuery();
+    }
 }
@@ -35,19 +35,22 @@ public class ReactiveSpatialViewBasedQuery implements RepositoryQuery {
 
 	private final CouchbaseQueryMethod method;
 	private final RxJavaCouchbaseOperations operations;
+	private final String designDoc;
+	private final String viewName;
+	private final int dimensions;
+	private final PartTree tree;
 
 	public ReactiveSpatialViewBasedQuery(CouchbaseQueryMethod method, RxJavaCouchbaseOperations operations) {
 		this.method = method;
 		this.operations = operations;
+		this.designDoc = method.getDimensionalAnnotation().designDocument();
+		this.viewName = method.getDimensionalAnnotation().spatialViewName();
+		this.dimensions = method.getDimensionalAnnotation().dimensions();
+		this.tree = new PartTree(method.getName(), method.getEntityInformation().getJavaType());
 	}
 
 	@Override
 	public Object execute(Object[] runtimeParams) {
-		String designDoc = method.getDimensionalAnnotation().designDocument();
-		String viewName = method.getDimensionalAnnotation().spatialViewName();
-		int dimensions = method.getDimensionalAnnotation().dimensions();
-		PartTree tree = new PartTree(method.getName(), method.getEntityInformation().getJavaType());
-
 		//prepare a spatial view query to be used as a base for the query creator
 		SpatialViewQuery baseSpatialQuery = SpatialViewQuery.from(designDoc, viewName)
 				.stale(operations.getDefaultConsistency().viewConsistency());
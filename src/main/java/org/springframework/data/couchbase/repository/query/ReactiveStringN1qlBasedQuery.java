@@ -43,8 +43,8 @@ import com.couchbase.client.java.query.Statement;
 public class ReactiveStringN1qlBasedQuery extends ReactiveAbstractN1qlBasedQuery {
 
     private final StringBasedN1qlQueryParser queryParser;
-    private final SpelExpressionParser parser;
     private final QueryMethodEvaluationContextProvider evaluationContextProvider;
+    private final Statement staticStatement;
 
     protected String getTypeField() {
         return getCouchbaseOperations().getConverter().getTypeKey();
@@ -54,17 +54,30 @@ public class ReactiveStringN1qlBasedQuery extends ReactiveAbstractN1qlBasedQuery
         return getQueryMethod().getEntityInformation().getJavaType();
     }
 
+    /**
+     * @deprecated the SpEL expressions are parsed once by the query, use
+     * {@link #ReactiveStringN1qlBasedQuery(String, CouchbaseQueryMethod, RxJavaCouchbaseOperations, QueryMethodEvaluationContextProvider)}.
+     */
+    @Deprecated
     public ReactiveStringN1qlBasedQuery(String statement,
                                         CouchbaseQueryMethod queryMethod,
                                         RxJavaCouchbaseOperations couchbaseOperations,
                                         SpelExpressionParser spelParser,
                                         QueryMethodEvaluationContextProvider evaluationContextProvider) {
+        this(statement, queryMethod, couchbaseOperations, evaluationContextProvider);
+    }
+
+    public ReactiveStringN1qlBasedQuery(String statement,
+                                        CouchbaseQueryMethod queryMethod,
+                                        RxJavaCouchbaseOperations couchbaseOperations,
+                                        QueryMethodEvaluationContextProvider evaluationContextProvider) {
         super(queryMethod, couchbaseOperations);
 
         this.queryParser = new StringBasedN1qlQueryParser(statement, queryMethod,
                 getCouchbaseOperations().getCouchbaseBucket().name(), getCouchbaseOperations().getConverter(), getTypeField(), getTypeValue());
-        this.parser = spelParser;
         this.evaluationContextProvider = evaluationContextProvider;
+        this.staticStatement = queryParser.isParameterDependent() ? null
+                : N1qlQuery.simple(queryParser.parse(null, false)).statement();
     }
 
     @Override
@@ -74,8 +87,11 @@ public class ReactiveStringN1qlBasedQuery extends ReactiveAbstractN1qlBasedQuery
 
     @Override
     public Statement getStatement(ParameterAccessor accessor, Object[] runtimeParameters, ReturnedType returnedType) {
+        if (this.staticStatement != null) {
+            return this.staticStatement;
+        }
         EvaluationContext evaluationContext = evaluationContextProvider.getEvaluationContext(getQueryMethod().getParameters(), runtimeParameters);
-        String parsedStatement = queryParser.doParse(parser, evaluationContext, false);
+        String parsedStatement = queryParser.parse(evaluationContext, false);
         return N1qlQuery.simple(parsedStatement).statement();
     }
 
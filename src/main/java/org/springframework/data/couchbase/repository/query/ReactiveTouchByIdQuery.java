@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.repository.query;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
+import org.springframework.data.repository.query.RepositoryQuery;
+import org.springframework.data.repository.util.ReactiveWrapperConverters;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+
+/**
+ * Executes a {@link CouchbaseQueryMethod#isTouchMethod() touch method} of a reactive repository, like
+ * {@link TouchByIdQuery}: <code>touchAllById</code> returns a {@link Mono} of the map of the documents touched, or of
+ * their number, and <code>findAllByIdAndTouch</code> a {@link Flux} of the entities found.
+ *
+ * @since 3.2
+ */
+public class ReactiveTouchByIdQuery implements RepositoryQuery {
+
+    private final CouchbaseQueryMethod method;
+    private final RxJavaCouchbaseOperations operations;
+
+    public ReactiveTouchByIdQuery(CouchbaseQueryMethod method, RxJavaCouchbaseOperations operations) {
+        this.method = method;
+        this.operations = operations;
+    }
+
+    @Override
+    public Object execute(Object[] parameters) {
+        List<String> ids = TouchByIdQuery.ids(parameters[0]);
+        int expiry = TouchByIdQuery.expiry(parameters[1]);
+
+        if (TouchByIdQuery.isRead(method)) {
+            return ReactiveWrapperConverters.toWrapper(
+                    operations.findAllByIdAndTouch(ids, method.getEntityInformation().getJavaType(), expiry),
+                    Flux.class);
+        }
+        Observable<Map<String, Boolean>> touched = operations.touch(ids, expiry);
+        Class<?> returnType = method.getReturnedObjectType();
+        Observable<?> result;
+        if (Map.class.isAssignableFrom(returnType)) {
+            result = touched;
+        } else if (returnType == Integer.class || returnType == int.class) {
+            result = touched.map(documents -> (int) TouchByIdQuery.countTouched(documents));
+        } else if (returnType == Long.class || returnType == long.class) {
+            result = touched.map(TouchByIdQuery::countTouched);
+        } else {
+            result = touched.ignoreElements();
+        }
+        return ReactiveWrapperConverters.toWrapper(result, Mono.class);
+    }
+
+    @Override
+    public CouchbaseQueryMethod getQueryMethod() {
+        return method;
+    }
+}
@@ -22,7 +22,6 @@ import org.slf4j.LoggerFactory;
 
 import org.springframework.data.couchbase.core.CouchbaseQueryExecutionException;
 import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
-import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.data.repository.query.QueryMethod;
 import org.springframework.data.repository.query.RepositoryQuery;
 import org.springframework.data.repository.query.parser.PartTree;
@@ -43,10 +42,26 @@ public class ReactiveViewBasedCouchbaseQuery implements RepositoryQuery {
 
     private final CouchbaseQueryMethod method;
     private final RxJavaCouchbaseOperations operations;
+    private final String designDoc;
+    private final String viewName;
+    private final boolean isGuessedReduce;
+    private final PartTree partTree;
 
     public ReactiveViewBasedCouchbaseQuery(CouchbaseQueryMethod method, RxJavaCouchbaseOperations operations) {
         this.method = method;
         this.operations = operations;
+        this.designDoc = designDocName(method);
+        if (method.hasViewName()) { //only allow derivation on @View explicitly defining a viewName
+            this.viewName = method.getViewAnnotation().viewName();
+            this.isGuessedReduce = false;
+            this.partTree = ViewBasedCouchbaseQuery.derivePartTree(method);
+        } else {
+            String methodName = method.getName();
+            boolean isExplicitReduce = method.hasViewAnnotation() && method.getViewAnnotation().reduce();
+            this.viewName = StringUtils.uncapitalize(methodName.replaceFirst("find|count", ""));
+            this.isGuessedReduce = methodName.startsWith("count") || isExplicitReduce;
+            this.partTree = null;
+        }
     }
 
     @Override
@@ -59,15 +74,8 @@ public class ReactiveViewBasedCouchbaseQuery implements RepositoryQuery {
     }
 
     protected Object guessViewAndExecute() {
-        String designDoc = designDocName(method);
-        String methodName = method.getName();
-        boolean isExplicitReduce = method.hasViewAnnotation() && method.getViewAnnotation().reduce();
-        boolean isReduce = methodName.startsWith("count") || isExplicitReduce;
-        String viewName = StringUtils.uncapitalize(methodName.replaceFirst("find|count", ""));
-
-        ViewQuery simpleQuery = ViewQuery.from(designDoc, viewName)
-                .stale(operations.getDefaultConsistency().viewConsistency());
-        if (isReduce) {
+        ViewQuery simpleQuery = newBaseQuery();
+        if (isGuessedReduce) {
             simpleQuery.reduce();
             return executeReduce(simpleQuery, designDoc, viewName);
         } else {
@@ -76,39 +84,34 @@ public class ReactiveViewBasedCouchbaseQuery implements RepositoryQuery {
     }
 
     protected Object deriveAndExecute(Object[] runtimeParams) {
-        String designDoc = designDocName(method);
-        String viewName = method.getViewAnnotation().viewName();
-
         //prepare a ViewQuery to be used as a base for the ViewQueryCreator
-        ViewQuery baseQuery = ViewQuery.from(designDoc, viewName)
-                .stale(operations.getDefaultConsistency().viewConsistency());
+        ViewQuery baseQuery = newBaseQuery();
 
-        try {
-            PartTree tree = new PartTree(method.getName(), method.getEntityInformation().getJavaType());
-
-            //use a ViewQueryCreator to complete the base query
-            ViewQueryCreator creator = new ViewQueryCreator(tree, new ReactiveCouchbaseParameterAccessor(method, runtimeParams),
-                    method.getViewAnnotation(), baseQuery, operations.getConverter());
-            ViewQueryCreator.DerivedViewQuery result = creator.createQuery();
-
-            if (result.isReduce) {
-                return executeReduce(result.builtQuery, designDoc, viewName);
-            } else {
-                //otherwise just execute the query
-                return execute(result.builtQuery);
-            }
-        } catch (PropertyReferenceException e) {
-      /*
-        For views, not including an attribute name in the method will result in returning
-        the whole set of results from the view.
-        This is detected by looking for PropertyReferenceExceptions that seem to complain
-        about a missing property that corresponds to the method name
-     */
-            if (e.getPropertyName().equals(method.getName())) {
-                return execute(baseQuery);
-            }
-            throw e;
+        if (partTree == null) {
+            //no attribute in the method name, return the whole set of results from the view
+            return execute(baseQuery);
         }
+
+        //use a ViewQueryCreator to complete the base query
+        ViewQueryCreator creator = new ViewQueryCreator(partTree, new ReactiveCouchbaseParameterAccessor(method, runtimeParams),
+                method.getViewAnnotation(), baseQuery, operations.getConverter());
+        ViewQueryCreator.DerivedViewQuery result = creator.createQuery();
+
+        if (result.isReduce) {
+            return executeReduce(result.builtQuery, designDoc, viewName);
+        } else {
+            //otherwise just execute the query
+            return execute(result.builtQuery);
+        }
+    }
+
+    /**
+     * Creates a fresh base {@link ViewQuery} on the design document and view resolved at construction. The query is
+     * mutable and completed per invocation, so it cannot be shared between executions.
+     */
+    private ViewQuery newBaseQuery() {
+        return ViewQuery.from(designDoc, viewName)
+                .stale(operations.getDefaultConsistency().viewConsistency());
     }
 
     protected Object execute(ViewQuery query) {
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.query;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.Parameter;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates arguments for a query method that are valid for its parameter types, to build its statement outside of
+ * an invocation.
+ *
+ * @since 3.2
+ */
+final class SampleArguments {
+
+  private SampleArguments() {
+  }
+
+  static Object[] create(CouchbaseQueryMethod queryMethod) {
+    Object[] arguments = new Object[queryMethod.getParameters().getNumberOfParameters()];
+    int i = 0;
+    for (Parameter parameter : queryMethod.getParameters()) {
+      arguments[i++] = sample(parameter.getType());
+    }
+    return arguments;
+  }
+
+  private static Object sample(Class<?> type) {
+    Class<?> boxedType = ClassUtils.resolvePrimitiveIfNecessary(type);
+    if (Pageable.class.isAssignableFrom(type)) {
+      return PageRequest.of(0, 10);
+    } else if (Sort.class.isAssignableFrom(type)) {
+      return Sort.unsorted();
+    } else if (type == String.class) {
+      return "";
+    } else if (Number.class.isAssignableFrom(boxedType)) {
+      return DefaultConversionService.getSharedInstance().convert(0, boxedType);
+    } else if (boxedType == Boolean.class) {
+      return Boolean.FALSE;
+    } else if (boxedType == Character.class) {
+      return ' ';
+    } else if (type.isArray()) {
+      return Array.newInstance(type.getComponentType(), 0);
+    } else if (Collection.class.isAssignableFrom(type)) {
+      return Collections.emptyList();
+    }
+    return null;
+  }
+}
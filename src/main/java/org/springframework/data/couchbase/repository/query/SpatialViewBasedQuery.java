@@ -36,25 +36,28 @@ public class SpatialViewBasedQuery implements RepositoryQuery {
 
   private final CouchbaseQueryMethod method;
   private final CouchbaseOperations operations;
+  private final String designDoc;
+  private final String viewName;
+  private final int dimensions;
+  private final PartTree tree;
 
   public SpatialViewBasedQuery(CouchbaseQueryMethod method, CouchbaseOperations operations) {
     this.method = method;
     this.operations = operations;
-  }
-
-  @Override
-  public Object execute(Object[] runtimeParams) {
-    String designDoc = method.getDimensionalAnnotation().designDocument();
-    String viewName = method.getDimensionalAnnotation().spatialViewName();
-    int dimensions = method.getDimensionalAnnotation().dimensions();
+    this.designDoc = method.getDimensionalAnnotation().designDocument();
+    this.viewName = method.getDimensionalAnnotation().spatialViewName();
+    this.dimensions = method.getDimensionalAnnotation().dimensions();
 
     /*
       here contrary to the classical view query we don't support not including an attribute of
       the entity in the method name, those are mandatory and will result in a PropertyReferenceException
       if not used...
      */
-    PartTree tree = new PartTree(method.getName(), method.getEntityInformation().getJavaType());
+    this.tree = new PartTree(method.getName(), method.getEntityInformation().getJavaType());
+  }
 
+  @Override
+  public Object execute(Object[] runtimeParams) {
     //prepare a spatial view query to be used as a base for the query creator
     SpatialViewQuery baseSpatialQuery = SpatialViewQuery.from(designDoc, viewName)
         .stale(operations.getDefaultConsistency().viewConsistency());
@@ -35,8 +35,14 @@ import org.springframework.data.repository.query.Parameter;
 import org.springframework.data.repository.query.ParameterAccessor;
 import org.springframework.data.repository.query.QueryMethod;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.common.CompositeStringExpression;
+import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
 
 /**
  * @author Subhashni Balakrishnan
@@ -100,6 +106,14 @@ public class StringBasedN1qlQueryParser {
 	/** regexp that detects " and ' quote boundaries, ignoring escaped quotes */
 	public static final Pattern QUOTE_DETECTION_PATTERN = Pattern.compile("[\"'](?:[^\"'\\\\]*(?:\\\\.)?)*[\"']");
 
+	/** regexp that detects a SpEL expression only made of one of the couchbase-provided variables, which never changes */
+	private static final Pattern STATIC_SPEL_PATTERN = Pattern.compile("\\s*#" + SPEL_PREFIX
+			+ "\\.(selectEntity|fields|bucket|filter|delete|returning)\\s*");
+
+	/** parser used for the statement templates, in mixed mode so that frequently evaluated expressions get compiled */
+	private static final SpelExpressionParser TEMPLATE_PARSER = new SpelExpressionParser(
+			new SpelParserConfiguration(SpelCompilerMode.MIXED, StringBasedN1qlQueryParser.class.getClassLoader()));
+
 
 	/** enumeration of all the combinations of placeholder types that could be found in a N1QL statement */
 	private enum PlaceholderType {
@@ -112,6 +126,9 @@ public class StringBasedN1qlQueryParser {
 	private final N1qlSpelValues statementContext;
 	private final N1qlSpelValues countContext;
 	private final CouchbaseConverter couchbaseConverter;
+	private final Expression parsedStatement;
+	private final String staticStatement;
+	private final String staticCountStatement;
 
 	public StringBasedN1qlQueryParser(String statement,
 									  QueryMethod queryMethod,
@@ -122,12 +139,44 @@ public class StringBasedN1qlQueryParser {
 		this.statement = statement;
 		this.queryMethod = queryMethod;
 		this.placeHolderType = checkPlaceholders(statement);
-		this.statementContext = createN1qlSpelValues(bucketName, typeField, typeValue, false);
-		this.countContext = createN1qlSpelValues(bucketName, typeField, typeValue, true);
+		this.statementContext = createN1qlSpelValues(bucketName, typeField, typeValue, couchbaseConverter, false);
+		this.countContext = createN1qlSpelValues(bucketName, typeField, typeValue, couchbaseConverter, true);
 		this.couchbaseConverter = couchbaseConverter;
+		this.parsedStatement = TEMPLATE_PARSER.parseExpression(statement, new TemplateParserContext());
+		if (isStatic(this.parsedStatement)) {
+			this.staticStatement = evaluate(this.parsedStatement, new StandardEvaluationContext(), false);
+			this.staticCountStatement = evaluate(this.parsedStatement, new StandardEvaluationContext(), true);
+		} else {
+			this.staticStatement = null;
+			this.staticCountStatement = null;
+		}
+	}
+
+	private static boolean isStatic(Expression expression) {
+		if (expression instanceof LiteralExpression) {
+			return true;
+		}
+		if (expression instanceof CompositeStringExpression) {
+			for (Expression segment : ((CompositeStringExpression) expression).getExpressions()) {
+				if (!isStatic(segment)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return STATIC_SPEL_PATTERN.matcher(expression.getExpressionString()).matches();
 	}
 
 	public static N1qlSpelValues createN1qlSpelValues(String bucketName, String typeField, Class<?> typeValue, boolean isCount) {
+		return createN1qlSpelValues(bucketName, typeField, typeValue, null, isCount);
+	}
+
+	/**
+	 * Creates the values of the couchbase-provided SpEL variables. If a converter is given, the type selection uses
+	 * the type aliases it provides (see {@link CouchbaseConverter#getTypeAliases(Class)}), otherwise the class name.
+	 */
+	public static N1qlSpelValues createN1qlSpelValues(String bucketName, String typeField, Class<?> typeValue,
+			CouchbaseConverter converter, boolean isCount) {
 		String b = "`" + bucketName + "`";
 		String entity = "META(" + b + ").id AS " + SELECT_ID +
 				", META(" + b + ").cas AS " + SELECT_CAS;
@@ -138,7 +187,12 @@ public class StringBasedN1qlQueryParser {
 		} else {
 			selectEntity = "SELECT " + entity + ", " + b + ".* FROM " + b;
 		}
-		String typeSelection = "`" + typeField + "` = \"" + typeValue.getName() + "\"";
+		String typeSelection;
+		if (converter == null) {
+			typeSelection = "`" + typeField + "` = \"" + typeValue.getName() + "\"";
+		} else {
+			typeSelection = N1qlUtils.createTypeSelector(i(typeField), converter, typeValue).toString();
+		}
 
 		String delete = deleteFrom(i(bucketName)).toString();
 		String returning = " returning " + N1qlUtils.createReturningExpressionForDelete(bucketName).toString();
@@ -146,16 +200,46 @@ public class StringBasedN1qlQueryParser {
 		return new N1qlSpelValues(selectEntity, entity, b, typeSelection, delete, returning);
 	}
 
-	//this static method can be used to test the parsing behavior for Couchbase specific spel variables
-	//in isolation from the rest of the spel parser initialization chain.
+	//this method can be used to test the parsing behavior for Couchbase specific spel variables
+	//in isolation from the rest of the spel parser initialization chain: unlike parse, it parses the
+	//statement again with the given parser instead of using the template parsed at construction.
 	public String doParse(SpelExpressionParser parser, EvaluationContext evaluationContext, boolean isCountQuery) {
-		org.springframework.expression.Expression parsedExpression = parser.parseExpression(this.getStatement(), new TemplateParserContext());
+		Expression parsedExpression = parser.parseExpression(this.statement, new TemplateParserContext());
+		return evaluate(parsedExpression, evaluationContext, isCountQuery);
+	}
+
+	/**
+	 * Produce the final statement out of the template, which has been split into static segments and SpEL expressions
+	 * at construction. If the template only uses the couchbase-provided <code>#{@value SPEL_PREFIX}</code> variables,
+	 * the statement is the same for every invocation and is returned from cache.
+	 *
+	 * @param evaluationContext the context to evaluate SpEL expressions with, can be null if the template is not
+	 * {@link #isParameterDependent() parameter dependent}.
+	 * @param isCountQuery true to produce the count variant of the statement.
+	 * @return the statement.
+	 */
+	public String parse(EvaluationContext evaluationContext, boolean isCountQuery) {
+		if (this.staticStatement != null) {
+			return isCountQuery ? this.staticCountStatement : this.staticStatement;
+		}
+		return evaluate(this.parsedStatement, evaluationContext, isCountQuery);
+	}
+
+	/**
+	 * @return true if the template contains SpEL expressions other than the couchbase-provided
+	 * <code>#{@value SPEL_PREFIX}</code> variables, which need to be evaluated against the method parameters.
+	 */
+	public boolean isParameterDependent() {
+		return this.staticStatement == null;
+	}
+
+	private String evaluate(Expression expression, EvaluationContext evaluationContext, boolean isCountQuery) {
 		if (isCountQuery) {
 			evaluationContext.setVariable(SPEL_PREFIX, this.getCountContext());
 		} else {
 			evaluationContext.setVariable(SPEL_PREFIX, this.getStatementContext());
 		}
-		return parsedExpression.getValue(evaluationContext, String.class);
+		return expression.getValue(evaluationContext, String.class);
 	}
 
 	private PlaceholderType checkPlaceholders(String statement) {
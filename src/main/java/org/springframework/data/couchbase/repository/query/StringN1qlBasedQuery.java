@@ -46,15 +46,17 @@ import com.couchbase.client.java.query.dsl.path.DefaultOrderByPath;
  * the {@link StringBasedN1qlQueryParser#SPEL_ENTITY ID and CAS fields} necessary for entity reconstruction
  * or a shortcut that covers {@link StringBasedN1qlQueryParser#SPEL_SELECT_FROM_CLAUSE SELECT AND FROM clauses},
  * along with a variable for {@link StringBasedN1qlQueryParser#SPEL_FILTER WHERE clause filtering} of the correct entity.
+ * Statements that only use these variables are evaluated once and reused for every invocation.
  *
  * @author Simon Baslé
  * @author Subhashni Balakrishnan
  * @author Mark Paluch
  */
 public class StringN1qlBasedQuery extends AbstractN1qlBasedQuery {
-  private final SpelExpressionParser parser;
   private final QueryMethodEvaluationContextProvider evaluationContextProvider;
   private final StringBasedN1qlQueryParser queryParser;
+  private final Statement staticStatement;
+  private final Statement staticCountStatement;
 
   protected String getTypeField() {
     return getCouchbaseOperations().getConverter().getTypeKey();
@@ -64,13 +66,29 @@ public class StringN1qlBasedQuery extends AbstractN1qlBasedQuery {
     return getQueryMethod().getEntityInformation().getJavaType();
   }
 
+  /**
+   * @deprecated the SpEL expressions are parsed once by the query, use
+   * {@link #StringN1qlBasedQuery(String, CouchbaseQueryMethod, CouchbaseOperations, QueryMethodEvaluationContextProvider)}.
+   */
+  @Deprecated
   public StringN1qlBasedQuery(String statement, CouchbaseQueryMethod queryMethod, CouchbaseOperations couchbaseOperations,
                               SpelExpressionParser spelParser, QueryMethodEvaluationContextProvider evaluationContextProvider) {
+    this(statement, queryMethod, couchbaseOperations, evaluationContextProvider);
+  }
+
+  public StringN1qlBasedQuery(String statement, CouchbaseQueryMethod queryMethod, CouchbaseOperations couchbaseOperations,
+                              QueryMethodEvaluationContextProvider evaluationContextProvider) {
     super(queryMethod, couchbaseOperations);
     this.queryParser = new StringBasedN1qlQueryParser(statement, queryMethod,
             getCouchbaseOperations().getCouchbaseBucket().name(), getCouchbaseOperations().getConverter(), getTypeField(), getTypeValue());
-    this.parser = spelParser;
     this.evaluationContextProvider = evaluationContextProvider;
+    if (this.queryParser.isParameterDependent()) {
+      this.staticStatement = null;
+      this.staticCountStatement = null;
+    } else {
+      this.staticStatement = N1qlQuery.simple(this.queryParser.parse(null, false)).statement();
+      this.staticCountStatement = N1qlQuery.simple(this.queryParser.parse(null, true)).statement();
+    }
   }
 
   @Override
@@ -80,12 +98,15 @@ public class StringN1qlBasedQuery extends AbstractN1qlBasedQuery {
 
   @Override
   public Statement getStatement(ParameterAccessor accessor, Object[] runtimeParameters, ReturnedType returnedType) {
-    EvaluationContext evaluationContext = evaluationContextProvider.getEvaluationContext(getQueryMethod().getParameters(), runtimeParameters);
-    String parsedStatement = this.queryParser.doParse(parser, evaluationContext, false);
+    Sort sort = accessor.getSort();
+    if (this.staticStatement != null && sort.isUnsorted() && !queryMethod.isPageQuery() && !queryMethod.isSliceQuery()) {
+      return this.staticStatement;
+    }
+
+    String parsedStatement = this.queryParser.parse(getEvaluationContext(runtimeParameters), false);
     String orderByPart = "";
     String limitByPart = "";
 
-    Sort sort = accessor.getSort();
     if (sort.isSorted()) {
       com.couchbase.client.java.query.dsl.Sort[] cbSorts = N1qlUtils.createSort(sort, getCouchbaseOperations().getConverter());
       orderByPart = " " + new DefaultOrderByPath(null).orderBy(cbSorts).toString();
@@ -106,11 +127,21 @@ public class StringN1qlBasedQuery extends AbstractN1qlBasedQuery {
 
   @Override
   protected Statement getCount(ParameterAccessor accessor, Object[] runtimeParameters) {
-    EvaluationContext evaluationContext = evaluationContextProvider.getEvaluationContext(getQueryMethod().getParameters(), runtimeParameters);
-    String parsedStatement = this.queryParser.doParse(parser, evaluationContext, true);
+    if (this.staticCountStatement != null) {
+      return this.staticCountStatement;
+    }
+    String parsedStatement = this.queryParser.parse(getEvaluationContext(runtimeParameters), true);
     return N1qlQuery.simple(parsedStatement).statement();
   }
 
+  private EvaluationContext getEvaluationContext(Object[] runtimeParameters) {
+    if (!this.queryParser.isParameterDependent()) {
+      //only the couchbase-provided variables are used, the parser has the statement cached
+      return null;
+    }
+    return evaluationContextProvider.getEvaluationContext(getQueryMethod().getParameters(), runtimeParameters);
+  }
+
   @Override
   protected boolean useGeneratedCountQuery() {
     return this.queryParser.useGeneratedCountQuery();
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.repository.query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.core.mapping.BasicCouchbasePersistentEntity;
+import org.springframework.data.repository.query.RepositoryQuery;
+
+/**
+ * Executes a {@link CouchbaseQueryMethod#isTouchMethod() touch method} of a repository, resetting the expiry of the
+ * documents of the given ids in bulk:
+ * <ul>
+ *   <li><code>touchAllById(Iterable&lt;ID&gt; ids, int expiry)</code> touches the documents through
+ *   {@link CouchbaseOperations#touch(java.util.Collection, int)}, and returns whether each document was touched as a
+ *   <code>Map&lt;String, Boolean&gt;</code>, the number of documents touched as a <code>long</code> or an
+ *   <code>int</code>, or nothing;</li>
+ *   <li><code>findAllByIdAndTouch(Iterable&lt;ID&gt; ids, int expiry)</code> reads the entities through
+ *   {@link CouchbaseOperations#findAllByIdAndTouch(java.util.Collection, Class, int)}, and returns them as a
+ *   collection, or by id as a <code>Map</code>.</li>
+ * </ul>
+ * The expiry is given in the Couchbase format (seconds up to 30 days, a Unix UTC time beyond), or as a
+ * {@link Duration}, converted to that format.
+ *
+ * @since 3.2
+ */
+public class TouchByIdQuery implements RepositoryQuery {
+
+  private final CouchbaseQueryMethod method;
+  private final CouchbaseOperations operations;
+
+  public TouchByIdQuery(CouchbaseQueryMethod method, CouchbaseOperations operations) {
+    this.method = method;
+    this.operations = operations;
+  }
+
+  @Override
+  public Object execute(Object[] parameters) {
+    List<String> ids = ids(parameters[0]);
+    int expiry = expiry(parameters[1]);
+    Class<?> returnType = method.getReturnedObjectType();
+
+    if (isRead(method)) {
+      Map<String, ?> entities = operations.findAllByIdAndTouch(ids, method.getEntityInformation().getJavaType(),
+          expiry);
+      return Map.class.isAssignableFrom(returnType) ? entities : new ArrayList<Object>(entities.values());
+    }
+    Map<String, Boolean> touched = operations.touch(ids, expiry);
+    if (Map.class.isAssignableFrom(returnType)) {
+      return touched;
+    }
+    long count = countTouched(touched);
+    if (returnType == int.class || returnType == Integer.class) {
+      return (int) count;
+    }
+    if (returnType == long.class || returnType == Long.class) {
+      return count;
+    }
+    return null;
+  }
+
+  /**
+   * @return true if the method reads the entities of the documents it touches.
+   */
+  static boolean isRead(CouchbaseQueryMethod method) {
+    return method.getName().startsWith("find");
+  }
+
+  static List<String> ids(Object ids) {
+    List<String> keys = new ArrayList<String>();
+    for (Object id : (Iterable<?>) ids) {
+      keys.add(String.valueOf(id));
+    }
+    return keys;
+  }
+
+  static int expiry(Object expiry) {
+    if (expiry instanceof Duration) {
+      return BasicCouchbasePersistentEntity.toExpiry(((Duration) expiry).getSeconds());
+    }
+    if (expiry instanceof Number) {
+      return ((Number) expiry).intValue();
+    }
+    throw new InvalidDataAccessApiUsageException("The expiry must be a number of seconds or a Duration, not "
+        + expiry);
+  }
+
+  static long countTouched(Map<String, Boolean> touched) {
+    long count = 0;
+    for (Boolean documentTouched : touched.values()) {
+      if (documentTouched) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public CouchbaseQueryMethod getQueryMethod() {
+    return method;
+  }
+}
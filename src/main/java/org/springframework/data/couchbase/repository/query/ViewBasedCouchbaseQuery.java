@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import org.springframework.data.couchbase.core.CouchbaseOperations;
 import org.springframework.data.couchbase.core.CouchbaseQueryExecutionException;
+import org.springframework.data.couchbase.monitor.OperationTrace;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.Shape;
 import org.springframework.data.mapping.PropertyReferenceException;
@@ -50,31 +51,45 @@ public class ViewBasedCouchbaseQuery implements RepositoryQuery {
 
   private final CouchbaseQueryMethod method;
   private final CouchbaseOperations operations;
+  private final String designDoc;
+  private final String viewName;
+  private final boolean isGuessedReduce;
+  private final PartTree partTree;
 
   public ViewBasedCouchbaseQuery(CouchbaseQueryMethod method, CouchbaseOperations operations) {
     this.method = method;
     this.operations = operations;
+    this.designDoc = designDocName(method);
+    if (method.hasViewName()) { //only allow derivation on @View explicitly defining a viewName
+      this.viewName = method.getViewAnnotation().viewName();
+      this.isGuessedReduce = false;
+      this.partTree = derivePartTree(method);
+    } else {
+      String methodName = method.getName();
+      boolean isExplicitReduce = method.hasViewAnnotation() && method.getViewAnnotation().reduce();
+      this.viewName = StringUtils.uncapitalize(methodName.replaceFirst("find|count", ""));
+      this.isGuessedReduce = methodName.startsWith("count") || isExplicitReduce;
+      this.partTree = null;
+    }
   }
 
   @Override
   public Object execute(Object[] runtimeParams) {
-    if (method.hasViewName()) { //only allow derivation on @View explicitly defining a viewName
-      return deriveAndExecute(runtimeParams);
-    } else {
-      return guessViewAndExecute();
+    String previousMethod = OperationTrace.enterRepositoryMethod(method.getRepositoryMethodName());
+    try {
+      if (method.hasViewName()) { //only allow derivation on @View explicitly defining a viewName
+        return deriveAndExecute(runtimeParams);
+      } else {
+        return guessViewAndExecute();
+      }
+    } finally {
+      OperationTrace.exitRepositoryMethod(previousMethod);
     }
   }
 
   protected Object guessViewAndExecute() {
-    String designDoc = designDocName(method);
-    String methodName = method.getName();
-    boolean isExplicitReduce = method.hasViewAnnotation() && method.getViewAnnotation().reduce();
-    boolean isReduce = methodName.startsWith("count") || isExplicitReduce;
-    String viewName = StringUtils.uncapitalize(methodName.replaceFirst("find|count", ""));
-
-    ViewQuery simpleQuery = ViewQuery.from(designDoc, viewName)
-        .stale(operations.getDefaultConsistency().viewConsistency());
-    if (isReduce) {
+    ViewQuery simpleQuery = newBaseQuery();
+    if (isGuessedReduce) {
       simpleQuery.reduce();
       return executeReduce(simpleQuery, designDoc, viewName);
     } else {
@@ -83,36 +98,47 @@ public class ViewBasedCouchbaseQuery implements RepositoryQuery {
   }
 
   protected Object deriveAndExecute(Object[] runtimeParams) {
-    String designDoc = designDocName(method);
-    String viewName = method.getViewAnnotation().viewName();
-
     //prepare a ViewQuery to be used as a base for the ViewQueryCreator
-    ViewQuery baseQuery = ViewQuery.from(designDoc, viewName)
-        .stale(operations.getDefaultConsistency().viewConsistency());
+    ViewQuery baseQuery = newBaseQuery();
 
-    try {
-      PartTree tree = new PartTree(method.getName(), method.getEntityInformation().getJavaType());
+    if (partTree == null) {
+      //no attribute in the method name, return the whole set of results from the view
+      return execute(baseQuery);
+    }
 
-      //use a ViewQueryCreator to complete the base query
-      ViewQueryCreator creator = new ViewQueryCreator(tree, new ParametersParameterAccessor(method.getParameters(), runtimeParams),
-          method.getViewAnnotation(), baseQuery, operations.getConverter());
-      ViewQueryCreator.DerivedViewQuery result = creator.createQuery();
+    //use a ViewQueryCreator to complete the base query
+    ViewQueryCreator creator = new ViewQueryCreator(partTree, new ParametersParameterAccessor(method.getParameters(), runtimeParams),
+        method.getViewAnnotation(), baseQuery, operations.getConverter());
+    ViewQueryCreator.DerivedViewQuery result = creator.createQuery();
 
-      if (result.isReduce) {
-        return executeReduce(result.builtQuery, designDoc, viewName);
-      } else {
-        //otherwise just execute the query
-        return execute(result.builtQuery);
-      }
+    if (result.isReduce) {
+      return executeReduce(result.builtQuery, designDoc, viewName);
+    } else {
+      //otherwise just execute the query
+      return execute(result.builtQuery);
+    }
+  }
+
+  /**
+   * Creates a fresh base {@link ViewQuery} on the design document and view resolved at construction. The query is
+   * mutable and completed per invocation, so it cannot be shared between executions.
+   */
+  private ViewQuery newBaseQuery() {
+    return ViewQuery.from(designDoc, viewName)
+        .stale(operations.getDefaultConsistency().viewConsistency());
+  }
+
+  /**
+   * Parses the method name once. For views, not including an attribute name in the method will result in returning
+   * the whole set of results from the view. This is detected by looking for PropertyReferenceExceptions that seem to
+   * complain about a missing property that corresponds to the method name, in which case null is returned.
+   */
+  static PartTree derivePartTree(CouchbaseQueryMethod method) {
+    try {
+      return new PartTree(method.getName(), method.getEntityInformation().getJavaType());
     } catch (PropertyReferenceException e) {
-      /*
-        For views, not including an attribute name in the method will result in returning
-        the whole set of results from the view.
-        This is detected by looking for PropertyReferenceExceptions that seem to complain
-        about a missing property that corresponds to the method name
-     */
       if (e.getPropertyName().equals(method.getName())) {
-        return execute(baseQuery);
+        return null;
       }
       throw e;
     }
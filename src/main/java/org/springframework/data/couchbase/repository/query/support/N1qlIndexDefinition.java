@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.query.support;
+
+import static com.couchbase.client.java.query.dsl.Expression.i;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.couchbase.client.java.query.Index;
+import com.couchbase.client.java.query.Statement;
+import com.couchbase.client.java.query.dsl.Expression;
+import com.couchbase.client.java.query.dsl.path.index.IndexType;
+
+import org.springframework.data.couchbase.core.convert.CouchbaseConverter;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+
+/**
+ * Definition of a GSI secondary index derived from the criteria of a query method, restricted to the documents of
+ * the queried entity type. Keys of equality predicates come first, followed by keys of range predicates, so that
+ * the query service can use as many of them as possible for the index scan. The keys of string
+ * <code>Containing</code> predicates, whose <code>LIKE '%...%'</code> pattern can't narrow the scan, come last and
+ * only filter the entries scanned.
+ * <p/>
+ * The name of the index is derived from the entity and the keys, so that the same definition always gives the
+ * same name and identical indexes required by several methods or repositories are only created once.
+ *
+ * @since 3.2
+ */
+public class N1qlIndexDefinition {
+
+  private static final int MAX_NAME_LENGTH = 100;
+
+  private final String name;
+  private final List<Expression> keys;
+  private final Expression where;
+
+  public N1qlIndexDefinition(Class<?> entityType, List<Expression> keys, Expression where) {
+    this.keys = Collections.unmodifiableList(new ArrayList<Expression>(keys));
+    this.where = where;
+    this.name = createName(entityType, keys);
+  }
+
+  /**
+   * Derives the indexes that the queries generated for the given {@link PartTree} need, one per OR branch of its
+   * criteria. Criteria-less trees don't need any secondary index.
+   *
+   * @param partTree the parsed method name.
+   * @param entityType the queried entity.
+   * @param converter the converter giving the field names and type aliases.
+   * @return the index definitions, possibly empty.
+   */
+  public static List<N1qlIndexDefinition> fromPartTree(PartTree partTree, Class<?> entityType, CouchbaseConverter converter) {
+    Expression where = N1qlUtils.createTypeSelector(i(converter.getTypeKey()), converter, entityType);
+    List<N1qlIndexDefinition> definitions = new ArrayList<N1qlIndexDefinition>();
+    for (PartTree.OrPart orPart : partTree) {
+      Set<String> seen = new LinkedHashSet<String>();
+      List<Expression> equalityKeys = new ArrayList<Expression>();
+      List<Expression> rangeKeys = new ArrayList<Expression>();
+      List<Expression> filterKeys = new ArrayList<Expression>();
+      for (Part part : orPart) {
+        Expression key = N1qlQueryCreatorUtils.createIndexKey(converter, part);
+        if (seen.add(key.toString())) {
+          if (isEquality(converter, part)) {
+            equalityKeys.add(key);
+          } else if (isPattern(converter, part)) {
+            filterKeys.add(key);
+          } else {
+            rangeKeys.add(key);
+          }
+        }
+      }
+      if (equalityKeys.isEmpty() && rangeKeys.isEmpty() && filterKeys.isEmpty()) {
+        continue;
+      }
+      List<Expression> keys = new ArrayList<Expression>(equalityKeys);
+      keys.addAll(rangeKeys);
+      keys.addAll(filterKeys);
+      definitions.add(new N1qlIndexDefinition(entityType, keys, where));
+    }
+    return definitions;
+  }
+
+  private static boolean isEquality(CouchbaseConverter converter, Part part) {
+    switch (part.getType()) {
+      case SIMPLE_PROPERTY:
+      case IN:
+      case TRUE:
+      case FALSE:
+      case IS_NULL:
+        return true;
+      case CONTAINING:
+        //only the elements of an array are looked up by equality, a string is matched against a LIKE pattern
+        return N1qlQueryCreatorUtils.isArrayPredicate(converter, part);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return true for the string <code>Containing</code> predicates, matched against a <code>LIKE '%...%'</code>
+   *   pattern.
+   */
+  private static boolean isPattern(CouchbaseConverter converter, Part part) {
+    return part.getType() == Part.Type.CONTAINING && !N1qlQueryCreatorUtils.isArrayPredicate(converter, part);
+  }
+
+  private static String createName(Class<?> entityType, List<Expression> keys) {
+    StringBuilder name = new StringBuilder("idx_").append(entityType.getSimpleName());
+    for (Expression key : keys) {
+      name.append('_').append(key.toString().replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", ""));
+    }
+    if (name.length() <= MAX_NAME_LENGTH) {
+      return name.toString();
+    }
+    String hash = Integer.toHexString(name.toString().hashCode());
+    return name.substring(0, MAX_NAME_LENGTH - hash.length() - 1) + "_" + hash;
+  }
+
+  /**
+   * @return the name of the index.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the index keys, in order.
+   */
+  public List<Expression> getKeys() {
+    return keys;
+  }
+
+  /**
+   * @return the filter restricting the index to the documents of the entity.
+   */
+  public Expression getWhere() {
+    return where;
+  }
+
+  /**
+   * Creates the <code>CREATE INDEX</code> statement for this definition, deferring the build of the index so that
+   * several indexes can be built by a single <code>BUILD INDEX</code>.
+   *
+   * @param bucketName the bucket to index.
+   * @return the statement.
+   */
+  public Statement createStatement(String bucketName) {
+    return Index.createIndex(name)
+        .on(bucketName, keys.get(0), keys.subList(1, keys.size()).toArray(new Expression[0]))
+        .where(where)
+        .using(IndexType.GSI)
+        .withDefer();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    N1qlIndexDefinition that = (N1qlIndexDefinition) o;
+    return name.equals(that.name) && keys.toString().equals(that.keys.toString())
+        && where.toString().equals(that.where.toString());
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return name + keys + " WHERE " + where;
+  }
+}
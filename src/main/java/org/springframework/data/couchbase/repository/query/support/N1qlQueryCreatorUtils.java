@@ -33,6 +33,7 @@ import org.springframework.data.repository.query.parser.Part;
 
 import com.couchbase.client.java.document.json.JsonArray;
 import com.couchbase.client.java.query.dsl.Expression;
+import com.couchbase.client.java.query.dsl.functions.Collections;
 import com.couchbase.client.java.query.dsl.functions.PatternMatchingFunctions;
 import com.couchbase.client.java.query.dsl.functions.StringFunctions;
 
@@ -42,6 +43,12 @@ import com.couchbase.client.java.query.dsl.functions.StringFunctions;
  * @author Subhashni Balakrishnan
  */
 public class N1qlQueryCreatorUtils {
+    /**
+     * The variable bound to the elements of an array field, in predicates on collections and in the array indexes
+     * derived from them (which must use the same variable to be selected by the query service).
+     */
+    public static final String ARRAY_ELEMENT = "element";
+
     public static Expression prepareExpression(CouchbaseConverter converter, Part part, Iterator<Object> iterator, AtomicInteger position, JsonArray placeHolderValues) {
         PersistentPropertyPath<CouchbasePersistentProperty> path = N1qlUtils.getPathWithAlternativeFieldNames(
                 converter, part.getProperty());
@@ -51,21 +58,84 @@ public class N1qlQueryCreatorUtils {
         String fieldNamePath = N1qlUtils.getDottedPathWithAlternativeFieldNames(path);
 
         //deal with ignore case
-        boolean ignoreCase = false;
-        Class<?> leafType = converter.getWriteClassFor(path.getLeafProperty().getType());
+        boolean isArrayPredicate = isArrayPredicate(part, path.getLeafProperty());
+        boolean ignoreCase = isIgnoreCase(converter, part, path.getLeafProperty(), isArrayPredicate, fieldNamePath);
+
+        if (isArrayPredicate) {
+            return createArrayExpression(part.getType(), fieldNamePath, ignoreCase, parameterValues, position, placeHolderValues);
+        }
+        return createExpression(part.getType(), fieldNamePath, ignoreCase, parameterValues, position, placeHolderValues);
+    }
+
+    /**
+     * Produces the index key that a GSI index must have for the query service to use it on the predicate produced
+     * by {@link #prepareExpression(CouchbaseConverter, Part, Iterator, AtomicInteger, JsonArray)} for the same part:
+     * the field, its <code>LOWER()</code> when ignoring case, or a <code>DISTINCT ARRAY</code> of its elements for
+     * predicates on collections.
+     *
+     * @param converter the converter giving the field names.
+     * @param part the part of the derived query.
+     * @return the index key expression.
+     */
+    public static Expression createIndexKey(CouchbaseConverter converter, Part part) {
+        PersistentPropertyPath<CouchbasePersistentProperty> path = N1qlUtils.getPathWithAlternativeFieldNames(
+                converter, part.getProperty());
+        String fieldNamePath = N1qlUtils.getDottedPathWithAlternativeFieldNames(path);
+        boolean isArrayPredicate = isArrayPredicate(part, path.getLeafProperty());
+        boolean ignoreCase = isIgnoreCase(converter, part, path.getLeafProperty(), isArrayPredicate, fieldNamePath);
+
+        if (isArrayPredicate) {
+            Expression element = ignoreCase ? StringFunctions.lower(x(ARRAY_ELEMENT)) : x(ARRAY_ELEMENT);
+            return x("DISTINCT " + Collections.arrayIn(element, ARRAY_ELEMENT, x(fieldNamePath)).end());
+        }
+        return ignoreCase ? StringFunctions.lower(x(fieldNamePath)) : x(fieldNamePath);
+    }
+
+    /**
+     * @return true if the part is a CONTAINING (or NOT_CONTAINING) predicate on a collection property, which is
+     * matched against the elements of the collection rather than as a string pattern.
+     */
+    static boolean isArrayPredicate(CouchbaseConverter converter, Part part) {
+        return isArrayPredicate(part, N1qlUtils.getPathWithAlternativeFieldNames(converter, part.getProperty())
+                .getLeafProperty());
+    }
+
+    private static boolean isArrayPredicate(Part part, CouchbasePersistentProperty leafProperty) {
+        return (part.getType() == Part.Type.CONTAINING || part.getType() == Part.Type.NOT_CONTAINING)
+                && leafProperty.isCollectionLike();
+    }
+
+    private static boolean isIgnoreCase(CouchbaseConverter converter, Part part, CouchbasePersistentProperty leafProperty,
+                                        boolean isArrayPredicate, String fieldNamePath) {
+        Class<?> leafType = converter.getWriteClassFor(isArrayPredicate ? leafProperty.getActualType() : leafProperty.getType());
         boolean isString = leafType == String.class;
         if (part.shouldIgnoreCase() == Part.IgnoreCaseType.WHEN_POSSIBLE) {
-            ignoreCase = isString;
+            return isString;
         } else if (part.shouldIgnoreCase() == Part.IgnoreCaseType.ALWAYS) {
             if (!isString) {
                 throw new IllegalArgumentException(String.format("Part %s must be of type String but was %s", fieldNamePath, leafType));
             }
-            ignoreCase = true;
+            return true;
         }
-
-        return createExpression(part.getType(), fieldNamePath, ignoreCase, parameterValues, position, placeHolderValues);
+        return false;
     }
 
+    public static Expression createArrayExpression(Part.Type partType, String fieldNamePath, boolean ignoreCase,
+                                                   Iterator<Object> parameterValues, AtomicInteger position,
+                                                   JsonArray placeHolderValues) {
+        Expression element = ignoreCase ? StringFunctions.lower(x(ARRAY_ELEMENT)) : x(ARRAY_ELEMENT);
+        Expression any = Collections.anyIn(ARRAY_ELEMENT, x(fieldNamePath))
+                .satisfies(element.eq(getPlaceHolder(position, ignoreCase)));
+        placeHolderValues.add(getValue(parameterValues));
+        switch (partType) {
+            case CONTAINING:
+                return any;
+            case NOT_CONTAINING:
+                return x("NOT " + any);
+            default:
+                throw new IllegalArgumentException("Unsupported keyword in N1QL query derivation on a collection");
+        }
+    }
 
     public static Expression createExpression(Part.Type partType, String fieldNamePath, boolean ignoreCase,
                                               Iterator<Object> parameterValues, AtomicInteger position, JsonArray placeHolderValues) {
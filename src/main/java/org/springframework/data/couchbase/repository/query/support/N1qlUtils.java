@@ -24,12 +24,14 @@ import static com.couchbase.client.java.query.dsl.functions.StringFunctions.*;
 import static org.springframework.data.couchbase.core.support.TemplateUtils.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.couchbase.core.convert.CouchbaseConverter;
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentEntity;
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentProperty;
+import org.springframework.data.couchbase.core.query.Aggregate;
 import org.springframework.data.couchbase.repository.query.CouchbaseEntityInformation;
 import org.springframework.data.couchbase.repository.query.CountFragment;
 import org.springframework.data.domain.Sort;
@@ -37,6 +39,7 @@ import org.springframework.data.mapping.PersistentPropertyPath;
 import org.springframework.data.mapping.PropertyPath;
 import org.springframework.data.repository.core.EntityMetadata;
 import org.springframework.data.repository.query.ReturnedType;
+import org.springframework.util.StringUtils;
 
 import com.couchbase.client.java.document.json.JsonArray;
 import com.couchbase.client.java.document.json.JsonObject;
@@ -115,6 +118,96 @@ public class N1qlUtils {
     return select(propertiesExp);
   }
 
+  /**
+   * Produce a {@link Statement} that corresponds to the SELECT clause of a grouped aggregation over Spring Data
+   * entities. Each group property is selected under its (leaf) property name, each {@link Aggregate} under its alias,
+   * so that rows can be mapped directly into a projection. No document metadata is selected.
+   *
+   * @param bucketName the bucket that stores the entity documents (will be escaped).
+   * @param groupBy the entity properties that are grouped on.
+   * @param aggregates the aggregations to compute.
+   * @param domainType the entity type.
+   * @param converter couchbase converter
+   * @return the needed SELECT clause of the statement.
+   */
+  public static FromPath createSelectClauseForAggregation(String bucketName, String[] groupBy, Aggregate[] aggregates,
+                                                          Class<?> domainType, CouchbaseConverter converter) {
+    Expression bucket = escapedBucket(bucketName);
+    List<Expression> expList = new ArrayList<Expression>();
+
+    for (String property : groupBy) {
+      PropertyPath propertyPath = PropertyPath.from(property, domainType);
+      expList.add(createFieldExpression(bucket, propertyPath, converter).as(i(propertyPath.getLeafProperty().getSegment())));
+    }
+    for (Aggregate aggregate : aggregates) {
+      Expression field = null;
+      String alias = aggregate.alias();
+      if (StringUtils.hasText(aggregate.property())) {
+        PropertyPath propertyPath = PropertyPath.from(aggregate.property(), domainType);
+        field = createFieldExpression(bucket, propertyPath, converter);
+        alias = StringUtils.hasText(alias) ? alias : propertyPath.getLeafProperty().getSegment();
+      }
+      if (!StringUtils.hasText(alias)) {
+        throw new IllegalArgumentException("An alias is required for aggregate " + aggregate.function()
+            + " without a property");
+      }
+      expList.add(aggregate.function().apply(field).as(i(alias)));
+    }
+
+    Expression[] propertiesExp = new Expression[expList.size()];
+    propertiesExp = expList.toArray(propertiesExp);
+
+    return select(propertiesExp);
+  }
+
+  /**
+   * Produce the expressions for the GROUP BY clause of a grouped aggregation over Spring Data entities.
+   *
+   * @param bucketName the bucket that stores the entity documents (will be escaped).
+   * @param groupBy the entity properties that are grouped on.
+   * @param domainType the entity type.
+   * @param converter couchbase converter
+   * @return the grouping expressions, using alternative field names.
+   */
+  public static Expression[] createGroupByExpressions(String bucketName, String[] groupBy, Class<?> domainType,
+                                                      CouchbaseConverter converter) {
+    Expression bucket = escapedBucket(bucketName);
+    Expression[] groupByExp = new Expression[groupBy.length];
+    for (int i = 0; i < groupBy.length; i++) {
+      groupByExp[i] = createFieldExpression(bucket, PropertyPath.from(groupBy[i], domainType), converter);
+    }
+    return groupByExp;
+  }
+
+  /**
+   * Produce an {@link Expression} that counts the number of distinct groups a grouped aggregation would return,
+   * aliased with {@link CountFragment#COUNT_ALIAS}. Without any grouping expression, this is a plain COUNT(*).
+   *
+   * @param groupByExpressions the expressions of the GROUP BY clause, possibly empty.
+   * @return the COUNT expression.
+   */
+  public static Expression createGroupCountExpression(Expression[] groupByExpressions) {
+    if (groupByExpressions == null || groupByExpressions.length == 0) {
+      return count("*").as(CountFragment.COUNT_ALIAS);
+    }
+    StringBuilder sb = new StringBuilder("[");
+    for (Expression exp : groupByExpressions) {
+      if (sb.length() > 1) {
+        sb.append(", ");
+      }
+      sb.append(exp.toString());
+    }
+    sb.append(']');
+    return count(distinct(x(sb.toString()))).as(CountFragment.COUNT_ALIAS);
+  }
+
+  private static Expression createFieldExpression(Expression bucket, PropertyPath propertyPath,
+                                                  CouchbaseConverter converter) {
+    PersistentPropertyPath<CouchbasePersistentProperty> persistentPath =
+        getPathWithAlternativeFieldNames(converter, propertyPath);
+    return path(bucket, x(getDottedPathWithAlternativeFieldNames(persistentPath)));
+  }
+
   /**
    * Creates the returning clause for N1ql deletes with all attributes of the entity and meta information
    *
@@ -176,8 +269,7 @@ public class N1qlUtils {
                                                       EntityMetadata<?> entityInformation) {
     //add part that filters on type key
     String typeKey = converter.getTypeKey();
-    String typeValue = entityInformation.getJavaType().getName();
-    Expression typeSelector = i(typeKey).eq(s(typeValue));
+    Expression typeSelector = createTypeSelector(i(typeKey), converter, entityInformation.getJavaType());
     if (baseWhereCriteria == null) {
       baseWhereCriteria = typeSelector;
     } else {
@@ -186,6 +278,35 @@ public class N1qlUtils {
     return baseWhereCriteria;
   }
 
+  /**
+   * Produces an {@link Expression} that restricts the given type field to the values identifying a particular type,
+   * which are its alias or class name (see {@link CouchbaseConverter#getTypeAliases(Class)}).
+   *
+   * @param typeField the expression of the field holding type information (eg. the escaped type key).
+   * @param converter the {@link CouchbaseConverter} giving the values matching the type.
+   * @param type the expected type.
+   * @return an {@link Expression} comparing the type field to the type alias(es).
+   */
+  public static Expression createTypeSelector(Expression typeField, CouchbaseConverter converter, Class<?> type) {
+    List<String> typeAliases = getTypeAliases(converter, type);
+    if (typeAliases.size() == 1) {
+      return typeField.eq(s(typeAliases.get(0)));
+    }
+    return typeField.in(JsonArray.from(new ArrayList<Object>(typeAliases)));
+  }
+
+  /**
+   * Returns the values of the type key identifying the given type, defaulting to its class name if the converter
+   * doesn't provide any.
+   */
+  public static List<String> getTypeAliases(CouchbaseConverter converter, Class<?> type) {
+    List<String> typeAliases = converter.getTypeAliases(type);
+    if (typeAliases == null || typeAliases.isEmpty()) {
+      return Collections.singletonList(type.getName());
+    }
+    return typeAliases;
+  }
+
   /**
    * Given a common {@link PropertyPath}, returns the corresponding {@link PersistentPropertyPath}
    * of {@link CouchbasePersistentProperty} which will allow to discover alternative naming for fields.
@@ -18,6 +18,10 @@ package org.springframework.data.couchbase.repository.support;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.core.annotation.AnnotationUtils;
@@ -33,20 +37,24 @@ import org.springframework.data.couchbase.core.query.ViewIndexed;
 import org.springframework.data.couchbase.repository.config.RepositoryOperationsMapping;
 import org.springframework.data.couchbase.repository.query.CouchbaseEntityInformation;
 import org.springframework.data.couchbase.repository.query.CouchbaseQueryMethod;
+import org.springframework.data.couchbase.repository.query.CounterByIdQuery;
+import org.springframework.data.couchbase.repository.query.ExplainableN1qlQuery;
 import org.springframework.data.couchbase.repository.query.PartTreeN1qlBasedQuery;
 import org.springframework.data.couchbase.repository.query.SpatialViewBasedQuery;
 import org.springframework.data.couchbase.repository.query.StringN1qlBasedQuery;
+import org.springframework.data.couchbase.repository.query.TouchByIdQuery;
 import org.springframework.data.couchbase.repository.query.ViewBasedCouchbaseQuery;
+import org.springframework.data.couchbase.repository.query.support.N1qlIndexDefinition;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.projection.ProjectionFactory;
 import org.springframework.data.repository.core.NamedQueries;
 import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
 import org.springframework.data.repository.core.support.RepositoryFactorySupport;
 import org.springframework.data.repository.query.QueryLookupStrategy;
 import org.springframework.data.repository.query.QueryMethodEvaluationContextProvider;
 import org.springframework.data.repository.query.RepositoryQuery;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.util.Assert;
 
 import com.couchbase.client.java.util.features.CouchbaseFeature;
@@ -61,8 +69,6 @@ import com.couchbase.client.java.util.features.CouchbaseFeature;
  */
 public class CouchbaseRepositoryFactory extends RepositoryFactorySupport {
 
-  private static final SpelExpressionParser SPEL_PARSER = new SpelExpressionParser();
-
   /**
    * Holds the reference to the template.
    */
@@ -83,6 +89,17 @@ public class CouchbaseRepositoryFactory extends RepositoryFactorySupport {
    */
   private final ViewPostProcessor viewPostProcessor;
 
+  /**
+   * Holds the indexes derived from the query methods of the repository being created, by name.
+   */
+  private final Map<String, N1qlIndexDefinition> derivedIndexes = new LinkedHashMap<String, N1qlIndexDefinition>();
+
+  /**
+   * Holds the optional verifier of query plans, and the N1QL queries of the repository being created to verify.
+   */
+  private QueryPlanVerifier queryPlanVerifier;
+  private final List<ExplainableN1qlQuery> explainableQueries = new ArrayList<ExplainableN1qlQuery>();
+
   /**
    * Create a new factory.
    *
@@ -100,6 +117,16 @@ public class CouchbaseRepositoryFactory extends RepositoryFactorySupport {
     addRepositoryProxyPostProcessor(viewPostProcessor);
   }
 
+  /**
+   * Set the {@link QueryPlanVerifier} to verify the plans of the N1QL queries of the created repositories with,
+   * null (the default) to skip the verification.
+   *
+   * @param queryPlanVerifier the verifier to use.
+   */
+  public void setQueryPlanVerifier(QueryPlanVerifier queryPlanVerifier) {
+    this.queryPlanVerifier = queryPlanVerifier;
+  }
+
   /**
    * Returns entity information based on the domain class.
    *
@@ -146,6 +173,31 @@ public class CouchbaseRepositoryFactory extends RepositoryFactorySupport {
     return repo;
   }
 
+  /**
+   * Creates the repository, then the indexes derived from its query methods if the {@link IndexManager} is
+   * configured to do so, and verifies the plans of its N1QL queries if a {@link QueryPlanVerifier} is set. The
+   * queries are all resolved while creating the repository, so that the derived indexes can be built together.
+   */
+  @Override
+  public <T> T getRepository(Class<T> repositoryInterface, RepositoryFragments fragments) {
+    T repository = super.getRepository(repositoryInterface, fragments);
+    RepositoryMetadata metadata = getRepositoryMetadata(repositoryInterface);
+    CouchbaseOperations couchbaseOperations = couchbaseOperationsMapping.resolve(repositoryInterface,
+        metadata.getDomainType());
+    try {
+      if (!derivedIndexes.isEmpty()) {
+        indexManager.buildDerivedIndexes(repositoryInterface, derivedIndexes.values(), couchbaseOperations);
+      }
+      if (queryPlanVerifier != null) {
+        queryPlanVerifier.verify(repositoryInterface, explainableQueries, couchbaseOperations.getCouchbaseBucket());
+      }
+    } finally {
+      derivedIndexes.clear();
+      explainableQueries.clear();
+    }
+    return repository;
+  }
+
   private void checkFeatures(RepositoryInformation metadata, boolean isN1qlAvailable,
                              N1qlPrimaryIndexed n1qlPrimaryIndexed, N1qlSecondaryIndexed n1qlSecondaryIndexed) {
     //paging repo will always need N1QL, also check if the repository requires a N1QL index
@@ -225,21 +277,38 @@ public class CouchbaseRepositoryFactory extends RepositoryFactorySupport {
       CouchbaseQueryMethod queryMethod = new CouchbaseQueryMethod(method, metadata, factory, mappingContext);
       String namedQueryName = queryMethod.getNamedQueryName();
 
-      if (queryMethod.hasDimensionalAnnotation()) {
+      if (queryMethod.isCounterMethod()) {
+        return new CounterByIdQuery(queryMethod, couchbaseOperations);
+      } else if (queryMethod.isTouchMethod()) {
+        return new TouchByIdQuery(queryMethod, couchbaseOperations);
+      } else if (queryMethod.hasDimensionalAnnotation()) {
         return new SpatialViewBasedQuery(queryMethod, couchbaseOperations);
       } else if (queryMethod.hasViewAnnotation()) {
         return new ViewBasedCouchbaseQuery(queryMethod, couchbaseOperations);
       } else if (queryMethod.hasN1qlAnnotation()) {
         if (queryMethod.hasInlineN1qlQuery()) {
-          return new StringN1qlBasedQuery(queryMethod.getInlineN1qlQuery(), queryMethod, couchbaseOperations,
-              SPEL_PARSER, evaluationContextProvider);
+          return explainable(new StringN1qlBasedQuery(queryMethod.getInlineN1qlQuery(), queryMethod,
+              couchbaseOperations, evaluationContextProvider));
         } else if (namedQueries.hasQuery(namedQueryName)) {
           String namedQuery = namedQueries.getQuery(namedQueryName);
-          return new StringN1qlBasedQuery(namedQuery, queryMethod, couchbaseOperations,
-              SPEL_PARSER, evaluationContextProvider);
+          return explainable(new StringN1qlBasedQuery(namedQuery, queryMethod, couchbaseOperations,
+              evaluationContextProvider));
         } //otherwise will do default, queryDerivation
       }
-      return new PartTreeN1qlBasedQuery(queryMethod, couchbaseOperations);
+      PartTreeN1qlBasedQuery query = new PartTreeN1qlBasedQuery(queryMethod, couchbaseOperations);
+      if (!indexManager.isIgnoreDerivedIndexes()) {
+        for (N1qlIndexDefinition definition : query.deriveIndexes()) {
+          derivedIndexes.put(definition.getName(), definition);
+        }
+      }
+      return explainable(query);
+    }
+
+    private RepositoryQuery explainable(ExplainableN1qlQuery query) {
+      if (queryPlanVerifier != null) {
+        explainableQueries.add(query);
+      }
+      return query;
     }
   }
 
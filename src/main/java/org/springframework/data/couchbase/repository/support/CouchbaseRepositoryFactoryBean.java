@@ -18,6 +18,8 @@ package org.springframework.data.couchbase.repository.support;
 
 import java.io.Serializable;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.data.couchbase.core.CouchbaseOperations;
 import org.springframework.data.couchbase.repository.config.RepositoryOperationsMapping;
 import org.springframework.data.repository.Repository;
@@ -43,6 +45,11 @@ public class CouchbaseRepositoryFactoryBean<T extends Repository<S, ID>, S, ID e
    */
   private IndexManager indexManager;
   
+  /**
+   * Contains the reference to the bean factory, to look up an optional {@link QueryPlanVerifier}.
+   */
+  private BeanFactory beanFactory;
+
   /**
    * Creates a new {@link CouchbaseRepositoryFactoryBean} for the given repository interface.
    * 
@@ -75,6 +82,12 @@ public class CouchbaseRepositoryFactoryBean<T extends Repository<S, ID>, S, ID e
     this.indexManager = indexManager;
   }
 
+  @Override
+  public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+    super.setBeanFactory(beanFactory);
+    this.beanFactory = beanFactory;
+  }
+
   /**
    * Returns a factory instance.
    *
@@ -82,7 +95,11 @@ public class CouchbaseRepositoryFactoryBean<T extends Repository<S, ID>, S, ID e
    */
   @Override
   protected RepositoryFactorySupport createRepositoryFactory() {
-    return getFactoryInstance(operationsMapping, indexManager);
+    CouchbaseRepositoryFactory factory = getFactoryInstance(operationsMapping, indexManager);
+    if (beanFactory != null) {
+      factory.setQueryPlanVerifier(beanFactory.getBeanProvider(QueryPlanVerifier.class).getIfAvailable());
+    }
+    return factory;
   }
 
   /**
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.support;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.query.Index;
+import com.couchbase.client.java.query.Statement;
+import rx.Observable;
+import rx.subjects.AsyncSubject;
+
+import org.springframework.data.couchbase.core.CouchbaseQueryExecutionException;
+
+/**
+ * Builds the GSI indexes of a bucket that were created with <code>defer_build</code> in batches: the indexes whose
+ * creation completes while others are still planned or being created are built together by a single <code>BUILD
+ * INDEX</code>, issued when no creation is pending anymore. This lets the index service scan the bucket once per
+ * batch, and avoids concurrent builds on the same bucket.
+ * <p>
+ * The creations are {@link #plan() planned} before any of them starts, so that the ones which complete early don't
+ * trigger the build of a partial batch.
+ *
+ * @since 3.2
+ */
+class DeferredIndexBuilder {
+
+  private final Bucket bucket;
+
+  private int pendingCreations;
+  private int unregisteredPlans;
+  private Map<String, AsyncSubject<Void>> batch = new LinkedHashMap<>();
+
+  DeferredIndexBuilder(Bucket bucket) {
+    this.bucket = bucket;
+  }
+
+  /**
+   * Plans the creation of a deferred index, which must then be registered by {@link #createAndBuild(String,
+   * Observable)}: no batch is built until it is.
+   */
+  synchronized void plan() {
+    pendingCreations++;
+    unregisteredPlans++;
+  }
+
+  /**
+   * Registers the creation of a deferred index, planned or not, and builds it with the next batch.
+   *
+   * @param indexName the name of the index.
+   * @param creation the creation of the index, emitting true if it was created, false if it already existed (in
+   *  which case it isn't built).
+   * @return an observable completing when the index is built.
+   */
+  Observable<Void> createAndBuild(String indexName, Observable<Boolean> creation) {
+    AsyncSubject<Void> built = AsyncSubject.create();
+    synchronized (this) {
+      if (unregisteredPlans > 0) {
+        unregisteredPlans--;
+      } else {
+        pendingCreations++;
+      }
+    }
+    creation.lastOrDefault(false).subscribe(created -> {
+      if (created) {
+        synchronized (this) {
+          batch.put(indexName, built);
+        }
+      } else {
+        built.onCompleted();
+      }
+      creationDone();
+    }, error -> {
+      built.onError(error);
+      creationDone();
+    });
+    return built;
+  }
+
+  private void creationDone() {
+    Map<String, AsyncSubject<Void>> toBuild = null;
+    synchronized (this) {
+      if (--pendingCreations == 0 && !batch.isEmpty()) {
+        toBuild = batch;
+        batch = new LinkedHashMap<>();
+      }
+    }
+    if (toBuild != null) {
+      build(toBuild);
+    }
+  }
+
+  private void build(Map<String, AsyncSubject<Void>> toBuild) {
+    List<String> indexNames = new ArrayList<>(toBuild.keySet());
+    Statement buildIndex = Index.buildIndex().on(bucket.name()).indexes(indexNames);
+    bucket.async().query(buildIndex)
+        .flatMap(result -> result.errors())
+        .toList()
+        .subscribe(errors -> {
+          for (AsyncSubject<Void> built : toBuild.values()) {
+            if (errors.isEmpty()) {
+              built.onCompleted();
+            } else {
+              built.onError(new CouchbaseQueryExecutionException(
+                  "Cannot build N1QL indexes " + indexNames + " on " + bucket.name() + ": " + errors));
+            }
+          }
+        }, error -> {
+          for (AsyncSubject<Void> built : toBuild.values()) {
+            built.onError(error);
+          }
+        });
+  }
+}
@@ -16,10 +16,16 @@
 
 package org.springframework.data.couchbase.repository.support;
 
-import static com.couchbase.client.java.query.dsl.Expression.s;
 import static com.couchbase.client.java.query.dsl.Expression.x;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.bucket.BucketManager;
@@ -29,6 +35,7 @@ import com.couchbase.client.java.query.AsyncN1qlQueryResult;
 import com.couchbase.client.java.query.Index;
 import com.couchbase.client.java.query.Statement;
 import com.couchbase.client.java.query.dsl.path.index.IndexType;
+import com.couchbase.client.java.query.dsl.path.index.UsingWithPath;
 import com.couchbase.client.java.view.DefaultView;
 import com.couchbase.client.java.view.DesignDocument;
 import org.slf4j.Logger;
@@ -36,22 +43,29 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
 import rx.Observable;
 import rx.exceptions.CompositeException;
+import rx.functions.Action0;
 import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.couchbase.core.CouchbaseOperations;
 import org.springframework.data.couchbase.core.CouchbaseQueryExecutionException;
+import org.springframework.data.couchbase.core.convert.CouchbaseConverter;
 import org.springframework.data.couchbase.core.query.N1qlPrimaryIndexed;
 import org.springframework.data.couchbase.core.query.N1qlSecondaryIndexed;
 import org.springframework.data.couchbase.core.query.ViewIndexed;
+import org.springframework.data.couchbase.repository.query.support.N1qlIndexDefinition;
+import org.springframework.data.couchbase.repository.query.support.N1qlUtils;
 import org.springframework.data.repository.core.RepositoryInformation;
 
 /**
  * {@link IndexManager} is responsible for automatic index creation according to the provided metadata and
  * various index annotations (if not null).
  * <p/>
- * Index creation will be attempted in parallel using the asynchronous APIs, but the overall process is still blocking.
+ * Index creation will be attempted in parallel using the asynchronous APIs, but the overall process is still blocking,
+ * unless {@link #setBackgroundProvisioning(boolean) background provisioning} is enabled.
  *
  * @author Simon Baslé
  * @author Subhashni Balakrishnan
@@ -60,7 +74,9 @@ public class IndexManager {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexManager.class);
 
-  private static final String TEMPLATE_MAP_FUNCTION = "function (doc, meta) { if(doc.%s == \"%s\") { emit(meta.id, null); } }";
+  private static final String TEMPLATE_MAP_FUNCTION = "function (doc, meta) { if(%s) { emit(meta.id, null); } }";
+
+  private static final String TEMPLATE_TYPE_CONDITION = "doc.%s == \"%s\"";
 
   private static final JsonObject SUCCESS_MARKER = JsonObject.empty();
 
@@ -70,7 +86,19 @@ public class IndexManager {
   private boolean ignoreN1qlPrimary;
   /** True if this index manager should ignore N1QL SECONDARY creation annotations */
   private boolean ignoreN1qlSecondary;
-
+  /** True if this index manager should ignore the indexes derived from query methods */
+  private boolean ignoreDerivedIndexes;
+  /** True if this index manager should provision indexes in the background rather than block */
+  private boolean backgroundProvisioning;
+
+  /** The indexes and views being provisioned in the background, by bucket and name */
+  private final ConcurrentMap<String, Observable<Void>> provisioning = new ConcurrentHashMap<String, Observable<Void>>();
+  /** The last update of each design document, updates of the same design document being serialized */
+  private final Map<String, Observable<Void>> designDocumentUpdates = new ConcurrentHashMap<String, Observable<Void>>();
+  /** The builders of deferred GSI indexes, by bucket */
+  private final ConcurrentMap<String, DeferredIndexBuilder> deferredIndexBuilders = new ConcurrentHashMap<String, DeferredIndexBuilder>();
+  /** The completion of the provisioning of each repository */
+  private final ConcurrentMap<Class<?>, CompletableFuture<Void>> readiness = new ConcurrentHashMap<Class<?>, CompletableFuture<Void>>();
 
   /**
    * Construct an IndexManager that can be used as a Bean in a {@link Profile @Profile} annotated configuration
@@ -82,13 +110,30 @@ public class IndexManager {
    * @param processN1qlSecondary true to process, false to ignore {@link N1qlSecondaryIndexed} annotations.
    */
   public IndexManager(boolean processViews, boolean processN1qlPrimary, boolean processN1qlSecondary) {
+    this(processViews, processN1qlPrimary, processN1qlSecondary, false);
+  }
+
+  /**
+   * Construct an IndexManager that can also create the GSI indexes needed by the derived queries of the repositories
+   * (see {@link N1qlIndexDefinition}). This is meant for development, where the indexes follow the evolution of
+   * query methods, rather than for production where indexes should be reviewed and managed explicitly.
+   *
+   * @param processViews true to process, false to ignore {@link ViewIndexed} annotations.
+   * @param processN1qlPrimary true to process, false to ignore {@link N1qlPrimaryIndexed} annotations.
+   * @param processN1qlSecondary true to process, false to ignore {@link N1qlSecondaryIndexed} annotations.
+   * @param processDerivedIndexes true to create, false to ignore the indexes derived from query methods.
+   */
+  public IndexManager(boolean processViews, boolean processN1qlPrimary, boolean processN1qlSecondary,
+                      boolean processDerivedIndexes) {
     this.ignoreViews = !processViews;
     this.ignoreN1qlPrimary = !processN1qlPrimary;
     this.ignoreN1qlSecondary = !processN1qlSecondary;
+    this.ignoreDerivedIndexes = !processDerivedIndexes;
   }
 
   /**
-   * Construct a default IndexManager that process all three types of automatic index creations.
+   * Construct a default IndexManager that process all three types of automatic index creations, but doesn't derive
+   * indexes from query methods.
    */
   public IndexManager() {
     this(true, true, true);
@@ -115,6 +160,171 @@ public class IndexManager {
     return ignoreN1qlSecondary;
   }
 
+  /**
+   * @return true if this IndexManager ignores the indexes derived from query methods.
+   */
+  public boolean isIgnoreDerivedIndexes() {
+    return ignoreDerivedIndexes;
+  }
+
+  /**
+   * Set whether indexes and views should be provisioned in the background. When true, {@link #buildIndexes} returns
+   * immediately and the creations requested by all repositories are deduplicated and run concurrently: GSI indexes
+   * are created with <code>defer_build</code> and built in batches per bucket, and updates of a same design document
+   * are serialized. Use {@link #getReadiness(Class)} to know when the indexes of a repository are ready.
+   *
+   * @param backgroundProvisioning true to provision in the background, false (the default) to block.
+   */
+  public void setBackgroundProvisioning(boolean backgroundProvisioning) {
+    this.backgroundProvisioning = backgroundProvisioning;
+  }
+
+  /**
+   * @return true if this IndexManager provisions indexes and views in the background.
+   */
+  public boolean isBackgroundProvisioning() {
+    return backgroundProvisioning;
+  }
+
+  /**
+   * Returns the readiness of the indexes and views of a repository, including the indexes derived from its query
+   * methods, which completes when they have all been provisioned, or exceptionally if one couldn't be. When
+   * provisioning blocks, or if the repository doesn't request any index, the readiness is already complete.
+   *
+   * @param repositoryInterface the repository.
+   * @return the readiness of the repository.
+   */
+  public CompletableFuture<Void> getReadiness(Class<?> repositoryInterface) {
+    CompletableFuture<Void> ready = readiness.get(repositoryInterface);
+    if (ready == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    //don't expose the future itself, which callers could complete
+    return ready.thenApply(v -> v);
+  }
+
+  /**
+   * Create the indexes derived from the query methods of a repository, without blocking. Each index is created with
+   * a deferred build, then all the indexes that didn't exist yet are built together by a single
+   * <code>BUILD INDEX</code>, which lets the index service scan the bucket once for all of them. Errors are logged
+   * rather than propagated, as the queries can still be executed (possibly slower) without the indexes.
+   * <p/>
+   * With {@link #setBackgroundProvisioning(boolean) background provisioning}, the indexes are built in the batches of
+   * the other indexes of the bucket, and are part of the {@link #getReadiness(Class) readiness} of the repository.
+   *
+   * @param repositoryInterface the repository the indexes were derived from, for logging.
+   * @param definitions the index definitions.
+   * @param couchbaseOperations the template to use for index creation.
+   */
+  public void buildDerivedIndexes(final Class<?> repositoryInterface, Collection<N1qlIndexDefinition> definitions,
+                                  CouchbaseOperations couchbaseOperations) {
+    if (ignoreDerivedIndexes || definitions.isEmpty()) {
+      return;
+    }
+    final Bucket bucket = couchbaseOperations.getCouchbaseBucket();
+    if (backgroundProvisioning) {
+      provisionDerivedIndexes(repositoryInterface, definitions, bucket);
+      return;
+    }
+    Observable.from(definitions)
+        .flatMap(new Func1<N1qlIndexDefinition, Observable<String>>() {
+          @Override
+          public Observable<String> call(N1qlIndexDefinition definition) {
+            return createDeferredIndex(definition, bucket);
+          }
+        })
+        .toList()
+        .flatMap(new Func1<List<String>, Observable<Void>>() {
+          @Override
+          public Observable<Void> call(List<String> createdIndexes) {
+            if (createdIndexes.isEmpty()) {
+              return Observable.empty();
+            }
+            return buildDeferredIndexes(createdIndexes, bucket);
+          }
+        })
+        .subscribe(new Action1<Void>() {
+          @Override
+          public void call(Void aVoid) {
+          }
+        }, new Action1<Throwable>() {
+          @Override
+          public void call(Throwable throwable) {
+            LOGGER.warn("Cannot create derived N1QL indexes for repository " + repositoryInterface.getSimpleName(),
+                throwable);
+          }
+        });
+  }
+
+  private void provisionDerivedIndexes(Class<?> repositoryInterface, Collection<N1qlIndexDefinition> definitions,
+                                       final Bucket bucket) {
+    List<Observable<Void>> provisions = new ArrayList<Observable<Void>>();
+    for (final N1qlIndexDefinition definition : definitions) {
+      provisions.add(provisionDeferredIndex("derived:" + bucket.name() + "/" + definition.getName(), bucket,
+          definition.getName(), new Func0<Observable<Boolean>>() {
+            @Override
+            public Observable<Boolean> call() {
+              return createDeferredIndex(definition, bucket).map(new Func1<String, Boolean>() {
+                @Override
+                public Boolean call(String indexName) {
+                  return true;
+                }
+              });
+            }
+          }));
+    }
+    awaitProvisions(repositoryInterface, provisions);
+  }
+
+  /**
+   * @return an observable emitting the name of the index if it was created, empty if it already existed.
+   */
+  private Observable<String> createDeferredIndex(final N1qlIndexDefinition definition, final Bucket bucket) {
+    LOGGER.debug("Creating derived N1QL index {}", definition);
+    return bucket.async().query(definition.createStatement(bucket.name()))
+        .flatMap(new Func1<AsyncN1qlQueryResult, Observable<JsonObject>>() {
+          @Override
+          public Observable<JsonObject> call(AsyncN1qlQueryResult asyncN1qlQueryResult) {
+            return asyncN1qlQueryResult.errors();
+          }
+        })
+        .defaultIfEmpty(SUCCESS_MARKER)
+        .flatMap(new Func1<JsonObject, Observable<String>>() {
+          @Override
+          public Observable<String> call(JsonObject json) {
+            if (json == SUCCESS_MARKER) {
+              return Observable.just(definition.getName());
+            } else if (json.getString("msg").contains("Index " + definition.getName() + " already exist") ||
+                (json.containsKey("code") && json.getLong("code") == 4300L)) {
+              LOGGER.debug("Derived index {} already exist, skipping", definition.getName());
+              return Observable.empty(); //ignore, the index already exist
+            } else {
+              return Observable.error(new CouchbaseQueryExecutionException(
+                  "Cannot create N1QL index " + bucket.name() + "." + definition.getName() + ": " + json));
+            }
+          }
+        });
+  }
+
+  private Observable<Void> buildDeferredIndexes(final List<String> indexNames, final Bucket bucket) {
+    Statement buildIndex = Index.buildIndex().on(bucket.name()).indexes(indexNames);
+    LOGGER.debug("Building derived N1QL indexes {}", indexNames);
+    return bucket.async().query(buildIndex)
+        .flatMap(new Func1<AsyncN1qlQueryResult, Observable<JsonObject>>() {
+          @Override
+          public Observable<JsonObject> call(AsyncN1qlQueryResult asyncN1qlQueryResult) {
+            return asyncN1qlQueryResult.errors();
+          }
+        })
+        .flatMap(new Func1<JsonObject, Observable<Void>>() {
+          @Override
+          public Observable<Void> call(JsonObject json) {
+            return Observable.error(new CouchbaseQueryExecutionException(
+                "Cannot build N1QL indexes " + indexNames + " on " + bucket.name() + ": " + json));
+          }
+        });
+  }
+
   /**
    * Build the relevant indexes according to the provided annotation and repository metadata, in parallel but blocking
    * until all relevant indexes are created. Existing indexes will be detected and skipped.
@@ -133,26 +343,8 @@ public class IndexManager {
    */
   public void buildIndexes(RepositoryInformation metadata, ViewIndexed viewIndexed, N1qlPrimaryIndexed n1qlPrimaryIndexed,
                             N1qlSecondaryIndexed n1qlSecondaryIndexed, CouchbaseOperations couchbaseOperations) {
-    Observable<Void> viewAsync = Observable.empty();
-    Observable<Void> n1qlPrimaryAsync = Observable.empty();
-    Observable<Void> n1qlSecondaryAsync = Observable.empty();
-
-    if (viewIndexed != null && !ignoreViews) {
-      viewAsync = buildAllView(viewIndexed, metadata, couchbaseOperations.getCouchbaseBucket(), couchbaseOperations.getConverter().getTypeKey());
-    }
-
-    if (n1qlPrimaryIndexed != null && !ignoreN1qlPrimary) {
-      n1qlPrimaryAsync = buildN1qlPrimary(metadata, couchbaseOperations.getCouchbaseBucket());
-    }
-
-    if (n1qlSecondaryIndexed != null && !ignoreN1qlSecondary) {
-      n1qlSecondaryAsync = buildN1qlSecondary(n1qlSecondaryIndexed, metadata, couchbaseOperations.getCouchbaseBucket(), couchbaseOperations.getConverter().getTypeKey());
-    }
-
-    //trigger the builds, wait for the last one, throw CompositeException if errors
-    Observable.mergeDelayError(viewAsync, n1qlPrimaryAsync, n1qlSecondaryAsync)
-        .toBlocking()
-        .lastOrDefault(null);
+    buildIndexes(metadata, viewIndexed, n1qlPrimaryIndexed, n1qlSecondaryIndexed,
+        couchbaseOperations.getCouchbaseBucket(), couchbaseOperations.getConverter());
   }
 
   /**
@@ -173,33 +365,197 @@ public class IndexManager {
    */
   public void buildIndexes(RepositoryInformation metadata, ViewIndexed viewIndexed, N1qlPrimaryIndexed n1qlPrimaryIndexed,
                            N1qlSecondaryIndexed n1qlSecondaryIndexed, RxJavaCouchbaseOperations rxjava1CouchbaseOperations) {
+    buildIndexes(metadata, viewIndexed, n1qlPrimaryIndexed, n1qlSecondaryIndexed,
+        rxjava1CouchbaseOperations.getCouchbaseBucket(), rxjava1CouchbaseOperations.getConverter());
+  }
+
+  private void buildIndexes(RepositoryInformation metadata, ViewIndexed viewIndexed, N1qlPrimaryIndexed n1qlPrimaryIndexed,
+                            N1qlSecondaryIndexed n1qlSecondaryIndexed, Bucket bucket, CouchbaseConverter converter) {
+    if (backgroundProvisioning) {
+      provisionIndexes(metadata, viewIndexed, n1qlPrimaryIndexed, n1qlSecondaryIndexed, bucket, converter);
+      return;
+    }
+
     Observable<Void> viewAsync = Observable.empty();
     Observable<Void> n1qlPrimaryAsync = Observable.empty();
     Observable<Void> n1qlSecondaryAsync = Observable.empty();
 
     if (viewIndexed != null && !ignoreViews) {
-      viewAsync = buildAllView(viewIndexed, metadata, rxjava1CouchbaseOperations.getCouchbaseBucket(), rxjava1CouchbaseOperations.getConverter().getTypeKey());
+      viewAsync = buildAllView(viewIndexed, metadata, bucket, converter);
     }
 
     if (n1qlPrimaryIndexed != null && !ignoreN1qlPrimary) {
-      n1qlPrimaryAsync = buildN1qlPrimary(metadata, rxjava1CouchbaseOperations.getCouchbaseBucket());
+      n1qlPrimaryAsync = ignoreCreated(buildN1qlPrimary(metadata, bucket, false));
     }
 
     if (n1qlSecondaryIndexed != null && !ignoreN1qlSecondary) {
-      n1qlSecondaryAsync = buildN1qlSecondary(n1qlSecondaryIndexed, metadata, rxjava1CouchbaseOperations.getCouchbaseBucket(), rxjava1CouchbaseOperations.getConverter().getTypeKey());
+      n1qlSecondaryAsync = ignoreCreated(buildN1qlSecondary(n1qlSecondaryIndexed, metadata, bucket, converter, false));
     }
 
     //trigger the builds, wait for the last one, throw CompositeException if errors
     Observable.mergeDelayError(viewAsync, n1qlPrimaryAsync, n1qlSecondaryAsync)
-            .toBlocking()
-            .lastOrDefault(null);
+        .toBlocking()
+        .lastOrDefault(null);
+  }
+
+  /**
+   * Starts the provisioning of the indexes of a repository in the background, reusing the provisioning of the
+   * indexes already requested by other repositories, and records the readiness of the repository.
+   */
+  private void provisionIndexes(final RepositoryInformation metadata, final ViewIndexed viewIndexed,
+                                final N1qlPrimaryIndexed n1qlPrimaryIndexed, final N1qlSecondaryIndexed n1qlSecondaryIndexed,
+                                final Bucket bucket, final CouchbaseConverter converter) {
+    final String bucketName = bucket.name();
+    List<Observable<Void>> provisions = new ArrayList<Observable<Void>>();
+
+    if (viewIndexed != null && !ignoreViews) {
+      final String designDocKey = bucketName + "/" + viewIndexed.designDoc();
+      provisions.add(provision("view:" + designDocKey + "/" + viewIndexed.viewName(), new Func0<Observable<Void>>() {
+        @Override
+        public Observable<Void> call() {
+          return updateDesignDocument(designDocKey, buildAllView(viewIndexed, metadata, bucket, converter));
+        }
+      }));
+    }
+
+    if (n1qlPrimaryIndexed != null && !ignoreN1qlPrimary) {
+      provisions.add(provisionDeferredIndex("primary:" + bucketName, bucket, "#primary",
+          new Func0<Observable<Boolean>>() {
+            @Override
+            public Observable<Boolean> call() {
+              return buildN1qlPrimary(metadata, bucket, true);
+            }
+          }));
+    }
+
+    if (n1qlSecondaryIndexed != null && !ignoreN1qlSecondary) {
+      final String indexName = n1qlSecondaryIndexed.indexName();
+      provisions.add(provisionDeferredIndex("secondary:" + bucketName + "/" + indexName, bucket, indexName,
+          new Func0<Observable<Boolean>>() {
+            @Override
+            public Observable<Boolean> call() {
+              return buildN1qlSecondary(n1qlSecondaryIndexed, metadata, bucket, converter, true);
+            }
+          }));
+    }
+
+    awaitProvisions(metadata.getRepositoryInterface(), provisions);
+  }
+
+  /**
+   * Starts the given provisions, those not started yet by other repositories, and adds their completion to the
+   * readiness of the repository.
+   */
+  private void awaitProvisions(Class<?> repositoryInterface, List<Observable<Void>> provisions) {
+    final String repositoryName = repositoryInterface.getSimpleName();
+    final CompletableFuture<Void> ready = new CompletableFuture<Void>();
+    readiness.merge(repositoryInterface, ready, (previous, added) -> CompletableFuture.allOf(previous, added));
+    Observable.mergeDelayError(Observable.from(provisions))
+        .subscribe(new Action1<Void>() {
+          @Override
+          public void call(Void aVoid) {
+          }
+        }, new Action1<Throwable>() {
+          @Override
+          public void call(Throwable throwable) {
+            LOGGER.warn("Cannot provision indexes for repository " + repositoryName, throwable);
+            ready.completeExceptionally(throwable);
+          }
+        }, new Action0() {
+          @Override
+          public void call() {
+            LOGGER.debug("Indexes provisioned for repository {}", repositoryName);
+            ready.complete(null);
+          }
+        });
+  }
+
+  /**
+   * Returns the provisioning of the given index or view, to run in the background once started, shared by all the
+   * repositories requesting it.
+   */
+  private Observable<Void> provision(String key, final Func0<Observable<Void>> provisionFactory) {
+    return provision(key, null, provisionFactory);
+  }
+
+  /**
+   * Returns the provisioning of a deferred GSI index, which on first request is planned with the builder of the
+   * bucket right away, so that the indexes requested together are built in a single batch.
+   */
+  private Observable<Void> provisionDeferredIndex(String key, Bucket bucket, final String indexName,
+                                                  final Func0<Observable<Boolean>> creationFactory) {
+    final DeferredIndexBuilder builder = getDeferredIndexBuilder(bucket);
+    return provision(key, builder, new Func0<Observable<Void>>() {
+      @Override
+      public Observable<Void> call() {
+        return builder.createAndBuild(indexName, Observable.defer(creationFactory));
+      }
+    });
+  }
+
+  private Observable<Void> provision(String key, DeferredIndexBuilder builder,
+                                     final Func0<Observable<Void>> provisionFactory) {
+    Observable<Void> provision = provisioning.get(key);
+    if (provision != null) {
+      return provision;
+    }
+    provision = Observable.defer(provisionFactory).subscribeOn(Schedulers.io()).cache();
+    Observable<Void> existing = provisioning.putIfAbsent(key, provision);
+    if (existing != null) {
+      return existing;
+    }
+    if (builder != null) {
+      builder.plan();
+    }
+    return provision;
+  }
+
+  /**
+   * Chains the update of a design document after the previous one, as concurrent read-modify-write updates of a
+   * same design document would lose views.
+   */
+  private Observable<Void> updateDesignDocument(String designDocKey, Observable<Void> update) {
+    synchronized (designDocumentUpdates) {
+      Observable<Void> previous = designDocumentUpdates.get(designDocKey);
+      Observable<Void> next = update;
+      if (previous != null) {
+        next = previous.onErrorResumeNext(Observable.<Void>empty()).concatWith(update);
+      }
+      next = next.cache();
+      designDocumentUpdates.put(designDocKey, next);
+      return next;
+    }
   }
 
-  private Observable<Void> buildN1qlPrimary(final RepositoryInformation metadata, Bucket bucket) {
+  private DeferredIndexBuilder getDeferredIndexBuilder(Bucket bucket) {
+    DeferredIndexBuilder builder = deferredIndexBuilders.get(bucket.name());
+    if (builder == null) {
+      builder = new DeferredIndexBuilder(bucket);
+      DeferredIndexBuilder existing = deferredIndexBuilders.putIfAbsent(bucket.name(), builder);
+      if (existing != null) {
+        builder = existing;
+      }
+    }
+    return builder;
+  }
+
+  private static Observable<Void> ignoreCreated(Observable<Boolean> creation) {
+    return creation.ignoreElements().map(new Func1<Boolean, Void>() {
+      @Override
+      public Void call(Boolean created) {
+        return null;
+      }
+    });
+  }
+
+  /**
+   * @return an observable emitting true if the index was created, false if it already existed.
+   */
+  private Observable<Boolean> buildN1qlPrimary(final RepositoryInformation metadata, Bucket bucket, boolean defer) {
     final String bucketName = bucket.name();
-    Statement createPrimary = Index.createPrimaryIndex()
-        .on(bucketName)
-        .using(IndexType.GSI);
+    Statement createPrimary = defer
+        ? Index.createPrimaryIndex().on(bucketName).using(IndexType.GSI).withDefer()
+        : Index.createPrimaryIndex().on(bucketName).using(IndexType.GSI);
 
     LOGGER.debug("Creating N1QL primary index for repository {}", metadata.getRepositoryInterface().getSimpleName());
     return bucket.async().query(createPrimary)
@@ -210,16 +566,16 @@ public class IndexManager {
           }
         })
         .defaultIfEmpty(SUCCESS_MARKER)
-        .flatMap(new Func1<JsonObject, Observable<Void>>() {
+        .flatMap(new Func1<JsonObject, Observable<Boolean>>() {
           @Override
-          public Observable<Void> call(JsonObject json) {
+          public Observable<Boolean> call(JsonObject json) {
             if (json == SUCCESS_MARKER) {
               LOGGER.debug("N1QL primary index created for repository {}", metadata.getRepositoryInterface().getSimpleName());
-              return Observable.empty();
+              return Observable.just(true);
             } else if (json.getString("msg").contains("Index #primary already exist") ||
                 (json.containsKey("code") && json.getLong("code") == 4300L)) {
               LOGGER.debug("Primary index already exist, skipping");
-              return Observable.empty(); //ignore, the index already exist
+              return Observable.just(false); //ignore, the index already exist
             } else {
               return Observable.error(new CouchbaseQueryExecutionException(
                   "Cannot create N1QL primary index on " + bucketName + ": " + json));
@@ -228,18 +584,25 @@ public class IndexManager {
         });
   }
 
-  private Observable<Void> buildN1qlSecondary(N1qlSecondaryIndexed config, final RepositoryInformation metadata, Bucket bucket, String typeKey) {
+  /**
+   * @return an observable emitting true if the index was created, false if it already existed.
+   */
+  private Observable<Boolean> buildN1qlSecondary(N1qlSecondaryIndexed config, final RepositoryInformation metadata, Bucket bucket,
+                                                 CouchbaseConverter converter, boolean defer) {
     final String bucketName = bucket.name();
     final String indexName = config.indexName();
     final String type = metadata.getDomainType().getName();
+    final String typeKey = converter.getTypeKey();
 
-    Statement createIndex = Index.createIndex(indexName)
+    UsingWithPath createIndex = Index.createIndex(indexName)
         .on(bucketName, x(typeKey))
-        .where(x(typeKey).eq(s(type)))
-        .using(IndexType.GSI);
+        .where(N1qlUtils.createTypeSelector(x(typeKey), converter, metadata.getDomainType()));
+    Statement createSecondary = defer
+        ? createIndex.using(IndexType.GSI).withDefer()
+        : createIndex.using(IndexType.GSI);
 
     LOGGER.debug("Creating N1QL secondary index for repository {}", metadata.getRepositoryInterface().getSimpleName());
-    return bucket.async().query(createIndex)
+    return bucket.async().query(createSecondary)
         .flatMap(new Func1<AsyncN1qlQueryResult, Observable<JsonObject>>() {
           @Override
           public Observable<JsonObject> call(AsyncN1qlQueryResult asyncN1qlQueryResult) {
@@ -247,16 +610,16 @@ public class IndexManager {
           }
         })
         .defaultIfEmpty(SUCCESS_MARKER)
-        .flatMap(new Func1<JsonObject, Observable<Void>>() {
+        .flatMap(new Func1<JsonObject, Observable<Boolean>>() {
           @Override
-          public Observable<Void> call(JsonObject json) {
+          public Observable<Boolean> call(JsonObject json) {
             if (json == SUCCESS_MARKER) {
               LOGGER.debug("N1QL secondary index created for repository {}", metadata.getRepositoryInterface().getSimpleName());
-              return Observable.empty();
+              return Observable.just(true);
             } else if (json.getString("msg").contains("Index " + indexName + " already exist") ||
                 (json.containsKey("code") && json.getLong("code") == 4300L)) {
               LOGGER.debug("Secondary index already exist, skipping");
-              return Observable.empty(); //ignore, the index already exist
+              return Observable.just(false); //ignore, the index already exist
             } else {
               return Observable.error(new CouchbaseQueryExecutionException(
                   "Cannot create N1QL secondary index " + bucketName + "." + indexName + " for " + type + ": " + json));
@@ -265,17 +628,38 @@ public class IndexManager {
         });
   }
 
-  private Observable<Void> buildAllView(ViewIndexed config, final RepositoryInformation metadata, Bucket bucket, String typeKey) {
+  /**
+   * @return an observable adding the view to its design document, which is only read on subscription so that the
+   *   serialized updates of a design document each read the result of the previous one.
+   */
+  private Observable<Void> buildAllView(final ViewIndexed config, final RepositoryInformation metadata,
+                                        final Bucket bucket, final CouchbaseConverter converter) {
     if (config == null) return Observable.empty();
+    return Observable.defer(new Func0<Observable<Void>>() {
+      @Override
+      public Observable<Void> call() {
+        return upsertView(config, metadata, bucket, converter);
+      }
+    });
+  }
+
+  private Observable<Void> upsertView(ViewIndexed config, final RepositoryInformation metadata, Bucket bucket,
+                                      CouchbaseConverter converter) {
     LOGGER.debug("Creating View index index for repository {}", metadata.getRepositoryInterface().getSimpleName());
 
     BucketManager manager = bucket.bucketManager();
     String viewName = config.viewName();
     String mapFunction = config.mapFunction();
     if (mapFunction.isEmpty()) {
-      String type = metadata.getDomainType().getName();
+      StringBuilder typeCondition = new StringBuilder();
+      for (String typeAlias : N1qlUtils.getTypeAliases(converter, metadata.getDomainType())) {
+        if (typeCondition.length() > 0) {
+          typeCondition.append(" || ");
+        }
+        typeCondition.append(String.format(TEMPLATE_TYPE_CONDITION, converter.getTypeKey(), typeAlias));
+      }
 
-      mapFunction = String.format(TEMPLATE_MAP_FUNCTION, typeKey, type);
+      mapFunction = String.format(TEMPLATE_MAP_FUNCTION, typeCondition);
     }
     String reduceFunction = config.reduceFunction();
     if ("".equals(reduceFunction)) {
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The execution plans of the N1QL query methods of a repository, as verified by a {@link QueryPlanVerifier}.
+ *
+ * @since 3.2
+ */
+public class QueryPlanReport {
+
+  private final Class<?> repositoryInterface;
+  private final List<QueryPlan> plans;
+
+  public QueryPlanReport(Class<?> repositoryInterface, List<QueryPlan> plans) {
+    this.repositoryInterface = repositoryInterface;
+    this.plans = Collections.unmodifiableList(new ArrayList<QueryPlan>(plans));
+  }
+
+  /**
+   * @return the verified repository.
+   */
+  public Class<?> getRepositoryInterface() {
+    return repositoryInterface;
+  }
+
+  /**
+   * @return the plans of all the N1QL query methods of the repository.
+   */
+  public List<QueryPlan> getPlans() {
+    return plans;
+  }
+
+  /**
+   * @return the plans using a primary scan, or that couldn't be explained.
+   */
+  public List<QueryPlan> getViolations() {
+    List<QueryPlan> violations = new ArrayList<QueryPlan>();
+    for (QueryPlan plan : plans) {
+      if (plan.isPrimaryScan() || plan.getError() != null) {
+        violations.add(plan);
+      }
+    }
+    return violations;
+  }
+
+  /**
+   * @return true if no plan uses a primary scan and all could be explained.
+   */
+  public boolean isValid() {
+    return getViolations().isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder("Query plans of ").append(repositoryInterface.getName()).append(':');
+    for (QueryPlan plan : plans) {
+      report.append("\n  ").append(plan);
+    }
+    return report.toString();
+  }
+
+  /**
+   * The execution plan of a single query method.
+   */
+  public static class QueryPlan {
+
+    private final String methodName;
+    private final String statement;
+    private final List<String> indexes;
+    private final boolean primaryScan;
+    private final boolean covering;
+    private final String error;
+
+    public QueryPlan(String methodName, String statement, List<String> indexes, boolean primaryScan,
+                     boolean covering, String error) {
+      this.methodName = methodName;
+      this.statement = statement;
+      this.indexes = Collections.unmodifiableList(new ArrayList<String>(indexes));
+      this.primaryScan = primaryScan;
+      this.covering = covering;
+      this.error = error;
+    }
+
+    /**
+     * @return the name of the query method.
+     */
+    public String getMethodName() {
+      return methodName;
+    }
+
+    /**
+     * @return the explained statement.
+     */
+    public String getStatement() {
+      return statement;
+    }
+
+    /**
+     * @return the names of the indexes chosen by the query service, primary index included.
+     */
+    public List<String> getIndexes() {
+      return indexes;
+    }
+
+    /**
+     * @return true if the plan scans a primary index, ie. all the documents of the bucket.
+     */
+    public boolean isPrimaryScan() {
+      return primaryScan;
+    }
+
+    /**
+     * @return true if the indexes cover the query, which then doesn't need to fetch the documents.
+     */
+    public boolean isCovering() {
+      return covering;
+    }
+
+    /**
+     * @return the error returned when explaining the statement, null if it could be explained.
+     */
+    public String getError() {
+      return error;
+    }
+
+    @Override
+    public String toString() {
+      if (error != null) {
+        return methodName + ": cannot be explained (" + error + ")";
+      }
+      return methodName + ": indexes=" + indexes + ", primaryScan=" + primaryScan + ", covering=" + covering;
+    }
+  }
+}
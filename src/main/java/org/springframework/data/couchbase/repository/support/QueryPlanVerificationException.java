@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.support;
+
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+
+/**
+ * Thrown by a {@link QueryPlanVerifier} in {@link QueryPlanVerifier.Mode#FAIL FAIL} mode when query methods of a
+ * repository would scan a primary index or cannot be explained.
+ *
+ * @since 3.2
+ */
+public class QueryPlanVerificationException extends InvalidDataAccessResourceUsageException {
+
+  private static final long serialVersionUID = 1132316163304036141L;
+
+  private final QueryPlanReport report;
+
+  public QueryPlanVerificationException(QueryPlanReport report) {
+    super(report.toString());
+    this.report = report;
+  }
+
+  /**
+   * @return the report of the failed verification.
+   */
+  public QueryPlanReport getReport() {
+    return report;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.N1qlQueryResult;
+import com.couchbase.client.java.query.N1qlQueryRow;
+import com.couchbase.client.java.query.ParameterizedN1qlQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.data.couchbase.repository.query.ExplainableN1qlQuery;
+
+/**
+ * Verifies the execution plans of the N1QL query methods of repositories when they are created, by running an
+ * <code>EXPLAIN</code> of their statements against the bucket. Plans scanning a primary index are reported, as well as
+ * the indexes chosen and whether they cover the query. Depending on its {@link Mode}, the verifier only logs the
+ * problems or fails the creation of the repository.
+ * <p/>
+ * The verification is opt-in: declare a {@link QueryPlanVerifier} bean for the repository factories to use it. The
+ * reports of all verified repositories are kept, so that tests can assert on them.
+ *
+ * @since 3.2
+ */
+public class QueryPlanVerifier {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanVerifier.class);
+
+  /**
+   * What to do when a query method uses a primary scan or cannot be explained.
+   */
+  public enum Mode {
+    /** Log a warning with the report. */
+    WARN,
+    /** Throw a {@link QueryPlanVerificationException}, failing the creation of the repository. */
+    FAIL
+  }
+
+  private final Mode mode;
+  private final List<QueryPlanReport> reports = new CopyOnWriteArrayList<QueryPlanReport>();
+
+  public QueryPlanVerifier(Mode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * @return the mode of this verifier.
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @return the reports of all the repositories verified so far.
+   */
+  public List<QueryPlanReport> getReports() {
+    return reports;
+  }
+
+  /**
+   * Explains the queries of a repository and acts on the result according to the {@link Mode}.
+   *
+   * @param repositoryInterface the repository the queries belong to.
+   * @param queries the N1QL query methods of the repository.
+   * @param bucket the bucket the queries run against.
+   * @return the report.
+   * @throws QueryPlanVerificationException in {@link Mode#FAIL} mode, if a query uses a primary scan or cannot be
+   *  explained.
+   */
+  public QueryPlanReport verify(Class<?> repositoryInterface, Collection<? extends ExplainableN1qlQuery> queries,
+                                Bucket bucket) {
+    List<QueryPlanReport.QueryPlan> plans = new ArrayList<QueryPlanReport.QueryPlan>(queries.size());
+    for (ExplainableN1qlQuery query : queries) {
+      plans.add(explain(query, bucket));
+    }
+    QueryPlanReport report = new QueryPlanReport(repositoryInterface, plans);
+    reports.add(report);
+
+    if (report.isValid()) {
+      LOGGER.debug("{}", report);
+    } else if (mode == Mode.FAIL) {
+      throw new QueryPlanVerificationException(report);
+    } else {
+      LOGGER.warn("Query methods of {} scan a primary index or cannot be explained: {}",
+          repositoryInterface.getSimpleName(), report.getViolations());
+    }
+    return report;
+  }
+
+  private QueryPlanReport.QueryPlan explain(ExplainableN1qlQuery query, Bucket bucket) {
+    String methodName = query.getQueryMethod().getName();
+    String statement = null;
+    try {
+      N1qlQuery sample = query.createSampleQuery();
+      statement = sample.statement().toString();
+      N1qlQueryResult result = bucket.query(createExplainQuery(sample));
+      if (!result.finalSuccess() || result.allRows().isEmpty()) {
+        return new QueryPlanReport.QueryPlan(methodName, statement, new ArrayList<String>(), false, false,
+            String.valueOf(result.errors()));
+      }
+      N1qlQueryRow row = result.allRows().get(0);
+      return analyze(methodName, statement, row.value().getObject("plan"));
+    } catch (RuntimeException e) {
+      return new QueryPlanReport.QueryPlan(methodName, statement, new ArrayList<String>(), false, false,
+          e.toString());
+    }
+  }
+
+  private static N1qlQuery createExplainQuery(N1qlQuery query) {
+    String explain = "EXPLAIN " + query.statement();
+    if (query instanceof ParameterizedN1qlQuery) {
+      ParameterizedN1qlQuery parameterized = (ParameterizedN1qlQuery) query;
+      if (parameterized.isPositional()) {
+        return N1qlQuery.parameterized(explain, (JsonArray) parameterized.statementParameters());
+      }
+      return N1qlQuery.parameterized(explain, (JsonObject) parameterized.statementParameters());
+    }
+    return N1qlQuery.simple(explain);
+  }
+
+  /**
+   * Analyzes the plan returned by <code>EXPLAIN</code>: collects the indexes of the scan operators, and considers the
+   * plan covering if it has index scans covering the query and no <code>Fetch</code> operator.
+   *
+   * @param methodName the name of the query method.
+   * @param statement the explained statement.
+   * @param plan the <code>plan</code> object of the <code>EXPLAIN</code> result.
+   * @return the analyzed plan.
+   */
+  static QueryPlanReport.QueryPlan analyze(String methodName, String statement, JsonObject plan) {
+    List<String> indexes = new ArrayList<String>();
+    List<String> operators = new ArrayList<String>();
+    boolean[] covers = new boolean[1];
+    collect(plan, indexes, operators, covers);
+
+    boolean primaryScan = false;
+    boolean fetch = false;
+    for (String operator : operators) {
+      primaryScan |= operator.startsWith("PrimaryScan");
+      fetch |= operator.equals("Fetch");
+    }
+    return new QueryPlanReport.QueryPlan(methodName, statement, indexes, primaryScan, covers[0] && !fetch, null);
+  }
+
+  private static void collect(Object node, List<String> indexes, List<String> operators, boolean[] covers) {
+    if (node instanceof JsonObject) {
+      JsonObject json = (JsonObject) node;
+      Object operator = json.get("#operator");
+      if (operator instanceof String) {
+        operators.add((String) operator);
+        Object index = json.get("index");
+        if (index instanceof String && ((String) operator).contains("Scan") && !indexes.contains(index)) {
+          indexes.add((String) index);
+        }
+        if (json.containsKey("covers")) {
+          covers[0] = true;
+        }
+      }
+      for (String name : json.getNames()) {
+        collect(json.get(name), indexes, operators, covers);
+      }
+    } else if (node instanceof JsonArray) {
+      for (Object element : (JsonArray) node) {
+        collect(element, indexes, operators, covers);
+      }
+    }
+  }
+}
@@ -17,6 +17,8 @@ package org.springframework.data.couchbase.repository.support;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.core.annotation.AnnotationUtils;
@@ -32,9 +34,11 @@ import org.springframework.data.couchbase.core.query.ViewIndexed;
 import org.springframework.data.couchbase.repository.config.ReactiveRepositoryOperationsMapping;
 import org.springframework.data.couchbase.repository.query.CouchbaseEntityInformation;
 import org.springframework.data.couchbase.repository.query.CouchbaseQueryMethod;
+import org.springframework.data.couchbase.repository.query.ExplainableN1qlQuery;
 import org.springframework.data.couchbase.repository.query.ReactivePartTreeN1qlBasedQuery;
 import org.springframework.data.couchbase.repository.query.ReactiveSpatialViewBasedQuery;
 import org.springframework.data.couchbase.repository.query.ReactiveStringN1qlBasedQuery;
+import org.springframework.data.couchbase.repository.query.ReactiveTouchByIdQuery;
 import org.springframework.data.couchbase.repository.query.ReactiveViewBasedCouchbaseQuery;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.projection.ProjectionFactory;
@@ -42,10 +46,10 @@ import org.springframework.data.repository.core.NamedQueries;
 import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
 import org.springframework.data.repository.core.support.ReactiveRepositoryFactorySupport;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
 import org.springframework.data.repository.query.QueryLookupStrategy;
 import org.springframework.data.repository.query.QueryMethodEvaluationContextProvider;
 import org.springframework.data.repository.query.RepositoryQuery;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.util.Assert;
 
 import com.couchbase.client.java.util.features.CouchbaseFeature;
@@ -56,7 +60,6 @@ import com.couchbase.client.java.util.features.CouchbaseFeature;
  * @since 3.0
  */
 public class ReactiveCouchbaseRepositoryFactory extends ReactiveRepositoryFactorySupport {
-    private static final SpelExpressionParser SPEL_PARSER = new SpelExpressionParser();
 
     /**
      * Holds the reference to the template.
@@ -78,6 +81,12 @@ public class ReactiveCouchbaseRepositoryFactory extends ReactiveRepositoryFactor
      */
     private final ViewPostProcessor viewPostProcessor;
 
+    /**
+     * Holds the optional verifier of query plans, and the N1QL queries of the repository being created to verify.
+     */
+    private QueryPlanVerifier queryPlanVerifier;
+    private final List<ExplainableN1qlQuery> explainableQueries = new ArrayList<ExplainableN1qlQuery>();
+
     /**
      * Create a new factory.
      *
@@ -96,6 +105,16 @@ public class ReactiveCouchbaseRepositoryFactory extends ReactiveRepositoryFactor
         addRepositoryProxyPostProcessor(viewPostProcessor);
     }
 
+    /**
+     * Set the {@link QueryPlanVerifier} to verify the plans of the N1QL queries of the created repositories with,
+     * null (the default) to skip the verification.
+     *
+     * @param queryPlanVerifier the verifier to use.
+     */
+    public void setQueryPlanVerifier(QueryPlanVerifier queryPlanVerifier) {
+        this.queryPlanVerifier = queryPlanVerifier;
+    }
+
     /**
      * Returns entity information based on the domain class.
      *
@@ -143,6 +162,24 @@ public class ReactiveCouchbaseRepositoryFactory extends ReactiveRepositoryFactor
         return repo;
     }
 
+    /**
+     * Creates the repository, then verifies the plans of its N1QL queries if a {@link QueryPlanVerifier} is set.
+     */
+    @Override
+    public <T> T getRepository(Class<T> repositoryInterface, RepositoryFragments fragments) {
+        T repository = super.getRepository(repositoryInterface, fragments);
+        try {
+            if (queryPlanVerifier != null) {
+                RxJavaCouchbaseOperations couchbaseOperations = couchbaseOperationsMapping.resolve(repositoryInterface,
+                        getRepositoryMetadata(repositoryInterface).getDomainType());
+                queryPlanVerifier.verify(repositoryInterface, explainableQueries, couchbaseOperations.getCouchbaseBucket());
+            }
+        } finally {
+            explainableQueries.clear();
+        }
+        return repository;
+    }
+
     private void checkFeatures(RepositoryInformation metadata, boolean isN1qlAvailable,
                                N1qlPrimaryIndexed n1qlPrimaryIndexed, N1qlSecondaryIndexed n1qlSecondaryIndexed) {
         //paging repo will always need N1QL, also check if the repository requires a N1QL index
@@ -222,21 +259,30 @@ public class ReactiveCouchbaseRepositoryFactory extends ReactiveRepositoryFactor
             CouchbaseQueryMethod queryMethod = new CouchbaseQueryMethod(method, metadata, factory, mappingContext);
             String namedQueryName = queryMethod.getNamedQueryName();
 
-            if (queryMethod.hasDimensionalAnnotation()) {
+            if (queryMethod.isTouchMethod()) {
+                return new ReactiveTouchByIdQuery(queryMethod, couchbaseOperations);
+            } else if (queryMethod.hasDimensionalAnnotation()) {
                 return new ReactiveSpatialViewBasedQuery(queryMethod, couchbaseOperations);
             } else if (queryMethod.hasViewAnnotation()) {
                 return new ReactiveViewBasedCouchbaseQuery(queryMethod, couchbaseOperations);
             } else if (queryMethod.hasN1qlAnnotation()) {
                 if (queryMethod.hasInlineN1qlQuery()) {
-                    return new ReactiveStringN1qlBasedQuery(queryMethod.getInlineN1qlQuery(), queryMethod, couchbaseOperations,
-                            SPEL_PARSER, evaluationContextProvider);
+                    return explainable(new ReactiveStringN1qlBasedQuery(queryMethod.getInlineN1qlQuery(), queryMethod,
+                            couchbaseOperations, evaluationContextProvider));
                 } else if (namedQueries.hasQuery(namedQueryName)) {
                     String namedQuery = namedQueries.getQuery(namedQueryName);
-                    return new ReactiveStringN1qlBasedQuery(namedQuery, queryMethod, couchbaseOperations,
-                            SPEL_PARSER, evaluationContextProvider);
+                    return explainable(new ReactiveStringN1qlBasedQuery(namedQuery, queryMethod, couchbaseOperations,
+                            evaluationContextProvider));
                 } //otherwise will do default, queryDerivation
             }
-            return new ReactivePartTreeN1qlBasedQuery(queryMethod, couchbaseOperations);
+            return explainable(new ReactivePartTreeN1qlBasedQuery(queryMethod, couchbaseOperations));
+        }
+
+        private RepositoryQuery explainable(ExplainableN1qlQuery query) {
+            if (queryPlanVerifier != null) {
+                explainableQueries.add(query);
+            }
+            return query;
         }
     }
 
@@ -17,6 +17,8 @@ package org.springframework.data.couchbase.repository.support;
 
 import java.io.Serializable;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
 import org.springframework.data.couchbase.repository.config.ReactiveRepositoryOperationsMapping;
 import org.springframework.data.repository.Repository;
@@ -41,6 +43,11 @@ public class ReactiveCouchbaseRepositoryFactoryBean<T extends Repository<S, ID>,
      */
     private IndexManager indexManager;
 
+    /**
+     * Contains the reference to the bean factory, to look up an optional {@link QueryPlanVerifier}.
+     */
+    private BeanFactory beanFactory;
+
     /**
      * Creates a new {@link CouchbaseRepositoryFactoryBean} for the given repository interface.
      *
@@ -73,6 +80,12 @@ public class ReactiveCouchbaseRepositoryFactoryBean<T extends Repository<S, ID>,
         this.indexManager = indexManager;
     }
 
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        super.setBeanFactory(beanFactory);
+        this.beanFactory = beanFactory;
+    }
+
     /**
      * Returns a factory instance.
      *
@@ -80,7 +93,11 @@ public class ReactiveCouchbaseRepositoryFactoryBean<T extends Repository<S, ID>,
      */
     @Override
     protected RepositoryFactorySupport createRepositoryFactory() {
-        return getFactoryInstance(couchbaseOperationsMapping, indexManager);
+        ReactiveCouchbaseRepositoryFactory factory = getFactoryInstance(couchbaseOperationsMapping, indexManager);
+        if (beanFactory != null) {
+            factory.setQueryPlanVerifier(beanFactory.getBeanProvider(QueryPlanVerifier.class).getIfAvailable());
+        }
+        return factory;
     }
 
     /**
@@ -24,6 +24,7 @@ import com.couchbase.client.java.view.AsyncViewResult;
 import com.couchbase.client.java.view.ViewQuery;
 
 import org.reactivestreams.Publisher;
+import org.springframework.data.couchbase.core.IdentityMap;
 import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
 import org.springframework.data.couchbase.core.query.View;
 import org.springframework.data.couchbase.repository.ReactiveCouchbaseRepository;
@@ -95,10 +96,23 @@ public class SimpleReactiveCouchbaseRepository<T, ID extends Serializable> imple
         return ReactiveWrapperConverters.toWrapper(observable, Flux.class);
     }
 
+    /**
+     * Forgets the document written in the {@link IdentityMap} of the subscriber context, if any, once written.
+     */
+    private <R> Mono<R> invalidating(String id, Mono<R> write) {
+        return Mono.subscriberContext().flatMap(context -> {
+            IdentityMap identityMap = context.getOrDefault(IdentityMap.CONTEXT_KEY, null);
+            if (identityMap == null || id == null) {
+                return write;
+            }
+            return write.doOnSuccess(written -> identityMap.invalidate(id));
+        });
+    }
+
     @SuppressWarnings("unchecked")
     public <S extends T> Mono<S> save(S entity) {
         Assert.notNull(entity, "Entity must not be null!");
-        return mapMono(operations.save(entity).toSingle());
+        return invalidating(entityInformation.getId(entity), mapMono(operations.save(entity).toSingle()));
     }
 
     @SuppressWarnings("unchecked")
@@ -120,14 +134,28 @@ public class SimpleReactiveCouchbaseRepository<T, ID extends Serializable> imple
     @Override
     public Mono<T> findById(ID id) {
         Assert.notNull(id, "The given id must not be null!");
-        return mapMono(operations.findById(id.toString(), entityInformation.getJavaType()).toSingle())
-                .onErrorResume(throwable -> {
-                    //reactive streams adapter doesn't work with null
-                    if(throwable instanceof NullPointerException) {
-                        return Mono.empty();
-                    }
-                    return Mono.just(throwable);
-                });
+        final String key = id.toString();
+        return Mono.subscriberContext().flatMap(context -> {
+            //the entities touched on read are always read, to be touched
+            IdentityMap identityMap = operations.getConverter().getMappingContext()
+                    .getRequiredPersistentEntity(entityInformation.getJavaType()).isTouchOnRead()
+                    ? null : context.getOrDefault(IdentityMap.CONTEXT_KEY, null);
+            T materialized = identityMap == null ? null : identityMap.get(entityInformation.getJavaType(), key);
+            if (materialized != null) {
+                return Mono.just(materialized);
+            }
+            Mono<T> found = mapMono(operations.findById(key, entityInformation.getJavaType()).toSingle());
+            if (identityMap != null) {
+                found = found.doOnNext(entity -> identityMap.put(key, entity));
+            }
+            return found.onErrorResume(throwable -> {
+                //reactive streams adapter doesn't work with null
+                if(throwable instanceof NullPointerException) {
+                    return Mono.empty();
+                }
+                return Mono.error(throwable);
+            });
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -190,7 +218,8 @@ public class SimpleReactiveCouchbaseRepository<T, ID extends Serializable> imple
     @Override
     public Mono<Void> deleteById(ID id) {
         Assert.notNull(id, "The given id must not be null!");
-        return mapMono(operations.remove(id.toString()).map(res -> Observable.<Void>empty()).toSingle());
+        return invalidating(id.toString(),
+                mapMono(operations.remove(id.toString()).map(res -> Observable.<Void>empty()).toSingle()));
     }
 
     @Override
@@ -204,7 +233,8 @@ public class SimpleReactiveCouchbaseRepository<T, ID extends Serializable> imple
     @Override
     public Mono<Void>  delete(T entity) {
         Assert.notNull(entity, "The given id must not be null!");
-        return mapMono(operations.remove(entity).map(res -> Observable.<Void>empty()).toSingle());
+        return invalidating(entityInformation.getId(entity),
+                mapMono(operations.remove(entity).map(res -> Observable.<Void>empty()).toSingle()));
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.kv.subdoc.multi.Mutation;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.cluster.ClusterInfo;
+import com.couchbase.client.java.repository.annotation.Field;
+import com.couchbase.client.java.subdoc.DocumentFragment;
+import com.couchbase.client.java.subdoc.MutateInBuilder;
+import com.couchbase.client.java.subdoc.SubdocOptionsBuilder;
+import com.couchbase.client.java.subdoc.SubdocOperationResult;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class CouchbaseTemplateCounterTest {
+
+  @Test
+  public void testCounterDocumentIsCreatedThenIncremented() {
+    InMemoryBucket inMemoryBucket = new InMemoryBucket("test");
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+
+    assertEquals(10, template.counter("visits", 5, 10));
+    assertEquals(15, template.counter("visits", 5, 10));
+    assertEquals(12, template.counter("visits", -3, 10));
+  }
+
+  @Test
+  public void testCounterInvalidatesIdentityMap() {
+    InMemoryBucket inMemoryBucket = new InMemoryBucket("test");
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    template.setIdentityMapScope(IdentityMap.threadScope());
+    try (IdentityMap identityMap = IdentityMap.bindToThread()) {
+      identityMap.put("visits", new Page());
+      template.counter("visits", 1, 0);
+      assertNull(identityMap.get(Page.class, "visits"));
+    }
+  }
+
+  @Test
+  public void testFieldCounterUsesSubDocumentCounterOnMappedField() {
+    Bucket bucket = mock(Bucket.class);
+    MutateInBuilder builder = mock(MutateInBuilder.class);
+    when(bucket.mutateIn("page1")).thenReturn(builder);
+    when(builder.counter(anyString(), anyLong(), any(SubdocOptionsBuilder.class))).thenReturn(builder);
+    when(builder.execute()).thenReturn(new DocumentFragment<Mutation>("page1", 1, null, Collections.singletonList(
+        SubdocOperationResult.createResult("stats.v", Mutation.COUNTER, ResponseStatus.SUCCESS, 42L))));
+    CouchbaseTemplate template = new CouchbaseTemplate(mock(ClusterInfo.class), bucket);
+
+    assertEquals(42, template.counter("page1", Page.class, "stats.views", 2));
+    ArgumentCaptor<SubdocOptionsBuilder> options = ArgumentCaptor.forClass(SubdocOptionsBuilder.class);
+    verify(builder).counter(eq("stats.v"), eq(2L), options.capture());
+    assertTrue(options.getValue().createPath());
+  }
+
+  @Test
+  public void testCountersRejectDocumentsWithPendingWrite() {
+    InMemoryBucket inMemoryBucket = new InMemoryBucket("test");
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    try (UnitOfWork unitOfWork = template.beginUnitOfWork()) {
+      Page page = new Page();
+      page.id = "page1";
+      template.save(page);
+      try {
+        template.counter("page1", Page.class, "stats.views", 1);
+        fail("expected the field counter to be rejected");
+      } catch (InvalidDataAccessApiUsageException expected) {
+      }
+      try {
+        template.counter("page1", 1, 0);
+        fail("expected the counter to be rejected");
+      } catch (InvalidDataAccessApiUsageException expected) {
+      }
+      assertEquals(1, template.counter("visits", 1, 1));
+      unitOfWork.flush();
+      template.remove("page1");
+      unitOfWork.flush();
+      assertEquals(1, template.counter("page1", 1, 1));
+    }
+  }
+
+  @Test(expected = InvalidDataAccessApiUsageException.class)
+  public void testFieldCounterRejectsUnknownProperty() {
+    CouchbaseTemplate template = new CouchbaseTemplate(mock(ClusterInfo.class), mock(Bucket.class));
+    template.counter("page1", Page.class, "likes", 1);
+  }
+
+  static class Page {
+
+    @Id
+    String id;
+    Stats stats;
+  }
+
+  static class Stats {
+
+    @Field("v")
+    long views;
+  }
+}
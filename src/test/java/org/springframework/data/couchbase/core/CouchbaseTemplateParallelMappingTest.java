@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import com.couchbase.client.java.query.N1qlQuery;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.couchbase.core.query.N1qlJoin;
+import org.springframework.data.couchbase.core.support.ParallelRowMapper;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class CouchbaseTemplateParallelMappingTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+  private static final Set<Thread> MAPPING_THREADS = ConcurrentHashMap.newKeySet();
+
+  private CouchbaseTemplate template;
+
+  @AfterClass
+  public static void shutdown() {
+    POOL.shutdown();
+  }
+
+  @Before
+  public void setUp() {
+    InMemoryBucket inMemoryBucket = new InMemoryBucket("test");
+    template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    for (int i = 0; i < 200; i++) {
+      template.save(new Plain("plain" + i, "owner" + i));
+      template.save(new Joined("joined" + i, "owner" + i));
+    }
+    template.setParallelRowMapper(new ParallelRowMapper(POOL, 10));
+    MAPPING_THREADS.clear();
+  }
+
+  private <T> List<T> findAll(Class<T> entityClass) {
+    return template.findByN1QL(N1qlQuery.simple("SELECT META(t).id AS _ID, META(t).cas AS _CAS, t.* FROM `test` t"
+        + " WHERE t._class = \"" + entityClass.getName() + "\""), entityClass);
+  }
+
+  @Test
+  public void testRowsAreMappedInPool() {
+    assertEquals(200, findAll(Plain.class).size());
+    assertTrue(MAPPING_THREADS.stream().anyMatch(thread -> thread != Thread.currentThread()));
+  }
+
+  @Test
+  public void testEntitiesWithEagerJoinsAreMappedOnCallingThread() {
+    assertEquals(200, findAll(Joined.class).size());
+    assertEquals(1, MAPPING_THREADS.size());
+    assertTrue(MAPPING_THREADS.contains(Thread.currentThread()));
+  }
+
+  static class Plain {
+
+    @Id
+    String id;
+    String owner;
+
+    @PersistenceConstructor
+    Plain(String id, String owner) {
+      this.id = id;
+      this.owner = owner;
+      MAPPING_THREADS.add(Thread.currentThread());
+    }
+  }
+
+  static class Joined {
+
+    @Id
+    String id;
+    String owner;
+
+    @N1qlJoin(on = "lks.owner=rks.owner")
+    List<Plain> plains;
+
+    @PersistenceConstructor
+    Joined(String id, String owner) {
+      this.id = id;
+      this.owner = owner;
+      MAPPING_THREADS.add(Thread.currentThread());
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.java.document.RawJsonDocument;
+import org.junit.Before;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class CouchbaseTemplateTouchTest {
+
+  private InMemoryBucket inMemoryBucket;
+  private CouchbaseTemplate template;
+
+  @Before
+  public void setUp() {
+    inMemoryBucket = new InMemoryBucket("test");
+    template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    template.setBulkParallelism(2);
+    for (int i = 1; i <= 5; i++) {
+      template.save(new Session("s" + i, "user" + i));
+    }
+  }
+
+  private int expiryOf(String id) {
+    return inMemoryBucket.getBucket().get(id, RawJsonDocument.class).expiry();
+  }
+
+  @Test
+  public void testTouchReportsEachDocumentInOrder() {
+    Map<String, Boolean> touched = template.touch(Arrays.asList("s3", "missing", "s1", "s5"), 600);
+
+    assertEquals(Arrays.asList("s3", "missing", "s1", "s5"), new ArrayList<String>(touched.keySet()));
+    assertTrue(touched.get("s3"));
+    assertFalse(touched.get("missing"));
+    assertEquals(600, expiryOf("s1"));
+    assertEquals(600, expiryOf("s5"));
+    assertEquals(0, expiryOf("s2"));
+  }
+
+  @Test
+  public void testFindAllByIdAndTouchLeavesOutMissingDocuments() {
+    Map<String, Session> sessions = template.findAllByIdAndTouch(Arrays.asList("s4", "missing", "s2", "s4"),
+        Session.class, 300);
+
+    assertEquals(Arrays.asList("s4", "s2"), new ArrayList<String>(sessions.keySet()));
+    assertEquals("user2", sessions.get("s2").user);
+    assertEquals(300, expiryOf("s4"));
+    assertEquals(300, expiryOf("s2"));
+  }
+
+  @Test
+  public void testFailuresAreReportedPerDocument() {
+    inMemoryBucket.setFailureInjector((operation, target) ->
+        "s2".equals(target) ? new CouchbaseException("failing on purpose") : null);
+    try {
+      template.touch(Arrays.asList("s1", "s2", "s3"), 600);
+      fail("expected the touch of s2 to fail");
+    } catch (BulkOperationException e) {
+      assertEquals(Arrays.asList("s2"), new ArrayList<String>(e.getErrors().keySet()));
+      assertEquals(Arrays.asList("s1", "s3"), new ArrayList<String>(e.getResults().keySet()));
+    }
+    assertEquals(600, expiryOf("s1"));
+    assertEquals(600, expiryOf("s3"));
+
+    try {
+      template.findAllByIdAndTouch(Arrays.asList("s2", "s4"), Session.class, 300);
+      fail("expected the read of s2 to fail");
+    } catch (BulkOperationException e) {
+      assertEquals(Arrays.asList("s2"), new ArrayList<String>(e.getErrors().keySet()));
+      assertEquals("user4", ((Session) e.getResults().get("s4")).user);
+    }
+    assertEquals(300, expiryOf("s4"));
+  }
+
+  @Test
+  public void testTouchInvalidatesIdentityMap() {
+    template.setIdentityMapScope(IdentityMap.threadScope());
+    try (IdentityMap identityMap = IdentityMap.bindToThread()) {
+      template.findById("s1", Session.class);
+      template.touch(Arrays.asList("s1"), 60);
+      assertNull(identityMap.get(Session.class, "s1"));
+    }
+  }
+
+  @Test
+  public void testReactiveBulkOperations() {
+    RxJavaCouchbaseTemplate rxTemplate = new RxJavaCouchbaseTemplate(inMemoryBucket.getClusterInfo(),
+        inMemoryBucket.getBucket());
+    rxTemplate.setBulkParallelism(3);
+
+    Map<String, Boolean> touched = rxTemplate.touch(Arrays.asList("s2", "missing"), 120).toBlocking().single();
+    assertTrue(touched.get("s2"));
+    assertFalse(touched.get("missing"));
+    assertEquals(120, expiryOf("s2"));
+
+    List<Session> sessions = rxTemplate.findAllByIdAndTouch(Arrays.asList("s5", "s1", "missing"), Session.class, 90)
+        .toList().toBlocking().single();
+    assertEquals(2, sessions.size());
+    assertEquals("s5", sessions.get(0).id);
+    assertEquals("s1", sessions.get(1).id);
+    assertEquals(90, expiryOf("s1"));
+
+    inMemoryBucket.setFailureInjector((operation, target) ->
+        "s1".equals(target) ? new CouchbaseException("failing on purpose") : null);
+    TestSubscriber<Session> subscriber = new TestSubscriber<Session>();
+    rxTemplate.findAllByIdAndTouch(Arrays.asList("s1", "s3"), Session.class, 60).subscribe(subscriber);
+    subscriber.awaitTerminalEvent();
+    assertEquals(1, subscriber.getOnNextEvents().size());
+    assertEquals("s3", subscriber.getOnNextEvents().get(0).id);
+    subscriber.assertError(BulkOperationException.class);
+    try {
+      rxTemplate.touch(Arrays.asList("s1", "s2"), 30).toBlocking().single();
+      fail("expected the touch of s1 to fail");
+    } catch (BulkOperationException e) {
+      assertTrue(e.getResults().containsKey("s2"));
+      assertTrue(e.getErrors().containsKey("s1"));
+    }
+    assertEquals(30, expiryOf("s2"));
+  }
+
+  static class Session {
+
+    @Id
+    String id;
+    String user;
+
+    Session(String id, String user) {
+      this.id = id;
+      this.user = user;
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.couchbase.client.java.query.N1qlQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.mapping.Document;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+public class IdentityMapTest {
+
+  private final AtomicInteger reads = new AtomicInteger();
+
+  private InMemoryBucket inMemoryBucket;
+  private CouchbaseTemplate template;
+  private CouchbaseTemplate otherTemplate;
+  private IdentityMap identityMap;
+
+  @Before
+  public void setUp() {
+    inMemoryBucket = new InMemoryBucket("test");
+    inMemoryBucket.setFailureInjector((operation, target) -> {
+      if ("get".equals(operation) || "getAndTouch".equals(operation)) {
+        reads.incrementAndGet();
+      }
+      return null;
+    });
+    template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    template.setIdentityMapScope(IdentityMap.threadScope());
+    otherTemplate = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    identityMap = IdentityMap.bindToThread();
+  }
+
+  @After
+  public void tearDown() {
+    identityMap.close();
+  }
+
+  private static N1qlQuery selectAll() {
+    return N1qlQuery.simple("SELECT META().id AS _ID, META().cas AS _CAS, name FROM `test`");
+  }
+
+  @Test
+  public void testFindByIdReturnsMaterializedInstance() {
+    otherTemplate.save(new Item("a", "x"));
+    Item first = template.findById("a", Item.class);
+    Item second = template.findById("a", Item.class);
+
+    assertSame(first, second);
+    assertEquals(1, reads.get());
+    assertEquals(1, identityMap.getHitCount());
+  }
+
+  @Test
+  public void testEntitiesTouchedOnReadAreAlwaysRead() {
+    otherTemplate.save(new TouchedItem("t", "x"));
+    template.findById("t", TouchedItem.class);
+    template.findById("t", TouchedItem.class);
+
+    assertEquals(2, reads.get());
+    assertEquals(0, identityMap.getHitCount());
+  }
+
+  @Test
+  public void testQueryResultsAreMergedById() {
+    otherTemplate.save(new Item("a", "x"));
+    otherTemplate.save(new Item("b", "y"));
+    Item a = template.findById("a", Item.class);
+
+    List<Item> items = template.findByN1QL(selectAll(), Item.class);
+    Item mergedA = items.get(0).id.equals("a") ? items.get(0) : items.get(1);
+    assertSame(a, mergedA);
+    assertEquals(2, identityMap.size());
+
+    otherTemplate.save(new Item("a", "z"));
+    items = template.findByN1QL(selectAll(), Item.class);
+    Item newA = items.get(0).id.equals("a") ? items.get(0) : items.get(1);
+    assertNotSame(a, newA);
+    assertEquals("z", newA.name);
+    assertSame(newA, template.findById("a", Item.class));
+  }
+
+  @Test
+  public void testWritesInvalidateEntries() {
+    otherTemplate.save(new Item("a", "x"));
+    otherTemplate.save(new Item("b", "y"));
+    Item a = template.findById("a", Item.class);
+    template.findById("b", Item.class);
+
+    template.save(new Item("a", "z"));
+    template.remove("b");
+    assertEquals(0, identityMap.size());
+    assertEquals("z", template.findById("a", Item.class).name);
+    assertNull(template.findById("b", Item.class));
+    assertEquals("x", a.name);
+  }
+
+  @Test
+  public void testNoIdentityMapOutsideOfScope() {
+    identityMap.close();
+    otherTemplate.save(new Item("a", "x"));
+
+    assertNotSame(template.findById("a", Item.class), template.findById("a", Item.class));
+    assertEquals(2, reads.get());
+    identityMap = IdentityMap.bindToThread();
+  }
+
+  @Test
+  public void testJoinsAreReusedForParentVersion() {
+    AtomicInteger resolutions = new AtomicInteger();
+    List<String> joined = Arrays.asList("c1", "c2");
+
+    List<?> first = identityMap.join(Item.class, "p", 1, "children", () -> {
+      resolutions.incrementAndGet();
+      return joined;
+    }, child -> (String) child);
+    List<?> second = identityMap.join(Item.class, "p", 1, "children", () -> {
+      resolutions.incrementAndGet();
+      return joined;
+    }, child -> (String) child);
+    assertSame(first, second);
+    assertEquals(1, resolutions.get());
+
+    identityMap.join(Item.class, "p", 2, "children", () -> {
+      resolutions.incrementAndGet();
+      return joined;
+    }, child -> (String) child);
+    assertEquals(2, resolutions.get());
+
+    identityMap.invalidate("c2");
+    identityMap.join(Item.class, "p", 2, "children", () -> {
+      resolutions.incrementAndGet();
+      return joined;
+    }, child -> (String) child);
+    assertEquals(3, resolutions.get());
+  }
+
+  @Test
+  public void testRequestScopeKeepsIdentityMapPerRequest() {
+    IdentityMapScope scope = IdentityMap.requestScope();
+    assertNull(scope.currentIdentityMap());
+
+    RequestContextHolder.setRequestAttributes(new Request());
+    try {
+      IdentityMap requestMap = scope.currentIdentityMap();
+      assertSame(requestMap, scope.currentIdentityMap());
+
+      RequestContextHolder.setRequestAttributes(new Request());
+      assertNotSame(requestMap, scope.currentIdentityMap());
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  static class Request implements RequestAttributes {
+
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    @Override
+    public Object getAttribute(String name, int scope) {
+      return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value, int scope) {
+      attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name, int scope) {
+      attributes.remove(name);
+    }
+
+    @Override
+    public String[] getAttributeNames(int scope) {
+      return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback, int scope) {
+    }
+
+    @Override
+    public Object resolveReference(String key) {
+      return null;
+    }
+
+    @Override
+    public String getSessionId() {
+      return "session";
+    }
+
+    @Override
+    public Object getSessionMutex() {
+      return this;
+    }
+  }
+
+  @Document(expiry = 60, touchOnRead = true)
+  static class TouchedItem {
+
+    @Id
+    String id;
+    String name;
+
+    TouchedItem(String id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  static class Item {
+
+    @Id
+    String id;
+    String name;
+
+    Item(String id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+}
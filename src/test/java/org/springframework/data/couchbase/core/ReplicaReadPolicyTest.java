@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.couchbase.client.core.RequestCancelledException;
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.ReplicaMode;
+import com.couchbase.client.java.document.RawJsonDocument;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Observable;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.mapping.ReplicaRead;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class ReplicaReadPolicyTest {
+
+  private final RawJsonDocument activeDocument = RawJsonDocument.create("a", "{\"copy\":\"active\"}", 1);
+  private final RawJsonDocument replicaDocument = RawJsonDocument.create("a", "{\"copy\":\"replica\"}", 2);
+  private final AtomicBoolean replicasRead = new AtomicBoolean();
+
+  private AsyncBucket bucket;
+
+  @Before
+  public void setUp() {
+    bucket = mock(AsyncBucket.class);
+    when(bucket.getFromReplica(eq("a"), eq(ReplicaMode.ALL), eq(RawJsonDocument.class)))
+        .thenReturn(Observable.just(replicaDocument).doOnSubscribe(() -> replicasRead.set(true)));
+  }
+
+  private void activeAnswers(Observable<RawJsonDocument> answer) {
+    when(bucket.get(eq("a"), eq(RawJsonDocument.class))).thenReturn(answer);
+  }
+
+  private RawJsonDocument read(ReplicaReadPolicy policy, long timeoutMillis) {
+    return policy.read(bucket, "a", timeoutMillis).toBlocking().singleOrDefault(null);
+  }
+
+  @Test
+  public void testActiveOnlyNeverReadsReplicas() {
+    activeAnswers(Observable.error(new RequestCancelledException("cancelled")));
+    try {
+      read(ReplicaReadPolicy.activeOnly(), 1000);
+      fail("expected the read to fail");
+    } catch (RequestCancelledException e) {
+      assertFalse(replicasRead.get());
+    }
+  }
+
+  @Test
+  public void testFallbackReadsReplicasOnTimeout() {
+    activeAnswers(Observable.never());
+    assertSame(replicaDocument, read(ReplicaReadPolicy.fallbackOnTimeout(), 50));
+
+    activeAnswers(Observable.error(new RequestCancelledException("cancelled")));
+    assertSame(replicaDocument, read(ReplicaReadPolicy.fallbackOnTimeout(), 1000));
+  }
+
+  @Test
+  public void testFallbackKeepsOtherFailuresAndMissingDocuments() {
+    activeAnswers(Observable.error(new TemporaryFailureException()));
+    try {
+      read(ReplicaReadPolicy.fallbackOnTimeout(), 1000);
+      fail("expected the read to fail");
+    } catch (TemporaryFailureException e) {
+      assertFalse(replicasRead.get());
+    }
+
+    activeAnswers(Observable.empty());
+    assertNull(read(ReplicaReadPolicy.fallbackOnTimeout(), 1000));
+    assertFalse(replicasRead.get());
+  }
+
+  @Test
+  public void testTimeoutWithoutReplicaFails() {
+    activeAnswers(Observable.never());
+    when(bucket.getFromReplica(eq("a"), eq(ReplicaMode.ALL), eq(RawJsonDocument.class)))
+        .thenReturn(Observable.empty());
+    try {
+      read(ReplicaReadPolicy.fallbackOnTimeout(), 50);
+      fail("expected the read to fail");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+  }
+
+  @Test
+  public void testHedgedReadReturnsFirstAnswer() {
+    activeAnswers(Observable.just(activeDocument).delay(2, TimeUnit.SECONDS));
+    long start = System.nanoTime();
+    assertSame(replicaDocument, read(ReplicaReadPolicy.hedged(20, TimeUnit.MILLISECONDS), 5000));
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+    replicasRead.set(false);
+    activeAnswers(Observable.just(activeDocument));
+    assertSame(activeDocument, read(ReplicaReadPolicy.hedged(1, TimeUnit.SECONDS), 5000));
+    assertFalse(replicasRead.get());
+  }
+
+  @Test
+  public void testEntityAnnotationOverridesTemplatePolicy() {
+    InMemoryBucket inMemoryBucket = new InMemoryBucket("test");
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    template.save(new Plain("p"));
+    template.save(new Replicated("r"));
+    inMemoryBucket.setFailureInjector((operation, target) ->
+        operation.equals("get") ? new RequestCancelledException("failing over") : null);
+
+    assertEquals("r", template.findById("r", Replicated.class).id);
+    try {
+      template.findById("p", Plain.class);
+      fail("expected the read to fail");
+    } catch (DataAccessException e) {
+      assertTrue(e.getCause() instanceof RequestCancelledException);
+    }
+
+    template.setReplicaReadPolicy(ReplicaReadPolicy.fallbackOnTimeout());
+    assertEquals("p", template.findById("p", Plain.class).id);
+  }
+
+  static class Plain {
+
+    @Id
+    String id;
+
+    Plain(String id) {
+      this.id = id;
+    }
+  }
+
+  @ReplicaRead
+  static class Replicated {
+
+    @Id
+    String id;
+
+    Replicated(String id) {
+      this.id = id;
+    }
+  }
+}
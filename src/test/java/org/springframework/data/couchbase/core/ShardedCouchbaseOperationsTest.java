@@ -0,0 +1,330 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.N1qlQueryResult;
+import com.couchbase.client.java.query.N1qlQueryRow;
+import com.couchbase.client.java.query.PreparedN1qlQuery;
+import com.couchbase.client.java.view.ViewQuery;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.mapping.KeySettings;
+import org.springframework.data.couchbase.core.mapping.id.GeneratedValue;
+import org.springframework.data.couchbase.core.mapping.id.GenerationStrategy;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+import org.springframework.data.couchbase.repository.CouchbasePagingAndSortingRepository;
+import org.springframework.data.couchbase.repository.config.RepositoryOperationsMapping;
+import org.springframework.data.couchbase.repository.support.CouchbaseRepositoryFactory;
+import org.springframework.data.couchbase.repository.support.IndexManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+public class ShardedCouchbaseOperationsTest {
+
+  private final List<InMemoryBucket> buckets = new ArrayList<InMemoryBucket>();
+  private final List<Person> people = new ArrayList<Person>();
+  private ShardedCouchbaseOperations operations;
+
+  @Before
+  public void setUp() {
+    List<CouchbaseOperations> shards = new ArrayList<CouchbaseOperations>();
+    for (int i = 0; i < 3; i++) {
+      InMemoryBucket bucket = new InMemoryBucket("shard" + i);
+      buckets.add(bucket);
+      CouchbaseTemplate template = new CouchbaseTemplate(bucket.getClusterInfo(), bucket.getBucket());
+      template.setWriteResultChecking(WriteResultChecking.EXCEPTION);
+      shards.add(template);
+    }
+    operations = new ShardedCouchbaseOperations(shards);
+    for (int i = 0; i < 40; i++) {
+      people.add(new Person("person" + i, "name" + (char) ('a' + i % 26) + i, i % 10));
+    }
+  }
+
+  @Test
+  public void testShardsAreStableWhenAddingOne() {
+    int moved = 0;
+    for (int i = 0; i < 10000; i++) {
+      String id = "key" + i;
+      int before = ShardedCouchbaseOperations.shardIndex(id, 3);
+      int after = ShardedCouchbaseOperations.shardIndex(id, 4);
+      assertTrue(after == before || after == 3);
+      if (after != before) {
+        moved++;
+      }
+    }
+    assertTrue("moved " + moved, moved > 2000 && moved < 3000);
+  }
+
+  @Test
+  public void testKeyValueOperationsAreRoutedById() {
+    operations.save(people);
+    int total = 0;
+    for (InMemoryBucket bucket : buckets) {
+      assertTrue(bucket.size() > 0);
+      total += bucket.size();
+    }
+    assertEquals(people.size(), total);
+
+    for (Person person : people) {
+      assertTrue(operations.getShard(person.id).exists(person.id));
+      assertEquals(person.name, operations.findById(person.id, Person.class).name);
+    }
+
+    operations.remove("person1");
+    operations.remove(people.get(2));
+    assertFalse(operations.exists("person1"));
+    assertFalse(operations.exists("person2"));
+    assertTrue(operations.exists("person3"));
+  }
+
+  @Test
+  public void testBulkTouchIsScatteredAndMergedInOrder() {
+    operations.save(people);
+    List<String> ids = new ArrayList<String>();
+    for (int i = 39; i >= 0; i -= 3) {
+      ids.add("person" + i);
+    }
+    ids.add("missing");
+
+    Map<String, Boolean> touched = operations.touch(ids, 60);
+    assertEquals(ids, new ArrayList<String>(touched.keySet()));
+    assertTrue(touched.get("person39"));
+    assertFalse(touched.get("missing"));
+
+    Map<String, Person> found = operations.findAllByIdAndTouch(ids, Person.class, 60);
+    assertEquals(ids.subList(0, ids.size() - 1), new ArrayList<String>(found.keySet()));
+    assertEquals(people.get(0).name, found.get("person0").name);
+  }
+
+  @Test
+  public void testEntitiesAreRoutedByTheirKey() {
+    operations.keySettings(KeySettings.build().prefix("people").delimiter("::"));
+    operations.save(people);
+    for (int i = 0; i < people.size(); i++) {
+      String key = "people::person" + i;
+      assertTrue(operations.getShard(key).exists(key));
+      assertEquals(people.get(i).name, operations.findById(key, Person.class).name);
+    }
+  }
+
+  @Test
+  public void testGeneratedIdsAreAssignedBeforeRouting() {
+    List<Generated> documents = new ArrayList<Generated>();
+    for (int i = 0; i < 20; i++) {
+      documents.add(new Generated("value" + i));
+    }
+    operations.insert(documents);
+    for (Generated document : documents) {
+      assertNotNull(document.id);
+      assertEquals(document.value, operations.getShard(document.id).findById(document.id, Generated.class).value);
+    }
+  }
+
+  @Test
+  public void testOrderedAndPagedQueriesAreMergeSorted() {
+    operations.save(people);
+    List<Person> expected = new ArrayList<Person>(people);
+    expected.sort(Comparator.comparing((Person person) -> person.age).reversed()
+        .thenComparing(person -> person.name));
+
+    String statement = "SELECT META(`shard0`).id AS _ID, META(`shard0`).cas AS _CAS, `shard0`.* FROM `shard0`"
+        + " WHERE `age` >= $1 ORDER BY `shard0`.`age` DESC, `name` LIMIT $2 OFFSET 7";
+    List<Person> page = operations.findByN1QL(N1qlQuery.parameterized(statement, JsonArray.from(0, 10)),
+        Person.class);
+    assertEquals(ids(expected.subList(7, 17)), ids(page));
+
+    N1qlQueryResult result = operations.queryN1QL(N1qlQuery.simple("SELECT `name` FROM `shard0` ORDER BY `name`"
+        + " LIMIT 5"));
+    List<String> names = new ArrayList<String>();
+    for (N1qlQueryRow row : result) {
+      names.add(row.value().getString("name"));
+    }
+    List<String> allNames = new ArrayList<String>();
+    for (Person person : people) {
+      allNames.add(person.name);
+    }
+    Collections.sort(allNames);
+    assertEquals(allNames.subList(0, 5), names);
+  }
+
+  @Test
+  public void testRawProjectionsAreMergedOnTheirValue() {
+    operations.save(people);
+    List<String> allNames = new ArrayList<String>();
+    for (Person person : people) {
+      allNames.add(person.name);
+    }
+    Collections.sort(allNames);
+
+    N1qlQueryResult result = operations.queryN1QL(N1qlQuery.simple("SELECT RAW `name` FROM `shard0`"
+        + " ORDER BY `shard0`.`name` LIMIT 3"));
+    List<String> names = new ArrayList<String>();
+    for (N1qlQueryRow row : result) {
+      names.add(new String(row.byteValue(), StandardCharsets.UTF_8));
+    }
+    assertEquals(Arrays.asList("\"" + allNames.get(0) + "\"", "\"" + allNames.get(1) + "\"",
+        "\"" + allNames.get(2) + "\""), names);
+
+
+    assertNotSupported(N1qlQuery.simple("SELECT RAW `name` FROM `shard0` ORDER BY `age` LIMIT 3"));
+  }
+
+  @Test
+  public void testCountsAreSummed() {
+    operations.save(people);
+    List<Map> counts = operations.findByN1QLProjection(N1qlQuery.simple("SELECT COUNT(*) AS cnt FROM `shard0`"
+        + " WHERE `age` < 5"), Map.class);
+    assertEquals(1, counts.size());
+    assertEquals(20L, ((Number) counts.get(0).get("cnt")).longValue());
+
+    N1qlQueryResult result = operations.queryN1QL(N1qlQuery.simple("SELECT COUNT(*) AS cnt FROM `shard0`"));
+    assertEquals(40L, result.allRows().get(0).value().getLong("cnt").longValue());
+  }
+
+  @Test
+  public void testRepositoryRunsAcrossShards() {
+    CouchbaseRepositoryFactory factory = new CouchbaseRepositoryFactory(new RepositoryOperationsMapping(
+        operations.getShards().get(0)).mapEntity(Person.class, operations), new IndexManager(false, false, false));
+    PersonRepository repository = factory.getRepository(PersonRepository.class);
+    repository.saveAll(people);
+
+    Page<Person> page = repository.findByAgeLessThan(5, PageRequest.of(1, 6, Sort.by("name")));
+    assertEquals(20, page.getTotalElements());
+    List<Person> expected = new ArrayList<Person>();
+    for (Person person : people) {
+      if (person.age < 5) {
+        expected.add(person);
+      }
+    }
+    expected.sort(Comparator.comparing(person -> person.name));
+    assertEquals(ids(expected.subList(6, 12)), ids(page.getContent()));
+    assertEquals(4, repository.countByAge(3));
+    assertTrue(repository.findById("person7").isPresent());
+  }
+
+  @Test
+  public void testViewsAreNotSupported() {
+    try {
+      operations.queryView(ViewQuery.from("person", "all"));
+      fail("expected view queries to be rejected");
+    } catch (InvalidDataAccessApiUsageException expected) {
+    }
+  }
+
+  @Test
+  public void testAggregationsOtherThanCountAreNotSupported() {
+    assertNotSupported(N1qlQuery.simple("SELECT MAX(`age`) AS oldest FROM `shard0`"));
+    assertNotSupported(N1qlQuery.simple("SELECT `age`, COUNT(*) AS cnt FROM `shard0` GROUP BY `age`"));
+  }
+
+  @Test
+  public void testDistinctProjectionsAreNotSupported() {
+    assertNotSupported(N1qlQuery.simple("SELECT DISTINCT `age` FROM `shard0`"));
+    assertNotSupported(N1qlQuery.simple("SELECT DISTINCT RAW `age` FROM `shard0` ORDER BY `age`"));
+  }
+
+  @Test
+  public void testOrderingOnFunctionsIsNotSupported() {
+    assertNotSupported(N1qlQuery.simple("SELECT `name` FROM `shard0` ORDER BY LOWER(`name`) LIMIT 5"));
+  }
+
+  @Test
+  public void testUnresolvedPagingIsNotSupported() {
+    assertNotSupported(N1qlQuery.simple("SELECT `name` FROM `shard0` ORDER BY `name` LIMIT $limit"));
+    assertNotSupported(N1qlQuery.simple("SELECT `name` FROM `shard0` ORDER BY `name` LIMIT 5 OFFSET 2 + 3"));
+  }
+
+  @Test
+  public void testPreparedQueriesAreNotSupported() {
+    assertNotSupported(mock(PreparedN1qlQuery.class));
+  }
+
+  private void assertNotSupported(N1qlQuery query) {
+    try {
+      operations.queryN1QL(query);
+      fail("expected the query to be rejected: " + query);
+    } catch (InvalidDataAccessApiUsageException expected) {
+    }
+  }
+
+  private static List<String> ids(List<Person> people) {
+    List<String> ids = new ArrayList<String>();
+    for (Person person : people) {
+      ids.add(person.id);
+    }
+    return ids;
+  }
+
+  static class Person {
+
+    @Id
+    String id;
+
+    String name;
+
+    int age;
+
+    Person(String id, String name, int age) {
+      this.id = id;
+      this.name = name;
+      this.age = age;
+    }
+  }
+
+  static class Generated {
+
+    @Id
+    @GeneratedValue(strategy = GenerationStrategy.UNIQUE)
+    String id;
+
+    String value;
+
+    Generated(String value) {
+      this.value = value;
+    }
+  }
+
+  public interface PersonRepository extends CouchbasePagingAndSortingRepository<Person, String> {
+
+    Page<Person> findByAgeLessThan(int age, Pageable pageable);
+
+    long countByAge(int age);
+  }
+}
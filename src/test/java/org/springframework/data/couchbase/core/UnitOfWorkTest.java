@@ -0,0 +1,262 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.couchbase.core.support.UnitOfWorkAdvisor;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class UnitOfWorkTest {
+
+  private InMemoryBucket inMemoryBucket;
+  private CouchbaseTemplate template;
+
+  @Before
+  public void setUp() {
+    inMemoryBucket = new InMemoryBucket("test");
+    template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+  }
+
+  @After
+  public void tearDown() {
+    UnitOfWork unitOfWork = template.getCurrentUnitOfWork();
+    if (unitOfWork != null) {
+      unitOfWork.close();
+    }
+  }
+
+  @Test
+  public void testWritesAreRecordedUntilFlushed() {
+    template.save(new Item("existing", "x"));
+    UnitOfWork unitOfWork = template.beginUnitOfWork();
+    Item saved = new Item("a", "x");
+    template.save(saved);
+    template.insert(new Item("b", "y"));
+    template.remove("existing");
+
+    assertEquals(3, unitOfWork.getPendingCount());
+    assertEquals(1, inMemoryBucket.size());
+    assertTrue(template.exists("existing"));
+
+    List<UnitOfWork.Result> results = unitOfWork.flush();
+    assertEquals(3, results.size());
+    for (UnitOfWork.Result result : results) {
+      assertTrue(result.toString(), result.isSuccess());
+    }
+    assertSame(saved, results.get(0).getEntity());
+    assertEquals(UnitOfWork.Operation.REMOVE, results.get(2).getOperation());
+    assertEquals(2, inMemoryBucket.size());
+    assertFalse(template.exists("existing"));
+    assertEquals(0, unitOfWork.getPendingCount());
+  }
+
+  @Test
+  public void testWritesOfTheSameDocumentCollapse() {
+    UnitOfWork unitOfWork = template.beginUnitOfWork();
+    template.save(new Item("a", "x"));
+    template.save(new Item("a", "y"));
+    template.insert(new Item("b", "x"));
+    template.save(new Item("b", "y"));
+    template.insert(new Item("c", "x"));
+    template.remove("c");
+
+    assertEquals(3, unitOfWork.getCollapsedCount());
+    List<UnitOfWork.Result> results = unitOfWork.commit();
+    assertEquals(2, results.size());
+    assertEquals(UnitOfWork.Operation.INSERT, results.get(1).getOperation());
+    assertTrue(unitOfWork.isClosed());
+    assertNull(template.getCurrentUnitOfWork());
+    assertEquals("y", template.findById("a", Item.class).name);
+    assertEquals("y", template.findById("b", Item.class).name);
+    assertFalse(template.exists("c"));
+  }
+
+  @Test
+  public void testRemovalFollowedByWriteReplacesTheDocument() {
+    template.save(new Item("a", "x"));
+    template.save(new VersionedItem("v", "x"));
+    UnitOfWork unitOfWork = template.beginUnitOfWork();
+    template.remove("a");
+    template.insert(new Item("a", "y"));
+    template.remove("v");
+    VersionedItem item = new VersionedItem("v", "y");
+    template.save(item);
+
+    List<UnitOfWork.Result> results = unitOfWork.commit();
+    assertEquals(2, results.size());
+    assertEquals(UnitOfWork.Operation.SAVE, results.get(0).getOperation());
+    assertEquals(UnitOfWork.Operation.UPDATE, results.get(1).getOperation());
+    assertEquals("y", template.findById("a", Item.class).name);
+    assertEquals("y", template.findById("v", VersionedItem.class).name);
+    assertTrue(item.version != 0);
+  }
+
+  @Test
+  public void testSaveFollowedByUpdateStaysASave() {
+    UnitOfWork unitOfWork = template.beginUnitOfWork();
+    template.save(new Item("a", "x"));
+    template.update(new Item("a", "y"));
+    VersionedItem item = new VersionedItem("v", "x");
+    template.save(item);
+    item.name = "y";
+    template.update(item);
+
+    List<UnitOfWork.Result> results = unitOfWork.commit();
+    assertEquals(2, results.size());
+    assertEquals(UnitOfWork.Operation.SAVE, results.get(0).getOperation());
+    assertEquals(UnitOfWork.Operation.SAVE, results.get(1).getOperation());
+    assertEquals("y", template.findById("a", Item.class).name);
+    assertEquals("y", template.findById("v", VersionedItem.class).name);
+  }
+
+  @Test
+  public void testVersionsAreAppliedBackToEntities() {
+    VersionedItem item = new VersionedItem("v", "x");
+    try (UnitOfWork unitOfWork = template.beginUnitOfWork()) {
+      template.save(item);
+      unitOfWork.commit();
+    }
+    assertTrue(item.version != 0);
+
+    long version = item.version;
+    VersionedItem stale = template.findById("v", VersionedItem.class);
+    item.name = "y";
+    template.save(item);
+    assertTrue(item.version != version);
+
+    try (UnitOfWork unitOfWork = template.beginUnitOfWork()) {
+      template.save(stale);
+      template.save(new Item("other", "z"));
+      unitOfWork.commit();
+      fail("expected the stale save to fail");
+    } catch (UnitOfWorkException e) {
+      assertEquals(2, e.getResults().size());
+      assertEquals(1, e.getFailures().size());
+      assertTrue(e.getFailures().get(0).getError() instanceof OptimisticLockingFailureException);
+    }
+    assertEquals("y", template.findById("v", VersionedItem.class).name);
+    assertTrue(template.exists("other"));
+  }
+
+  @Test
+  public void testClosingDiscardsWritesNotFlushed() {
+    try (UnitOfWork unitOfWork = template.beginUnitOfWork()) {
+      template.save(new Item("a", "x"));
+    }
+    assertNull(template.getCurrentUnitOfWork());
+    template.save(new Item("b", "x"));
+
+    assertFalse(template.exists("a"));
+    assertTrue(template.exists("b"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnitsOfWorkDontNest() {
+    template.beginUnitOfWork();
+    template.beginUnitOfWork();
+  }
+
+  @Test
+  public void testAnnotatedMethodsRunInUnitOfWork() {
+    ProxyFactory proxyFactory = new ProxyFactory(new Handler(template, inMemoryBucket));
+    proxyFactory.addAdvisor(new UnitOfWorkAdvisor(template));
+    Handler handler = (Handler) proxyFactory.getProxy();
+
+    assertEquals(0, handler.saveBoth(false));
+    assertEquals(2, inMemoryBucket.size());
+
+    try {
+      handler.saveBoth(true);
+      fail("expected the handler to fail");
+    } catch (IllegalArgumentException e) {
+      assertNull(template.getCurrentUnitOfWork());
+    }
+    assertEquals(2, inMemoryBucket.size());
+  }
+
+  public static class Handler {
+
+    private final CouchbaseTemplate template;
+    private final InMemoryBucket inMemoryBucket;
+
+    public Handler() {
+      this(null, null);
+    }
+
+    Handler(CouchbaseTemplate template, InMemoryBucket inMemoryBucket) {
+      this.template = template;
+      this.inMemoryBucket = inMemoryBucket;
+    }
+
+    @WithUnitOfWork
+    public int saveBoth(boolean fail) {
+      String suffix = fail ? "-failed" : "";
+      template.save(new Item("first" + suffix, "x"));
+      nested(suffix);
+      if (fail) {
+        throw new IllegalArgumentException("failing on purpose");
+      }
+      return inMemoryBucket.size();
+    }
+
+    @WithUnitOfWork
+    public void nested(String suffix) {
+      template.save(new Item("second" + suffix, "x"));
+    }
+  }
+
+  static class Item {
+
+    @Id
+    String id;
+    String name;
+
+    Item(String id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  static class VersionedItem {
+
+    @Id
+    String id;
+    String name;
+    @Version
+    long version;
+
+    VersionedItem(String id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+}
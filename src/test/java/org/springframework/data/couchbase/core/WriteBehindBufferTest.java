@@ -0,0 +1,256 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.java.PersistTo;
+import com.couchbase.client.java.ReplicateTo;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.couchbase.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class WriteBehindBufferTest {
+
+  private final List<Object> savedEvents = new ArrayList<Object>();
+
+  private InMemoryBucket inMemoryBucket;
+  private CouchbaseTemplate template;
+  private WriteBehindBuffer buffer;
+
+  @Before
+  public void setUp() {
+    inMemoryBucket = new InMemoryBucket("test");
+    template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    template.setApplicationEventPublisher(event -> {
+      if (event instanceof AfterSaveEvent) {
+        savedEvents.add(((AfterSaveEvent<?>) event).getSource());
+      }
+    });
+    buffer = new WriteBehindBuffer(Session.class);
+    buffer.setMaxLag(1, TimeUnit.HOURS);
+  }
+
+  @After
+  public void tearDown() {
+    buffer.destroy();
+  }
+
+  @Test
+  public void testSavesOfTheSameDocumentAreCoalesced() {
+    template.setWriteBehindBuffer(buffer);
+    Session last = new Session("s1", 3);
+    template.save(new Session("s1", 1));
+    template.save(new Session("s1", 2));
+    template.save(last);
+    template.save(new Session("s2", 1));
+
+    assertEquals(0, inMemoryBucket.size());
+    assertEquals(3, template.findById("s1", Session.class).hits);
+    assertTrue(template.exists("s2"));
+    assertEquals(2, buffer.getPendingCount());
+    assertTrue(savedEvents.isEmpty());
+
+    buffer.flush();
+    assertEquals(2, inMemoryBucket.size());
+    assertEquals(3, template.findById("s1", Session.class).hits);
+    assertEquals(4, buffer.getBufferedCount());
+    assertEquals(2, buffer.getCoalescedCount());
+    assertEquals(2, buffer.getWrittenCount());
+    assertEquals(2, savedEvents.size());
+    assertTrue(savedEvents.contains(last));
+  }
+
+  @Test
+  public void testOnlyTheSelectedTypesAreBuffered() {
+    template.setWriteBehindBuffer(buffer);
+    template.save(new Other("o1"));
+    template.save(new Session("s1", 1), PersistTo.NONE, ReplicateTo.ONE);
+    template.save(new Session("s2", 1));
+
+    assertEquals(2, inMemoryBucket.size());
+    assertEquals(1, buffer.getPendingCount());
+  }
+
+  @Test
+  public void testFullBufferIsWrittenBySavingThread() {
+    buffer.setMaxSize(2);
+    template.setWriteBehindBuffer(buffer);
+    template.save(new Session("s1", 1));
+    assertEquals(0, inMemoryBucket.size());
+
+    template.save(new Session("s2", 1));
+    assertEquals(2, inMemoryBucket.size());
+    assertEquals(0, buffer.getPendingCount());
+  }
+
+  @Test
+  public void testRemovalDiscardsBufferedSave() {
+    template.setWriteBehindBuffer(buffer);
+    template.save(new Session("s1", 1));
+    template.save(new Session("s2", 1));
+    template.remove("s1");
+    template.remove(new Session("s2", 1));
+    buffer.flush();
+
+    assertEquals(0, inMemoryBucket.size());
+    assertNull(template.findById("s1", Session.class));
+    assertFalse(template.exists("s2"));
+  }
+
+  @Test
+  public void testUpdateWritesBufferedSaveFirst() {
+    template.setWriteBehindBuffer(buffer);
+    template.save(new Session("s1", 1));
+    template.update(new Session("s1", 2));
+
+    assertEquals(0, buffer.getPendingCount());
+    buffer.flush();
+    assertEquals(2, template.findById("s1", Session.class).hits);
+  }
+
+  @Test
+  public void testFailedWritesAreReported() {
+    final List<Object> failures = new ArrayList<Object>();
+    buffer.setFailureHandler((entity, id, error) -> failures.add(entity));
+    template.setWriteBehindBuffer(buffer);
+    inMemoryBucket.setFailureInjector((operation, target) ->
+        "s1".equals(target) ? new TemporaryFailureException() : null);
+    Session failing = new Session("s1", 1);
+    template.save(failing);
+    template.save(new Session("s2", 1));
+    buffer.flush();
+
+    assertEquals(1, failures.size());
+    assertSame(failing, failures.get(0));
+    assertEquals(1, buffer.getFailedCount());
+    assertEquals(1, buffer.getWrittenCount());
+    assertEquals(1, inMemoryBucket.size());
+  }
+
+  @Test
+  public void testDocumentsBeingWrittenAreStillRead() throws InterruptedException {
+    template.setWriteBehindBuffer(buffer);
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch resume = new CountDownLatch(1);
+    inMemoryBucket.setFailureInjector((operation, target) -> {
+      if ("upsert".equals(operation)) {
+        writing.countDown();
+        try {
+          resume.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return null;
+    });
+    template.save(new Session("s1", 1));
+    Thread flushing = new Thread(buffer::flush);
+    flushing.start();
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+    assertEquals(1, template.findById("s1", Session.class).hits);
+    template.save(new Session("s1", 2));
+    resume.countDown();
+    flushing.join(5000);
+    assertEquals(1, buffer.getWrittenCount());
+    assertEquals(1, buffer.getPendingCount());
+    assertEquals(2, template.findById("s1", Session.class).hits);
+
+    buffer.flush();
+    assertEquals(0, buffer.getPendingCount());
+    assertEquals(2, template.findById("s1", Session.class).hits);
+  }
+
+  @Test
+  public void testBufferIsWrittenWithinMaximumLag() throws InterruptedException {
+    buffer.setMaxLag(10, TimeUnit.MILLISECONDS);
+    template.setWriteBehindBuffer(buffer);
+    template.save(new Session("s1", 1));
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (inMemoryBucket.size() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(1, inMemoryBucket.size());
+  }
+
+  @Test
+  public void testBufferIsWrittenOnShutdownUnlessToldOtherwise() {
+    template.setWriteBehindBuffer(buffer);
+    template.save(new Session("s1", 1));
+    buffer.destroy();
+    assertEquals(1, inMemoryBucket.size());
+
+    WriteBehindBuffer dropping = new WriteBehindBuffer(Session.class);
+    dropping.setFlushOnShutdown(false);
+    template.setWriteBehindBuffer(dropping);
+    template.save(new Session("s2", 1));
+    dropping.destroy();
+    assertEquals(1, inMemoryBucket.size());
+  }
+
+  @Test(expected = InvalidDataAccessApiUsageException.class)
+  public void testVersionedTypesCantBeBuffered() {
+    template.setWriteBehindBuffer(new WriteBehindBuffer(Versioned.class));
+  }
+
+  static class Session {
+
+    @Id
+    String id;
+    int hits;
+
+    Session(String id, int hits) {
+      this.id = id;
+      this.hits = hits;
+    }
+  }
+
+  static class Other {
+
+    @Id
+    String id;
+
+    Other(String id) {
+      this.id = id;
+    }
+  }
+
+  static class Versioned {
+
+    @Id
+    String id;
+    @Version
+    long version;
+  }
+}
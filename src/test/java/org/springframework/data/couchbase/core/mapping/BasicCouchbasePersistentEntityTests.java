@@ -77,6 +77,14 @@ public class BasicCouchbasePersistentEntityTests {
     assertEquals(30 * 24 * 60 * 60, entityUnder.getExpiry());
   }
 
+  @Test
+  public void testTimeToLiveIsConvertedToUnixUtcTimeBeyond30Days() {
+    assertEquals(0, BasicCouchbasePersistentEntity.toExpiry(0));
+    assertEquals(30 * 24 * 60 * 60, BasicCouchbasePersistentEntity.toExpiry(30 * 24 * 60 * 60));
+    long expected = System.currentTimeMillis() / 1000 + 30 * 24 * 60 * 60 + 1;
+    assertEquals(expected, BasicCouchbasePersistentEntity.toExpiry(30 * 24 * 60 * 60 + 1), 5);
+  }
+
   @Test
   public void testLargeExpiry31DaysIsConvertedToUnixUtcTime() {
     CouchbasePersistentEntity<OverLimitDaysExpiry> entityOver = new BasicCouchbasePersistentEntity<OverLimitDaysExpiry>(
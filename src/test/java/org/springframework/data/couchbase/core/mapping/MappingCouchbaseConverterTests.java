@@ -22,7 +22,9 @@ import java.math.BigDecimal;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -41,12 +43,17 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
 import org.springframework.data.convert.ReadingConverter;
 import org.springframework.data.convert.WritingConverter;
 import org.springframework.data.couchbase.UnitTestApplicationConfig;
 import org.springframework.data.couchbase.core.convert.CouchbaseCustomConversions;
 import org.springframework.data.couchbase.core.convert.CouchbaseJsr310Converters.LocalDateTimeToLongConverter;
 import org.springframework.data.couchbase.core.convert.MappingCouchbaseConverter;
+import org.springframework.data.couchbase.core.mapping.id.GeneratedValue;
+import org.springframework.data.couchbase.core.mapping.id.GenerationStrategy;
+import org.springframework.data.couchbase.core.mapping.id.IdPrefix;
+import org.springframework.data.couchbase.core.mapping.id.IdSuffix;
 import org.springframework.data.mapping.MappingException;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -529,6 +536,84 @@ public class MappingCouchbaseConverterTests {
     }
   }
 
+  @Test
+  public void ignoresTypeAliasesUnlessEnabled() {
+    MappingCouchbaseConverter defaultConverter = new MappingCouchbaseConverter(new CouchbaseMappingContext());
+    defaultConverter.afterPropertiesSet();
+    CouchbaseDocument written = new CouchbaseDocument();
+    defaultConverter.write(new AliasedEntity(), written);
+
+    assertEquals(AliasedEntity.class.getName(), written.get("_class"));
+    assertEquals(Collections.singletonList(AliasedEntity.class.getName()),
+        defaultConverter.getTypeAliases(AliasedEntity.class));
+
+    defaultConverter.setUseTypeAliases(true);
+    CouchbaseDocument aliased = new CouchbaseDocument();
+    defaultConverter.write(new AliasedEntity(), aliased);
+    assertEquals("al", aliased.get("_class"));
+  }
+
+  @Test
+  public void writesAndReadsTypeAliases() {
+    MappingCouchbaseConverter aliasConverter = new MappingCouchbaseConverter(new CouchbaseMappingContext());
+    aliasConverter.setTypeAliases(Collections.singletonMap(StringEntity.class, "7"));
+    aliasConverter.afterPropertiesSet();
+
+    CouchbaseDocument annotated = new CouchbaseDocument();
+    aliasConverter.write(new AliasedEntity(), annotated);
+    CouchbaseDocument registered = new CouchbaseDocument();
+    aliasConverter.write(new StringEntity("foobar"), registered);
+
+    assertEquals("al", annotated.get("_class"));
+    assertEquals("7", registered.get("_class"));
+    assertEquals(Collections.singletonList("7"), aliasConverter.getTypeAliases(StringEntity.class));
+    assertEquals(Collections.singletonList(NumberEntity.class.getName()), aliasConverter.getTypeAliases(NumberEntity.class));
+
+    BaseEntity read = aliasConverter.read(BaseEntity.class, registered);
+    assertTrue(read instanceof StringEntity);
+    assertEquals("foobar", ((StringEntity) read).attr0);
+  }
+
+  @Test
+  public void acceptsFullyQualifiedTypeNamesInCompatibilityMode() {
+    MappingCouchbaseConverter aliasConverter = new MappingCouchbaseConverter(new CouchbaseMappingContext());
+    aliasConverter.setTypeAliases(Collections.singletonMap(StringEntity.class, "7"));
+    aliasConverter.setAcceptFullyQualifiedTypeNames(true);
+    aliasConverter.afterPropertiesSet();
+
+    CouchbaseDocument legacy = new CouchbaseDocument();
+    legacy.put("_class", StringEntity.class.getName());
+    legacy.put("attr0", "foobar");
+
+    assertEquals(Arrays.asList("7", StringEntity.class.getName()), aliasConverter.getTypeAliases(StringEntity.class));
+    assertEquals("foobar", aliasConverter.read(StringEntity.class, legacy).attr0);
+  }
+
+  @Test
+  public void generatesSnowflakeIdBetweenPrefixAndSuffix() {
+    CouchbaseDocument converted = new CouchbaseDocument();
+    converter.write(new SnowflakeEntity(), converted);
+
+    assertTrue(converted.getId(), converted.getId().matches("user::\\d{19}::v1"));
+  }
+
+  @Test
+  public void usesRegisteredIdGeneratorForStrategy() {
+    MappingCouchbaseConverter counterConverter = new MappingCouchbaseConverter(new CouchbaseMappingContext());
+    counterConverter.afterPropertiesSet();
+    counterConverter.setIdGenerator(GenerationStrategy.COUNTER, entityType -> entityType.getSimpleName() + "42");
+
+    CouchbaseDocument converted = new CouchbaseDocument();
+    counterConverter.write(new CounterEntity(), converted);
+
+    assertEquals("user::CounterEntity42", converted.getId());
+  }
+
+  @Test(expected = MappingException.class)
+  public void failsOnStrategyWithoutIdGenerator() {
+    converter.write(new CounterEntity(), new CouchbaseDocument());
+  }
+
   @Test
   public void testLenientFieldCheckingStoresUnannotated() throws Exception{
     try {
@@ -548,6 +633,31 @@ public class MappingCouchbaseConverterTests {
 
 
 
+  @TypeAlias("al")
+  static class AliasedEntity extends BaseEntity {
+  }
+
+  static class SnowflakeEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationStrategy.SNOWFLAKE, delimiter = "::")
+    private String id;
+
+    @IdPrefix
+    private String type = "user";
+
+    @IdSuffix
+    private String version = "v1";
+  }
+
+  static class CounterEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationStrategy.COUNTER, delimiter = "::")
+    private String id;
+
+    @IdPrefix
+    private String type = "user";
+  }
+
   static class EntityWithoutID {
     private String attr0;
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.mapping.id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.document.JsonLongDocument;
+import org.junit.Test;
+
+public class IdGeneratorTests {
+
+  @Test
+  public void timeOrderedUuidsSortInGenerationOrder() throws Exception {
+    TimeOrderedUuidGenerator generator = new TimeOrderedUuidGenerator();
+    String first = generator.generate(Object.class);
+    Thread.sleep(2);
+    String second = generator.generate(Object.class);
+
+    assertTrue(first.compareTo(second) < 0);
+    assertEquals(7, UUID.fromString(second).version());
+    assertEquals(2, UUID.fromString(second).variant());
+  }
+
+  @Test
+  public void snowflakeIdsAreUniqueAndOrdered() {
+    SnowflakeIdGenerator generator = new SnowflakeIdGenerator(42);
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < 10000; i++) {
+      ids.add(generator.generate(Object.class));
+    }
+
+    Set<String> unique = new HashSet<String>(ids);
+    assertEquals(ids.size(), unique.size());
+    for (int i = 1; i < ids.size(); i++) {
+      assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0);
+    }
+    long lastId = Long.parseLong(ids.get(ids.size() - 1));
+    assertEquals(42, (lastId >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_WORKER_ID);
+  }
+
+  @Test
+  public void counterBlockIdGeneratorReservesBlocks() {
+    Bucket bucket = mock(Bucket.class);
+    when(bucket.counter(eq("ids"), anyLong(), anyLong()))
+        .thenReturn(JsonLongDocument.create("ids", 3L))
+        .thenReturn(JsonLongDocument.create("ids", 6L));
+    CounterBlockIdGenerator generator = new CounterBlockIdGenerator(bucket, "ids", 3);
+
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < 5; i++) {
+      ids.add(generator.generate(Object.class));
+    }
+
+    assertEquals("[1, 2, 3, 4, 5]", ids.toString());
+    verify(bucket, times(2)).counter("ids", 3L, 3L);
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import com.couchbase.client.java.query.N1qlQuery;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Observable;
+import rx.Subscription;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.couchbase.core.CouchbaseTemplate;
+import org.springframework.data.couchbase.core.OperationRejectedException;
+import org.springframework.data.couchbase.core.OperationRejectedException.Reason;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class OperationLimiterTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  private OperationLimiter limiter;
+
+  @Before
+  public void setUp() {
+    limiter = new OperationLimiter() {
+      @Override
+      protected long nanoTime() {
+        return now.get();
+      }
+    };
+  }
+
+  private static CircuitBreaker circuitBreaker() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker();
+    circuitBreaker.setWindowSize(10);
+    circuitBreaker.setMinimumCalls(4);
+    circuitBreaker.setOpenDuration(1, TimeUnit.SECONDS);
+    circuitBreaker.setHalfOpenCalls(2);
+    return circuitBreaker;
+  }
+
+  private void assertRejected(CouchbaseService service, Reason reason) {
+    try {
+      limiter.acquire(service);
+      fail("expected the operation to be rejected");
+    } catch (OperationRejectedException e) {
+      assertEquals(service, e.getService());
+      assertEquals(reason, e.getReason());
+    }
+  }
+
+  @Test
+  public void testOperationsAboveLimitAreRejected() {
+    limiter.setConcurrencyLimit(CouchbaseService.KV, new AimdConcurrencyLimit(2, 1, 10, 0.5));
+    OperationLimiter.Permit first = limiter.acquire(CouchbaseService.KV);
+    limiter.acquire(CouchbaseService.KV);
+    assertRejected(CouchbaseService.KV, Reason.LIMIT_REACHED);
+    assertNotNull(limiter.acquire(CouchbaseService.QUERY));
+    assertEquals(2, limiter.getInFlight(CouchbaseService.KV));
+
+    first.release(null);
+    first.release(null);
+    assertEquals(1, limiter.getInFlight(CouchbaseService.KV));
+    assertNotNull(limiter.acquire(CouchbaseService.KV));
+    assertEquals(1, limiter.getRejectedCount(CouchbaseService.KV, Reason.LIMIT_REACHED));
+  }
+
+  @Test
+  public void testAimdLimitBacksOffOnOverload() {
+    AimdConcurrencyLimit limit = new AimdConcurrencyLimit(10, 2, 12, 0.5);
+    limit.onSample(1000, 8, false);
+    limit.onSample(1000, 8, false);
+    assertEquals(12, limit.getLimit());
+    limit.onSample(1000, 8, false);
+    assertEquals(12, limit.getLimit());
+    limit.onSample(1000, 2, false);
+    assertEquals(12, limit.getLimit());
+
+    limit.onSample(1000, 12, true);
+    assertEquals(6, limit.getLimit());
+    limit.onSample(1000, 6, true);
+    limit.onSample(1000, 3, true);
+    assertEquals(2, limit.getLimit());
+  }
+
+  @Test
+  public void testGradientLimitFollowsLatency() {
+    GradientConcurrencyLimit limit = new GradientConcurrencyLimit(20, 2, 100);
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(TimeUnit.MILLISECONDS.toNanos(1), limit.getLimit(), false);
+    }
+    int grown = limit.getLimit();
+    assertTrue("limit " + grown, grown > 20);
+
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), limit.getLimit(), false);
+    }
+    assertTrue("limit " + limit.getLimit(), limit.getLimit() < grown / 2);
+
+    int shrunk = limit.getLimit();
+    for (int i = 0; i < 50; i++) {
+      limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 1, false);
+    }
+    assertEquals(shrunk, limit.getLimit());
+  }
+
+  @Test
+  public void testCircuitBreakerOpensAndRecovers() {
+    limiter.setCircuitBreaker(CouchbaseService.KV, circuitBreaker());
+    limiter.acquire(CouchbaseService.KV).release(null);
+    limiter.acquire(CouchbaseService.KV).release(new DocumentDoesNotExistException());
+    limiter.acquire(CouchbaseService.KV).release(new RuntimeException(new TimeoutException()));
+    assertEquals(CircuitBreaker.State.CLOSED, limiter.getCircuitState(CouchbaseService.KV));
+    limiter.acquire(CouchbaseService.KV).release(new TemporaryFailureException());
+    assertEquals(CircuitBreaker.State.OPEN, limiter.getCircuitState(CouchbaseService.KV));
+    assertRejected(CouchbaseService.KV, Reason.CIRCUIT_OPEN);
+    assertEquals(CircuitBreaker.State.CLOSED, limiter.getCircuitState(CouchbaseService.QUERY));
+
+    //half open, a failed probe opens it again
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    limiter.acquire(CouchbaseService.KV).release(new TemporaryFailureException());
+    assertRejected(CouchbaseService.KV, Reason.CIRCUIT_OPEN);
+
+    //half open, a cancelled probe is given back and the probes close it
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    OperationLimiter.Permit first = limiter.acquire(CouchbaseService.KV);
+    OperationLimiter.Permit second = limiter.acquire(CouchbaseService.KV);
+    assertRejected(CouchbaseService.KV, Reason.CIRCUIT_OPEN);
+    second.cancel();
+    OperationLimiter.Permit third = limiter.acquire(CouchbaseService.KV);
+    first.release(null);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, limiter.getCircuitState(CouchbaseService.KV));
+    third.release(null);
+    assertEquals(CircuitBreaker.State.CLOSED, limiter.getCircuitState(CouchbaseService.KV));
+    assertEquals(3, limiter.getRejectedCount(CouchbaseService.KV, Reason.CIRCUIT_OPEN));
+  }
+
+  @Test
+  public void testAsyncOperationsReleaseTheirPermit() {
+    limiter.setConcurrencyLimit(CouchbaseService.QUERY, new AimdConcurrencyLimit(1, 1, 1, 0.5));
+    Observable<Object> never = limiter.limit(CouchbaseService.QUERY, Observable.never());
+    assertEquals(0, limiter.getInFlight(CouchbaseService.QUERY));
+
+    Subscription subscription = never.subscribe();
+    assertEquals(1, limiter.getInFlight(CouchbaseService.QUERY));
+    try {
+      limiter.limit(CouchbaseService.QUERY, Observable.just(1)).toBlocking().single();
+      fail("expected the operation to be rejected");
+    } catch (OperationRejectedException e) {
+      assertEquals(Reason.LIMIT_REACHED, e.getReason());
+    }
+    subscription.unsubscribe();
+    assertEquals(0, limiter.getInFlight(CouchbaseService.QUERY));
+
+    assertEquals(1, (int) limiter.limit(CouchbaseService.QUERY, Observable.just(1)).toBlocking().single());
+    assertEquals(0, limiter.getInFlight(CouchbaseService.QUERY));
+  }
+
+  @Test
+  public void testTemplateFailsFastOnceCircuitIsOpen() {
+    InMemoryBucket inMemoryBucket = new InMemoryBucket("test");
+    inMemoryBucket.getBucket().upsert(JsonDocument.create("a", JsonObject.create().put("x", 1)));
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    template.setOperationLimiter(limiter);
+    limiter.setCircuitBreaker(CouchbaseService.KV, circuitBreaker());
+    inMemoryBucket.setFailureInjector((operation, target) ->
+        operation.equals("exists") ? new TemporaryFailureException() : null);
+
+    for (int i = 0; i < 4; i++) {
+      try {
+        template.exists("a");
+        fail("expected the operation to fail");
+      } catch (TransientDataAccessResourceException e) {
+        assertTrue(e.getCause() instanceof TemporaryFailureException);
+      }
+    }
+    try {
+      template.exists("a");
+      fail("expected the operation to be rejected");
+    } catch (OperationRejectedException e) {
+      assertEquals(CouchbaseService.KV, e.getService());
+    }
+    assertEquals(1, template.queryN1QL(N1qlQuery.simple("SELECT x FROM `test`")).allRows().size());
+    assertEquals(0, limiter.getInFlight(CouchbaseService.KV));
+    assertEquals(0, limiter.getInFlight(CouchbaseService.QUERY));
+  }
+}
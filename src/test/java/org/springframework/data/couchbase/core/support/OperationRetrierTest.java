@@ -0,0 +1,259 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.couchbase.client.core.RequestCancelledException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import com.couchbase.client.java.query.N1qlQuery;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Observable;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.BucketCallback;
+import org.springframework.data.couchbase.core.CouchbaseTemplate;
+import org.springframework.data.couchbase.core.RxJavaCouchbaseTemplate;
+import org.springframework.data.couchbase.core.WriteResultChecking;
+import org.springframework.data.couchbase.inmemory.InMemoryBucket;
+
+public class OperationRetrierTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private OperationRetrier retrier;
+
+  @Before
+  public void setUp() {
+    retrier = new OperationRetrier() {
+      @Override
+      protected long nanoTime() {
+        return now.get();
+      }
+    };
+    retrier.setDefaultPolicy(policy(3));
+  }
+
+  private static RetryPolicy policy(int maxAttempts) {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setMaxAttempts(maxAttempts);
+    policy.setBackoff(1, 2, TimeUnit.MILLISECONDS);
+    return policy;
+  }
+
+  private BucketCallback<String> failing(final int failures, final RuntimeException failure) {
+    return () -> {
+      if (calls.incrementAndGet() <= failures) {
+        throw failure;
+      }
+      return "done";
+    };
+  }
+
+  @Test
+  public void testTransientFailuresAreRetried() throws Exception {
+    assertEquals("done", retrier.execute("findById", null, true, failing(2, new TemporaryFailureException())));
+    assertEquals(3, calls.get());
+    assertEquals(2, retrier.getRetryCount());
+
+    calls.set(0);
+    try {
+      retrier.execute("findById", null, true, failing(3, new RequestCancelledException("cancelled")));
+      fail("expected the operation to fail");
+    } catch (RequestCancelledException e) {
+      assertEquals(3, calls.get());
+    }
+
+    calls.set(0);
+    RuntimeException translated = new TransientDataAccessResourceException("wrapped", new TemporaryFailureException());
+    assertEquals("done", retrier.execute("findById", null, true, failing(1, translated)));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testOtherFailuresAndNonIdempotentOperationsAreNotRetried() throws Exception {
+    RuntimeException missing = new DocumentDoesNotExistException();
+    try {
+      retrier.execute("findById", null, true, failing(1, missing));
+      fail("expected the operation to fail");
+    } catch (DocumentDoesNotExistException e) {
+      assertSame(missing, e);
+    }
+    try {
+      retrier.execute("insert", null, false, failing(2, new TemporaryFailureException()));
+      fail("expected the operation to fail");
+    } catch (TemporaryFailureException e) {
+      assertEquals(2, calls.get());
+    }
+
+    RetryPolicy insertPolicy = policy(3);
+    insertPolicy.setRetryNonIdempotent(true);
+    retrier.setPolicy("insert", insertPolicy);
+    calls.set(0);
+    assertEquals("done", retrier.execute("insert", null, false, failing(2, new TemporaryFailureException())));
+    assertEquals(0, retrier.getBudgetExhaustedCount());
+  }
+
+  @Test
+  public void testMostSpecificPolicyApplies() {
+    RetryPolicy byOperation = policy(2);
+    RetryPolicy byEntity = policy(4);
+    RetryPolicy byEntityAndOperation = policy(5);
+    retrier.setPolicy("findById", byOperation);
+    retrier.setPolicy(String.class, byEntity);
+    retrier.setPolicy(String.class, "findById", byEntityAndOperation);
+
+    assertSame(byEntityAndOperation, retrier.getPolicy("findById", String.class));
+    assertSame(byEntity, retrier.getPolicy("save", String.class));
+    assertSame(byOperation, retrier.getPolicy("findById", Integer.class));
+    assertSame(byOperation, retrier.getPolicy("findById", null));
+    assertEquals(3, retrier.getPolicy("save", null).getMaxAttempts());
+
+    retrier.setPolicy(String.class, "findById", null);
+    assertSame(byEntity, retrier.getPolicy("findById", String.class));
+  }
+
+  @Test
+  public void testBackoffIsJitteredAndCapped() {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setBackoff(10, 50, TimeUnit.MILLISECONDS);
+    long sum = 0;
+    for (int i = 0; i < 1000; i++) {
+      long first = policy.backoffNanos(1);
+      assertTrue(first >= 0 && first <= TimeUnit.MILLISECONDS.toNanos(10));
+      long capped = policy.backoffNanos(10);
+      assertTrue(capped <= TimeUnit.MILLISECONDS.toNanos(50));
+      sum += capped;
+    }
+    long mean = sum / 1000;
+    assertTrue("mean " + mean, mean > TimeUnit.MILLISECONDS.toNanos(20) && mean < TimeUnit.MILLISECONDS.toNanos(30));
+  }
+
+  @Test
+  public void testRetryBudgetBoundsRetries() throws Exception {
+    retrier.setBudget(new RetryBudget(0.5, 1));
+    //the reserved retry of the second, then the deposits of the operations
+    retrier.execute("findById", null, true, failing(1, new TemporaryFailureException()));
+    calls.set(0);
+    try {
+      retrier.execute("findById", null, true, failing(1, new TemporaryFailureException()));
+    } catch (TemporaryFailureException e) {
+      fail("expected the deposits to allow a retry");
+    }
+    calls.set(0);
+    try {
+      retrier.execute("findById", null, true, failing(1, new TemporaryFailureException()));
+      fail("expected the budget to be exhausted");
+    } catch (TemporaryFailureException e) {
+      assertEquals(1, calls.get());
+    }
+    assertEquals(1, retrier.getBudgetExhaustedCount());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    calls.set(0);
+    assertEquals("done", retrier.execute("findById", null, true, failing(1, new TemporaryFailureException())));
+  }
+
+  @Test
+  public void testAsyncOperationsAreSubscribedAgain() {
+    Observable<String> operation = Observable.defer(() -> calls.incrementAndGet() <= 2
+        ? Observable.<String>error(new TemporaryFailureException()) : Observable.just("done"));
+    assertEquals("done", retrier.retry("findById", null, true, operation).toBlocking().single());
+    assertEquals(3, calls.get());
+
+    calls.set(0);
+    Observable<String> partial = Observable.defer(() -> {
+      calls.incrementAndGet();
+      return Observable.just("row").concatWith(Observable.<String>error(new TemporaryFailureException()));
+    });
+    try {
+      retrier.retry("findByN1QL", null, true, partial).toList().toBlocking().single();
+      fail("expected the operation to fail");
+    } catch (TemporaryFailureException e) {
+      assertEquals(1, calls.get());
+    }
+  }
+
+  @Test
+  public void testStatementsOtherThanSelectAreNotIdempotent() {
+    assertTrue(OperationRetrier.isReadOnly(N1qlQuery.simple("SELECT * FROM `b`")));
+    assertTrue(OperationRetrier.isReadOnly(N1qlQuery.simple("  (select a FROM `b`) UNION (SELECT a FROM `c`)")));
+    assertTrue(!OperationRetrier.isReadOnly(N1qlQuery.simple("DELETE FROM `b` WHERE a = 1")));
+    assertTrue(!OperationRetrier.isReadOnly(N1qlQuery.simple("UPDATE `b` SET selected = true")));
+  }
+
+  @Test
+  public void testTemplatesRetryIdempotentOperations() {
+    InMemoryBucket inMemoryBucket = new InMemoryBucket("test");
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), inMemoryBucket.getBucket());
+    template.setWriteResultChecking(WriteResultChecking.EXCEPTION);
+    template.setOperationRetrier(retrier);
+    RxJavaCouchbaseTemplate rxTemplate = new RxJavaCouchbaseTemplate(inMemoryBucket.getClusterInfo(),
+        inMemoryBucket.getBucket());
+    rxTemplate.setOperationRetrier(retrier);
+    inMemoryBucket.setFailureInjector((operation, target) ->
+        calls.incrementAndGet() % 2 == 1 ? new TemporaryFailureException() : null);
+
+    template.save(new Item("a", "x"));
+    assertEquals("x", template.findById("a", Item.class).name);
+    assertEquals("x", rxTemplate.findById("a", Item.class).toBlocking().single().name);
+    List<Item> items = template.findByN1QL(N1qlQuery.simple("SELECT META().id AS _ID, META().cas AS _CAS, name "
+        + "FROM `test`"), Item.class);
+    assertEquals(1, items.size());
+
+    calls.set(0);
+    try {
+      template.insert(new Item("b", "y"));
+      fail("expected the insert not to be retried");
+    } catch (DataAccessException e) {
+      assertTrue(e.getCause() instanceof TemporaryFailureException);
+      assertEquals(1, calls.get());
+    }
+    calls.set(0);
+    try {
+      rxTemplate.insert(new Item("b", "y")).toBlocking().single();
+      fail("expected the insert not to be retried");
+    } catch (RuntimeException e) {
+      assertEquals(1, calls.get());
+    }
+  }
+
+  static class Item {
+
+    @Id
+    String id;
+    String name;
+
+    Item(String id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.core.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+public class ParallelRowMapperTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  @AfterClass
+  public static void shutdownPool() {
+    POOL.shutdown();
+  }
+
+  @Test
+  public void shouldPreserveRowOrderWhenMappingInParallel() {
+    List<Integer> rows = new ArrayList<Integer>();
+    for (int i = 0; i < 10000; i++) {
+      rows.add(i);
+    }
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    ParallelRowMapper mapper = new ParallelRowMapper(POOL, 100);
+
+    List<String> mapped = mapper.map(rows, row -> {
+      threads.add(Thread.currentThread());
+      return "row" + row;
+    });
+
+    assertEquals(rows.size(), mapped.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertEquals("row" + i, mapped.get(i));
+    }
+    assertTrue(threads.stream().noneMatch(thread -> thread == Thread.currentThread()));
+  }
+
+  @Test
+  public void shouldMapOnCallingThreadBelowThreshold() {
+    List<Integer> rows = new LinkedList<Integer>();
+    for (int i = 0; i < 99; i++) {
+      rows.add(i);
+    }
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    ParallelRowMapper mapper = new ParallelRowMapper(POOL, 100);
+
+    List<Integer> mapped = mapper.map(rows, row -> {
+      threads.add(Thread.currentThread());
+      return row * 2;
+    });
+
+    assertEquals(99, mapped.size());
+    assertEquals(Integer.valueOf(196), mapped.get(98));
+    assertEquals(1, threads.size());
+    assertTrue(threads.contains(Thread.currentThread()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldPropagateMappingFailure() {
+    List<Integer> rows = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add(i);
+    }
+    new ParallelRowMapper(POOL, 10).map(rows, row -> {
+      if (row == 500) {
+        throw new IllegalStateException("cannot map row " + row);
+      }
+      return row;
+    });
+  }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.RawJsonDocument;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.error.CASMismatchException;
+import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.N1qlQueryResult;
+import com.couchbase.client.java.query.N1qlQueryRow;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.couchbase.core.CouchbaseTemplate;
+import org.springframework.data.couchbase.core.RxJavaCouchbaseTemplate;
+import org.springframework.data.couchbase.core.query.ViewIndexed;
+import org.springframework.data.couchbase.repository.CouchbaseRepository;
+import org.springframework.data.couchbase.repository.config.RepositoryOperationsMapping;
+import org.springframework.data.couchbase.repository.support.CouchbaseRepositoryFactory;
+import org.springframework.data.couchbase.repository.support.IndexManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+public class InMemoryBucketTest {
+
+  private final AtomicLong now = new AtomicLong(1000000000000L);
+
+  private InMemoryBucket inMemoryBucket;
+  private Bucket bucket;
+
+  @Before
+  public void setUp() {
+    inMemoryBucket = new InMemoryBucket("test") {
+      @Override
+      protected long currentTimeMillis() {
+        return now.get();
+      }
+    };
+    bucket = inMemoryBucket.getBucket();
+  }
+
+  @Test
+  public void testKeyValueOperationsHonorCas() {
+    JsonDocument inserted = bucket.insert(JsonDocument.create("a", JsonObject.create().put("x", 1)));
+    assertTrue(inserted.cas() > 0);
+    try {
+      bucket.insert(JsonDocument.create("a", JsonObject.create()));
+      fail("expected the insert of an existing document to fail");
+    } catch (DocumentAlreadyExistsException expected) {
+    }
+
+    JsonDocument replaced = bucket.replace(JsonDocument.create("a", JsonObject.create().put("x", 2), inserted.cas()));
+    try {
+      bucket.replace(JsonDocument.create("a", JsonObject.create().put("x", 3), inserted.cas()));
+      fail("expected a replace with a stale CAS to fail");
+    } catch (CASMismatchException expected) {
+    }
+    assertEquals(2, bucket.get("a").content().getInt("x").intValue());
+    assertEquals(replaced.cas(), bucket.get("a", RawJsonDocument.class).cas());
+
+    assertTrue(bucket.exists("a"));
+    bucket.remove("a");
+    assertFalse(bucket.exists("a"));
+    assertNull(bucket.get("a"));
+  }
+
+  @Test
+  public void testDocumentsExpire() {
+    bucket.upsert(JsonDocument.create("relative", 10, JsonObject.create()));
+    bucket.upsert(JsonDocument.create("absolute", (int) (now.get() / 1000) + 20, JsonObject.create()));
+    assertEquals(2, inMemoryBucket.size());
+
+    now.addAndGet(TimeUnit.SECONDS.toMillis(15));
+    assertNull(bucket.get("relative"));
+    assertNotNull(bucket.get("absolute"));
+
+    bucket.touch("absolute", 0);
+    now.addAndGet(TimeUnit.DAYS.toMillis(1));
+    assertNotNull(bucket.get("absolute"));
+    assertEquals(1, inMemoryBucket.size());
+  }
+
+  @Test
+  public void testAsyncBucketDefersExecution() {
+    JsonDocument document = inMemoryBucket.getAsyncBucket()
+        .upsert(JsonDocument.create("async", JsonObject.create().put("x", 1)))
+        .toBlocking().single();
+    assertEquals("async", document.id());
+    assertTrue(inMemoryBucket.getAsyncBucket().get("missing").isEmpty().toBlocking().single());
+
+    inMemoryBucket.getAsyncBucket().remove("async");
+    assertTrue("operations run on subscription", bucket.exists("async"));
+  }
+
+  @Test
+  public void testFailureInjection() {
+    inMemoryBucket.setFailureInjector((operation, target) ->
+        operation.equals("get") && target.equals("flaky") ? new TemporaryFailureException() : null);
+    bucket.upsert(JsonDocument.create("flaky", JsonObject.create()));
+    try {
+      bucket.get("flaky");
+      fail("expected the injected failure");
+    } catch (TemporaryFailureException expected) {
+    }
+    assertTrue(bucket.exists("flaky"));
+
+    inMemoryBucket.setFailureInjector(null);
+    assertNotNull(bucket.get("flaky", 1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testLatencyIsApplied() {
+    inMemoryBucket.setLatency(20, 20, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    bucket.upsert(JsonDocument.create("slow", JsonObject.create()));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  public void testN1qlSelectWithOrderingAndPaging() {
+    for (int i = 0; i < 10; i++) {
+      bucket.upsert(JsonDocument.create("p" + i, JsonObject.create()
+          .put("_class", "person").put("name", "name" + (9 - i)).put("age", i)));
+    }
+    bucket.upsert(JsonDocument.create("other", JsonObject.create().put("_class", "other").put("age", 5)));
+
+    N1qlQueryResult result = bucket.query(N1qlQuery.parameterized("SELECT META(`test`).id AS _ID, "
+        + "META(`test`).cas AS _CAS, `test`.* FROM `test` WHERE `age` >= $1 AND `_class` = \"person\" "
+        + "ORDER BY `name` ASC LIMIT 3 OFFSET 1", JsonArray.from(4)));
+    assertTrue(result.errors().toString(), result.finalSuccess());
+
+    List<String> ids = new ArrayList<String>();
+    for (N1qlQueryRow row : result) {
+      ids.add(row.value().getString("_ID"));
+      assertNotNull(row.value().getLong("_CAS"));
+    }
+    assertEquals(Arrays.asList("p8", "p7", "p6"), ids);
+
+    N1qlQueryResult count = bucket.query(N1qlQuery.simple(
+        "SELECT COUNT(*) AS count FROM `test` WHERE `_class` IN [\"person\", \"other\"] AND name LIKE \"name%\""));
+    assertEquals(10, count.allRows().get(0).value().getInt("count").intValue());
+  }
+
+  @Test
+  public void testN1qlGroupByAndDelete() {
+    for (int i = 0; i < 6; i++) {
+      bucket.upsert(JsonDocument.create("p" + i, JsonObject.create().put("team", i % 2 == 0 ? "even" : "odd")
+          .put("score", i)));
+    }
+    N1qlQueryResult grouped = bucket.query(N1qlQuery.simple(
+        "SELECT team, SUM(score) AS total FROM test GROUP BY team ORDER BY team"));
+    assertEquals(JsonObject.create().put("team", "even").put("total", 6), grouped.allRows().get(0).value());
+    assertEquals(JsonObject.create().put("team", "odd").put("total", 9), grouped.allRows().get(1).value());
+
+    N1qlQueryResult deleted = bucket.query(N1qlQuery.simple(
+        "DELETE FROM test WHERE team = \"odd\" RETURNING META(test).id AS _ID"));
+    assertEquals(3, deleted.allRows().size());
+    assertEquals(3, deleted.info().mutationCount());
+    assertEquals(3, inMemoryBucket.size());
+  }
+
+  @Test
+  public void testN1qlErrorsAreReportedInTheResult() {
+    N1qlQueryResult result = bucket.query(N1qlQuery.simple("SELECT * FROM other"));
+    assertFalse(result.finalSuccess());
+    assertEquals(InMemoryN1qlException.KEYSPACE_NOT_FOUND, result.errors().get(0).getInt("code").intValue());
+
+    result = bucket.query(N1qlQuery.simple("SELECT FROM WHERE"));
+    assertFalse(result.parseSuccess());
+    assertEquals("fatal", result.status());
+  }
+
+  @Test
+  public void testTemplateRunsAgainstInMemoryBucket() {
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), bucket);
+    Person person = new Person("1", "Alice", 30);
+    template.save(person);
+    assertTrue(person.version > 0);
+
+    Person found = template.findById("1", Person.class);
+    assertEquals("Alice", found.name);
+
+    Person stale = new Person("1", "Bob", 40);
+    stale.version = person.version - 1;
+    try {
+      template.save(stale);
+      fail("expected an optimistic locking failure");
+    } catch (OptimisticLockingFailureException expected) {
+    }
+
+    template.save(new Person("2", "Bob", 40));
+    List<Person> people = template.findByN1QL(N1qlQuery.simple("SELECT META(`test`).id AS _ID, "
+        + "META(`test`).cas AS _CAS, `test`.* FROM `test` WHERE `age` > 35"), Person.class);
+    assertEquals(1, people.size());
+    assertEquals("2", people.get(0).id);
+
+    template.remove(found);
+    assertFalse(template.exists("1"));
+
+    RxJavaCouchbaseTemplate rxTemplate = new RxJavaCouchbaseTemplate(inMemoryBucket.getClusterInfo(), bucket);
+    assertEquals("Bob", rxTemplate.findById("2", Person.class).toBlocking().single().name);
+  }
+
+  @Test
+  public void testRepositoryRunsAgainstInMemoryBucket() {
+    CouchbaseTemplate template = new CouchbaseTemplate(inMemoryBucket.getClusterInfo(), bucket);
+    CouchbaseRepositoryFactory factory = new CouchbaseRepositoryFactory(new RepositoryOperationsMapping(template),
+        new IndexManager(true, false, false));
+    PersonRepository repository = factory.getRepository(PersonRepository.class);
+
+    repository.save(new Person("1", "Alice", 30));
+    repository.save(new Person("2", "Bob", 40));
+    repository.save(new Person("3", "Carol", 50));
+
+    assertEquals(3, repository.count());
+    assertEquals(Arrays.asList("Bob", "Carol"), names(repository.findByAgeGreaterThanOrderByNameAsc(35)));
+    assertEquals(1, repository.countByName("Alice"));
+    assertTrue(repository.existsById("3"));
+    assertEquals(3, names(repository.findAll()).size());
+
+    repository.deleteById("1");
+    assertEquals(2, repository.count());
+  }
+
+  private static List<String> names(Iterable<Person> people) {
+    List<String> names = new ArrayList<String>();
+    for (Person person : people) {
+      names.add(person.name);
+    }
+    return names;
+  }
+
+  static class Person {
+
+    @Id
+    String id;
+
+    String name;
+
+    int age;
+
+    @Version
+    long version;
+
+    Person(String id, String name, int age) {
+      this.id = id;
+      this.name = name;
+      this.age = age;
+    }
+  }
+
+  @ViewIndexed(designDoc = "person")
+  public interface PersonRepository extends CouchbaseRepository<Person, String> {
+
+    List<Person> findByAgeGreaterThanOrderByNameAsc(int age);
+
+    long countByName(String name);
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.bucket.BucketInfo;
+import com.couchbase.client.java.bucket.BucketManager;
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.web.client.ResourceAccessException;
+
+public class ClusterInfoTest {
+
+  private StubClusterInfo clusterInfo;
+
+  @After
+  public void tearDown() {
+    if (clusterInfo != null) {
+      clusterInfo.destroy();
+    }
+  }
+
+  @Test
+  public void testAttributesAreReadFromOneSnapshot() {
+    clusterInfo = new StubClusterInfo(1, TimeUnit.HOURS);
+    clusterInfo.responses.add(poolInfo("none"));
+
+    assertEquals(1000L, clusterInfo.getTotalRAMAssigned());
+    assertEquals(400L, clusterInfo.getTotalRAMUsed());
+    assertEquals(5000L, clusterInfo.getTotalDiskFree());
+    assertTrue(clusterInfo.getIsBalanced());
+    assertEquals("none", clusterInfo.getRebalanceStatus());
+    assertEquals(10, clusterInfo.getMaxBuckets());
+    assertEquals(-1d, clusterInfo.getRebalanceProgress(), 0);
+    assertArrayEquals(new String[] { "node1:8091: healthy (active)", "node2:8091: warmup (active)" },
+        clusterInfo.getNodeStatuses());
+    assertEquals(1, clusterInfo.getUnhealthyNodeCount());
+    assertTrue(clusterInfo.getSnapshotAge() >= 0);
+
+    assertEquals(Arrays.asList("/pools/default"), clusterInfo.paths);
+  }
+
+  @Test
+  public void testRebalanceProgressIsFetchedWhileRunning() {
+    clusterInfo = new StubClusterInfo(1, TimeUnit.HOURS);
+    clusterInfo.responses.add(poolInfo("running"));
+    Map<String, Object> progress = new HashMap<String, Object>();
+    progress.put("status", "running");
+    progress.put("ns_1@node1", singleton("progress", 0.5));
+    progress.put("ns_1@node2", singleton("progress", 0.25));
+    clusterInfo.responses.add(progress);
+
+    assertEquals(37.5, clusterInfo.getRebalanceProgress(), 0.001);
+    assertEquals(Arrays.asList("/pools/default", "/pools/default/rebalanceProgress"), clusterInfo.paths);
+  }
+
+  @Test
+  public void testFailedRefreshKeepsSnapshot() throws Exception {
+    clusterInfo = new StubClusterInfo(20, TimeUnit.MILLISECONDS);
+    clusterInfo.responses.add(poolInfo("none"));
+    assertEquals(400L, clusterInfo.getTotalRAMUsed());
+    assertNull(clusterInfo.getLastRefreshError());
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (clusterInfo.getLastRefreshError() == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertNotNull(clusterInfo.getLastRefreshError());
+    assertEquals(400L, clusterInfo.getTotalRAMUsed());
+
+    Map<String, Object> refreshed = poolInfo("none");
+    ((Map<String, Map<String, Object>>) refreshed.get("storageTotals")).get("ram").put("used", 700);
+    clusterInfo.responses.add(refreshed);
+    deadline = System.currentTimeMillis() + 5000;
+    while (clusterInfo.getTotalRAMUsed() != 700L && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(700L, clusterInfo.getTotalRAMUsed());
+    assertNull(clusterInfo.getLastRefreshError());
+  }
+
+  @Test
+  public void testBackoffIsJitteredAndCapped() {
+    clusterInfo = new StubClusterInfo(1, TimeUnit.SECONDS);
+    clusterInfo.setMaxBackoff(30, TimeUnit.SECONDS);
+    boolean jittered = false;
+    long first = clusterInfo.backoff(1);
+    for (int i = 0; i < 100; i++) {
+      long backoff = clusterInfo.backoff(1);
+      assertTrue(backoff >= 1000 && backoff <= 2000);
+      jittered |= backoff != first;
+      long capped = clusterInfo.backoff(40);
+      assertTrue(capped >= 15000 && capped <= 30000);
+    }
+    assertTrue(jittered);
+    assertFalse(clusterInfo.paths.contains("/pools/default"));
+  }
+
+  private static Map<String, Object> poolInfo(String rebalanceStatus) {
+    Map<String, Object> ram = new HashMap<String, Object>();
+    ram.put("total", 1000);
+    ram.put("used", 400);
+    Map<String, Object> hdd = new HashMap<String, Object>();
+    hdd.put("total", 10000L);
+    hdd.put("used", 5000);
+    hdd.put("free", 5000);
+    Map<String, Object> storageTotals = new HashMap<String, Object>();
+    storageTotals.put("ram", ram);
+    storageTotals.put("hdd", hdd);
+
+    List<Map<String, Object>> nodes = new ArrayList<Map<String, Object>>();
+    nodes.add(node("node1:8091", "healthy"));
+    nodes.add(node("node2:8091", "warmup"));
+
+    Map<String, Object> poolInfo = new HashMap<String, Object>();
+    poolInfo.put("storageTotals", storageTotals);
+    poolInfo.put("balanced", true);
+    poolInfo.put("rebalanceStatus", rebalanceStatus);
+    poolInfo.put("maxBucketCount", 10);
+    poolInfo.put("nodes", nodes);
+    return poolInfo;
+  }
+
+  private static Map<String, Object> node(String hostname, String status) {
+    Map<String, Object> node = new HashMap<String, Object>();
+    node.put("hostname", hostname);
+    node.put("status", status);
+    node.put("clusterMembership", "active");
+    return node;
+  }
+
+  private static Map<String, Object> singleton(String key, Object value) {
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put(key, value);
+    return map;
+  }
+
+  private static Bucket bucket() {
+    Bucket bucket = mock(Bucket.class);
+    BucketManager bucketManager = mock(BucketManager.class);
+    when(bucket.bucketManager()).thenReturn(bucketManager);
+    when(bucketManager.info()).thenReturn(mock(BucketInfo.class));
+    return bucket;
+  }
+
+  /**
+   * Answers the requests with the queued responses, and fails when there is none.
+   */
+  static class StubClusterInfo extends ClusterInfo {
+
+    final List<Map<String, Object>> responses = new ArrayList<Map<String, Object>>();
+    final List<String> paths = new ArrayList<String>();
+
+    StubClusterInfo(long refreshInterval, TimeUnit unit) {
+      super(bucket(), refreshInterval, unit);
+    }
+
+    @Override
+    protected synchronized Map<String, Object> fetch(String path) {
+      paths.add(path);
+      if (responses.isEmpty()) {
+        throw new ResourceAccessException("I/O error on GET request for " + path);
+      }
+      return responses.remove(0);
+    }
+  }
+}
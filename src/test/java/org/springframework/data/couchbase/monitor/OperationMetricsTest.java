@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.cluster.ClusterInfo;
+import com.couchbase.client.java.document.RawJsonDocument;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.CouchbaseTemplate;
+
+public class OperationMetricsTest {
+
+  private OperationMetrics metrics;
+
+  @Before
+  public void setUp() {
+    metrics = new OperationMetrics();
+  }
+
+  @Test
+  public void testDisabledTraceIsShared() {
+    OperationTrace first = OperationTrace.start(null, "findById", Item.class);
+    OperationTrace second = OperationTrace.start(null, "save", Item.class);
+    assertSame(first, second);
+    assertFalse(first.isEnabled());
+    first.phase(OperationPhase.NETWORK);
+    first.end();
+  }
+
+  @Test
+  public void testTraceIsRecordedOnce() {
+    OperationTrace trace = OperationTrace.start(metrics, "findById", Item.class);
+    trace.phase(OperationPhase.NETWORK);
+    trace.end();
+    trace.end();
+
+    OperationStatistics stats = metrics.getStatistics("findById", Item.class, null);
+    assertNotNull(stats);
+    assertEquals(1L, stats.getCount());
+    assertEquals(0L, stats.getErrorCount());
+    assertEquals(1L, metrics.getOperationCount());
+  }
+
+  @Test
+  public void testAddedTimeIsExcludedFromCurrentPhase() throws Exception {
+    OperationTrace trace = OperationTrace.start(metrics, "findByN1QL", Item.class);
+    trace.phase(OperationPhase.NETWORK);
+    long start = trace.now();
+    Thread.sleep(20);
+    trace.add(OperationPhase.DECODE, start);
+    trace.end();
+
+    OperationStatistics stats = metrics.getStatistics("findByN1QL", Item.class, null);
+    assertTrue(stats.getMeanPhaseNanos(OperationPhase.DECODE) >= 20000000L);
+    assertTrue(stats.getMeanPhaseNanos(OperationPhase.NETWORK) < stats.getMeanPhaseNanos(OperationPhase.DECODE));
+    assertTrue(stats.getMeanNanos() >= stats.getMeanPhaseNanos(OperationPhase.DECODE));
+  }
+
+  @Test
+  public void testOperationsAreAttributedToRepositoryMethod() {
+    String previous = OperationTrace.enterRepositoryMethod("ItemRepository.findByName");
+    try {
+      OperationTrace.start(metrics, "findByN1QL", Item.class).end();
+    } finally {
+      OperationTrace.exitRepositoryMethod(previous);
+    }
+    OperationTrace.start(metrics, "findByN1QL", Item.class).end();
+
+    assertEquals(1L, metrics.getStatistics("findByN1QL", Item.class, "ItemRepository.findByName").getCount());
+    assertEquals(1L, metrics.getStatistics("findByN1QL", Item.class, null).getCount());
+    assertEquals(2, metrics.getOperationStatistics().length);
+  }
+
+  @Test
+  public void testPercentileIsUpperBoundOfBucket() {
+    OperationStatistics stats = new OperationStatistics("get", Item.class, null);
+    for (int i = 0; i < 99; i++) {
+      stats.record(new OperationSample("get", Item.class, null, null, 1L, 0L, 1000L,
+          new long[OperationPhase.values().length], null));
+    }
+    stats.record(new OperationSample("get", Item.class, null, null, 1L, 0L, 1000000L,
+          new long[OperationPhase.values().length], null));
+
+    assertEquals(1023L, stats.getPercentileNanos(50));
+    assertEquals(1023L, stats.getPercentileNanos(99));
+    assertEquals(1048575L, stats.getPercentileNanos(100));
+  }
+
+  @Test
+  public void testTemplateRecordsOperationsAndErrors() {
+    Bucket bucket = mock(Bucket.class);
+    when(bucket.get("item1", RawJsonDocument.class))
+        .thenReturn(RawJsonDocument.create("item1", "{\"name\":\"first\"}", 1L));
+    when(bucket.get("item2", RawJsonDocument.class)).thenThrow(new TemporaryFailureException());
+    CouchbaseTemplate template = new CouchbaseTemplate(mock(ClusterInfo.class), bucket);
+    template.setOperationRecorder(metrics);
+
+    Item item = template.findById("item1", Item.class);
+    assertEquals("first", item.name);
+    try {
+      template.findById("item2", Item.class);
+      fail("expected the failure to be propagated");
+    } catch (RuntimeException e) {
+      //expected
+    }
+
+    OperationStatistics stats = metrics.getStatistics("findById", Item.class, null);
+    assertEquals(2L, stats.getCount());
+    assertEquals(1L, stats.getErrorCount());
+    assertEquals(1L, metrics.getErrorCount());
+
+    metrics.reset();
+    assertNull(metrics.getStatistics("findById", Item.class, null));
+  }
+
+  @Test
+  public void testTemplateRecordsTargetAndPayload() {
+    Bucket bucket = mock(Bucket.class);
+    when(bucket.get("item1", RawJsonDocument.class))
+        .thenReturn(RawJsonDocument.create("item1", "{\"name\":\"first\"}", 1L));
+    CouchbaseTemplate template = new CouchbaseTemplate(mock(ClusterInfo.class), bucket);
+    List<OperationSample> samples = new ArrayList<OperationSample>();
+    template.setOperationRecorder(samples::add);
+
+    template.findById("item1", Item.class);
+
+    assertEquals(1, samples.size());
+    OperationSample sample = samples.get(0);
+    assertEquals("item1", sample.getTarget());
+    assertEquals(1L, sample.getRowCount());
+    assertEquals(16L, sample.getPayloadBytes());
+    assertTrue(sample.getPhaseNanos(OperationPhase.MAPPING) > 0L);
+    assertTrue(sample.getPhaseNanos(OperationPhase.DECODE) > 0L);
+  }
+
+  static class Item {
+
+    @Id
+    String id;
+
+    String name;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SlowOperationLoggerTest {
+
+  private final List<String> records = new ArrayList<String>();
+  private SlowOperationLogger logger;
+
+  @Before
+  public void setUp() {
+    logger = new SlowOperationLogger(10, TimeUnit.MILLISECONDS) {
+      @Override
+      protected void log(String record) {
+        records.add(record);
+      }
+    };
+  }
+
+  private static OperationSample sample(String target, long totalMillis) {
+    long[] phases = new long[OperationPhase.values().length];
+    phases[OperationPhase.NETWORK.ordinal()] = TimeUnit.MILLISECONDS.toNanos(totalMillis - 1);
+    phases[OperationPhase.MAPPING.ordinal()] = TimeUnit.MILLISECONDS.toNanos(1);
+    return new OperationSample("findByN1QL", String.class, "ItemRepository.findByName", target, 3, 120,
+        TimeUnit.MILLISECONDS.toNanos(totalMillis), phases, null);
+  }
+
+  @Test
+  public void testFastOperationsAreIgnored() {
+    logger.record(sample("SELECT 1", 5));
+    assertEquals(0, records.size());
+  }
+
+  @Test
+  public void testSlowOperationRecordHasAllFields() {
+    logger.record(sample("SELECT 1", 25));
+
+    assertEquals(1, records.size());
+    String record = records.get(0);
+    assertTrue(record, record.startsWith("Slow Couchbase operation: operation=findByN1QL, entity=java.lang.String"));
+    assertTrue(record, record.contains("repositoryMethod=ItemRepository.findByName"));
+    assertTrue(record, record.contains("target=\"SELECT 1\""));
+    assertTrue(record, record.contains("rows=3, payloadBytes=120, totalMs=25.000"));
+    assertTrue(record, record.contains("mappingMs=1.000"));
+    assertTrue(record, record.contains("networkMs=24.000"));
+    assertTrue(record, record.contains("joinMs=0.000"));
+  }
+
+  @Test
+  public void testSameKeyIsSampled() {
+    logger.record(sample("SELECT 1", 25));
+    logger.record(sample("SELECT 1", 25));
+    logger.record(sample("SELECT 1", 25));
+    logger.record(sample("SELECT 2", 25));
+    assertEquals(2, records.size());
+
+    logger.setSamplingInterval(0, TimeUnit.SECONDS);
+    logger.record(sample("SELECT 1", 25));
+    assertEquals(3, records.size());
+    assertTrue(records.get(2), records.get(2).endsWith("suppressed=2"));
+  }
+
+  @Test
+  public void testRecordsAreRateLimited() {
+    logger.setMaxRecordsPerSecond(2);
+    for (int i = 0; i < 5; i++) {
+      logger.record(sample("SELECT " + i, 25));
+    }
+    assertEquals(2, records.size());
+  }
+
+  @Test
+  public void testLongStatementsAreTruncated() {
+    logger.setMaxTargetLength(5);
+    logger.record(sample("SELECT * FROM b", 25));
+    assertTrue(records.get(0), records.get(0).contains("target=\"SELEC...\""));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.repository.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.core.convert.MappingCouchbaseConverter;
+import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+
+public class CounterByIdQueryTest {
+
+  private CouchbaseMappingContext mappingContext;
+  private CouchbaseOperations operations;
+
+  @Before
+  public void setUp() {
+    mappingContext = new CouchbaseMappingContext();
+    MappingCouchbaseConverter converter = new MappingCouchbaseConverter(mappingContext);
+    converter.afterPropertiesSet();
+    operations = mock(CouchbaseOperations.class);
+    when(operations.getConverter()).thenReturn(converter);
+  }
+
+  private CouchbaseQueryMethod queryMethod(String name, Class<?>... parameterTypes) throws Exception {
+    Method method = PageRepository.class.getMethod(name, parameterTypes);
+    RepositoryMetadata metadata = new DefaultRepositoryMetadata(PageRepository.class);
+    return new CouchbaseQueryMethod(method, metadata, new SpelAwareProxyProjectionFactory(), mappingContext);
+  }
+
+  @Test
+  public void testCounterMethodsAreRecognized() throws Exception {
+    assertTrue(queryMethod("incrementViewsById", String.class, long.class).isCounterMethod());
+    assertTrue(queryMethod("decrementStockById", String.class, int.class).isCounterMethod());
+    assertFalse(queryMethod("findByViews", long.class).isCounterMethod());
+  }
+
+  @Test
+  public void testIncrementAddsDeltaToPropertyField() throws Exception {
+    when(operations.counter("p1", Page.class, "views", 3)).thenReturn(8L);
+    CounterByIdQuery query = new CounterByIdQuery(queryMethod("incrementViewsById", String.class, long.class),
+        operations);
+
+    assertEquals(8L, query.execute(new Object[] {"p1", 3L}));
+  }
+
+  @Test
+  public void testDecrementSubtractsDelta() throws Exception {
+    when(operations.counter("p1", Page.class, "stock", -2)).thenReturn(5L);
+    CounterByIdQuery query = new CounterByIdQuery(queryMethod("decrementStockById", String.class, int.class),
+        operations);
+
+    assertEquals(5, query.execute(new Object[] {"p1", 2}));
+  }
+
+  @Test(expected = PropertyReferenceException.class)
+  public void testUnknownPropertyIsRejected() throws Exception {
+    new CounterByIdQuery(queryMethod("incrementLikesById", String.class, long.class), operations);
+  }
+
+  static class Page {
+
+    @Id
+    String id;
+    long views;
+    int stock;
+  }
+
+  interface PageRepository extends CrudRepository<Page, String> {
+
+    long incrementViewsById(String id, long delta);
+
+    int decrementStockById(String id, int delta);
+
+    long incrementLikesById(String id, long delta);
+
+    Iterable<Page> findByViews(long views);
+  }
+}
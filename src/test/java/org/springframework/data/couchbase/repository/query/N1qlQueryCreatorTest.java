@@ -15,6 +15,21 @@ import org.springframework.data.repository.query.parser.Part;
 
 public class N1qlQueryCreatorTest {
 
+  @Test
+  public void testCONTAININGOnCollection() throws Exception {
+    Iterator<Object> values = Arrays.<Object>asList("a", "B").iterator();
+
+    JsonArray phexp = JsonArray.create();
+    Expression exp = N1qlQueryCreatorUtils.createArrayExpression(Part.Type.CONTAINING, "doc.tags", false, values, new AtomicInteger(), phexp);
+    JsonArray phexpIgnoreCase = JsonArray.create();
+    Expression expIgnoreCase = N1qlQueryCreatorUtils.createArrayExpression(Part.Type.NOT_CONTAINING, "doc.tags", true, values, new AtomicInteger(), phexpIgnoreCase);
+
+    assertEquals("ANY element IN doc.tags SATISFIES element = $0 END", exp.toString());
+    assertEquals("NOT ANY element IN doc.tags SATISFIES LOWER(element) = LOWER($0) END", expIgnoreCase.toString());
+    assertEquals(JsonArray.create().add("a"), phexp);
+    assertEquals(JsonArray.create().add("B"), phexpIgnoreCase);
+  }
+
   //==== The tests below check mapping between a Part.Type and the corresponding N1QL expression ====
 
   @Test
@@ -33,9 +33,13 @@ import org.springframework.data.couchbase.core.Beer;
 import org.springframework.data.couchbase.core.BeerDTO;
 import org.springframework.data.couchbase.core.BeerProjection;
 import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
 import org.springframework.data.couchbase.core.convert.CouchbaseConverter;
 import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
 import org.springframework.data.couchbase.core.mapping.CouchbasePersistentProperty;
+import org.springframework.data.couchbase.core.query.Aggregate;
+import org.springframework.data.couchbase.core.query.AggregateFunction;
+import org.springframework.data.couchbase.core.query.GroupBy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -217,8 +221,118 @@ public class PartTreeN1qBasedQueryTest {
 
 	}
 
+	@Test
+	public void testGroupedAggregation() throws Exception {
+		CouchbaseOperations couchbaseOperations = mock(CouchbaseOperations.class);
+		CouchbaseBucket couchbaseBucket = mock(CouchbaseBucket.class);
+		CouchbaseConverter couchbaseConverter = mock(CouchbaseConverter.class);
+		ProjectionFactory factory = new SpelAwareProxyProjectionFactory();
+		ParameterAccessor accessor = mock(ParameterAccessor.class);
+
+		RepositoryMetadata metadata = new DefaultRepositoryMetadata(TestRepository.class);
+		Method method = TestRepository.class.getMethod("findByActiveTrueOrderByName");
+		MappingContext mappingContext = new CouchbaseMappingContext();
+		CouchbaseQueryMethod queryMethod = new CouchbaseQueryMethod(method, metadata, factory, mappingContext);
+
+		when(accessor.getSort()).thenReturn(Sort.unsorted());
+		when(accessor.getPageable()).thenReturn(Pageable.unpaged());
+		when(couchbaseOperations.getCouchbaseBucket()).thenReturn(couchbaseBucket);
+		when(couchbaseBucket.name()).thenReturn("B");
+		when(couchbaseOperations.getConverter()).thenReturn(couchbaseConverter);
+		when(couchbaseConverter.getMappingContext()).thenReturn(mappingContext);
+		when(couchbaseConverter.getTypeKey()).thenReturn("_class");
+
+		ResultProcessor processor = queryMethod.getResultProcessor().withDynamicProjection(accessor);
+
+		PartTreeN1qlBasedQuery query = new PartTreeN1qlBasedQuery(queryMethod, couchbaseOperations);
+		Statement statement = query.getStatement(accessor, null, processor.getReturnedType());
+		Statement count = query.getCount(accessor, null);
+
+		assertTrue(query.isRowProjection());
+		assertEquals("SELECT `B`.`name` AS `name`, COUNT(*) AS `total`, MAX(`B`.`desc`) AS `description` FROM `B` "
+				+ "WHERE (`is_active` = TRUE) AND `_class` = \"org.springframework.data.couchbase.core.Beer\" "
+				+ "GROUP BY `B`.`name` ORDER BY `name` ASC", statement.toString());
+		assertEquals("SELECT COUNT(DISTINCT [`B`.`name`]) AS count FROM `B` "
+				+ "WHERE (`is_active` = TRUE) AND `_class` = \"org.springframework.data.couchbase.core.Beer\"",
+				count.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAggregationRejectedOnCountProjection() throws Exception {
+		CouchbaseOperations couchbaseOperations = mock(CouchbaseOperations.class);
+		ProjectionFactory factory = new SpelAwareProxyProjectionFactory();
+		RepositoryMetadata metadata = new DefaultRepositoryMetadata(TestRepository.class);
+		Method method = TestRepository.class.getMethod("countByActiveTrue");
+		CouchbaseQueryMethod queryMethod = new CouchbaseQueryMethod(method, metadata, factory, new CouchbaseMappingContext());
+
+		new PartTreeN1qlBasedQuery(queryMethod, couchbaseOperations);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReactiveAggregationRejectedOnDelete() throws Exception {
+		RxJavaCouchbaseOperations couchbaseOperations = mock(RxJavaCouchbaseOperations.class);
+		ProjectionFactory factory = new SpelAwareProxyProjectionFactory();
+		RepositoryMetadata metadata = new DefaultRepositoryMetadata(TestRepository.class);
+		Method method = TestRepository.class.getMethod("deleteByActiveTrue");
+		CouchbaseQueryMethod queryMethod = new CouchbaseQueryMethod(method, metadata, factory, new CouchbaseMappingContext());
+
+		new ReactivePartTreeN1qlBasedQuery(queryMethod, couchbaseOperations);
+	}
+
+	@Test
+	public void testExistsProjectionIsLimitedRawProbe() throws Exception {
+		CouchbaseOperations couchbaseOperations = mock(CouchbaseOperations.class);
+		CouchbaseBucket couchbaseBucket = mock(CouchbaseBucket.class);
+		CouchbaseConverter couchbaseConverter = mock(CouchbaseConverter.class);
+		ProjectionFactory factory = new SpelAwareProxyProjectionFactory();
+		ParameterAccessor accessor = mock(ParameterAccessor.class);
+
+		RepositoryMetadata metadata = new DefaultRepositoryMetadata(TestRepository.class);
+		Method method = TestRepository.class.getMethod("existsByActiveTrue");
+		MappingContext mappingContext = new CouchbaseMappingContext();
+		CouchbaseQueryMethod queryMethod = new CouchbaseQueryMethod(method, metadata, factory, mappingContext);
+
+		when(accessor.getSort()).thenReturn(Sort.unsorted());
+		when(accessor.getPageable()).thenReturn(Pageable.unpaged());
+		when(couchbaseOperations.getCouchbaseBucket()).thenReturn(couchbaseBucket);
+		when(couchbaseBucket.name()).thenReturn("B");
+		when(couchbaseOperations.getConverter()).thenReturn(couchbaseConverter);
+		when(couchbaseConverter.getMappingContext()).thenReturn(mappingContext);
+		when(couchbaseConverter.getTypeKey()).thenReturn("_class");
+
+		ResultProcessor processor = queryMethod.getResultProcessor().withDynamicProjection(accessor);
+
+		PartTreeN1qlBasedQuery query = new PartTreeN1qlBasedQuery(queryMethod, couchbaseOperations);
+		Statement statement = query.getStatement(accessor, null, processor.getReturnedType());
+
+		assertTrue(query.isExistsQuery());
+		assertEquals("SELECT RAW 1 FROM `B` WHERE (`is_active` = TRUE) AND "
+				+ "`_class` = \"org.springframework.data.couchbase.core.Beer\" LIMIT 1", statement.toString());
+	}
+
+	public static class BeerSummary {
+
+		public String name;
+		public long total;
+		public String description;
+
+	}
+
 	public static interface TestRepository extends CrudRepository<Beer, String> {
 
+		@GroupBy("name")
+		@Aggregate(function = AggregateFunction.COUNT, alias = "total")
+		@Aggregate(function = AggregateFunction.MAX, property = "description")
+		List<BeerSummary> findByActiveTrueOrderByName();
+
+		@Aggregate(function = AggregateFunction.COUNT, alias = "total")
+		long countByActiveTrue();
+
+		@Aggregate(function = AggregateFunction.COUNT, alias = "total")
+		long deleteByActiveTrue();
+
+		boolean existsByActiveTrue();
+
 		Page<Beer> findByNameOrderByName(String name, Pageable pageRequest);
 
 		Page<Beer> findByName(String name, Pageable pageRequest);
@@ -95,4 +95,30 @@ public class StringN1QlBasedQueryTest {
             + "\"java.lang.String\" returning `B`.*, META(`B`).id AS _ID, META(`B`).cas AS _CAS", parsed);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testStatementWithOnlyCouchbaseVariablesIsCached() throws Exception {
+    String statement = spel(SPEL_SELECT_FROM_CLAUSE) + " WHERE " + spel(SPEL_FILTER);
+    StringBasedN1qlQueryParser parser = new StringBasedN1qlQueryParser(statement, null, "B", this.couchbaseConverter,
+        "_class", String.class);
+
+    assertFalse(parser.isParameterDependent());
+    assertSame(parser.parse(null, false), parser.parse(null, false));
+    assertEquals("SELECT COUNT(*) AS " + CountFragment.COUNT_ALIAS + " FROM `B` WHERE `_class` = "
+        + "\"java.lang.String\"", parser.parse(null, true));
+  }
+
+  @Test
+  public void testStatementWithParameterSpelIsEvaluatedEachTime() throws Exception {
+    String statement = "SELECT * FROM " + spel(SPEL_BUCKET) + " WHERE " + spel("#field") + " = 1";
+    StringBasedN1qlQueryParser parser = new StringBasedN1qlQueryParser(statement, null, "B", this.couchbaseConverter,
+        "_class", String.class);
+    EvaluationContext context = new StandardEvaluationContext();
+
+    assertTrue(parser.isParameterDependent());
+    context.setVariable("field", "a");
+    assertEquals("SELECT * FROM `B` WHERE a = 1", parser.parse(context, false));
+    context.setVariable("field", "b");
+    assertEquals("SELECT * FROM `B` WHERE b = 1", parser.parse(context, false));
+  }
+
+}
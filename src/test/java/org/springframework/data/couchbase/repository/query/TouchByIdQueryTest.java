@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.repository.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.core.RxJavaCouchbaseOperations;
+import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+public class TouchByIdQueryTest {
+
+  private final CouchbaseMappingContext mappingContext = new CouchbaseMappingContext();
+
+  private CouchbaseQueryMethod queryMethod(Class<?> repositoryInterface, String name, Class<?>... parameterTypes)
+      throws Exception {
+    Method method = repositoryInterface.getMethod(name, parameterTypes);
+    return new CouchbaseQueryMethod(method, new DefaultRepositoryMetadata(repositoryInterface),
+        new SpelAwareProxyProjectionFactory(), mappingContext);
+  }
+
+  private static Map<String, Boolean> touched() {
+    Map<String, Boolean> touched = new LinkedHashMap<String, Boolean>();
+    touched.put("s1", true);
+    touched.put("s2", false);
+    touched.put("s3", true);
+    return touched;
+  }
+
+  @Test
+  public void testTouchMethodsAreRecognized() throws Exception {
+    assertTrue(queryMethod(SessionRepository.class, "touchAllById", Iterable.class, int.class).isTouchMethod());
+    assertTrue(queryMethod(SessionRepository.class, "findAllByIdAndTouch", Iterable.class, Duration.class)
+        .isTouchMethod());
+    assertFalse(queryMethod(SessionRepository.class, "findByUser", String.class).isTouchMethod());
+  }
+
+  @Test
+  public void testTouchAllByIdReturnsNumberOfDocumentsTouched() throws Exception {
+    CouchbaseOperations operations = mock(CouchbaseOperations.class);
+    when(operations.touch(Arrays.asList("s1", "s2", "s3"), 600)).thenReturn(touched());
+    TouchByIdQuery query = new TouchByIdQuery(queryMethod(SessionRepository.class, "touchAllById", Iterable.class,
+        int.class), operations);
+
+    assertEquals(2, query.execute(new Object[] {Arrays.asList("s1", "s2", "s3"), 600}));
+  }
+
+  @Test
+  public void testFindAllByIdAndTouchReturnsEntitiesWithDurationExpiry() throws Exception {
+    CouchbaseOperations operations = mock(CouchbaseOperations.class);
+    Session session = new Session();
+    when(operations.findAllByIdAndTouch(Arrays.asList("s1", "s2"), Session.class, 1800))
+        .thenReturn(Collections.singletonMap("s1", session));
+    TouchByIdQuery query = new TouchByIdQuery(queryMethod(SessionRepository.class, "findAllByIdAndTouch",
+        Iterable.class, Duration.class), operations);
+
+    Object result = query.execute(new Object[] {Arrays.asList("s1", "s2"), Duration.ofMinutes(30)});
+    assertEquals(Arrays.asList(session), result);
+  }
+
+  @Test
+  public void testDurationsOver30DaysAreConvertedToUnixTime() {
+    assertEquals(30 * 24 * 3600, TouchByIdQuery.expiry(Duration.ofDays(30)));
+    long expected = System.currentTimeMillis() / 1000 + 31 * 24 * 3600;
+    assertEquals(expected, TouchByIdQuery.expiry(Duration.ofDays(31)), 5);
+    assertEquals(31 * 24 * 3600, TouchByIdQuery.expiry(31 * 24 * 3600));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testReactiveTouchAllByIdEmitsTouchedDocuments() throws Exception {
+    RxJavaCouchbaseOperations operations = mock(RxJavaCouchbaseOperations.class);
+    when(operations.touch(Arrays.asList("s1", "s2", "s3"), 60)).thenReturn(Observable.just(touched()));
+    ReactiveTouchByIdQuery query = new ReactiveTouchByIdQuery(queryMethod(ReactiveSessionRepository.class,
+        "touchAllById", Iterable.class, int.class), operations);
+
+    Mono<Map<String, Boolean>> result = (Mono<Map<String, Boolean>>) query.execute(
+        new Object[] {Arrays.asList("s1", "s2", "s3"), 60});
+    assertEquals(touched(), result.block());
+  }
+
+  static class Session {
+
+    @Id
+    String id;
+    String user;
+  }
+
+  interface SessionRepository extends CrudRepository<Session, String> {
+
+    int touchAllById(Iterable<String> ids, int expiry);
+
+    List<Session> findAllByIdAndTouch(Iterable<String> ids, Duration expiry);
+
+    List<Session> findByUser(String user);
+  }
+
+  interface ReactiveSessionRepository extends ReactiveCrudRepository<Session, String> {
+
+    Mono<Map<String, Boolean>> touchAllById(Iterable<String> ids, int expiry);
+  }
+}
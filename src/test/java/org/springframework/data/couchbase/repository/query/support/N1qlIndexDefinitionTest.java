@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.query.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.data.couchbase.core.convert.MappingCouchbaseConverter;
+import org.springframework.data.couchbase.core.mapping.CouchbaseMappingContext;
+import org.springframework.data.repository.query.parser.PartTree;
+
+public class N1qlIndexDefinitionTest {
+
+  private final MappingCouchbaseConverter converter = new MappingCouchbaseConverter(new CouchbaseMappingContext());
+
+  private List<N1qlIndexDefinition> derive(String methodName) {
+    return N1qlIndexDefinition.fromPartTree(new PartTree(methodName, Item.class), Item.class, converter);
+  }
+
+  @Test
+  public void testEqualityKeysComeBeforeRangeKeys() {
+    List<N1qlIndexDefinition> definitions = derive("findByPriceGreaterThanAndName");
+
+    assertEquals(1, definitions.size());
+    assertEquals("CREATE INDEX `idx_Item_name_price` ON `b`(`name`, `price`) "
+        + "WHERE `_class` = \"org.springframework.data.couchbase.repository.query.support.N1qlIndexDefinitionTest$Item\" "
+        + "USING GSI WITH {\"defer_build\":true}", definitions.get(0).createStatement("b").toString());
+  }
+
+  @Test
+  public void testIgnoreCaseUsesLowerKey() {
+    List<N1qlIndexDefinition> definitions = derive("findByNameIgnoreCase");
+
+    assertEquals("[LOWER(`name`)]", definitions.get(0).getKeys().toString());
+    assertEquals("idx_Item_LOWER_name", definitions.get(0).getName());
+  }
+
+  @Test
+  public void testCollectionContainingUsesArrayKey() {
+    List<N1qlIndexDefinition> definitions = derive("findByTagsContaining");
+
+    assertEquals("[DISTINCT ARRAY element FOR element IN `tags` END]", definitions.get(0).getKeys().toString());
+  }
+
+  @Test
+  public void testArrayContainingIsAnEqualityKeyAndStringContainingComesLast() {
+    List<N1qlIndexDefinition> definitions = derive("findByNameContainingAndPriceGreaterThanAndTagsContaining");
+
+    assertEquals("[DISTINCT ARRAY element FOR element IN `tags` END, `price`, `name`]",
+        definitions.get(0).getKeys().toString());
+  }
+
+  @Test
+  public void testOneIndexPerOrBranchAndNoneWithoutCriteria() {
+    assertEquals(2, derive("findByNameOrPriceLessThan").size());
+    assertTrue(derive("findAllByOrderByNameAsc").isEmpty());
+  }
+
+  @Test
+  public void testDuplicateKeysAreSkipped() {
+    assertEquals(1, derive("findByPriceGreaterThanAndPriceLessThan").get(0).getKeys().size());
+  }
+
+  @Test
+  public void testLongNamesAreShortened() {
+    String name = derive("findByNameAndPriceAndTagsContainingAndVeryLongPropertyNameForAnItemAndAnotherVeryLongPropertyName")
+        .get(0).getName();
+
+    assertTrue(name.length() <= 100);
+    assertEquals(derive("findByNameAndPriceAndTagsContainingAndVeryLongPropertyNameForAnItemAndAnotherVeryLongPropertyName")
+        .get(0).getName(), name);
+  }
+
+  static class Item {
+    String id;
+    String name;
+    int price;
+    List<String> tags;
+    String veryLongPropertyNameForAnItem;
+    String anotherVeryLongPropertyName;
+  }
+}
@@ -4,6 +4,9 @@ import static com.couchbase.client.java.query.dsl.Expression.*;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
+
+import com.couchbase.client.java.query.dsl.Expression;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.data.couchbase.core.Beer;
@@ -71,6 +74,19 @@ public class N1qlUtilsTest {
     assertEquals(expected, real);
   }
 
+  @Test
+  public void testCreateWhereFilterForEntityUsesTypeAliases() throws Exception {
+    CouchbaseConverter converter = mock(CouchbaseConverter.class);
+    when(converter.getTypeKey()).thenReturn("_class");
+    when(converter.getTypeAliases(String.class)).thenReturn(Arrays.asList("s", "java.lang.String"));
+    EntityMetadata metadata = mock(EntityMetadata.class);
+    when(metadata.getJavaType()).thenReturn(String.class);
+
+    String real = N1qlUtils.createWhereFilterForEntity(null, converter, metadata).toString();
+
+    assertEquals("`_class` IN [\"s\",\"java.lang.String\"]", real);
+  }
+
   @Test
   public void testGetPathWithAlternativeFieldNamesCallsMapperOnce() throws Exception {
     CouchbaseConverter converter = mock(CouchbaseConverter.class);
@@ -155,4 +171,18 @@ public class N1qlUtilsTest {
     assertEquals("`party`.`attendees` ASC", realSort[0].toString());
     verifyZeroInteractions(converter);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testGroupCountCountsDistinctGroups() throws Exception {
+    Expression count = N1qlUtils.createGroupCountExpression(new Expression[] { i("name"), i("brewery") });
+
+    assertEquals("COUNT(DISTINCT [`name`, `brewery`]) AS " + CountFragment.COUNT_ALIAS, count.toString());
+  }
+
+  @Test
+  public void testGroupCountWithoutGroupingIsAPlainCount() throws Exception {
+    Expression count = N1qlUtils.createGroupCountExpression(new Expression[0]);
+
+    assertEquals("COUNT(*) AS " + CountFragment.COUNT_ALIAS, count.toString());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.AsyncN1qlQueryResult;
+import com.couchbase.client.java.query.Statement;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import org.springframework.data.couchbase.core.CouchbaseQueryExecutionException;
+
+public class DeferredIndexBuilderTest {
+
+  private AsyncBucket asyncBucket;
+  private AsyncN1qlQueryResult result;
+  private DeferredIndexBuilder builder;
+
+  @Before
+  public void setUp() {
+    Bucket bucket = mock(Bucket.class);
+    asyncBucket = mock(AsyncBucket.class);
+    result = mock(AsyncN1qlQueryResult.class);
+    when(bucket.name()).thenReturn("b");
+    when(bucket.async()).thenReturn(asyncBucket);
+    when(result.errors()).thenReturn(Observable.<JsonObject>empty());
+    when(asyncBucket.query(any(Statement.class))).thenReturn(Observable.just(result));
+    builder = new DeferredIndexBuilder(bucket);
+  }
+
+  @Test
+  public void testIndexesCreatedTogetherAreBuiltInOneBatch() {
+    PublishSubject<Boolean> first = PublishSubject.create();
+    PublishSubject<Boolean> second = PublishSubject.create();
+    TestSubscriber<Void> firstBuilt = new TestSubscriber<Void>();
+    TestSubscriber<Void> secondBuilt = new TestSubscriber<Void>();
+    builder.createAndBuild("first", first).subscribe(firstBuilt);
+    builder.createAndBuild("second", second).subscribe(secondBuilt);
+
+    first.onNext(true);
+    first.onCompleted();
+    verify(asyncBucket, never()).query(any(Statement.class));
+    firstBuilt.assertNotCompleted();
+
+    second.onNext(true);
+    second.onCompleted();
+    ArgumentCaptor<Statement> statement = ArgumentCaptor.forClass(Statement.class);
+    verify(asyncBucket).query(statement.capture());
+    assertEquals("BUILD INDEX ON `b` (`first`, `second`)", statement.getValue().toString());
+    firstBuilt.assertCompleted();
+    secondBuilt.assertCompleted();
+  }
+
+  @Test
+  public void testPlannedIndexesAreBuiltTogetherWhenTheFirstCompletesEarly() {
+    builder.plan();
+    builder.plan();
+    TestSubscriber<Void> firstBuilt = new TestSubscriber<Void>();
+    builder.createAndBuild("first", Observable.just(true)).subscribe(firstBuilt);
+    verify(asyncBucket, never()).query(any(Statement.class));
+    firstBuilt.assertNotCompleted();
+
+    TestSubscriber<Void> secondBuilt = new TestSubscriber<Void>();
+    builder.createAndBuild("second", Observable.just(true)).subscribe(secondBuilt);
+    ArgumentCaptor<Statement> statement = ArgumentCaptor.forClass(Statement.class);
+    verify(asyncBucket).query(statement.capture());
+    assertEquals("BUILD INDEX ON `b` (`first`, `second`)", statement.getValue().toString());
+    firstBuilt.assertCompleted();
+    secondBuilt.assertCompleted();
+  }
+
+  @Test
+  public void testExistingIndexIsNotBuilt() {
+    TestSubscriber<Void> built = new TestSubscriber<Void>();
+    builder.createAndBuild("existing", Observable.just(false)).subscribe(built);
+
+    built.assertCompleted();
+    verify(asyncBucket, never()).query(any(Statement.class));
+  }
+
+  @Test
+  public void testBuildErrorsAreReportedToAllIndexesOfTheBatch() {
+    when(result.errors()).thenReturn(Observable.just(JsonObject.create().put("msg", "build failed")));
+    TestSubscriber<Void> built = new TestSubscriber<Void>();
+    builder.createAndBuild("failing", Observable.just(true)).subscribe(built);
+
+    built.assertError(CouchbaseQueryExecutionException.class);
+    assertTrue(built.getOnErrorEvents().get(0).getMessage().contains("build failed"));
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.couchbase.repository.support;
+
+import static com.couchbase.client.java.query.dsl.Expression.x;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.bucket.AsyncBucketManager;
+import com.couchbase.client.java.bucket.BucketManager;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.error.DesignDocumentDoesNotExistException;
+import com.couchbase.client.java.query.AsyncN1qlQueryResult;
+import com.couchbase.client.java.query.Statement;
+import com.couchbase.client.java.view.DesignDocument;
+import com.couchbase.client.java.view.View;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+import org.springframework.data.couchbase.core.CouchbaseOperations;
+import org.springframework.data.couchbase.core.query.ViewIndexed;
+import org.springframework.data.couchbase.repository.query.support.N1qlIndexDefinition;
+import org.springframework.data.repository.core.RepositoryInformation;
+
+public class IndexManagerTest {
+
+  private Bucket bucket;
+  private AsyncBucket asyncBucket;
+  private CouchbaseOperations operations;
+  private IndexManager indexManager;
+
+  @Before
+  public void setUp() {
+    bucket = mock(Bucket.class);
+    asyncBucket = mock(AsyncBucket.class);
+    operations = mock(CouchbaseOperations.class);
+    when(bucket.name()).thenReturn("b");
+    when(bucket.async()).thenReturn(asyncBucket);
+    when(operations.getCouchbaseBucket()).thenReturn(bucket);
+    indexManager = new IndexManager(true, true, true, true);
+    indexManager.setBackgroundProvisioning(true);
+  }
+
+  @Test
+  public void testDerivedIndexesAreBuiltInOneBatchAndPartOfReadiness() throws Exception {
+    AsyncN1qlQueryResult result = mock(AsyncN1qlQueryResult.class);
+    when(result.errors()).thenReturn(Observable.<JsonObject>empty());
+    PublishSubject<AsyncN1qlQueryResult> first = PublishSubject.create();
+    PublishSubject<AsyncN1qlQueryResult> second = PublishSubject.create();
+    when(asyncBucket.query(any(Statement.class))).thenReturn(first, second, Observable.just(result));
+    List<N1qlIndexDefinition> definitions = Arrays.asList(
+        new N1qlIndexDefinition(Item.class, Collections.singletonList(x("name")), x("_class = \"Item\"")),
+        new N1qlIndexDefinition(Item.class, Collections.singletonList(x("size")), x("_class = \"Item\"")));
+
+    indexManager.buildDerivedIndexes(ItemRepository.class, definitions, operations);
+    CompletableFuture<Void> readiness = indexManager.getReadiness(ItemRepository.class);
+    verify(asyncBucket, timeout(5000).times(2)).query(any(Statement.class));
+    assertFalse(readiness.isDone());
+
+    //the creations complete on this thread, which issues the build when the last one does
+    first.onNext(result);
+    first.onCompleted();
+    verify(asyncBucket, times(2)).query(any(Statement.class));
+    second.onNext(result);
+    second.onCompleted();
+    readiness.get(5, TimeUnit.SECONDS);
+    ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+    verify(asyncBucket, times(3)).query(statements.capture());
+    String buildIndex = statements.getAllValues().get(2).toString();
+    assertTrue(buildIndex, buildIndex.startsWith("BUILD INDEX ON `b`"));
+    assertTrue(buildIndex, buildIndex.contains("`idx_Item_name`") && buildIndex.contains("`idx_Item_size`"));
+  }
+
+  @Test
+  public void testUpdatesOfADesignDocumentEachReadThePreviousOne() throws Exception {
+    BucketManager manager = mock(BucketManager.class);
+    AsyncBucketManager asyncManager = mock(AsyncBucketManager.class);
+    when(bucket.bucketManager()).thenReturn(manager);
+    when(manager.async()).thenReturn(asyncManager);
+    AtomicReference<DesignDocument> stored = new AtomicReference<DesignDocument>();
+    when(manager.getDesignDocument("item")).then(invocation -> {
+      if (stored.get() == null) {
+        throw new DesignDocumentDoesNotExistException();
+      }
+      return DesignDocument.create("item", new ArrayList<View>(stored.get().views()));
+    });
+    PublishSubject<DesignDocument> firstUpsert = PublishSubject.create();
+    when(asyncManager.upsertDesignDocument(any(DesignDocument.class))).then(invocation -> {
+      DesignDocument document = invocation.getArgument(0);
+      Observable<DesignDocument> upsert = stored.get() == null ? firstUpsert : Observable.just(document);
+      stored.set(document);
+      return upsert;
+    });
+
+    indexManager.buildIndexes(repositoryInformation(ItemRepository.class),
+        ItemRepository.class.getAnnotation(ViewIndexed.class), null, null, operations);
+    indexManager.buildIndexes(repositoryInformation(OtherItemRepository.class),
+        OtherItemRepository.class.getAnnotation(ViewIndexed.class), null, null, operations);
+    verify(asyncManager, timeout(5000)).upsertDesignDocument(any(DesignDocument.class));
+    verify(manager, times(1)).getDesignDocument("item");
+
+    firstUpsert.onNext(stored.get());
+    firstUpsert.onCompleted();
+    indexManager.getReadiness(OtherItemRepository.class).get(5, TimeUnit.SECONDS);
+    List<String> views = new ArrayList<String>();
+    for (View view : stored.get().views()) {
+      views.add(view.name());
+    }
+    assertEquals(Arrays.asList("all", "other"), views);
+  }
+
+  private static RepositoryInformation repositoryInformation(Class<?> repositoryInterface) {
+    RepositoryInformation metadata = mock(RepositoryInformation.class);
+    when(metadata.getRepositoryInterface()).then(invocation -> repositoryInterface);
+    return metadata;
+  }
+
+  static class Item {
+  }
+
+  @ViewIndexed(designDoc = "item", mapFunction = "function (doc, meta) { emit(meta.id, null); }")
+  interface ItemRepository {
+  }
+
+  @ViewIndexed(designDoc = "item", viewName = "other", mapFunction = "function (doc, meta) { emit(doc.name, null); }")
+  interface OtherItemRepository {
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.data.couchbase.repository.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.client.java.query.N1qlQueryResult;
+import com.couchbase.client.java.query.N1qlQueryRow;
+import org.junit.Test;
+
+import org.springframework.data.couchbase.repository.query.CouchbaseQueryMethod;
+import org.springframework.data.couchbase.repository.query.ExplainableN1qlQuery;
+
+public class QueryPlanVerifierTest {
+
+  private static JsonObject operator(String name) {
+    return JsonObject.create().put("#operator", name);
+  }
+
+  private static JsonObject sequence(JsonObject... children) {
+    JsonArray array = JsonArray.create();
+    for (JsonObject child : children) {
+      array.add(child);
+    }
+    return operator("Sequence").put("~children", array);
+  }
+
+  private static final JsonObject PRIMARY_PLAN = sequence(
+      operator("PrimaryScan3").put("index", "#primary"), operator("Fetch"), operator("Filter"));
+
+  private static final JsonObject COVERING_PLAN = sequence(
+      operator("IndexScan3").put("index", "idx_name").put("covers", JsonArray.from("cover ((`name`))")),
+      operator("InitialProject"));
+
+  @Test
+  public void testAnalyzeDetectsPrimaryScan() {
+    QueryPlanReport.QueryPlan plan = QueryPlanVerifier.analyze("findByName", "SELECT 1", PRIMARY_PLAN);
+
+    assertTrue(plan.isPrimaryScan());
+    assertFalse(plan.isCovering());
+    assertEquals(Collections.singletonList("#primary"), plan.getIndexes());
+    assertNull(plan.getError());
+  }
+
+  @Test
+  public void testAnalyzeDetectsCoveringIndexScan() {
+    QueryPlanReport.QueryPlan plan = QueryPlanVerifier.analyze("findByName", "SELECT 1", COVERING_PLAN);
+
+    assertFalse(plan.isPrimaryScan());
+    assertTrue(plan.isCovering());
+    assertEquals(Collections.singletonList("idx_name"), plan.getIndexes());
+  }
+
+  @Test
+  public void testAnalyzeFetchIsNotCovering() {
+    JsonObject plan = sequence(
+        operator("IndexScan3").put("index", "idx_name").put("covers", JsonArray.from("cover ((`name`))")),
+        operator("Fetch"));
+
+    assertFalse(QueryPlanVerifier.analyze("findByName", "SELECT 1", plan).isCovering());
+  }
+
+  @Test
+  public void testWarnModeReturnsAndKeepsReport() {
+    QueryPlanVerifier verifier = new QueryPlanVerifier(QueryPlanVerifier.Mode.WARN);
+
+    QueryPlanReport report = verifier.verify(String.class, Collections.singletonList(query("findByName")),
+        bucketExplaining(PRIMARY_PLAN));
+
+    assertFalse(report.isValid());
+    assertEquals(1, report.getViolations().size());
+    assertEquals("EXPLAIN SELECT * FROM `b`", lastExplained);
+    assertEquals(Collections.singletonList(report), verifier.getReports());
+  }
+
+  @Test
+  public void testFailModeThrowsOnPrimaryScan() {
+    QueryPlanVerifier verifier = new QueryPlanVerifier(QueryPlanVerifier.Mode.FAIL);
+
+    try {
+      verifier.verify(String.class, Collections.singletonList(query("findByName")), bucketExplaining(PRIMARY_PLAN));
+      fail("expected QueryPlanVerificationException");
+    } catch (QueryPlanVerificationException e) {
+      assertSame(verifier.getReports().get(0), e.getReport());
+    }
+  }
+
+  @Test
+  public void testFailModeAcceptsIndexScan() {
+    QueryPlanVerifier verifier = new QueryPlanVerifier(QueryPlanVerifier.Mode.FAIL);
+
+    QueryPlanReport report = verifier.verify(String.class, Collections.singletonList(query("findByName")),
+        bucketExplaining(COVERING_PLAN));
+
+    assertTrue(report.isValid());
+    assertTrue(report.getPlans().get(0).isCovering());
+  }
+
+  @Test
+  public void testUnexplainableQueryIsAViolation() {
+    ExplainableN1qlQuery query = query("findByName");
+    when(query.createSampleQuery()).thenThrow(new IllegalArgumentException("no sample"));
+
+    QueryPlanReport report = new QueryPlanVerifier(QueryPlanVerifier.Mode.WARN)
+        .verify(String.class, Collections.singletonList(query), bucketExplaining(COVERING_PLAN));
+
+    assertFalse(report.isValid());
+    assertTrue(report.getPlans().get(0).getError().contains("no sample"));
+  }
+
+  private String lastExplained;
+
+  private ExplainableN1qlQuery query(String methodName) {
+    CouchbaseQueryMethod method = mock(CouchbaseQueryMethod.class);
+    when(method.getName()).thenReturn(methodName);
+    ExplainableN1qlQuery query = mock(ExplainableN1qlQuery.class);
+    when(query.getQueryMethod()).thenReturn(method);
+    when(query.createSampleQuery()).thenReturn(N1qlQuery.simple("SELECT * FROM `b`"));
+    return query;
+  }
+
+  private Bucket bucketExplaining(JsonObject plan) {
+    N1qlQueryRow row = mock(N1qlQueryRow.class);
+    when(row.value()).thenReturn(JsonObject.create().put("plan", plan));
+    N1qlQueryResult result = mock(N1qlQueryResult.class);
+    when(result.finalSuccess()).thenReturn(true);
+    when(result.allRows()).thenReturn(Collections.singletonList(row));
+    Bucket bucket = mock(Bucket.class);
+    when(bucket.query(any(N1qlQuery.class))).thenAnswer(invocation -> {
+      lastExplained = invocation.<N1qlQuery>getArgument(0).statement().toString();
+      return result;
+    });
+    return bucket;
+  }
+}